@@ -20,9 +20,21 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
  *   &#064;Entity
  *   public class ValuedCustomer extends Customer { ... }
  * </pre>
+ *
+ * All classes of the hierarchy are stored in the same table. Each row has a discriminator column (indexed) 
+ * that stores the simple name of the class stored in it. Tables created without the discriminator column (by older versions) 
+ * receive it when the database is opened and their existing rows are assigned to the superclass.
  */
 @Target({TYPE})
 @Retention(RUNTIME)
 public @interface InheritanceSingleTable {
 
+	/**
+	 * (Optional) The name of the discriminator column.
+	 * This column stores the simple name of the entity class of each row.<p>
+	 *
+	 * @default "discriminator"
+	 */
+	public String discriminatorColumn() default "discriminator";
+
 }
\ No newline at end of file
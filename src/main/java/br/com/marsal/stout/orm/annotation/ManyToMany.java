@@ -0,0 +1,44 @@
+package br.com.marsal.stout.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import br.com.marsal.stout.orm.enumeration.FetchType;
+
+/**
+ * Specifies a many-valued association with many-to-many multiplicity stored in a {@code JoinTable}.<br>
+ * The field must be declared as a {@link java.util.List} parameterized with the target entity class and the join table
+ * must be returned by the entity method annoted with {@link GetJoinTables}.<p>
+ *
+ * The join column of the join table refers to the owning entity primary key and the inverse join column refers to the target entity primary key.
+ *
+ * <pre><b>Example:</b>
+ *
+ * {@literal @Entity}
+ * public class Entity1 {
+ *     ...
+ *     {@literal @ManyToMany}(joinTable="Entity1_Entities2", fetch=FetchType.LAZY)
+ *     private List&lt;Entity2&gt; entities2;
+ *     ...
+ * }</pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ManyToMany {
+
+	/**
+	 * (Required) The name of the join table used to store the association.
+	 * It must be one of the join tables returned by the entity {@link GetJoinTables} method.
+	 */
+	public String joinTable();
+
+	/**
+	 * (Optional) Whether the association should be lazily loaded or must be eagerly fetched.<p>
+	 *
+	 * @default FetchType.LAZY
+	 */
+	public FetchType fetch() default FetchType.LAZY;
+
+}
@@ -0,0 +1,33 @@
+package br.com.marsal.stout.orm.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import br.com.marsal.stout.orm.enumeration.DateStorage;
+
+/**
+ * Specifies how a persistent date field ({@code java.util.Date}, {@code java.sql.Date} or {@code Calendar}) is stored.
+ * If the Temporal annotation is not used, the DateStorage value is assumed to be TEXT.<p>
+ *
+ * <pre><b>Example:</b>
+ *
+ * {@literal @Entity} 
+ * public class Event {
+ *     ...
+ *     {@literal @Temporal}(DateStorage.INTEGER)
+ *     private Date startAt;
+ *     ...
+ * }</pre>
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Temporal {
+	/**
+	 * (Optional) The SQLite value used to store the date. 
+	 *  
+	 * @Default br.com.marsal.stout.orm.enumeration.DateStorage.TEXT;
+	 */
+	 public DateStorage value() default DateStorage.TEXT;
+}
@@ -0,0 +1,282 @@
+package br.com.marsal.stout.orm.database;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+import br.com.marsal.stout.orm.field.FieldDef;
+
+/**
+ * Streaming bulk loader of table rows from CSV or JSON lines ({@link DataFormat}).<p>
+ *
+ * The rows are read one by one from the input stream, their columns are mapped to the entity fields by column name and their values
+ * are bound straight into one compiled INSERT statement, without creating entity instances. The rows are committed in chunks,
+ * the non unique indexes of the table can be dropped during the import and created again at the end, and the progress is reported
+ * after each chunk.
+ *
+ * <pre><b>Example</b><br>
+ *
+ * long rows = entityManager.newBulkImporter(City.class)
+ *     .setFormat(DataFormat.CSV)
+ *     .setReplace(true)
+ *     .setDeferIndexes(true)
+ *     .importFrom(context.getAssets().open("cities.csv"));</pre>
+ *
+ * If the import is executed inside a transaction started by caller the chunks are not committed until the caller transaction is.
+ */
+public final class BulkImporter {
+
+	/* ********************************************************
+	 * PROGRESS LISTENER
+	 **********************************************************/
+
+	/** Receive the import progress. It is called on the import thread after each committed chunk and at the end. */
+	public interface ProgressListener {
+
+		/**
+		 * @param importedRows - number of rows imported until now
+		 * @param skippedRows - number of invalid rows skipped until now (only when {@link BulkImporter#setSkipInvalidRows(boolean)} is enabled)
+		 */
+		void onProgress(long importedRows, long skippedRows);
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Default number of rows committed in each transaction. */
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	/** Persistence manager used to exec the import. */
+	private final PersistenceManager mPersistenceManager;
+
+	/** Definition of the entity (table) where the rows are imported. */
+	private final EntityDef mEntityDef;
+
+	private DataFormat mFormat = DataFormat.CSV;
+	private int mChunkSize = DEFAULT_CHUNK_SIZE;
+	private boolean mReplace = false;
+	private boolean mDeferIndexes = false;
+	private boolean mSkipInvalidRows = false;
+	private ProgressListener mProgressListener = null;
+
+	/* ********************************************************
+	 * CONSTRUCTORS / OPTIONS
+	 **********************************************************/
+
+	/** Created by {@link PersistenceManager#newBulkImporter(EntityDef)}. */
+	BulkImporter(PersistenceManager persistenceManager, EntityDef entityDef) {
+		mPersistenceManager = persistenceManager;
+		mEntityDef = entityDef;
+	}
+
+	/** Format of the input stream. Default is {@link DataFormat#CSV}. */
+	public BulkImporter setFormat(DataFormat format) {
+		mFormat = format;
+		return this;
+	}
+
+	/** Number of rows committed in each transaction. Default is {@link #DEFAULT_CHUNK_SIZE}. */
+	public BulkImporter setChunkSize(int chunkSize) {
+		if (chunkSize < 1)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid chunk size: " + chunkSize + ".");
+		mChunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * If {@code true} the rows are upserted by INSERT OR REPLACE: one row with the same primary key (or unique column) of an existing row
+	 * replaces it. Otherwise the rows are inserted and one conflicting row fails the import. Default is {@code false}.
+	 */
+	public BulkImporter setReplace(boolean replace) {
+		mReplace = replace;
+		return this;
+	}
+
+	/** If {@code true} the non unique indexes of the table are dropped during the import and created again at the end. Default is {@code false}. */
+	public BulkImporter setDeferIndexes(boolean deferIndexes) {
+		mDeferIndexes = deferIndexes;
+		return this;
+	}
+
+	/** If {@code true} the rows that can't be parsed or inserted (e.g. constraint violations) are skipped. Otherwise they fail the import. Default is {@code false}. */
+	public BulkImporter setSkipInvalidRows(boolean skipInvalidRows) {
+		mSkipInvalidRows = skipInvalidRows;
+		return this;
+	}
+
+	/** Listener notified after each committed chunk. */
+	public BulkImporter setProgressListener(ProgressListener progressListener) {
+		mProgressListener = progressListener;
+		return this;
+	}
+
+	/* ********************************************************
+	 * IMPORT
+	 **********************************************************/
+
+	/**
+	 * Import all rows of the input stream (it is closed at the end) and return the number of imported rows.
+	 * If the import fails the chunks already committed are kept.
+	 */
+	public long importFrom(InputStream input) {
+		//the buffered entities must be written before (they could overwrite the imported rows later)
+		mPersistenceManager.flushWriteBehind();
+
+		long importedRows = 0;
+		long skippedRows = 0;
+		List<String> deferredIndexes = null;
+		try {
+			RowReader reader = RowReader.newReader(mFormat, input);
+			try {
+				//map the columns to the entity fields and build the INSERT statement
+				FieldDef[] fields = getFields(reader.getColumns());
+				String statement = buildInsertStatement(fields);
+
+				if (mDeferIndexes)
+					deferredIndexes = dropIndexes();
+
+				//import the rows in chunks (one transaction each)
+				boolean hasRows = true;
+				while (hasRows) {
+					int chunkRows = 0;
+					boolean commit = false;
+					mPersistenceManager.startTransaction();
+					try {
+						DatabaseStatement insert = mPersistenceManager.compileStatement(statement);
+						while (chunkRows < mChunkSize && (hasRows = reader.next())) {
+							chunkRows++;
+							if (insertRow(insert, reader, fields))
+								importedRows++;
+							else
+								skippedRows++;
+						}
+						commit = true;
+					} finally {
+						mPersistenceManager.endTransaction(commit);
+					}
+
+					if (mProgressListener != null && chunkRows > 0)
+						mProgressListener.onProgress(importedRows, skippedRows);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw ExceptionUtils.newRuntimeException(getClass(), "Can't import the \"" + mEntityDef.getTableName() + "\" rows. Details: " + e.getMessage());
+		} finally {
+			//cached entities and their snapshots are out of date now
+			mPersistenceManager.evictEntities(mEntityDef);
+
+			//indexes must be created again even if the import fails
+			if (deferredIndexes != null)
+				createIndexes(deferredIndexes);
+		}
+		return importedRows;
+	}
+
+	/** Bind the current row values and insert it. @return {@code false} if the row is invalid and was skipped. */
+	private boolean insertRow(DatabaseStatement insert, RowReader reader, FieldDef[] fields) {
+		try {
+			insert.clearBindings();
+			for (int i = 0; i < fields.length; i++)
+				SQLiteHelper.bindValue(insert, i + 1, fields[i].parseMappedValue(reader.getValue(i)));
+			if (mEntityDef.getDiscriminatorColumn() != null)
+				insert.bindString(fields.length + 1, mEntityDef.getDiscriminatorValue());
+			insert.executeInsert();
+			return true;
+		} catch (RuntimeException e) {
+			//SQLite rolls back only the failed statement... so the invalid row can be skipped
+			if (!mSkipInvalidRows || !(mPersistenceManager.getDatabaseDriver().isDatabaseException(e) || e instanceof IllegalArgumentException))
+				throw e;
+			return false;
+		}
+	}
+
+	/** Return the entity field of each column. Unknown columns fail the import. */
+	private FieldDef[] getFields(String[] columns) {
+		FieldDef[] result = new FieldDef[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			for (FieldDef field : mEntityDef.getFieldsToCreateTable()) {
+				if (field.getColumnName().equalsIgnoreCase(columns[i])) {
+					result[i] = field;
+					break;
+				}
+			}
+			if (result[i] == null)
+				throw ExceptionUtils.newRuntimeException(getClass(), "Column \"" + columns[i] + "\" not found in \"" + mEntityDef.getTableName() + "\" entity.");
+		}
+		return result;
+	}
+
+	/** Build the INSERT (or INSERT OR REPLACE) statement to the fields columns (and discriminator column if exists). */
+	private String buildInsertStatement(FieldDef[] fields) {
+		List<String> columns = new ArrayList<String>();
+		List<String> params = new ArrayList<String>();
+		for (FieldDef field : fields) {
+			columns.add(field.getColumnName());
+			params.add("?");
+		}
+		if (mEntityDef.getDiscriminatorColumn() != null) {
+			columns.add(mEntityDef.getDiscriminatorColumn());
+			params.add("?");
+		}
+		return (mReplace ? "INSERT OR REPLACE" : "INSERT") + " INTO " + mEntityDef.getTableName()
+				+ " (" + StringUtils.join(columns, ',') + ") VALUES (" + StringUtils.join(params, ',') + ")";
+	}
+
+	/* ********************************************************
+	 * DEFERRED INDEXES
+	 **********************************************************/
+
+	/** Drop the non unique indexes (created by CREATE INDEX) of the table and return their CREATE statements. */
+	private List<String> dropIndexes() {
+		List<String> names = new ArrayList<String>();
+		List<String> result = new ArrayList<String>();
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			DatabaseCursor cursor = mPersistenceManager.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL AND tbl_name = '" + mEntityDef.getTableName() + "'");
+			try {
+				while (cursor.moveToNext()) {
+					//unique indexes check the rows... they can't be deferred
+					String sql = cursor.getString(1);
+					if (!sql.trim().toUpperCase().startsWith("CREATE UNIQUE")) {
+						names.add(cursor.getString(0));
+						result.add(sql);
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+			for (String name : names)
+				mPersistenceManager.execSQL("DROP INDEX " + name);
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+		return result;
+	}
+
+	/** Create the dropped indexes again. */
+	private void createIndexes(List<String> statements) {
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			for (String statement : statements)
+				mPersistenceManager.execSQL(statement);
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+
+}
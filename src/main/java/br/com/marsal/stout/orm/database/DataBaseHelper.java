@@ -1,154 +1,213 @@
 package br.com.marsal.stout.orm.database;
 
 import android.content.Context;
-import android.database.SQLException;
+import android.content.res.AssetFileDescriptor;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteException;
-import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteDatabaseCorruptException;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
 
-public class DataBaseHelper extends SQLiteOpenHelper {
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
-	// The Android's default system path of your application database.
-	private static String DB_PATH = "/data/data/YOUR_PACKAGE/databases/";
-	private static String DB_NAME = "myDBName";
-	private SQLiteDatabase myDataBase;
-	private final Context myContext;
+/**
+ * Installer of prepackaged databases (database files bundled in the app "assets" folder).<p>
+ *
+ * The persistence unit defines the asset with the property {@code <property name="asset-database" value="seed.db"/>} (or "seed.db.gz"
+ * to a gzip compressed asset). The asset is installed only when the database file doesn't exist or is corrupted / not a database (the
+ * unreadable file and its journal files are kept aside with the {@link #UNREADABLE_SUFFIX} suffix). Others errors opening the database
+ * (e.g. locked by other process, I/O error or disk full) are thrown, so a live database is never set aside. An existing database is never replaced, even if its version
+ * (PRAGMA user_version) is older than the persistence unit database version: it is upgraded by the open helper like any other
+ * database, so the user data is kept. The asset version (if it has one) is upgraded in the same way after it is installed.<p>
+ *
+ * The asset is written to a temporary file that is renamed to the database file only after it is completely written and synced,
+ * so an interrupted install never leaves a partial database. Uncompressed assets stored without compression in the APK are copied
+ * by NIO channel transfer, others are streamed through a large buffer (decompressing them if needed).
+ */
+public final class DataBaseHelper {
 
-	/**
-	 * Constructor Takes and keeps a reference of the passed context in order to access to the application assets and resources.
-	 */
-	public DataBaseHelper(Context context) {
-		super(context, DB_NAME, null, 1);
-		this.myContext = context;
-	}
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
 
-	/**
-	 * Creates a empty database on the system and rewrites it with your own database.
-	 */
-	public void createDataBase() throws IOException {
+	/** Buffer size used to stream the asset. */
+	private static final int BUFFER_SIZE = 256 * 1024;
 
-		boolean dbExist = checkDataBase();
+	/** Suffix of compressed (gzip) assets. */
+	private static final String GZIP_SUFFIX = ".gz";
 
-		if (dbExist) {
-			// do nothing - database already exist
-		} else {
+	/** Suffix of the temporary file where the asset is written before being swapped in. */
+	private static final String TEMP_SUFFIX = ".tmp";
 
-			// By calling this method and empty database will be created into
-			// the default system path
-			// of your application so we are gonna be able to overwrite that
-			// database with our database.
-			this.getReadableDatabase();
+	/** Suffix of the unreadable database file (and its journal files) kept aside when the asset is installed in its place. */
+	private static final String UNREADABLE_SUFFIX = ".unreadable";
 
-			try {
-				copyDataBase();
-			} catch (IOException e) {
-				throw new Error("Error copying database");
-			}
-		}
-	}
+	/** Suffixes of the SQLite files that belong to the database file (they must be removed when it is replaced). */
+	private static final String[] DATABASE_FILES_SUFFIXES = {"-journal", "-wal", "-shm"};
 
-	/**
-	 * Check if the database already exist to avoid re-copying the file each time you open the application.
-	 * 
-	 * @return true if it exists, false if it doesn't
-	 */
-	private boolean checkDataBase() {
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
 
-		SQLiteDatabase checkDB = null;
-		try {
-			String myPath = DB_PATH + DB_NAME;
-			checkDB = SQLiteDatabase.openDatabase(myPath, null, SQLiteDatabase.OPEN_READONLY);
+	/** To avoid create a new one... all methods are static. */
+	private DataBaseHelper() {}
 
-		} catch (SQLiteException e) {
-			// database does't exist yet.
-		}
-
-		if (checkDB != null) {
-			checkDB.close();
-		}
-
-		return checkDB != null ? true : false;
-	}
+	/* ********************************************************
+	 * INSTALL
+	 **********************************************************/
 
 	/**
-	 * Copies your database from your local assets-folder to the just created empty database in the system folder,
-	 * from where it can be accessed and handled. This is done by transfering bytestream.
+	 * Install the prepackaged database of the persistence unit (if it defines one) into databasePath when there isn't a readable database.
+	 *
+	 * @return {@code true} if the asset was copied, {@code false} if there is one installed database
 	 */
-	private void copyDataBase() throws IOException {
+	public static boolean installDatabase(Context context, PersistenceProperties.PersistenceUnit pu, String databasePath) {
+		String asset = pu.getAssetDatabase();
+		if (asset == null)
+			return false;
 
-		// Open your local db as the input stream
-		InputStream myInput = myContext.getAssets().open(DB_NAME);
+		//database already installed... nothing to do (it has the user data, so it is upgraded by the open helper, never replaced)
+		File databaseFile = new File(databasePath);
+		if (databaseFile.exists() && isReadable(databaseFile))
+			return false;
 
-		// Path to the just created empty db
-		String outFileName = DB_PATH + DB_NAME;
+		File tempFile = new File(databasePath + TEMP_SUFFIX);
+		try {
+			//copy the asset to the temporary file
+			databaseFile.getParentFile().mkdirs();
+			copyAsset(context, asset, tempFile);
 
-		// Open the empty db as the output stream
-		OutputStream myOutput = new FileOutputStream(outFileName);
+			//databases without version are marked with the persistence unit version (otherwise they would be created again by the open helper)
+			SQLiteDatabase database = SQLiteDatabase.openDatabase(tempFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+			try {
+				if (database.getVersion() == 0)
+					database.setVersion(pu.getDatabaseVersion());
+			} finally {
+				database.close();
+			}
 
-		// transfer bytes from the inputfile to the outputfile
-		byte[] buffer = new byte[1024];
-		int length;
-		while ((length = myInput.read(buffer)) > 0) {
-			myOutput.write(buffer, 0, length);
+			//keep the unreadable database aside (it can be recovered) and swap the new database in
+			if (databaseFile.exists())
+				keepAside(databasePath);
+			replaceDatabaseFile(tempFile, databasePath);
+		} catch (IOException e) {
+			throw ExceptionUtils.newRuntimeException(DataBaseHelper.class, "Can't install the database asset \"" + asset + "\". Details: " + e.getMessage());
+		} finally {
+			//only exists if the install fails
+			tempFile.delete();
 		}
-
-		// Close the streams
-		myOutput.flush();
-		myOutput.close();
-		myInput.close();
+		return true;
 	}
 
-	public void openDataBase() throws SQLException {
-
-		// Open the database
-		String myPath = DB_PATH + DB_NAME;
-		myDataBase = SQLiteDatabase.openDatabase(myPath, null, SQLiteDatabase.OPEN_READONLY);
+	/**
+	 * Replace the database file by the temporary file (it must be completely written and synced).
+	 * The journal files of the replaced database are removed because they don't belong to the new one.
+	 */
+	static void replaceDatabaseFile(File tempFile, String databasePath) throws IOException {
+		File databaseFile = new File(databasePath);
+		for (String suffix : DATABASE_FILES_SUFFIXES)
+			new File(databasePath + suffix).delete();
+		if (!tempFile.renameTo(databaseFile))
+			throw new IOException("Can't rename \"" + tempFile + "\" to \"" + databaseFile + "\".");
 	}
 
-	@Override
-	public synchronized void close() {
-
-		if (myDataBase != null)
-			myDataBase.close();
+	/**
+	 * Rename the database file and its journal files with the {@link #UNREADABLE_SUFFIX} suffix. The journal files are moved
+	 * with it (not removed) because their committed pages (e.g. WAL frames) are part of the database.
+	 */
+	private static void keepAside(String databasePath) throws IOException {
+		File databaseFile = new File(databasePath);
+		if (!databaseFile.renameTo(new File(databasePath + UNREADABLE_SUFFIX)))
+			throw new IOException("Can't keep the unreadable database \"" + databaseFile + "\" aside.");
+		for (String suffix : DATABASE_FILES_SUFFIXES) {
+			File file = new File(databasePath + suffix);
+			if (file.exists() && !file.renameTo(new File(databasePath + UNREADABLE_SUFFIX + suffix)))
+				throw new IOException("Can't keep the unreadable database file \"" + file + "\" aside.");
+		}
+	}
 
-		super.close();
+	/**
+	 * Check if the database file can be opened and read. Only corrupted files (or files that aren't databases) are unreadable,
+	 * others errors (e.g. the database is locked by other process, I/O errors or disk full) are thrown.
+	 */
+	private static boolean isReadable(File databaseFile) {
+		try {
+			SQLiteDatabase database = SQLiteDatabase.openDatabase(databaseFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+			try {
+				database.getVersion();
+				return true;
+			} finally {
+				database.close();
+			}
+		} catch (SQLiteDatabaseCorruptException e) {
+			//corrupted file or not a database
+			return false;
+		}
 	}
 
-	@Override
-	public void onCreate(SQLiteDatabase db) {
+	/** Copy the asset to the target file and sync it to disk. */
+	private static void copyAsset(Context context, String asset, File target) throws IOException {
+		FileOutputStream output = new FileOutputStream(target);
+		try {
+			if (asset.endsWith(GZIP_SUFFIX) || !transferAsset(context, asset, output.getChannel())) {
+				//stream the asset (decompressing it if needed)
+				InputStream input = context.getAssets().open(asset);
+				try {
+					if (asset.endsWith(GZIP_SUFFIX))
+						input = new GZIPInputStream(input, BUFFER_SIZE);
+					byte[] buffer = new byte[BUFFER_SIZE];
+					int length;
+					while ((length = input.read(buffer)) != -1)
+						output.write(buffer, 0, length);
+				} finally {
+					input.close();
+				}
+			}
 
+			//make sure the file is in disk before rename it
+			output.flush();
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
 	}
 
-	@Override
-	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+	/**
+	 * Copy the asset to target channel by NIO channel transfer.
+	 *
+	 * @return {@code false} if the asset is compressed in the APK (it can't be opened as a file descriptor) and must be streamed
+	 */
+	private static boolean transferAsset(Context context, String asset, FileChannel target) throws IOException {
+		AssetFileDescriptor descriptor;
+		try {
+			descriptor = context.getAssets().openFd(asset);
+		} catch (FileNotFoundException e) {
+			return false;
+		}
 
+		try {
+			//the asset is one region (offset, length) of the APK file
+			FileInputStream input = descriptor.createInputStream();
+			try {
+				FileChannel source = input.getChannel();
+				long offset = descriptor.getStartOffset();
+				long length = descriptor.getLength();
+				long position = 0;
+				while (position < length)
+					position += source.transferTo(offset + position, length - position, target);
+			} finally {
+				input.close();
+			}
+		} finally {
+			descriptor.close();
+		}
+		return true;
 	}
 
-	// Add your public helper methods to access and get content from the
-	// database.
-	// You could return cursors by doing "return myDataBase.query(....)" so it'd
-	// be easy
-	// to you to create adapters for your views.
-	
-	
-	
-//	 DataBaseHelper myDbHelper = new DataBaseHelper();
-//	 myDbHelper = new DataBaseHelper(this);
-//	  
-//	 try {
-//		 myDbHelper.createDataBase();
-//	 } catch (IOException ioe) {
-//		 throw new Error("Unable to create database");
-//	 }
-//	  
-//	 try {
-//		 myDbHelper.openDataBase();
-//	 } catch(SQLException sqle){
-//		 throw sqle;
-//	 }
-}
\ No newline at end of file
+}
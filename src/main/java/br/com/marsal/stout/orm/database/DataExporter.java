@@ -0,0 +1,242 @@
+package br.com.marsal.stout.orm.database;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+import br.com.marsal.stout.orm.field.FieldDef;
+
+/**
+ * Streaming export of query results to CSV or JSON lines ({@link DataFormat}).<p>
+ *
+ * The rows are read from the query cursor and written to the output stream through a buffered writer (optionally gzip compressed),
+ * without creating entity instances, so tables of any size are exported in constant memory.
+ * Entity exports apply the field conversions ({@link FieldDef#formatMappedValue(Object)}), so the output can be imported back by
+ * {@link BulkImporter}. Raw statement exports write the SQLite values as they are.
+ *
+ * <pre><b>Example</b><br>
+ *
+ * long rows = entityManager.newDataExporter(City.class)
+ *     .setFormat(DataFormat.JSON_LINES)
+ *     .setWhereClause("population &gt; 100000")
+ *     .setGzip(true)
+ *     .exportTo(new FileOutputStream(file));</pre>
+ *
+ * Entity exports read the rows in primary key pages, each one in its own short transaction, so the export doesn't hold one
+ * long transaction while the output is written: rows changed by others transactions between the pages are exported with the
+ * values of the page they are read. Raw statement exports run inside one transaction (a consistent snapshot of the database).
+ */
+public final class DataExporter {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Buffer size used to compress the output stream. */
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	/** Number of entity rows read in each page (and transaction). */
+	public static final int PAGE_ROWS = 1000;
+
+	/** Persistence manager used to exec the query. */
+	private final PersistenceManager mPersistenceManager;
+
+	/** Definition of the exported entity (table) or {@code null} to raw statement exports. */
+	private final EntityDef mEntityDef;
+
+	/** Raw SELECT statement or {@code null} to entity exports. */
+	private final String mStatement;
+
+	private DataFormat mFormat = DataFormat.CSV;
+	private String mWhereClause = null;
+	private boolean mGzip = false;
+
+	/* ********************************************************
+	 * CONSTRUCTORS / OPTIONS
+	 **********************************************************/
+
+	/** Created by {@link PersistenceManager#newDataExporter(EntityDef)}. */
+	DataExporter(PersistenceManager persistenceManager, EntityDef entityDef) {
+		mPersistenceManager = persistenceManager;
+		mEntityDef = entityDef;
+		mStatement = null;
+	}
+
+	/** Created by {@link PersistenceManager#newDataExporter(String)}. */
+	DataExporter(PersistenceManager persistenceManager, String statement) {
+		mPersistenceManager = persistenceManager;
+		mEntityDef = null;
+		mStatement = statement;
+	}
+
+	/** Format of the output stream. Default is {@link DataFormat#CSV}. */
+	public DataExporter setFormat(DataFormat format) {
+		mFormat = format;
+		return this;
+	}
+
+	/**
+	 * Filter of the exported entity rows formated as on SQL WHERE clause (excluding the WHERE itself). Default is {@code null} (all rows).
+	 * Only to entity exports... raw statements must have their own WHERE clause.
+	 */
+	public DataExporter setWhereClause(String whereClause) {
+		if (mEntityDef == null)
+			throw ExceptionUtils.newRuntimeException(getClass(), "The where clause is only supported by entity exports.");
+		mWhereClause = whereClause;
+		return this;
+	}
+
+	/** If {@code true} the output stream is gzip compressed. Default is {@code false}. */
+	public DataExporter setGzip(boolean gzip) {
+		mGzip = gzip;
+		return this;
+	}
+
+	/* ********************************************************
+	 * EXPORT
+	 **********************************************************/
+
+	/**
+	 * Export all rows of the query to the output stream (it is closed at the end) and return the number of exported rows.<p>
+	 * 
+	 * Entity exports read the rows in primary key pages of {@link #PAGE_ROWS} rows ({@code WHERE pk > last ORDER BY pk LIMIT n}), 
+	 * each page in its own short transaction, so writers aren't blocked (and the WAL doesn't grow) while the rows are written to 
+	 * the output stream. Raw statement exports run inside only one transaction (their rows have no known key to page by).
+	 */
+	public long exportTo(OutputStream output) {
+		long result = 0;
+		try {
+			if (mGzip)
+				output = new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+			RowWriter writer = RowWriter.newWriter(mFormat, output);
+			try {
+				if (mEntityDef != null)
+					result = exportPages(writer);
+				else
+					result = exportStatement(writer);
+			} finally {
+				//flush the buffered rows (and finish the gzip stream)
+				writer.close();
+			}
+		} catch (IOException e) {
+			throw ExceptionUtils.newRuntimeException(getClass(), "Can't export the query rows. Details: " + e.getMessage());
+		}
+		return result;
+	}
+
+	/** Export the entity rows page by page (one transaction by page) and return the number of exported rows. */
+	private long exportPages(RowWriter writer) throws IOException {
+		//the field of each column and the primary key column (the page key)
+		List<FieldDef> fields = mEntityDef.getFieldsToCreateTable();
+		int keyIndex = fields.indexOf(mEntityDef.getPrimaryKey());
+
+		long result = 0;
+		Object lastKey = null;
+		List<Object[]> rows = new ArrayList<Object[]>(PAGE_ROWS);
+		do {
+			//read the page inside its transaction... the rows are written to the output stream after it is ended
+			rows.clear();
+			boolean commit = false;
+			mPersistenceManager.startTransaction();
+			try {
+				DatabaseCursor cursor = mPersistenceManager.rawQuery(buildSelectStatement(lastKey));
+				try {
+					if (lastKey == null)
+						writer.writeHeader(cursor.getColumnNames());
+					while (cursor.moveToNext()) {
+						Object[] values = new Object[cursor.getColumnCount()];
+						for (int i = 0; i < values.length; i++)
+							values[i] = getColumnValue(cursor, i);
+						rows.add(values);
+					}
+				} finally {
+					cursor.close();
+				}
+				commit = true;
+			} finally {
+				mPersistenceManager.endTransaction(commit);
+			}
+
+			for (Object[] values : rows) {
+				lastKey = values[keyIndex];
+				for (int i = 0; i < values.length; i++)
+					values[i] = fields.get(i).formatMappedValue(values[i]);
+				writer.writeRow(values);
+				result++;
+			}
+		} while (rows.size() == PAGE_ROWS);
+		return result;
+	}
+
+	/** Export the rows of the raw statement (inside only one transaction) and return the number of exported rows. */
+	private long exportStatement(RowWriter writer) throws IOException {
+		long result = 0;
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			DatabaseCursor cursor = mPersistenceManager.rawQuery(mStatement);
+			try {
+				writer.writeHeader(cursor.getColumnNames());
+				Object[] values = new Object[cursor.getColumnCount()];
+				while (cursor.moveToNext()) {
+					for (int i = 0; i < values.length; i++)
+						values[i] = getColumnValue(cursor, i);
+					writer.writeRow(values);
+					result++;
+				}
+			} finally {
+				cursor.close();
+			}
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+		return result;
+	}
+
+	/**
+	 * Build the SELECT statement of one page of entity columns (in the order they are imported) restricted by the where clause:
+	 * the rows after the last primary key value of the previous page ({@code null} to the first page).
+	 */
+	private String buildSelectStatement(Object lastKey) {
+		List<FieldDef> fields = mEntityDef.getFieldsToCreateTable();
+		String[] columns = new String[fields.size()];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = fields.get(i).getColumnName();
+
+		String keyColumn = mEntityDef.getPrimaryKey().getColumnName();
+		String whereClause = SQLiteHelper.getDiscriminatorWhereClause(mEntityDef, mWhereClause);
+		if (lastKey != null) {
+			String keyClause = keyColumn + " > " + SQLiteHelper.toSQLiteLiteral(lastKey);
+			whereClause = whereClause == null || whereClause.trim().isEmpty() ? keyClause : "(" + whereClause + ") AND " + keyClause;
+		}
+		return "SELECT " + StringUtils.join(columns, ',') + " FROM " + mEntityDef.getTableName()
+				+ (whereClause == null || whereClause.trim().isEmpty() ? "" : " WHERE " + whereClause)
+				+ " ORDER BY " + keyColumn + " LIMIT " + PAGE_ROWS;
+	}
+
+	/** Return the cursor column value keeping the SQLite datatype (INTEGER values as {@link Long}, REAL values as {@link Double}). */
+	private static Object getColumnValue(DatabaseCursor cursor, int columnIndex) {
+		switch (cursor.getType(columnIndex)) {
+			case DatabaseCursor.FIELD_TYPE_INTEGER:
+				return cursor.getLong(columnIndex);
+			case DatabaseCursor.FIELD_TYPE_FLOAT:
+				return cursor.getDouble(columnIndex);
+			case DatabaseCursor.FIELD_TYPE_STRING:
+				return cursor.getString(columnIndex);
+			case DatabaseCursor.FIELD_TYPE_BLOB:
+				return cursor.getBlob(columnIndex);
+			default: //DatabaseCursor.FIELD_TYPE_NULL:
+				return null;
+		}
+	}
+
+}
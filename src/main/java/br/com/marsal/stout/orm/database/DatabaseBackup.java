@@ -0,0 +1,409 @@
+package br.com.marsal.stout.orm.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseConnection;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Online backup and restore of database files.<p>
+ *
+ * The backup reads the database by one separate connection (opened by the persistence unit driver), so the app keeps reading and writing it by the persistence unit
+ * connection while the snapshot is taken:
+ * <ul>
+ * <li>SQLite 3.27 or newer (Android 11+): the snapshot is written by VACUUM INTO in only one statement.</li>
+ * <li>Older SQLite versions: the rows are copied table by table in steps of {@link #STEP_ROWS} rows into the attached backup file.
+ * WAL databases are copied inside only one read transaction (WAL readers don't block writers). Others journal modes copy each step in
+ * its own short read transaction (so writers run between the steps) and the backup is restarted if the database is changed by
+ * them (like the SQLite online backup API). After {@link #MAX_RESTARTS} restarts it is copied inside only one read transaction.</li>
+ * </ul>
+ * The snapshot is written to a temporary file that is renamed to the target file only after it is completely written and synced.
+ */
+public final class DatabaseBackup {
+
+	/* ********************************************************
+	 * PROGRESS LISTENER
+	 **********************************************************/
+
+	/** Receive the backup progress. It is called on the backup thread. */
+	public interface ProgressListener {
+
+		/**
+		 * @param copiedRows - number of rows copied until now
+		 * @param totalRows - number of rows of the database when the backup was started
+		 * (VACUUM INTO copies the database in only one statement... so it reports only the end as 1 of 1)
+		 */
+		void onProgress(long copiedRows, long totalRows);
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Number of rows copied in each step (when VACUUM INTO isn't supported). */
+	public static final int STEP_ROWS = 10000;
+
+	/** Max number of restarts when the database is changed during the backup (when VACUUM INTO isn't supported and WAL isn't enabled). */
+	public static final int MAX_RESTARTS = 3;
+
+	/** First SQLite version with VACUUM INTO (3.27.0). */
+	private static final int VACUUM_INTO_VERSION = 3027000;
+
+	/** Name of the backup file attached to the source connection. */
+	private static final String BACKUP_SCHEMA = "stout_backup";
+
+	/** Offset of the "file change counter" in the database header. It is incremented by each write transaction (except in WAL mode). */
+	private static final int CHANGE_COUNTER_OFFSET = 24;
+
+	/** Suffix of the temporary file where the snapshot is written before being renamed. */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/** One table copied by the backup. */
+	private static final class Table {
+		String name;
+		String sql;
+		String keyColumn;
+		List<String> columns = new ArrayList<String>();
+		long rows;
+	}
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/** To avoid create a new one... all methods are static. */
+	private DatabaseBackup() {}
+
+	/* ********************************************************
+	 * BACKUP
+	 **********************************************************/
+
+	/**
+	 * Write a consistent snapshot of the database into the target file (it is replaced if exists).
+	 *
+	 * @param driver - driver used to open the backup connections
+	 * @param databasePath - database file to backup
+	 * @param writeAheadLogging - {@code true} if the database uses WAL (the backup connection must use it too)
+	 * @param target - backup file
+	 * @param listener - receive the backup progress (it can be {@code null})
+	 */
+	public static void backup(DatabaseDriver driver, String databasePath, boolean writeAheadLogging, File target, ProgressListener listener) {
+		File tempFile = new File(target.getPath() + TEMP_SUFFIX);
+		tempFile.delete();
+		try {
+			DatabaseConnection database = driver.open(databasePath, 
+					DatabaseDriver.OPEN_READWRITE | (writeAheadLogging ? DatabaseDriver.ENABLE_WRITE_AHEAD_LOGGING : 0));
+			try {
+				if (getSQLiteVersion(database) >= VACUUM_INTO_VERSION) {
+					database.execSQL("VACUUM INTO " + quoteText(tempFile.getPath()));
+					if (listener != null)
+						listener.onProgress(1, 1);
+				} else {
+					copyDatabase(driver, database, databasePath, writeAheadLogging, tempFile, listener);
+				}
+			} finally {
+				database.close();
+			}
+
+			//make sure the file is in disk before rename it
+			syncFile(tempFile);
+			if (!tempFile.renameTo(target))
+				throw new IOException("Can't rename \"" + tempFile + "\" to \"" + target + "\".");
+		} catch (IOException e) {
+			throw ExceptionUtils.newRuntimeException(DatabaseBackup.class, "Can't backup the database to \"" + target + "\". Details: " + e.getMessage());
+		} finally {
+			//only exists if the backup fails
+			tempFile.delete();
+		}
+	}
+
+	/** Copy the database rows into the temporary file (SQLite versions without VACUUM INTO). */
+	private static void copyDatabase(DatabaseDriver driver, DatabaseConnection database, String databasePath, boolean writeAheadLogging, File tempFile, ProgressListener listener) throws IOException {
+		for (int restarts = 0; ; restarts++) {
+			//the schema is read outside of the snapshot (DDL statements are not expected during the backup)
+			List<Table> tables = new ArrayList<Table>();
+			List<String> statements = new ArrayList<String>();
+			readSchema(database, tables, statements);
+			createBackupFile(driver, tempFile, tables, null, 0);
+
+			//WAL readers don't block writers... the snapshot is taken by one read transaction (the same after too many restarts)
+			boolean singleSnapshot = writeAheadLogging || restarts >= MAX_RESTARTS;
+			if (copyTables(database, databasePath, tables, tempFile, singleSnapshot, listener)) {
+				//indexes are created after the rows (faster than update them on each row)
+				createBackupFile(driver, tempFile, null, statements, database.getVersion());
+				return;
+			}
+			tempFile.delete();
+		}
+	}
+
+	/** Read the tables (with their columns and rows count) and the others schema statements (indexes, triggers and views). */
+	private static void readSchema(DatabaseConnection database, List<Table> tables, List<String> statements) {
+		DatabaseCursor cursor = database.rawQuery("SELECT type, name, sql FROM sqlite_master WHERE sql IS NOT NULL AND name NOT LIKE 'sqlite_%' ORDER BY rowid");
+		try {
+			while (cursor.moveToNext()) {
+				String sql = cursor.getString(2);
+				if (!cursor.getString(0).equals("table")) {
+					statements.add(sql);
+				} else if (sql.trim().toUpperCase().startsWith("CREATE VIRTUAL")) {
+					//virtual tables (and their shadow tables) can't be copied row by row
+					throw ExceptionUtils.newRuntimeException(DatabaseBackup.class, "Virtual table \"" + cursor.getString(1) + "\" can't be copied by this SQLite version (VACUUM INTO requires SQLite 3.27).");
+				} else {
+					Table table = new Table();
+					table.name = cursor.getString(1);
+					table.sql = sql;
+					tables.add(table);
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+
+		for (Table table : tables) {
+			//the rows are copied in rowid order... by the INTEGER PRIMARY KEY (rowid alias), rowid or in only one step (WITHOUT ROWID tables)
+			int keyColumns = 0;
+			String integerKeyColumn = null;
+			cursor = database.rawQuery("PRAGMA table_info(" + quoteName(table.name) + ")");
+			try {
+				while (cursor.moveToNext()) {
+					table.columns.add(quoteName(cursor.getString(1)));
+					if (cursor.getInt(5) > 0) {
+						keyColumns++;
+						if (cursor.getString(2).equalsIgnoreCase("INTEGER"))
+							integerKeyColumn = quoteName(cursor.getString(1));
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+			if (table.sql.toUpperCase().replaceAll("\\s+", " ").contains("WITHOUT ROWID"))
+				table.keyColumn = null;
+			else if (keyColumns == 1 && integerKeyColumn != null)
+				table.keyColumn = integerKeyColumn;
+			else
+				table.keyColumn = "rowid";
+			table.rows = Long.parseLong(stringForQuery(database, "SELECT count(*) FROM " + quoteName(table.name)));
+		}
+	}
+
+	/**
+	 * Copy the rows of all tables into the attached backup file.
+	 *
+	 * @return {@code false} if the database was changed during the copy (only when it isn't copied in a single snapshot) and it must be restarted
+	 */
+	private static boolean copyTables(DatabaseConnection database, String databasePath, List<Table> tables, File tempFile, boolean singleSnapshot, ProgressListener listener) throws IOException {
+		long totalRows = 0;
+		for (Table table : tables)
+			totalRows += table.rows;
+
+		database.attachDatabase(tempFile.getPath(), BACKUP_SCHEMA);
+		try {
+			//the backup file is only a temporary copy until it is synced and renamed
+			database.execSQL("PRAGMA " + BACKUP_SCHEMA + ".synchronous = OFF");
+
+			//SAVEPOINT outside of a transaction begins a DEFERRED one (only a read snapshot of the source database)
+			long changeCounter = getChangeCounter(databasePath);
+			if (singleSnapshot)
+				database.savepoint(BACKUP_SCHEMA);
+			try {
+				long copiedRows = 0;
+				for (Table table : tables) {
+					DatabaseStatement statement = database.compileStatement(buildCopyStatement(table));
+					try {
+						int rows;
+						do {
+							rows = statement.executeUpdateDelete();
+							copiedRows += rows;
+
+							//the writers ran between the steps... restart if they changed the database
+							if (!singleSnapshot && getChangeCounter(databasePath) != changeCounter)
+								return false;
+							if (listener != null)
+								listener.onProgress(copiedRows, Math.max(copiedRows, totalRows));
+						} while (table.keyColumn != null && rows == STEP_ROWS);
+					} finally {
+						statement.close();
+					}
+				}
+
+				//AUTOINCREMENT counters (they can be greater than the copied rowids)
+				if (hasAutoincrement(tables)) {
+					database.execSQL("DELETE FROM " + BACKUP_SCHEMA + ".sqlite_sequence");
+					database.execSQL("INSERT INTO " + BACKUP_SCHEMA + ".sqlite_sequence SELECT * FROM main.sqlite_sequence");
+				}
+			} finally {
+				//only the backup file was written (it is deleted if the copy fails)
+				if (singleSnapshot)
+					database.releaseSavepoint(BACKUP_SCHEMA);
+			}
+		} finally {
+			database.detachDatabase(BACKUP_SCHEMA);
+		}
+		return true;
+	}
+
+	private static boolean hasAutoincrement(List<Table> tables) {
+		for (Table table : tables) {
+			if (table.sql.toUpperCase().contains("AUTOINCREMENT"))
+				return true;
+		}
+		return false;
+	}
+
+	/** Build the statement that copies the next step of the table rows (or all rows to WITHOUT ROWID tables). */
+	private static String buildCopyStatement(Table table) {
+		String source = "main." + quoteName(table.name);
+		String target = BACKUP_SCHEMA + "." + quoteName(table.name);
+		if (table.keyColumn == null)
+			return "INSERT INTO " + target + " SELECT * FROM " + source;
+
+		//the rowid is copied too... so the next step starts after the last copied row
+		String columns = (table.keyColumn.equals("rowid") ? "rowid," : "") + join(table.columns);
+		return "INSERT INTO " + target + " (" + columns + ") SELECT " + columns + " FROM " + source
+				+ " WHERE " + table.keyColumn + " > (SELECT ifnull(max(" + table.keyColumn + "), -9223372036854775808) FROM " + target + ")"
+				+ " ORDER BY " + table.keyColumn + " LIMIT " + STEP_ROWS;
+	}
+
+	/** Exec the CREATE TABLE statements (before copy the rows) or the others schema statements and the version (after copy them) into the backup file. */
+	private static void createBackupFile(DatabaseDriver driver, File tempFile, List<Table> tables, List<String> statements, int version) {
+		DatabaseConnection backup = driver.open(tempFile.getPath(), DatabaseDriver.OPEN_READWRITE | DatabaseDriver.CREATE_IF_NECESSARY);
+		try {
+			if (tables != null) {
+				for (Table table : tables)
+					backup.execSQL(table.sql);
+			}
+			if (statements != null) {
+				for (String statement : statements)
+					backup.execSQL(statement);
+				backup.setVersion(version);
+			}
+		} finally {
+			backup.close();
+		}
+	}
+
+	/* ********************************************************
+	 * RESTORE
+	 **********************************************************/
+
+	/**
+	 * Replace the database file by a copy of the backup file. The database must be closed by caller.
+	 * The backup is checked (PRAGMA quick_check) before replace the database, so one invalid backup never replaces it.
+	 */
+	static void restore(DatabaseDriver driver, File backup, String databasePath) {
+		File tempFile = new File(databasePath + TEMP_SUFFIX);
+		try {
+			//check the backup before copy it
+			DatabaseConnection database = driver.open(backup.getPath(), DatabaseDriver.OPEN_READONLY);
+			try {
+				String result = stringForQuery(database, "PRAGMA quick_check");
+				if (!"ok".equalsIgnoreCase(result))
+					throw new IOException("Invalid backup: " + result);
+			} finally {
+				database.close();
+			}
+
+			//copy the backup to the temporary file and swap it in
+			copyFile(backup, tempFile);
+			DataBaseHelper.replaceDatabaseFile(tempFile, databasePath);
+		} catch (IOException e) {
+			throw ExceptionUtils.newRuntimeException(DatabaseBackup.class, "Can't restore the database from \"" + backup + "\". Details: " + e.getMessage());
+		} finally {
+			//only exists if the restore fails
+			tempFile.delete();
+		}
+	}
+
+	/* ********************************************************
+	 * FILE / SQL UTILS
+	 **********************************************************/
+
+	/** Copy the source file to target file by NIO channel transfer and sync it to disk. */
+	private static void copyFile(File source, File target) throws IOException {
+		FileInputStream input = new FileInputStream(source);
+		try {
+			FileOutputStream output = new FileOutputStream(target);
+			try {
+				FileChannel channel = input.getChannel();
+				long length = channel.size();
+				long position = 0;
+				while (position < length)
+					position += channel.transferTo(position, length - position, output.getChannel());
+				output.getFD().sync();
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/** Sync the file to disk. */
+	private static void syncFile(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.getFD().sync();
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/** Return the "file change counter" of the database header. */
+	private static long getChangeCounter(String databasePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(databasePath, "r");
+		try {
+			file.seek(CHANGE_COUNTER_OFFSET);
+			return file.readInt() & 0xFFFFFFFFL;
+		} finally {
+			file.close();
+		}
+	}
+
+	/** Return the SQLite library version as one number (e.g. 3027002 to "3.27.2"). */
+	private static int getSQLiteVersion(DatabaseConnection database) {
+		String[] version = stringForQuery(database, "SELECT sqlite_version()").split("\\.");
+		int result = 0;
+		for (int i = 0; i < 3; i++)
+			result = result * 1000 + (i < version.length ? Integer.parseInt(version[i]) : 0);
+		return result;
+	}
+
+	/** Exec the query and return the value of its first column in the first row. */
+	private static String stringForQuery(DatabaseConnection database, String query) {
+		DatabaseStatement statement = database.compileStatement(query);
+		try {
+			return statement.simpleQueryForString();
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static String quoteName(String name) {
+		return "\"" + name.replace("\"", "\"\"") + "\"";
+	}
+
+	private static String quoteText(String text) {
+		return "'" + text.replace("'", "''") + "'";
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder result = new StringBuilder();
+		for (String value : values) {
+			if (result.length() > 0)
+				result.append(',');
+			result.append(value);
+		}
+		return result.toString();
+	}
+
+}
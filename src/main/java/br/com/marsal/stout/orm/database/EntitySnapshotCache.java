@@ -0,0 +1,110 @@
+package br.com.marsal.stout.orm.database;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Cache used to storage the snapshot of the column values of each entity loaded (or written) by the {@link PersistenceManager}.<p>
+ *
+ * The snapshot is compared with the current entity values to update only the changed columns on merge operations.
+ * Entities are identified by their instances (identity) and are weakly referenced, so one snapshot is discarded when its entity is garbage collected.
+ */
+final class EntitySnapshotCache {
+
+	/* ********************************************************
+	 * INNER CLASS / ENTITY KEY
+	 **********************************************************/
+
+	/** Weak reference to the entity instance that uses its identity (not its equals/hashCode) as map key. */
+	private static final class EntityKey extends WeakReference<Object> {
+
+		/** Entity identity hash code. This must be kept because the entity can be collected. */
+		private final int mHashCode;
+
+		/** Create one key to lookup the entity. */
+		EntityKey(Object entity) {
+			super(entity);
+			mHashCode = System.identityHashCode(entity);
+		}
+
+		/** Create one key to store the entity (registered on queue to be removed when collected). */
+		EntityKey(Object entity, ReferenceQueue<Object> queue) {
+			super(entity, queue);
+			mHashCode = System.identityHashCode(entity);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object)
+				return true;
+			if (!(object instanceof EntityKey))
+				return false;
+
+			Object entity = get();
+			return entity != null && entity == ((EntityKey) object).get();
+		}
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Queue where the keys of collected entities are enqueued to be removed. */
+	private final ReferenceQueue<Object> mQueue = new ReferenceQueue<Object>();
+
+	/** Snapshots (column values) identify by their entity instances. */
+	private final Map<EntityKey, Object[]> mSnapshots = new HashMap<EntityKey, Object[]>();
+
+	/* ********************************************************
+	 * SNAPSHOTS
+	 **********************************************************/
+
+	/** Put (or replace) the snapshot of the entity. */
+	public synchronized void put(Object entity, Object[] values) {
+		removeCollected();
+		mSnapshots.put(new EntityKey(entity, mQueue), values);
+	}
+
+	/** Return the snapshot of the entity or {@code null} if it hasn't one. */
+	public synchronized Object[] get(Object entity) {
+		removeCollected();
+		return mSnapshots.get(new EntityKey(entity));
+	}
+
+	/** Remove the snapshot of the entity. */
+	public synchronized void remove(Object entity) {
+		mSnapshots.remove(new EntityKey(entity));
+	}
+
+	/** Remove the snapshots of all entities instances of entityClass (including its subclasses). */
+	public synchronized void removeAll(Class<?> entityClass) {
+		Object entity;
+		for (Iterator<EntityKey> iterator = mSnapshots.keySet().iterator(); iterator.hasNext();) {
+			entity = iterator.next().get();
+			if (entity == null || entityClass.isInstance(entity))
+				iterator.remove();
+		}
+	}
+
+	/** Remove all snapshots. */
+	public synchronized void clear() {
+		mSnapshots.clear();
+		while (mQueue.poll() != null);
+	}
+
+	/** Remove the snapshots of all collected entities. */
+	private void removeCollected() {
+		Object key;
+		while ((key = mQueue.poll()) != null)
+			mSnapshots.remove(key);
+	}
+
+}
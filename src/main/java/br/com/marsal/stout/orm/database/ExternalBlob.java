@@ -0,0 +1,146 @@
+package br.com.marsal.stout.orm.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Large binary value of one entity field stored in one app-private file instead of the table row. The row only stores the file name,
+ * so the content is kept out of the cursor windows and it isn't read when the entities are hydrated (e.g. lists).<p>
+ *
+ * The files are created by {@link PersistenceManager#newExternalBlob(InputStream)} in the blob directory of the database. They are
+ * named by their content hash (SHA-1), so they are never changed and one content is stored once. The content is read through
+ * {@link #getBuffer()} (memory-mapped on the first call) or {@link #openStream()}.<p>
+ *
+ * The files of deleted rows are removed by {@link PersistenceManager#purgeExternalBlobs(long)}. The database backups don't include the blob
+ * directory, it must be copied with them.
+ *
+ * <pre><b>Example:</b>
+ *
+ * {@literal @Entity}
+ * public class Photo {
+ *     ...
+ *     private ExternalBlob image;
+ * }
+ *
+ * photo.image = entityManager.newExternalBlob(inputStream);
+ * entityManager.persist(photo);</pre>
+ */
+public final class ExternalBlob {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** File name (content hash) stored in the table row. */
+	private final String mName;
+
+	/** Blob file. This is {@code null} until the blob is attached to the blob directory (hydrated or created by the persistence manager). */
+	private volatile File mFile = null;
+
+	/** Memory-mapped content. This is {@code null} until the first {@link #getBuffer()} call. */
+	private ByteBuffer mBuffer = null;
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/** Reference to the blob file name (the value stored in the row). The file is resolved when the entity is hydrated. */
+	public ExternalBlob(String name) {
+		mName = name;
+	}
+
+	/** Blob stored in the file param. */
+	ExternalBlob(File file) {
+		mName = file.getName();
+		mFile = file;
+	}
+
+	/** Resolve the blob file in the blob directory param. */
+	void attach(File directory) {
+		if (mFile == null)
+			mFile = new File(directory, mName);
+	}
+
+	/* ********************************************************
+	 * CONTENT
+	 **********************************************************/
+
+	/** @return the file name stored in the row. */
+	public String getName() {
+		return mName;
+	}
+
+	/** @return the blob file or {@code null} if it wasn't loaded or created by one persistence manager. */
+	public File getFile() {
+		return mFile;
+	}
+
+	/** @return the content length in bytes. */
+	public long length() {
+		return getExistingFile().length();
+	}
+
+	/**
+	 * Return the read-only content. The file is memory-mapped on the first call (its pages are only read when they are accessed) and
+	 * each call returns one new buffer (with its own position) over the same mapping.
+	 */
+	public synchronized ByteBuffer getBuffer() {
+		if (mBuffer == null) {
+			File file = getExistingFile();
+			try {
+				RandomAccessFile input = new RandomAccessFile(file, "r");
+				try {
+					//the mapping is kept after the channel is closed
+					mBuffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+				} finally {
+					input.close();
+				}
+			} catch (IOException e) {
+				throw ExceptionUtils.newRuntimeException(ExternalBlob.class, "Can't map blob file \"" + file + "\". Details: " + e.getMessage());
+			}
+		}
+		return mBuffer.duplicate();
+	}
+
+	/** Open one stream to read the content sequentially (without memory-mapping it). It must be closed by caller. */
+	public InputStream openStream() throws IOException {
+		return new FileInputStream(getExistingFile());
+	}
+
+	/** Return the blob file or throw one exception if it isn't resolved or doesn't exist. */
+	private File getExistingFile() {
+		File file = mFile;
+		if (file == null)
+			throw ExceptionUtils.newRuntimeException(ExternalBlob.class, "Blob \"" + mName + "\" isn't attached to one blob directory. It must be loaded or created by one persistence manager.");
+		if (!file.isFile())
+			throw ExceptionUtils.newRuntimeException(ExternalBlob.class, "Blob file \"" + file + "\" not found.");
+		return file;
+	}
+
+	/* ********************************************************
+	 * OVERRIDE
+	 **********************************************************/
+
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof ExternalBlob && mName.equals(((ExternalBlob) object).mName);
+	}
+
+	@Override
+	public int hashCode() {
+		return mName.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return mName;
+	}
+
+}
@@ -0,0 +1,217 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Table-level invalidation tracker of the {@link ObservableQuery observable queries}.<p>
+ *
+ * The persistence manager records the tables changed by its write operations (insert, update, delete, upsert, bulk operations,
+ * imports, {@code execSQL} and {@code rawQuery} writes). The changes are kept by transaction owner thread until its outermost transaction ends: the tables of
+ * one committed transaction invalidate the queries that depend on them and the tables of one rolled back transaction are discarded.
+ * Changes made outside the persistence manager (e.g. others connections or processes) must be notified by
+ * {@link PersistenceManager#notifyTablesChanged(String...)}.<p>
+ *
+ * The invalidated queries are re-run by one background thread, so the committing thread only schedules them.
+ */
+final class InvalidationTracker {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Changed table key that invalidates all queries (statements whose tables are unknown, e.g. DDL or restore). */
+	static final String ALL_TABLES = "*";
+
+	/** Keywords of the statements that write rows (used to check the WITH statements). */
+	private static final Pattern WRITE_STATEMENT_PATTERN = Pattern.compile("\\b(INSERT|REPLACE|UPDATE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+
+	/** Persistence manager used to re-run the queries. */
+	private final PersistenceManager mPersistenceManager;
+
+	/** Registered queries. */
+	private final CopyOnWriteArrayList<ObservableQuery<?>> mQueries = new CopyOnWriteArrayList<ObservableQuery<?>>();
+
+	/** Tables changed by the current transaction of each thread (only the transaction owner thread changes the database). */
+	private final ThreadLocal<Set<String>> mChangedTables = new ThreadLocal<Set<String>>();
+
+	/** Scheduler that re-runs the invalidated queries (one by one). */
+	private final ScheduledExecutorService mScheduler;
+
+	/* ********************************************************
+	 * CONSTRUCTORS / STOP
+	 **********************************************************/
+
+	InvalidationTracker(PersistenceManager persistenceManager) {
+		mPersistenceManager = persistenceManager;
+		mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, "Stout-invalidation");
+				result.setDaemon(true);
+				return result;
+			}
+		});
+	}
+
+	/** Dispose all queries and stop the scheduler (the scheduled re-runs are discarded). */
+	void stop() {
+		for (ObservableQuery<?> query : mQueries)
+			query.dispose();
+		mScheduler.shutdownNow();
+	}
+
+	PersistenceManager getPersistenceManager() {
+		return mPersistenceManager;
+	}
+
+	/* ********************************************************
+	 * QUERIES
+	 **********************************************************/
+
+	/** Register the query and schedule its first run (without debounce). */
+	void add(ObservableQuery<?> query) {
+		mQueries.add(query);
+		query.refresh();
+	}
+
+	void remove(ObservableQuery<?> query) {
+		mQueries.remove(query);
+	}
+
+	/** Schedule the query re-run after delayMillis. */
+	void schedule(final ObservableQuery<?> query, long delayMillis) {
+		try {
+			mScheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					query.run();
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			//stopped... the query was disposed
+		}
+	}
+
+	/* ********************************************************
+	 * CHANGES
+	 **********************************************************/
+
+	/**
+	 * Record the table changed by the current thread. Inside one transaction it is kept until the outermost transaction ends,
+	 * otherwise (the change was already committed) the queries are invalidated now.
+	 */
+	void tableChanged(String tableName, boolean inTransaction) {
+		String table = toTableKey(tableName);
+		if (!inTransaction) {
+			invalidate(Collections.singleton(table));
+			return;
+		}
+
+		Set<String> changedTables = mChangedTables.get();
+		if (changedTables == null) {
+			changedTables = new HashSet<String>();
+			mChangedTables.set(changedTables);
+		}
+		changedTables.add(table);
+	}
+
+	/** The outermost transaction of the current thread was ended... invalidate the queries of its tables if it was committed. */
+	void transactionEnded(boolean committed) {
+		Set<String> changedTables = mChangedTables.get();
+		if (changedTables == null)
+			return;
+		mChangedTables.remove();
+		if (committed)
+			invalidate(changedTables);
+	}
+
+	/** Invalidate (schedule the re-run of) all queries that depend on the changed tables. */
+	void invalidate(Set<String> changedTables) {
+		for (ObservableQuery<?> query : mQueries) {
+			if (query.isInvalidatedBy(changedTables))
+				query.invalidate();
+		}
+	}
+
+	/* ********************************************************
+	 * UTILS
+	 **********************************************************/
+
+	/** Return the table key (SQLite table names are case-insensitive). */
+	static String toTableKey(String tableName) {
+		return tableName.toLowerCase(Locale.US);
+	}
+
+	/**
+	 * Return the table changed by the SQL statement (INSERT, REPLACE, UPDATE or DELETE), {@link #ALL_TABLES} if the statement
+	 * can change tables that aren't known (e.g. DDL, WITH statements that write rows) or {@code null} if it doesn't change rows 
+	 * (e.g. SELECT, index DDL, PRAGMA).
+	 */
+	static String getChangedTable(String statement) {
+		String[] tokens = statement.trim().split("\\s+", 8);
+		String command = tokens[0].toUpperCase(Locale.US);
+		if (command.equals("SELECT") || command.equals("EXPLAIN") || command.equals("VALUES"))
+			return null;
+		if (command.equals("WITH"))
+			return WRITE_STATEMENT_PATTERN.matcher(statement).find() ? ALL_TABLES : null;
+
+		int index;
+		if (command.equals("INSERT") || command.equals("REPLACE")) {
+			//INSERT [OR conflict] INTO table ... / REPLACE INTO table ...
+			index = indexOfToken(tokens, "INTO");
+		} else if (command.equals("UPDATE")) {
+			//UPDATE [OR conflict] table SET ...
+			index = tokens.length > 1 && tokens[1].equalsIgnoreCase("OR") ? 2 : 0;
+		} else if (command.equals("DELETE")) {
+			//DELETE FROM table ...
+			index = indexOfToken(tokens, "FROM");
+		} else if (command.equals("PRAGMA") || command.equals("ANALYZE") || command.equals("REINDEX") || command.equals("VACUUM")
+				|| isIndexStatement(tokens)) {
+			return null;
+		} else {
+			return ALL_TABLES;
+		}
+
+		if (index < 0 || index + 1 >= tokens.length)
+			return ALL_TABLES;
+		return getTableName(tokens[index + 1]);
+	}
+
+	private static int indexOfToken(String[] tokens, String token) {
+		for (int i = 1; i < tokens.length; i++) {
+			if (tokens[i].equalsIgnoreCase(token))
+				return i;
+		}
+		return -1;
+	}
+
+	/** Check if the statement is CREATE [UNIQUE] INDEX or DROP INDEX (they don't change the rows). */
+	private static boolean isIndexStatement(String[] tokens) {
+		if (tokens.length < 2 || !(tokens[0].equalsIgnoreCase("CREATE") || tokens[0].equalsIgnoreCase("DROP")))
+			return false;
+		return tokens[1].equalsIgnoreCase("INDEX") || (tokens.length > 2 && tokens[1].equalsIgnoreCase("UNIQUE") && tokens[2].equalsIgnoreCase("INDEX"));
+	}
+
+	/** Return the table name of the statement token without schema, quotes and the following SQL (e.g. "main.\"City\"(name" returns "City"). */
+	private static String getTableName(String token) {
+		int end = token.indexOf('(');
+		if (end >= 0)
+			token = token.substring(0, end);
+		int dot = token.lastIndexOf('.');
+		if (dot >= 0)
+			token = token.substring(dot + 1);
+		token = token.replace("\"", "").replace("`", "").replace("[", "").replace("]", "").replace("'", "");
+		return token.isEmpty() ? ALL_TABLES : token;
+	}
+
+}
@@ -0,0 +1,96 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.marsal.stout.orm.enumeration.FetchType;
+
+/**
+ * Lightweight placeholder used to populate association fields mapped with {@link FetchType#LAZY}.<p>
+ *
+ * Nothing is loaded when the owner entity is hydrated. The target entities are loaded from database on the first access
+ * to this list (get, size, iterator ecc) through the {@link PersistenceManager} that loaded the owner, so they are also
+ * put into its transaction cache. After loaded the list can be changed as a standard {@link List}.
+ */
+public final class LazyList<E> extends AbstractList<E> {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Persistence manager (owning entity manager) used to load the target entities on the first access. */
+	private PersistenceManager mPersistenceManager = null;
+
+	/** Target entity class of the association. */
+	private Class<E> mEntityClass = null;
+
+	/** QUERY statement used to load the target entities. */
+	private String mStatement = null;
+
+	/** Loaded target entities. This is {@code null} until the first access. */
+	private List<E> mEntities = null;
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/** Default constructor. Only keep the references used to load the target entities on the first access. */
+	LazyList(PersistenceManager persistenceManager, Class<E> entityClass, String statement) {
+		mPersistenceManager = persistenceManager;
+		mEntityClass = entityClass;
+		mStatement = statement;
+	}
+
+	/* ********************************************************
+	 * LOAD
+	 **********************************************************/
+
+	/** @return {@code true} if the target entities already are loaded from database. */
+	public synchronized boolean isLoaded() {
+		return mEntities != null;
+	}
+
+	/** Load the target entities from database (only in the first call) and return them. */
+	private synchronized List<E> getEntities() {
+		//only in the first access... after this the references used to load are released
+		if (mEntities == null) {
+			mEntities = new ArrayList<E>(mPersistenceManager.rawQueryWithResultList(mEntityClass, mStatement));
+			mPersistenceManager = null;
+			mStatement = null;
+		}
+		return mEntities;
+	}
+
+	/* ********************************************************
+	 * LIST
+	 **********************************************************/
+
+	@Override
+	public E get(int index) {
+		return getEntities().get(index);
+	}
+
+	@Override
+	public int size() {
+		return getEntities().size();
+	}
+
+	@Override
+	public E set(int index, E element) {
+		return getEntities().set(index, element);
+	}
+
+	@Override
+	public void add(int index, E element) {
+		getEntities().add(index, element);
+		modCount++;
+	}
+
+	@Override
+	public E remove(int index) {
+		modCount++;
+		return getEntities().remove(index);
+	}
+
+}
@@ -0,0 +1,132 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+
+/**
+ * Query re-run by the {@link InvalidationTracker} each time one of its tables has a committed change. It is created by
+ * {@link PersistenceManager#observeQuery(EntityDef, String, long, QueryObserver)}.<p>
+ *
+ * The query depends on its entity table. Tables changed indirectly (e.g. by triggers or foreign key cascades) or read by the
+ * query where clause (subqueries) must be added by {@link #dependsOn(String)}.<p>
+ *
+ * The changes are debounced and coalesced: the first change schedules one re-run after the debounce interval and all changes
+ * committed until the re-run starts are handled by it. Changes committed while the query runs schedule the next re-run.
+ * The query must be disposed when its screen is closed.
+ */
+public final class ObservableQuery<T> {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	private final InvalidationTracker mTracker;
+
+	private final EntityDef mEntityDef;
+
+	private final String mWhereClause;
+
+	private final long mDebounceMillis;
+
+	private final QueryObserver<T> mObserver;
+
+	/** Tables (lower case) that invalidate the query. */
+	private final Set<String> mTables = new CopyOnWriteArraySet<String>();
+
+	/** Indicates that one re-run is scheduled (and not started yet)... the next changes are coalesced into it. */
+	private boolean mScheduled = false;
+
+	private volatile boolean mDisposed = false;
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	ObservableQuery(InvalidationTracker tracker, EntityDef entityDef, String whereClause, long debounceMillis, QueryObserver<T> observer) {
+		mTracker = tracker;
+		mEntityDef = entityDef;
+		mWhereClause = whereClause;
+		mDebounceMillis = debounceMillis;
+		mObserver = observer;
+		mTables.add(InvalidationTracker.toTableKey(entityDef.getTableName()));
+	}
+
+	/* ********************************************************
+	 * OBSERVER
+	 **********************************************************/
+
+	/** Add one table that invalidates the query (besides its entity table) and return this query. */
+	public ObservableQuery<T> dependsOn(String tableName) {
+		mTables.add(InvalidationTracker.toTableKey(tableName));
+		return this;
+	}
+
+	/** Re-run the query now (or with the re-run already scheduled), e.g. after changes that aren't tracked by the persistence manager. */
+	public void refresh() {
+		schedule(0);
+	}
+
+	/** Unregister the query. Its observer isn't called anymore (even if one re-run is scheduled). */
+	public void dispose() {
+		mDisposed = true;
+		mTracker.remove(this);
+	}
+
+	public boolean isDisposed() {
+		return mDisposed;
+	}
+
+	/* ********************************************************
+	 * INVALIDATION
+	 **********************************************************/
+
+	/** Check if one of the changed tables invalidates the query. */
+	boolean isInvalidatedBy(Set<String> changedTables) {
+		if (changedTables.contains(InvalidationTracker.ALL_TABLES))
+			return true;
+		for (String table : mTables) {
+			if (changedTables.contains(table))
+				return true;
+		}
+		return false;
+	}
+
+	/** Schedule the re-run after the debounce interval (unless one re-run is already scheduled). */
+	void invalidate() {
+		schedule(mDebounceMillis);
+	}
+
+	private void schedule(long delayMillis) {
+		synchronized (this) {
+			if (mDisposed || mScheduled)
+				return;
+			mScheduled = true;
+		}
+		mTracker.schedule(this, delayMillis);
+	}
+
+	/** Re-run the query and notify the observer. It is called by the invalidation thread. */
+	void run() {
+		//changes committed from now on need one new re-run
+		synchronized (this) {
+			mScheduled = false;
+		}
+		if (mDisposed)
+			return;
+
+		List<T> result;
+		try {
+			result = mTracker.getPersistenceManager().queryWithResultList(mEntityDef, mWhereClause);
+		} catch (RuntimeException e) {
+			if (!mDisposed)
+				mObserver.onError(e);
+			return;
+		}
+		if (!mDisposed)
+			mObserver.onChanged(result);
+	}
+
+}
@@ -0,0 +1,39 @@
+package br.com.marsal.stout.orm.database;
+
+/**
+ * Listener of the work done by one {@link PersistenceManager} (statements, transactions and cache accesses).<p>
+ *
+ * It is registered by {@link PersistenceManager#setPersistenceListener(PersistenceListener)}. The callbacks are called synchronously
+ * on the thread that does the work (most of them while it holds the transaction), so they must be fast and must not use the
+ * persistence manager. When no listener is registered nothing is measured. {@link PersistenceMetrics} is the default implementation.
+ */
+public interface PersistenceListener {
+
+	/**
+	 * Called after each statement executed by the persistence manager.
+	 *
+	 * @param sql - executed statement (or a SQL like description of it to the Android API operations, e.g. "INSERT INTO table")
+	 * @param entityClass - entity class of the statement or {@code null} to raw statements
+	 * @param sqlNanos - time executing the statement (queries include the time filling the first cursor window)
+	 * @param hydrationNanos - time creating the entities from the query rows (0 to others statements)
+	 * @param rowsRead - number of rows returned by the query (0 to others statements)
+	 * @param rowsWritten - number of rows inserted, updated or deleted by the statement (-1 if unknown)
+	 */
+	void onStatement(String sql, Class<?> entityClass, long sqlNanos, long hydrationNanos, int rowsRead, int rowsWritten);
+
+	/**
+	 * Called when the outermost transaction is ended.
+	 *
+	 * @param holdNanos - time from the outermost start to its end (while the transaction lock was held)
+	 * @param committed - {@code false} if the transaction was rolled back
+	 */
+	void onTransaction(long holdNanos, boolean committed);
+
+	/**
+	 * Called on each entity lookup in the transaction cache (identity) and in the write-behind buffer.
+	 *
+	 * @param hit - {@code true} if the entity was found (and the row was not hydrated again)
+	 */
+	void onCacheAccess(Class<?> entityClass, boolean hit);
+
+}
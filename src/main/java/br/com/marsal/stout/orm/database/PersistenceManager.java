@@ -1,21 +1,41 @@
 package br.com.marsal.stout.orm.database;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteException;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
+import br.com.marsal.stout.orm.database.driver.AndroidDatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
 import br.com.marsal.stout.orm.entity.EntityDef;
 import br.com.marsal.stout.orm.entity.EntityDefFactory;
-import br.com.marsal.stout.orm.enumeration.PersistenceOperation;
+import br.com.marsal.stout.orm.entity.SingleTableSubclass;
+import br.com.marsal.stout.orm.enumeration.FetchType;
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
 import br.com.marsal.stout.orm.exception.ExceptionUtils;
+import br.com.marsal.stout.orm.field.ExternalBlobField;
 import br.com.marsal.stout.orm.field.FieldDef;
+import br.com.marsal.stout.orm.field.ManyToManyField;
 
 /**
  * Main SQLite access class.<br>
- * This will provider all database services and methods to access database in Android app.
+ * This will provider all database services and methods to access database in Android app (or in any JVM app by one
+ * {@link DatabaseDriver} like {@link br.com.marsal.stout.orm.database.driver.JdbcDatabaseDriver}).
  */
 public final class PersistenceManager {
 	
@@ -29,6 +49,27 @@ public final class PersistenceManager {
 	/** Provide the SQLite connection ({@link SQLiteDatabaseAdapter}) to exec QUERY, DDL and DML statements. */
 	private SQLiteDatabaseAdapter mSQLiteDatabaseAdapter = null;
 	
+	/** Snapshots of the column values of all entities loaded or written by this manager. Used to update only the changed columns. */
+	private final EntitySnapshotCache mSnapshotCache = new EntitySnapshotCache();
+	
+	/** Queue used to group commit the enqueued write operations. It is {@code null} while the write queue is disabled. */
+	private WriteQueue mWriteQueue = null;
+	
+	/** Buffer used to coalesce the merged entities. It is {@code null} while the write-behind is disabled. */
+	private volatile WriteBehindBuffer mWriteBehindBuffer = null;
+	
+	/** Listener of the executed statements, transactions and cache accesses. It is {@code null} (nothing is measured) while no listener is registered. */
+	private volatile PersistenceListener mListener = null;
+	
+	/** Log of the slow entity queries. It is {@code null} (nothing is measured) while the slow query log is disabled. */
+	private volatile SlowQueryLog mSlowQueryLog = null;
+	
+	/** Tracker of the tables changed by the committed transactions. It is {@code null} (nothing is tracked) until the first query is observed. */
+	private volatile InvalidationTracker mInvalidationTracker = null;
+	
+	/** Start time of the current outermost transaction or 0 if it was started without listener. Only the transaction owner thread uses it. */
+	private long mTransactionStartNanos = 0;
+	
 	public String getDatabasePath() {
 		return mSQLiteDatabaseAdapter.getDatabasePath();
 	}
@@ -37,14 +78,44 @@ public final class PersistenceManager {
 	 * CONSTRUCTORS / RELEASE
 	 **********************************************************/
 
-	/** Default constructor. This is responsible for create and initialize all database manager resources. */
+	/** Default constructor. This is responsible for create and initialize all database manager resources using the Android SQLite API. */
 	public PersistenceManager(Context context, PersistenceProperties.PersistenceUnit pu) {
+		this(new AndroidDatabaseDriver(context), pu);
+	}
+	
+	/** Create and initialize all database manager resources using the driver param to open the database connections. */
+	public PersistenceManager(DatabaseDriver driver, PersistenceProperties.PersistenceUnit pu) {
 		//create a new one SQLiteDatabaseAdapter and open it... a new one database is created in the first time that 'open()' is called
-		mSQLiteDatabaseAdapter = new SQLiteDatabaseAdapter(context, pu);
+		mSQLiteDatabaseAdapter = new SQLiteDatabaseAdapter(driver, pu);
+	}
+	
+	/** @return the driver that opens the database connections. */
+	public DatabaseDriver getDatabaseDriver() {
+		return mSQLiteDatabaseAdapter.getDriver();
 	}
 	
-	/** */
+	/** Check (by the driver) if the exception was thrown because the database is busy or locked. The operation can succeed if it is retried later. */
+	public boolean isDatabaseBusyException(Throwable exception) {
+		return mSQLiteDatabaseAdapter.getDriver().isBusyException(exception);
+	}
+	
+	/** Release all resources and close the database. It can't be called inside a transaction (the enqueued writes need it to be committed). */
 	public void release() {
+		if (mSQLiteDatabaseAdapter.isInTransaction())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The persistence manager can't be released inside a transaction.");
+		
+		//write all buffered entities and commit all enqueued write operations before close the database
+		disableWriteBehind();
+		disableWriteQueue();
+		
+		//the observed queries can't be re-run after the database is closed
+		InvalidationTracker invalidationTracker;
+		synchronized (this) {
+			invalidationTracker = mInvalidationTracker;
+			mInvalidationTracker = null;
+		}
+		if (invalidationTracker != null)
+			invalidationTracker.stop();
 		mSQLiteDatabaseAdapter.release();
 	}
 	
@@ -54,12 +125,244 @@ public final class PersistenceManager {
 	
 	/** Wrapper to {@link SQLiteDatabaseAdapter#startTransaction()}. */
 	public void startTransaction(){
-		mSQLiteDatabaseAdapter.startTransaction();
+		startTransaction(TransactionMode.EXCLUSIVE);
+	}
+	
+	/** Wrapper to {@link SQLiteDatabaseAdapter#startTransaction(TransactionMode)}. */
+	public void startTransaction(TransactionMode mode) {
+		boolean outermost = !mSQLiteDatabaseAdapter.isInTransaction();
+		mSQLiteDatabaseAdapter.startTransaction(mode);
+		if (outermost)
+			mTransactionStartNanos = mListener != null ? System.nanoTime() : 0;
+	}
+	
+	/** Wrapper to {@link SQLiteDatabaseAdapter#isInTransaction()}. */
+	public boolean isInTransaction() {
+		return mSQLiteDatabaseAdapter.isInTransaction();
+	}
+	
+	/** Wrapper to {@link SQLiteDatabaseAdapter#supportsNestedTransactions()}. */
+	public boolean supportsNestedTransactions() {
+		return mSQLiteDatabaseAdapter.supportsNestedTransactions();
+	}
+	
+	/** Wrapper to {@link SQLiteDatabaseAdapter#startNestedTransaction()}. */
+	public void startNestedTransaction() {
+		boolean outermost = !mSQLiteDatabaseAdapter.isInTransaction();
+		mSQLiteDatabaseAdapter.startNestedTransaction();
+		if (outermost)
+			mTransactionStartNanos = mListener != null ? System.nanoTime() : 0;
 	}
 	
 	/** Wrapper to {@link SQLiteDatabaseAdapter#endTransaction(boolean)}. */
 	public void endTransaction(boolean commit) {
-		mSQLiteDatabaseAdapter.endTransaction(commit);
+		//read before end it... the next transaction (started by others threads) can change it
+		long transactionStartNanos = mTransactionStartNanos;
+		
+		//the snapshots of the entities written (or loaded) in the rolled back work are out of date now... all of them are 
+		//removed (the rolled back rows aren't known), so the next merge of each entity updates all its columns
+		boolean rolledBack = mSQLiteDatabaseAdapter.endTransaction(commit);
+		if (rolledBack)
+			mSnapshotCache.clear();
+		
+		//the outermost transaction was ended (the current thread has no transaction now)
+		if (mSQLiteDatabaseAdapter.isInTransaction())
+			return;
+		PersistenceListener listener = mListener;
+		if (listener != null && transactionStartNanos != 0)
+			listener.onTransaction(System.nanoTime() - transactionStartNanos, !rolledBack);
+		
+		//the tables changed by the committed work invalidate their observed queries
+		InvalidationTracker invalidationTracker = mInvalidationTracker;
+		if (invalidationTracker != null)
+			invalidationTracker.transactionEnded(!rolledBack);
+	}
+	
+	/* ********************************************************
+	 * INSTRUMENTATION
+	 **********************************************************/
+	
+	/**
+	 * Register the listener of the executed statements, transactions and cache accesses (e.g. {@link PersistenceMetrics}) 
+	 * or {@code null} to unregister it. Nothing is measured while no listener is registered.
+	 */
+	public void setPersistenceListener(PersistenceListener listener) {
+		mListener = listener;
+	}
+	
+	/** @return the registered listener or {@code null}. */
+	public PersistenceListener getPersistenceListener() {
+		return mListener;
+	}
+	
+	/**
+	 * Enable the slow query log. The entity queries (queryWith* and rawQueryWith*) slower than thresholdMillis are logged
+	 * (and the query plan of each query shape is captured) in one ring buffer with the given capacity. If the slow query 
+	 * log is already enabled it is replaced.
+	 * 
+	 * @see SlowQueryLog
+	 */
+	public SlowQueryLog enableSlowQueryLog(long thresholdMillis, int capacity) {
+		SlowQueryLog slowQueryLog = new SlowQueryLog(thresholdMillis, capacity);
+		mSlowQueryLog = slowQueryLog;
+		return slowQueryLog;
+	}
+	
+	/** Disable the slow query log (its entries are discarded). */
+	public void disableSlowQueryLog() {
+		mSlowQueryLog = null;
+	}
+	
+	/** @return the slow query log or {@code null} if it is disabled. */
+	public SlowQueryLog getSlowQueryLog() {
+		return mSlowQueryLog;
+	}
+	
+	/** Notify the listener (if registered) that one statement without result rows was executed since startNanos. */
+	private void notifyStatement(PersistenceListener listener, String sql, Class<?> entityClass, long startNanos, int rowsWritten) {
+		if (listener != null)
+			listener.onStatement(sql, entityClass, System.nanoTime() - startNanos, 0, 0, rowsWritten);
+	}
+	
+	/**
+	 * Return the time executing the query since startNanos. The query is executed (and the first cursor window is filled) by 
+	 * {@link DatabaseCursor#getCount()}, so the rows hydration can be measured separately.
+	 */
+	private static long getQueryNanos(DatabaseCursor cursor, long startNanos) {
+		cursor.getCount();
+		return System.nanoTime() - startNanos;
+	}
+	
+	/**
+	 * Notify the listener (if registered) that one query was executed (in sqlNanos) and its rows were hydrated since startNanos,
+	 * and log it in the slow query log (if enabled) when it is slower than the threshold. This must be called inside the query transaction.
+	 */
+	private void notifyQuery(PersistenceListener listener, SlowQueryLog slowQueryLog, String sql, Class<?> entityClass, DatabaseCursor cursor, long startNanos, long sqlNanos) {
+		long hydrationNanos = System.nanoTime() - startNanos - sqlNanos;
+		if (listener != null)
+			listener.onStatement(sql, entityClass, sqlNanos, hydrationNanos, cursor.getCount(), 0);
+		if (slowQueryLog != null && slowQueryLog.isSlow(sqlNanos + hydrationNanos))
+			slowQueryLog.log(mSQLiteDatabaseAdapter, sql, null, entityClass, sqlNanos, hydrationNanos, cursor.getCount());
+	}
+	
+	/** Return the SQL of the query executed by {@link SQLiteDatabaseAdapter#query(String, String[], String, String)} (only to notify the listener). */
+	private static String getQuerySql(EntityDef entityDef, String whereClause) {
+		whereClause = SQLiteHelper.getDiscriminatorWhereClause(entityDef, whereClause);
+		return "SELECT * FROM " + entityDef.getTableName() + (whereClause == null || whereClause.isEmpty() ? "" : " WHERE " + whereClause);
+	}
+	
+	/* ********************************************************
+	 * WRITE QUEUE (GROUP COMMIT)
+	 **********************************************************/
+	
+	/**
+	 * Enable the write queue. The enqueued INSERT and UPDATE operations are executed by one writer thread and committed in groups
+	 * every maxRows operations or maxDelayMillis milliseconds, whichever comes first. If the write queue is already enabled
+	 * its enqueued operations are committed and it is replaced (so it can't be replaced inside a transaction).
+	 * 
+	 * @see WriteQueue
+	 */
+	public void enableWriteQueue(int maxRows, long maxDelayMillis) {
+		checkWriteQueueCanStop();
+		WriteQueue writeQueue = new WriteQueue(this, maxRows, maxDelayMillis);
+		WriteQueue oldWriteQueue;
+		synchronized (this) {
+			oldWriteQueue = mWriteQueue;
+			mWriteQueue = writeQueue;
+		}
+		if (oldWriteQueue != null)
+			oldWriteQueue.stop();
+	}
+	
+	/** Disable the write queue and wait until all its enqueued operations are committed. It can't be called inside a transaction. */
+	public void disableWriteQueue() {
+		checkWriteQueueCanStop();
+		WriteQueue writeQueue;
+		synchronized (this) {
+			writeQueue = mWriteQueue;
+			mWriteQueue = null;
+		}
+		if (writeQueue != null)
+			writeQueue.stop();
+	}
+	
+	/** 
+	 * Enqueue the entity to be inserted by the write queue. The returned future is done when the entity is committed 
+	 * (it can't be waited inside a transaction).
+	 */
+	public Future<Void> enqueueInsert(Object entity) {
+		return getWriteQueue().enqueueInsert(entity);
+	}
+	
+	/** Enqueue the entity to be updated by the write queue. The returned future is done when the entity is committed. */
+	public Future<Void> enqueueUpdate(Object entity) {
+		return getWriteQueue().enqueueUpdate(entity);
+	}
+	
+	/** The writer thread needs the transaction lock to commit the enqueued operations... one thread that holds it can't wait them. */
+	private synchronized void checkWriteQueueCanStop() {
+		if (mWriteQueue != null && mSQLiteDatabaseAdapter.isInTransaction())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The write queue can't be stopped inside a transaction (its enqueued operations need the transaction to be committed).");
+	}
+	
+	private synchronized WriteQueue getWriteQueue() {
+		if (mWriteQueue == null)
+			throw ExceptionUtils.newRuntimeException(getClass(), "The write queue is disabled. Call 'enableWriteQueue(int, long)' before enqueue operations.");
+		return mWriteQueue;
+	}
+	
+	/* ********************************************************
+	 * WRITE-BEHIND
+	 **********************************************************/
+	
+	/**
+	 * Enable the write-behind mode. Merged entities ({@link #update(Object)}) are kept in memory (only the latest instance of each 
+	 * entity class and primary key) and written in only one transaction every flushIntervalMillis milliseconds, before queries, 
+	 * by {@link #flushWriteBehind()} and when the write-behind is disabled or this manager is released.
+	 * Entities merged inside a transaction aren't buffered (they are written in the transaction).
+	 * Finds by primary key return the buffered instance.
+	 * The buffered entities rejected by the database are dropped when they are flushed (see {@link WriteBehindListener}).
+	 */
+	public void enableWriteBehind(long flushIntervalMillis) {
+		enableWriteBehind(flushIntervalMillis, null);
+	}
+	
+	/**
+	 * Enable the write-behind mode and report the buffered entities rejected by the database to the listener param (or {@code null}).
+	 * 
+	 * @see #enableWriteBehind(long)
+	 */
+	public void enableWriteBehind(long flushIntervalMillis, WriteBehindListener listener) {
+		if (flushIntervalMillis <= 0)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid write-behind flush interval: " + flushIntervalMillis + ".");
+		
+		//write the entities buffered by the current buffer (if any) after replace it
+		WriteBehindBuffer writeBehindBuffer = new WriteBehindBuffer(this, flushIntervalMillis, listener);
+		WriteBehindBuffer oldWriteBehindBuffer;
+		synchronized (this) {
+			oldWriteBehindBuffer = mWriteBehindBuffer;
+			mWriteBehindBuffer = writeBehindBuffer;
+		}
+		if (oldWriteBehindBuffer != null)
+			oldWriteBehindBuffer.stop();
+	}
+	
+	/** Disable the write-behind mode and write all buffered entities. */
+	public void disableWriteBehind() {
+		WriteBehindBuffer writeBehindBuffer;
+		synchronized (this) {
+			writeBehindBuffer = mWriteBehindBuffer;
+			mWriteBehindBuffer = null;
+		}
+		if (writeBehindBuffer != null)
+			writeBehindBuffer.stop();
+	}
+	
+	/** Write all entities buffered by the write-behind mode (if it is enabled). */
+	public void flushWriteBehind() {
+		WriteBehindBuffer writeBehindBuffer = mWriteBehindBuffer;
+		if (writeBehindBuffer != null)
+			writeBehindBuffer.flush();
 	}
 	
 	/* ********************************************************
@@ -73,6 +376,7 @@ public final class PersistenceManager {
 		EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
 		
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
 		boolean commit = false;
 		startTransaction();
 		try {
@@ -80,14 +384,23 @@ public final class PersistenceManager {
 			Object oldPrimaryKeyValue = entityDef.getPrimaryKey().getMappedFieldValue(entity);
 			
 			//extract the entity values, insert it into database and get the new pk value
-			Object newPrimaryKeyValue = mSQLiteDatabaseAdapter.insert(
-					entityDef.getTableName(), 
-					SQLiteHelper.getContentValues(entity, entityDef, PersistenceOperation.INSERT)).intValue();
+			long startNanos = listener != null ? System.nanoTime() : 0;
+			DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(SQLiteHelper.buildInsertStatement(entityDef));
+			int index = SQLiteHelper.bindFieldValues(statement, 1, entity, entityDef.getFieldsToInsert());
+			if (entityDef.getDiscriminatorColumn() != null)
+				SQLiteHelper.bindValue(statement, index, entityDef.getDiscriminatorValue());
+			Object newPrimaryKeyValue = (int) statement.executeInsert();
+			if (listener != null)
+				notifyStatement(listener, "INSERT INTO " + entityDef.getTableName(), entityDef.getEntityClass(), startNanos, 1);
 			
 			//if old pk value != new pk value update the entity pk with new value
 			if (newPrimaryKeyValue != oldPrimaryKeyValue)
 				entityDef.getPrimaryKey().setFieldValue(entity, newPrimaryKeyValue);
 			
+			//the inserted values are the entity snapshot
+			mSnapshotCache.put(entity, getMappedFieldValues(entity, entityDef.getFieldsToMerge()));
+			tableChanged(entityDef.getTableName());
+			
 			//mark the current transaction to commit
 			commit = true;
 		} finally {
@@ -96,21 +409,79 @@ public final class PersistenceManager {
 		}
 	}
 	
-	/** Update the entity in database */
+	/**
+	 * Update the entity in database. If the write-behind mode is enabled the entity is only buffered to be written later, 
+	 * unless the current thread has an open transaction: then it is written in the transaction (so it is rolled back with it).
+	 * 
+	 * @see #enableWriteBehind(long)
+	 * @see #writeUpdate(Object)
+	 */
 	public void update(Object entity)
+    {
+		WriteBehindBuffer writeBehindBuffer = mWriteBehindBuffer;
+		if (writeBehindBuffer != null) {
+			EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
+			Object primaryKeyValue = entityDef.getPrimaryKey().getMappedFieldValue(entity);
+			
+			//inside a transaction... the buffer outlives it, so a buffered entity would be written even if the transaction is rolled back.
+			//The buffered instance (if any) is superseded by this write
+			if (mSQLiteDatabaseAdapter.isInTransaction()) {
+				writeBehindBuffer.remove(entityDef.getEntityClass(), primaryKeyValue);
+				writeUpdate(entity);
+				return;
+			}
+			
+			//write-behind mode... keep only the latest instance of the entity to be written in the next flush
+			writeBehindBuffer.put(entityDef.getEntityClass(), primaryKeyValue, entity);
+			return;
+		}
+		writeUpdate(entity);
+	}
+	
+	/**
+	 * Write the entity UPDATE into database.<p>
+	 * 
+	 * If the entity has a snapshot (it was loaded or written by this persistence manager) only the changed columns are updated 
+	 * and if there isn't changed columns no statement is executed. Otherwise all updatable columns are updated.
+	 */
+	void writeUpdate(Object entity)
     {
 		//get the persistence entity for the entity class pass by param
 		EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
 		
+		//get the current values and compare them with the entity snapshot to find the changed fields
+		List<FieldDef> fields = entityDef.getFieldsToMerge();
+		Object[] values = getMappedFieldValues(entity, fields);
+		Object[] snapshot = mSnapshotCache.get(entity);
+		BitSet changedFields = new BitSet(values.length);
+		for (int i = 0; i < values.length; i++) {
+			if (snapshot == null || snapshot.length != values.length || !SQLiteHelper.isSameValue(values[i], snapshot[i]))
+				changedFields.set(i);
+		}
+		
+		//nothing changed... nothing to do
+		if (changedFields.isEmpty())
+			return;
+		
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
 		boolean commit = false;
 		startTransaction();
 		try {
-			//extract the entity values and update it into database
-			mSQLiteDatabaseAdapter.update(
-					entityDef.getTableName(), 
-					SQLiteHelper.getContentValues(entity, entityDef, PersistenceOperation.UPDATE), 
-					SQLiteHelper.getPrimaryKeyWhereClause(entityDef.getPrimaryKey(), entityDef.getPrimaryKey().getMappedFieldValue(entity)));
+			//bind only the changed values and the primary key and update it into database
+			long startNanos = listener != null ? System.nanoTime() : 0;
+			String sql = entityDef.getUpdateStatement(changedFields);
+			DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(sql);
+			int index = 1;
+			for (int i = changedFields.nextSetBit(0); i >= 0; i = changedFields.nextSetBit(i + 1))
+				SQLiteHelper.bindValue(statement, index++, values[i]);
+			SQLiteHelper.bindValue(statement, index, entityDef.getPrimaryKey().getMappedFieldValue(entity));
+			int rows = statement.executeUpdateDelete();
+			notifyStatement(listener, sql, entityDef.getEntityClass(), startNanos, rows);
+			
+			//the current values are the new entity snapshot
+			mSnapshotCache.put(entity, values);
+			tableChanged(entityDef.getTableName());
 			
 			//mark the current sQLiteDatabaseAdapter to commit
 			commit = true;
@@ -126,14 +497,25 @@ public final class PersistenceManager {
 		//get the persistence entity for the entity class pass by param
 		EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
 		
+		//the entity must not be written by write-behind after deleted
+		WriteBehindBuffer writeBehindBuffer = mWriteBehindBuffer;
+		if (writeBehindBuffer != null)
+			writeBehindBuffer.remove(entityDef.getEntityClass(), entityDef.getPrimaryKey().getMappedFieldValue(entity));
+		
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
 		boolean commit = false;
 		startTransaction();
 		try {
 			//extract the entity values and remove it into database
-			mSQLiteDatabaseAdapter.delete(
-					entityDef.getTableName(), 
-					SQLiteHelper.getPrimaryKeyWhereClause(entityDef.getPrimaryKey(), entityDef.getPrimaryKey().getMappedFieldValue(entity)));
+			long startNanos = listener != null ? System.nanoTime() : 0;
+			DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(SQLiteHelper.buildDeleteByKeyStatement(entityDef, entityDef.getPrimaryKey()));
+			SQLiteHelper.bindValue(statement, 1, entityDef.getPrimaryKey().getMappedFieldValue(entity));
+			int rows = statement.executeUpdateDelete();
+			if (listener != null)
+				notifyStatement(listener, "DELETE FROM " + entityDef.getTableName() + " WHERE " + entityDef.getPrimaryKey().getColumnName() + " = ?", entityDef.getEntityClass(), startNanos, rows);
+			mSnapshotCache.remove(entity);
+			tableChanged(entityDef.getTableName());
 			
 			//mark the current sQLiteDatabaseAdapter to commit
 			commit = true;
@@ -143,6 +525,484 @@ public final class PersistenceManager {
 		}
 	}
 	
+	/* ********************************************************
+	 * UPSERT (INSERT OR UPDATE)
+	 **********************************************************/
+
+	/**
+	 * Insert or update the entity in database identifying its row by the key field and return the entity primary key value.<p>
+	 *
+	 * The key field is the primary key ({@code keyFieldName} equals {@code null}) or a field mapped as {@code @Column(unique=true)}.
+	 * If a row with the same key value exists it is updated (only updatable fields) using a compiled UPDATE statement. 
+	 * Otherwise the entity is inserted (only insertable fields) using a compiled INSERT statement and the generated primary key is set into entity.
+	 * Both statements are executed in the same transaction.
+	 */
+	public Object upsert(Object entity, String keyFieldName)
+    {
+		//start transaction for the current operation
+		Object result = null;
+		boolean commit = false;
+		startTransaction();
+		try {
+			//upsert the entity
+			result = upsertEntity(entity, keyFieldName);
+			
+			//mark the current transaction to commit
+			commit = true;
+		} finally {
+			//finally end the current transaction and commit it if marked to
+			endTransaction(commit);
+		}
+		return result;
+	}
+	
+	/** Insert or update all entities in database in only one transaction. See {@link #upsert(Object, String)} for details. */
+	public void upsertAll(List<?> entities, String keyFieldName)
+    {
+		//start transaction for the current operation
+		boolean commit = false;
+		startTransaction();
+		try {
+			//upsert all entities... the compiled statements are reused for all of them
+			for (Object entity : entities)
+				upsertEntity(entity, keyFieldName);
+			
+			//mark the current transaction to commit
+			commit = true;
+		} finally {
+			//finally end the current transaction and commit it if marked to
+			endTransaction(commit);
+		}
+	}
+	
+	/** Exec the upsert of one entity (notifying the listener). This must be called inside a transaction. */
+	private Object upsertEntity(Object entity, String keyFieldName)
+    {
+		PersistenceListener listener = mListener;
+		if (listener == null)
+			return writeUpsert(entity, keyFieldName);
+		
+		long startNanos = System.nanoTime();
+		Object result = writeUpsert(entity, keyFieldName);
+		EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
+		notifyStatement(listener, "UPSERT INTO " + entityDef.getTableName() + " BY " + (keyFieldName != null ? keyFieldName : entityDef.getPrimaryKey().getFieldName()), 
+				entityDef.getEntityClass(), startNanos, 1);
+		return result;
+	}
+	
+	/** Exec the upsert of one entity (UPDATE or INSERT statement). This must be called inside a transaction. */
+	private Object writeUpsert(Object entity, String keyFieldName)
+    {
+		//get the persistence entity for the entity class pass by param and the key field used to identify the row
+		EntityDef entityDef = mEntityDefFactory.getEntityDef(entity.getClass());
+		FieldDef primaryKey = entityDef.getPrimaryKey();
+		FieldDef key = keyFieldName == null ? primaryKey : entityDef.getField(keyFieldName);
+		if (key == null || !(key.isPrimaryKey() || key.isUnique()))
+			throw ExceptionUtils.newRuntimeException(getClass(), "Field \"" + keyFieldName + "\" must be the primary key or an unique field to be used as upsert key of \"" + entityDef.getEntityClass().getSimpleName() + "\".");
+		tableChanged(entityDef.getTableName());
+		
+		//if entity has a key value try update its row first
+		Object keyValue = key.getMappedFieldValue(entity);
+		if (keyValue != null) {
+			//update only the updatable fields (except the key and primary key)... if there isn't one only check if the row exists
+			List<FieldDef> fields = new ArrayList<>(entityDef.getFieldsToUpdate());
+			fields.remove(key);
+			fields.remove(primaryKey);
+			DatabaseStatement statement;
+			boolean found;
+			if (!fields.isEmpty()) {
+				statement = mSQLiteDatabaseAdapter.compileStatement(SQLiteHelper.buildUpdateStatement(entityDef, fields, key));
+				SQLiteHelper.bindValue(statement, SQLiteHelper.bindFieldValues(statement, 1, entity, fields), keyValue);
+				found = statement.executeUpdateDelete() > 0;
+			} else {
+				statement = mSQLiteDatabaseAdapter.compileStatement(SQLiteHelper.buildCountByKeyStatement(entityDef, key));
+				SQLiteHelper.bindValue(statement, 1, keyValue);
+				found = statement.simpleQueryForLong() > 0;
+			}
+			
+			//row updated... if the key isn't the primary key get the primary key value from database (if entity hasn't it)
+			if (found) {
+				Object primaryKeyValue = primaryKey.getMappedFieldValue(entity);
+				if (primaryKeyValue == null) {
+					//read by cursor and converted by the primary key field like find does (TEXT or converted primary keys can't be read as long)
+					DatabaseCursor cursor = mSQLiteDatabaseAdapter.rawQuery(SQLiteHelper.buildSelectByKeyStatement(entityDef, primaryKey.getColumnName(), key, keyValue));
+					try {
+						cursor.moveToFirst();
+						primaryKey.readFieldValue(entity, cursor, 0);
+					} finally {
+						cursor.close();
+					}
+					primaryKeyValue = primaryKey.getMappedFieldValue(entity);
+				}
+				mSnapshotCache.remove(entity);
+				return primaryKeyValue;
+			}
+		}
+		
+		//row not found... insert the entity and set the generated primary key value (INTEGER primary keys only)
+		DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(SQLiteHelper.buildInsertStatement(entityDef));
+		int index = SQLiteHelper.bindFieldValues(statement, 1, entity, entityDef.getFieldsToInsert());
+		if (entityDef.getDiscriminatorColumn() != null)
+			SQLiteHelper.bindValue(statement, index, entityDef.getDiscriminatorValue());
+		Object primaryKeyValue = SQLiteHelper.toPrimaryKeyValue(primaryKey, statement.executeInsert());
+		if (primaryKeyValue != null)
+			primaryKey.setFieldValue(entity, primaryKeyValue);
+		else
+			primaryKeyValue = primaryKey.getMappedFieldValue(entity);
+		
+		//the inserted values are the entity snapshot
+		mSnapshotCache.put(entity, getMappedFieldValues(entity, entityDef.getFieldsToMerge()));
+		return primaryKeyValue;
+	}
+	
+	/* ********************************************************
+	 * BULK UPDATE / DELETE
+	 **********************************************************/
+
+	/**
+	 * Update the fields of all rows of entity matching the where clause without loading their entities and return the number of rows affected.<p>
+	 * 
+	 * {@code values} keys are the entity field names and their values are Java values (converted like entity fields).
+	 * {@code whereClause} is formated as on SQL WHERE clause (excluding the WHERE itself) using the column names and "?" to the {@code whereArgs}.
+	 * All cached entities of entity class are removed from transaction cache.
+	 */
+	public int bulkUpdate(EntityDef entityDef, Map<String, Object> values, String whereClause, Object[] whereArgs)
+    {
+		//at least one column must be set ("UPDATE table SET" alone is invalid)
+		if (values == null || values.isEmpty())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The \"values\" param cannot be null/empty to update the rows of \"" + entityDef.getEntityClass().getSimpleName() + "\".");
+		
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
+		//get the fields to update... all of them must be updatable fields
+		List<FieldDef> fields = new ArrayList<>();
+		List<Object> fieldValues = new ArrayList<>();
+		for (Map.Entry<String, Object> value : values.entrySet()) {
+			FieldDef field = entityDef.getField(value.getKey());
+			if (field == null || !entityDef.getFieldsToUpdate().contains(field))
+				throw ExceptionUtils.newRuntimeException(getClass(), "Field \"" + value.getKey() + "\" isn't an updatable field of \"" + entityDef.getEntityClass().getSimpleName() + "\".");
+			fields.add(field);
+			fieldValues.add(field.toMappedValue(value.getValue()));
+		}
+		
+		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		int result = 0;
+		boolean commit = false;
+		startTransaction();
+		try {
+			//bind the new values and the where args and exec the statement
+			long startNanos = listener != null ? System.nanoTime() : 0;
+			String sql = SQLiteHelper.buildBulkUpdateStatement(entityDef, fields, whereClause);
+			DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(sql);
+			int index = 1;
+			for (Object value : fieldValues)
+				SQLiteHelper.bindValue(statement, index++, value);
+			bindArgs(statement, index, whereArgs);
+			result = statement.executeUpdateDelete();
+			notifyStatement(listener, sql, entityDef.getEntityClass(), startNanos, result);
+			
+			//cached entities and their snapshots are out of date now
+			mSQLiteDatabaseAdapter.evictCachedEntities(entityDef.getEntityClass());
+			mSnapshotCache.removeAll(entityDef.getEntityClass());
+			tableChanged(entityDef.getTableName());
+			
+			//mark the current transaction to commit
+			commit = true;
+		} finally {
+			//finally end the current transaction and commit it if marked to
+			endTransaction(commit);
+		}
+		return result;
+	}
+	
+	/**
+	 * Delete all rows of entity matching the where clause without loading their entities and return the number of rows affected.<p>
+	 * 
+	 * {@code whereClause} is formated as on SQL WHERE clause (excluding the WHERE itself) using the column names and "?" to the {@code whereArgs}.
+	 * Passing {@code null} will delete all entity rows. All cached entities of entity class are removed from transaction cache.
+	 */
+	public int bulkDelete(EntityDef entityDef, String whereClause, Object[] whereArgs)
+    {
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
+		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		int result = 0;
+		boolean commit = false;
+		startTransaction();
+		try {
+			//bind the where args and exec the statement
+			long startNanos = listener != null ? System.nanoTime() : 0;
+			String sql = SQLiteHelper.buildBulkDeleteStatement(entityDef, whereClause);
+			DatabaseStatement statement = mSQLiteDatabaseAdapter.compileStatement(sql);
+			bindArgs(statement, 1, whereArgs);
+			result = statement.executeUpdateDelete();
+			notifyStatement(listener, sql, entityDef.getEntityClass(), startNanos, result);
+			
+			//cached entities and their snapshots are out of date now
+			mSQLiteDatabaseAdapter.evictCachedEntities(entityDef.getEntityClass());
+			mSnapshotCache.removeAll(entityDef.getEntityClass());
+			tableChanged(entityDef.getTableName());
+			
+			//mark the current transaction to commit
+			commit = true;
+		} finally {
+			//finally end the current transaction and commit it if marked to
+			endTransaction(commit);
+		}
+		return result;
+	}
+	
+	/** Bind all args into the statement params starting at index param. */
+	private void bindArgs(DatabaseStatement statement, int index, Object[] args)
+    {
+		if (args != null) {
+			for (Object arg : args)
+				SQLiteHelper.bindValue(statement, index++, arg);
+		}
+	}
+
+	/* ********************************************************
+	 * BULK IMPORT / EXPORT
+	 **********************************************************/
+
+	/** Create a new {@link BulkImporter} to stream rows (CSV or JSON lines) into the entity table. */
+	public BulkImporter newBulkImporter(EntityDef entityDef)
+    {
+		return new BulkImporter(this, entityDef);
+	}
+
+	/** Create a new {@link DataExporter} to stream the entity rows (CSV or JSON lines) to an output stream. */
+	public DataExporter newDataExporter(EntityDef entityDef)
+    {
+		return new DataExporter(this, entityDef);
+	}
+
+	/** Create a new {@link DataExporter} to stream the rows of the SELECT statement (CSV or JSON lines) to an output stream. */
+	public DataExporter newDataExporter(String statement)
+    {
+		return new DataExporter(this, statement);
+	}
+
+	/** Compile the statement on the current transaction connection (it must be called inside a transaction). */
+	DatabaseStatement compileStatement(String statement)
+    {
+		return mSQLiteDatabaseAdapter.compileStatement(statement);
+	}
+
+	/** Remove all cached entities and snapshots of entity class (their rows were changed without loading them) and invalidate its observed queries. */
+	void evictEntities(EntityDef entityDef)
+    {
+		mSQLiteDatabaseAdapter.evictCachedEntities(entityDef.getEntityClass());
+		mSnapshotCache.removeAll(entityDef.getEntityClass());
+		tableChanged(entityDef.getTableName());
+	}
+
+	/* **********************************************************
+	 * BACKUP / RESTORE
+	 ************************************************************/
+	
+	/**
+	 * Write a consistent snapshot of the database into the target file while the app keeps using it (the entities buffered by 
+	 * write-behind are written before).
+	 * 
+	 * @param listener - receive the backup progress (it can be {@code null})
+	 * @see DatabaseBackup
+	 */
+	public void backup(File target, DatabaseBackup.ProgressListener listener)
+    {
+		flushWriteBehind();
+		mSQLiteDatabaseAdapter.backup(target, listener);
+	}
+	
+	/**
+	 * Replace the database by the backup file (one backup created by {@link #backup(File, DatabaseBackup.ProgressListener)}). 
+	 * All snapshots of the loaded entities are removed because they don't belong to the restored database.
+	 */
+	public void restore(File backup)
+    {
+		flushWriteBehind();
+		mSQLiteDatabaseAdapter.restore(backup);
+		mSnapshotCache.clear();
+		tableChanged(InvalidationTracker.ALL_TABLES);
+	}
+	
+	/* **********************************************************
+	 * OBSERVABLE QUERIES (INVALIDATION TRACKING)
+	 ************************************************************/
+	
+	/**
+	 * Observe the query of entityDef rows matching the where clause. The query is run now (in background) and re-run each time one 
+	 * transaction that changed the entity table is committed, at most once every debounceMillis milliseconds (the changes committed 
+	 * in the meantime are coalesced). The observer is called on the invalidation thread and the query must be disposed by 
+	 * {@link ObservableQuery#dispose()} when it isn't needed anymore.
+	 * 
+	 * @see InvalidationTracker
+	 */
+	public <T> ObservableQuery<T> observeQuery(EntityDef entityDef, String whereClause, long debounceMillis, QueryObserver<T> observer)
+    {
+		if (debounceMillis < 0)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid observed query debounce interval: " + debounceMillis + ".");
+		
+		InvalidationTracker invalidationTracker = getInvalidationTracker();
+		ObservableQuery<T> result = new ObservableQuery<T>(invalidationTracker, entityDef, whereClause, debounceMillis, observer);
+		invalidationTracker.add(result);
+		return result;
+	}
+	
+	/**
+	 * Invalidate the observed queries of the tables changed without this persistence manager (e.g. writes by {@link #rawQuery(String)} 
+	 * or by others connections). Inside one transaction they are invalidated when the outermost transaction is committed.
+	 */
+	public void notifyTablesChanged(String... tableNames)
+    {
+		for (String tableName : tableNames)
+			tableChanged(tableName);
+	}
+	
+	private synchronized InvalidationTracker getInvalidationTracker()
+    {
+		if (mInvalidationTracker == null)
+			mInvalidationTracker = new InvalidationTracker(this);
+		return mInvalidationTracker;
+	}
+	
+	/** Record the table changed by the current thread (only if there are observed queries). */
+	private void tableChanged(String tableName)
+    {
+		InvalidationTracker invalidationTracker = mInvalidationTracker;
+		if (invalidationTracker != null)
+			invalidationTracker.tableChanged(tableName, mSQLiteDatabaseAdapter.isInTransaction());
+	}
+	
+	/* **********************************************************
+	 * EXTERNAL BLOBS
+	 ************************************************************/
+	
+	/** Suffix of the temporary files written by {@link #newExternalBlob(InputStream)}. */
+	private static final String EXTERNAL_BLOB_TEMP_SUFFIX = ".tmp";
+	
+	/** @return the directory of the {@link ExternalBlob} files of this database (it is next to the database file). */
+	public File getExternalBlobDirectory()
+    {
+		return new File(mSQLiteDatabaseAdapter.getDatabasePath() + "-blobs");
+	}
+	
+	/** Store the content into one blob file. See {@link #newExternalBlob(InputStream)}. */
+	public ExternalBlob newExternalBlob(byte[] content)
+    {
+		return newExternalBlob(new ByteArrayInputStream(content));
+	}
+	
+	/**
+	 * Store the content read from the stream into one blob file and return the blob to be set into one entity {@link ExternalBlob} field.
+	 * The content is streamed (it isn't kept in memory) and the file is named by the content hash, so the same content is stored once.<p>
+	 * 
+	 * The file is written now (outside of transactions). If the entity isn't written the file is removed by {@link #purgeExternalBlobs(long)}.
+	 * The stream must be closed by caller.
+	 */
+	public ExternalBlob newExternalBlob(InputStream content)
+    {
+		File directory = getExternalBlobDirectory();
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw ExceptionUtils.newRuntimeException(getClass(), "Can't create blob directory \"" + directory + "\".");
+		
+		File tempFile = null;
+		try {
+			//write the content into one temporary file computing its hash
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			tempFile = File.createTempFile("blob", EXTERNAL_BLOB_TEMP_SUFFIX, directory);
+			OutputStream output = new FileOutputStream(tempFile);
+			try {
+				byte[] buffer = new byte[64 * 1024];
+				int read;
+				while ((read = content.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+					output.write(buffer, 0, read);
+				}
+			} finally {
+				output.close();
+			}
+			
+			//rename it to the content hash... if the same content is already stored the temporary file isn't needed, but the stored
+			//file is touched: it can be one old unreferenced file and the purge grace period must protect it like a new one
+			File file = new File(directory, toHex(digest.digest()));
+			if (file.isFile() && file.setLastModified(System.currentTimeMillis()))
+				tempFile.delete();
+			else if (!tempFile.renameTo(file))
+				tempFile.delete();
+			if (!file.isFile())
+				throw ExceptionUtils.newRuntimeException(getClass(), "Can't create blob file \"" + file + "\".");
+			return new ExternalBlob(file);
+		} catch (IOException | NoSuchAlgorithmException e) {
+			if (tempFile != null)
+				tempFile.delete();
+			throw ExceptionUtils.newRuntimeException(getClass(), "Can't store blob. Details: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Delete the blob files that aren't referenced by any row of the persistence unit entities and return the number of files deleted.<p>
+	 * 
+	 * The files created (or left by failed writes) in the last minAgeMillis are kept, because their entities can be written yet 
+	 * (e.g. one blob created by {@link #newExternalBlob(InputStream)} while its entity isn't persisted).
+	 */
+	public int purgeExternalBlobs(long minAgeMillis)
+    {
+		//list the files first... the files created after this are not deleted
+		File[] files = getExternalBlobDirectory().listFiles();
+		if (files == null || files.length == 0)
+			return 0;
+		
+		//get all blob names referenced by the rows (the write transaction keeps others writers out while they are read)
+		flushWriteBehind();
+		Set<String> referenced = new HashSet<>();
+		boolean commit = false;
+		startTransaction();
+		try {
+			for (EntityDef entityDef : mSQLiteDatabaseAdapter.getPersistenceUnit().getMappedEntitiesDef()) {
+				for (FieldDef field : entityDef.getFields()) {
+					if (!(field instanceof ExternalBlobField))
+						continue;
+					DatabaseCursor cursor = mSQLiteDatabaseAdapter.rawQuery("SELECT DISTINCT " + field.getColumnName() + " FROM " + entityDef.getTableName() 
+							+ " WHERE " + field.getColumnName() + " IS NOT NULL");
+					try {
+						while (cursor.moveToNext())
+							referenced.add(cursor.getString(0));
+					} finally {
+						cursor.close();
+					}
+				}
+			}
+			commit = true;
+		} finally {
+			endTransaction(commit);
+		}
+		
+		//delete the old files not referenced
+		long maxLastModified = System.currentTimeMillis() - minAgeMillis;
+		int result = 0;
+		for (File file : files) {
+			if (file.isFile() && !referenced.contains(file.getName()) && file.lastModified() < maxLastModified && file.delete())
+				result++;
+		}
+		return result;
+	}
+	
+	/** Return the lower case hex text of the bytes. */
+	private static String toHex(byte[] bytes)
+    {
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+			result[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+		}
+		return new String(result);
+	}
+	
 	/* **********************************************************
 	 * ATTACH | DETACH DATABASES
 	 ************************************************************/
@@ -175,6 +1035,25 @@ public final class PersistenceManager {
 	 * QUERY STATEMENTS / DDL STATEMENTS / DML STATEMENTS
 	 ************************************************************/
 	
+	/** Find the instance of entityDef saved in database identify by primary key value. The entity buffered by write-behind (if any) is returned first. */
+	@SuppressWarnings("unchecked")
+	public <T> T find(EntityDef entityDef, Object primaryKeyValue)
+    {
+		//the latest merged instance buffered by write-behind is the current entity state
+		WriteBehindBuffer writeBehindBuffer = mWriteBehindBuffer;
+		if (writeBehindBuffer != null) {
+			Object entity = writeBehindBuffer.get(entityDef.getEntityClass(), entityDef.getPrimaryKey().toMappedValue(primaryKeyValue));
+			if (entity != null) {
+				//only the hits... the misses are notified by the transaction cache lookup of the query
+				PersistenceListener listener = mListener;
+				if (listener != null)
+					listener.onCacheAccess(entityDef.getEntityClass(), true);
+				return (T) entity;
+			}
+		}
+		return queryWithSingleResult(entityDef, SQLiteHelper.getPrimaryKeyWhereClause(entityDef.getPrimaryKey(), primaryKeyValue));
+	}
+	
 	/**
 	 * Method to exec a QUERY statement and return only one instance using a custom WHERE clause.
 	 * whereClause param must be formated as on SQL WHERE clause (excluding the WHERE itself). If this param is null or empty will be throwed one RuntimeException. 
@@ -182,23 +1061,33 @@ public final class PersistenceManager {
 	public <T> T queryWithSingleResult(EntityDef entityDef, String whereClause)
     {
 		//check if where clause is null... if true throw a exception
-		if (whereClause == null || whereClause == "")
+		if (whereClause == null || whereClause.isEmpty())
 			throw ExceptionUtils.newRuntimeException(getClass(), "The \"where clause\" param cannot be null/empty to find one instance of entityClass.");
 		
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
 		//return variable
 		T result = null;
 		
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		SlowQueryLog slowQueryLog = mSlowQueryLog;
+		boolean measure = listener != null || slowQueryLog != null;
 		boolean commit = false;
 		startTransaction();
 		try {
 			//exec the statement and extract the single result from cursor
-			Cursor cursor = mSQLiteDatabaseAdapter.query(
+			long startNanos = measure ? System.nanoTime() : 0;
+			DatabaseCursor cursor = mSQLiteDatabaseAdapter.query(
 				entityDef.getTableName(), 
 				entityDef.getColumnsToQuery(), 
-				whereClause,
+				SQLiteHelper.getDiscriminatorWhereClause(entityDef, whereClause),
 				entityDef.getPrimaryKey().getColumnName());
+			long sqlNanos = measure ? getQueryNanos(cursor, startNanos) : 0;
 			result = extractSingleResultFromCursor(cursor, entityDef);
+			if (measure)
+				notifyQuery(listener, slowQueryLog, getQuerySql(entityDef, whereClause), entityDef.getEntityClass(), cursor, startNanos, sqlNanos);
 			
 			// make sure to close the cursor and mark the current transaction to commit 
 			cursor.close();
@@ -213,20 +1102,30 @@ public final class PersistenceManager {
 	/** Method to exec a QUERY statement and return one list with all instances of entityClass found using a custom WHERE clause. */
 	public <T> List<T> queryWithResultList(EntityDef entityDef, String whereClause)
     {
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
 		//initiate the variable to return
 		List<T> result = null;
 	
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		SlowQueryLog slowQueryLog = mSlowQueryLog;
+		boolean measure = listener != null || slowQueryLog != null;
 		boolean commit = false;
 		startTransaction();
 		try {
 			//exec the statement and extract the single result from cursor
-			Cursor cursor = mSQLiteDatabaseAdapter.query(
+			long startNanos = measure ? System.nanoTime() : 0;
+			DatabaseCursor cursor = mSQLiteDatabaseAdapter.query(
 					entityDef.getTableName(),
 			    	entityDef.getColumnsToQuery(),
-					whereClause,
+					SQLiteHelper.getDiscriminatorWhereClause(entityDef, whereClause),
 					entityDef.getPrimaryKey().getColumnName());
+			long sqlNanos = measure ? getQueryNanos(cursor, startNanos) : 0;
 			result = extractResultListFromCursor(cursor, entityDef);
+			if (measure)
+				notifyQuery(listener, slowQueryLog, getQuerySql(entityDef, whereClause), entityDef.getEntityClass(), cursor, startNanos, sqlNanos);
 			
 			// make sure to close the cursor and mark the current transaction to commit 
 			cursor.close();
@@ -245,17 +1144,27 @@ public final class PersistenceManager {
 	 */
 	public <T> T rawQueryWithSingleResult(Class<T> entityClass, String statement)
     {
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
 		//initialize the return variable and get the persistence entity for the entity class pass by param 
 		T result = null;
 		EntityDef entityDef = mEntityDefFactory.getEntityDef(entityClass);
 	
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		SlowQueryLog slowQueryLog = mSlowQueryLog;
+		boolean measure = listener != null || slowQueryLog != null;
 		boolean commit = false;
 		startTransaction();
 		try {
 		    //exec the statement and extract the single result from cursor
-			Cursor cursor = mSQLiteDatabaseAdapter.rawQuery(statement);
+			long startNanos = measure ? System.nanoTime() : 0;
+			DatabaseCursor cursor = mSQLiteDatabaseAdapter.rawQuery(statement);
+			long sqlNanos = measure ? getQueryNanos(cursor, startNanos) : 0;
 			result = extractSingleResultFromCursor(cursor, entityDef);
+			if (measure)
+				notifyQuery(listener, slowQueryLog, statement, entityClass, cursor, startNanos, sqlNanos);
 			
 			// make sure to close the cursor and mark the current transaction to commit 
 			cursor.close();
@@ -273,17 +1182,27 @@ public final class PersistenceManager {
 	 */
 	public <T> List<T> rawQueryWithResultList(Class<T> entityClass, String statement)
     {
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
 		//initialize the return variable and get the persistence entity for the entity class pass by param
 		List<T> result = null;
 		EntityDef entityDef = mEntityDefFactory.getEntityDef(entityClass);
 	
 		//start transaction for the current operation
+		PersistenceListener listener = mListener;
+		SlowQueryLog slowQueryLog = mSlowQueryLog;
+		boolean measure = listener != null || slowQueryLog != null;
 		boolean commit = false;
 		startTransaction();
 		try {
 		    //exec the statement and extract the single result from cursor
-			Cursor cursor = mSQLiteDatabaseAdapter.rawQuery(statement);
+			long startNanos = measure ? System.nanoTime() : 0;
+			DatabaseCursor cursor = mSQLiteDatabaseAdapter.rawQuery(statement);
+			long sqlNanos = measure ? getQueryNanos(cursor, startNanos) : 0;
 			result = extractResultListFromCursor(cursor, entityDef);
+			if (measure)
+				notifyQuery(listener, slowQueryLog, statement, entityClass, cursor, startNanos, sqlNanos);
 			
 			// make sure to close the cursor and mark the current transaction to commit 
 			cursor.close();
@@ -296,15 +1215,20 @@ public final class PersistenceManager {
 	}
 	
 	/**
-	 * Execute a SELECT statement that return a raw result (Android SQLite Cursor). This result will be handled by caller.<p>
+	 * Execute a SELECT statement that return a raw result (Android SQLite DatabaseCursor). This result will be handled by caller.<p>
 	 * 
-	 * <b>WARNING.</b> The {@link Cursor} result must be closed manually after used it using {@link Cursor#close()} mehtod and to control open and close database connection. <br>
+	 * <b>WARNING.</b> The {@link DatabaseCursor} result must be closed manually after used it using {@link DatabaseCursor#close()} mehtod and to control open and close database connection. <br>
 	 * {@code statement} param must not be terminated with ";".
 	 */
-	public Cursor rawQuery(String statement)
+	public DatabaseCursor rawQuery(String statement)
     {
-		//exec the statement and return the cursor result
-		return mSQLiteDatabaseAdapter.rawQuery(statement);
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
+		//exec the statement... the rows changed by one write statement (if any) aren't known, so their table snapshots are out of date now
+		DatabaseCursor result = mSQLiteDatabaseAdapter.rawQuery(statement);
+		rawStatementExecuted(statement);
+		return result;
 	}
 	
 	/**
@@ -317,6 +1241,9 @@ public final class PersistenceManager {
 	 */
 	public void execSQL(String statement)
 	{
+		//the database must have the entities buffered by write-behind
+		flushWriteBehind();
+		
 //		System.out.println("[execSQL] " + statement);
 	
 		//start transaction for the current operation
@@ -324,7 +1251,13 @@ public final class PersistenceManager {
 		startTransaction();
 		try {
 		    //exec the statement
+			PersistenceListener listener = mListener;
+			long startNanos = listener != null ? System.nanoTime() : 0;
 			mSQLiteDatabaseAdapter.execSQL(statement);
+			notifyStatement(listener, statement, null, startNanos, -1);
+			
+			//the rows changed by the statement aren't known... the snapshots of their table are out of date now
+			rawStatementExecuted(statement);
 			
 			//mark the current sQLiteDatabaseAdapter to commit
 			commit = true;
@@ -334,19 +1267,44 @@ public final class PersistenceManager {
 		}
 	}
 	
+	/**
+	 * Remove the snapshots and the transaction cache entries of the entities of the table changed by the raw statement (all of them if its
+	 * table isn't known), so their next query reads the changed rows and their next merge updates all columns, and record the changed table
+	 * to the observed queries.
+	 */
+	private void rawStatementExecuted(String statement)
+    {
+		String table = InvalidationTracker.getChangedTable(statement);
+		if (table == null)
+			return;
+		
+		if (table.equals(InvalidationTracker.ALL_TABLES)) {
+			mSQLiteDatabaseAdapter.clearTransactionCache();
+			mSnapshotCache.clear();
+		} else {
+			for (EntityDef entityDef : mEntityDefFactory.getEntities()) {
+				if (entityDef.getTableName().equalsIgnoreCase(table)) {
+					mSQLiteDatabaseAdapter.evictCachedEntities(entityDef.getEntityClass());
+					mSnapshotCache.removeAll(entityDef.getEntityClass());
+				}
+			}
+		}
+		tableChanged(table);
+	}
+	
 	/* **********************************************************
 	 * EXTRACT QUERY RESULT
 	 ************************************************************/
 	
-	/** Get the cursor value and extract it into a new instance of {@link EntityDef}. If cursor has more than one result one new {@link SQLiteException} will be throwed. */
-	private <T> T extractSingleResultFromCursor(Cursor cursor, EntityDef entityDef)
+	/** Get the cursor value and extract it into a new instance of {@link EntityDef}. If cursor has more than one result one new exception will be throwed. */
+	private <T> T extractSingleResultFromCursor(DatabaseCursor cursor, EntityDef entityDef)
     {
 		//to extrack the single result the curosr must have only one row... if has more than one a exception are throwed 
 		T entity = null;
 		if (cursor.getCount() > 0) {
 			//
 			if (cursor.getCount() > 1)
-				throw new SQLiteException("The sql statement return more than one result");
+				throw ExceptionUtils.newRuntimeException(getClass(), "The sql statement return more than one result");
 
 			//get the result and cast to entity
 			cursor.moveToFirst();
@@ -356,7 +1314,7 @@ public final class PersistenceManager {
 	}
 	
 	/** Get the cursor value and extract it into a new instance of {@link EntityDef}. */
-	private <T> List<T> extractResultListFromCursor(Cursor cursor, EntityDef entityDef) {
+	private <T> List<T> extractResultListFromCursor(DatabaseCursor cursor, EntityDef entityDef) {
 		//
 		List<Object> entities = new ArrayList<Object>();
 		if (cursor.getCount() > 0) {
@@ -374,7 +1332,7 @@ public final class PersistenceManager {
 	}
 
 	/**
-	 * Receive one {@link Cursor} and extrac its current row into a new instance of {@link EntityDef}. 
+	 * Receive one {@link DatabaseCursor} and extrac its current row into a new instance of {@link EntityDef}. 
 	 * Each field type (standards and relationship) will be treated in a different way, following these rules:
 	 * 
 	 * <li><b>standard fields:</b> All standards fields will be insert in their specifics fields in entity instance. 
@@ -384,29 +1342,107 @@ public final class PersistenceManager {
 	 * in database we check if the target entity already is in current transaction cache. Is yes only put it into 
 	 * specific field; if not get the entity from database, put it into a field and cache it in a current transaction.
 	 * <br><br>
+	 * <li><b>Single table:</b> Rows of a single table superclass query are populated into the class stored in their discriminator column.
+	 * <br><br>
+	 * <li><b>Identity:</b> If the entity identify by the row primary key already is in current transaction cache the cached instance is returned.
+	 * <br><br>
 	 */
-	private <T> T cursorRowToEntity(Cursor cursor, EntityDef entityDef) {
+	private <T> T cursorRowToEntity(DatabaseCursor cursor, EntityDef entityDef) {
+
+		//single table superclass rows can store any class of the hierarchy... use the discriminator column to get the row entity definition
+		if (entityDef instanceof SingleTableSubclass.SingleTableSuperclass) {
+			int discriminatorIndex = cursor.getColumnIndex(entityDef.getDiscriminatorColumn());
+			if (discriminatorIndex >= 0)
+				entityDef = ((SingleTableSubclass.SingleTableSuperclass) entityDef).getEntityDefByDiscriminator(cursor.getString(discriminatorIndex));
+		}
+
+		//first check if the entity identify by current row primary key is already in the current transaction cache (identity)... if yes reuse it
+		//unchanged (the statements that change rows without entities evict the cached entities of their table)
+		Object primaryKeyValue = SQLiteHelper.getCursorColumnValue(cursor, cursor.getColumnIndex(entityDef.getPrimaryKey().getColumnName()));
+		if (primaryKeyValue != null) {
+			@SuppressWarnings("unchecked")
+			T cachedEntity = (T) mSQLiteDatabaseAdapter.getCachedEntity(entityDef.getEntityClass(), primaryKeyValue);
+			PersistenceListener listener = mListener;
+			if (listener != null)
+				listener.onCacheAccess(entityDef.getEntityClass(), cachedEntity != null);
+			if (cachedEntity != null)
+				return cachedEntity;
+		}
 
 		//create a new instance of entityClass to get all cursor values and bind his fields with values
 		@SuppressWarnings("unchecked")
 		T entity = (T) entityDef.newInstance();
 		bindFields(entity, cursor, entityDef);
+		bindAssociationFields(entity, entityDef);
 				
 		return entity;
 	}
 	
-	/** Populate all entity standard fields with their respective values from current row cursor. */
-	private <T> void bindFields(T entity, Cursor cursor, EntityDef entityDef) {
+	/** Populate all entity standard fields with their respective values from current row cursor and keep their snapshot. */
+	private <T> void bindFields(T entity, DatabaseCursor cursor, EntityDef entityDef) {
 		//
+		List<FieldDef> fields = entityDef.getFieldsToHydrate();
+		Object[] values = new Object[fields.size()];
 		Object value = null;
-		for (FieldDef field : entityDef.getFields()) {
+		for (int i = 0; i < values.length; i++) {
 			//get the cursor column value using the field column name and if its is not null put it into specific entity field 
-			value = SQLiteHelper.getCursorColumnValue(cursor, cursor.getColumnIndex(field.getColumnName()));
-			if (value != null)
-				field.setFieldValue(entity, value);
+			FieldDef field = fields.get(i);
+			int columnIndex = cursor.getColumnIndex(field.getColumnName());
+			if (cursor.isNull(columnIndex)) {
+				value = null;
+			} else {
+				//the field reads the value by its cursor accessor and returns the SQLite value (the snapshot value)
+				value = field.readFieldValue(entity, cursor, columnIndex);
+				
+				//the blob files are resolved in the blob directory of this database (they aren't opened now)
+				if (field instanceof ExternalBlobField)
+					((ExternalBlobField) field).getBlob(entity).attach(getExternalBlobDirectory());
+			}
+			values[i] = value;
 		}
+		
+		//keep the column values of the fields to merge as entity snapshot
+		int[] indexes = entityDef.getMergeFieldsHydrateIndexes();
+		Object[] snapshot = new Object[indexes.length];
+		for (int i = 0; i < indexes.length; i++)
+			snapshot[i] = indexes[i] >= 0 ? values[indexes[i]] : null;
+		mSnapshotCache.put(entity, snapshot);
+		
 		//finally put the entity into transaction cache
 		mSQLiteDatabaseAdapter.cacheEntity(entity);
 	}
 	
+	/** Return the mapped values (SQLite values) of the entity fields param. */
+	private Object[] getMappedFieldValues(Object entity, List<FieldDef> fields) {
+		//
+		Object[] result = new Object[fields.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = fields.get(i).getMappedFieldValue(entity);
+		return result;
+	}
+
+	/**
+	 * Populate all entity association fields ({@link ManyToManyField}) following their fetch type.<br>
+	 * {@link FetchType#EAGER} associations are loaded now. {@link FetchType#LAZY} associations receive a {@link LazyList} that will be loaded on the first access. 
+	 */
+	private <T> void bindAssociationFields(T entity, EntityDef entityDef) {
+		//
+		if (entityDef.getAssociationFields().isEmpty())
+			return;
+
+		//mapped value (the same of primaryKey.toMappedValue(javaValue)) of the owner
+		Object primaryKeyValue = entityDef.getPrimaryKey().getMappedFieldValue(entity);
+		for (ManyToManyField field : entityDef.getAssociationFields()) {
+			//build the statement to load the target entities using the join table
+			EntityDef targetEntityDef = mEntityDefFactory.getEntityDef(field.getTargetEntity());
+			String statement = SQLiteHelper.buildJoinTableQueryStatement(targetEntityDef, entityDef.getJoinTable(field.getJoinTableName()), primaryKeyValue);
+
+			//load now or only put the lazy placeholder
+			if (field.getFetchType() == FetchType.EAGER)
+				field.setFieldValue(entity, rawQueryWithResultList(targetEntityDef.getEntityClass(), statement));
+			else
+				field.setFieldValue(entity, new LazyList<>(this, targetEntityDef.getEntityClass(), statement));
+		}
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,339 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * Metrics registry of one {@link PersistenceManager} ({@link PersistenceListener} implementation).<p>
+ *
+ * Statements are grouped by their normalized SQL (literals replaced by "?", e.g. "SELECT * FROM city WHERE id = ?") and entity class,
+ * and each group keeps its count, rows read and written and the latency histograms of the SQL and hydration times. It also keeps
+ * the transaction hold time histogram and the cache hits and misses of each entity class. All counters are lock free.
+ *
+ * <pre><b>Example</b><br>
+ *
+ * PersistenceMetrics metrics = new PersistenceMetrics();
+ * entityManager.setPersistenceListener(metrics);
+ * ...
+ * Log.d("Stout", metrics.dump());</pre>
+ */
+public final class PersistenceMetrics implements PersistenceListener {
+
+	/* ********************************************************
+	 * HISTOGRAM
+	 **********************************************************/
+
+	/**
+	 * Latency histogram with power of two buckets (bucket i counts the values between 2^(i-1) and 2^i microseconds), so percentiles
+	 * are approximated by the bucket upper bound (up to 2x the real value).
+	 */
+	public static final class Histogram {
+
+		/** Number of buckets (the last one counts all values greater than 2^30 microseconds). */
+		private static final int BUCKETS = 32;
+
+		private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong mCount = new AtomicLong();
+		private final AtomicLong mTotalNanos = new AtomicLong();
+		private final AtomicLong mMaxNanos = new AtomicLong();
+
+		/** Record one value. */
+		void record(long nanos) {
+			long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+			int bucket = micros <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+			mBuckets.incrementAndGet(bucket);
+			mCount.incrementAndGet();
+			mTotalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = mMaxNanos.get()) && !mMaxNanos.compareAndSet(max, nanos));
+		}
+
+		/** @return the number of recorded values. */
+		public long getCount() {
+			return mCount.get();
+		}
+
+		/** @return the sum of the recorded values (nanoseconds). */
+		public long getTotalNanos() {
+			return mTotalNanos.get();
+		}
+
+		/** @return the max recorded value (nanoseconds). */
+		public long getMaxNanos() {
+			return mMaxNanos.get();
+		}
+
+		/** @return the mean of the recorded values (nanoseconds). */
+		public long getMeanNanos() {
+			long count = mCount.get();
+			return count > 0 ? mTotalNanos.get() / count : 0;
+		}
+
+		/** @return the approximated percentile (0 to 100) of the recorded values (nanoseconds). */
+		public long getPercentileNanos(double percentile) {
+			long count = mCount.get();
+			if (count == 0)
+				return 0;
+
+			long rank = (long) Math.ceil(count * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += mBuckets.get(i);
+				if (seen >= rank)
+					return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), mMaxNanos.get());
+			}
+			return mMaxNanos.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "count=%d mean=%s p50=%s p95=%s p99=%s max=%s", getCount(), formatNanos(getMeanNanos()),
+					formatNanos(getPercentileNanos(50)), formatNanos(getPercentileNanos(95)), formatNanos(getPercentileNanos(99)), formatNanos(getMaxNanos()));
+		}
+	}
+
+	/* ********************************************************
+	 * STATEMENT METRICS
+	 **********************************************************/
+
+	/** Metrics of one statement group (normalized SQL and entity class). */
+	public static final class StatementMetrics {
+
+		private final String mSql;
+		private final Class<?> mEntityClass;
+		private final Histogram mSqlTime = new Histogram();
+		private final Histogram mHydrationTime = new Histogram();
+		private final AtomicLong mRowsRead = new AtomicLong();
+		private final AtomicLong mRowsWritten = new AtomicLong();
+
+		StatementMetrics(String sql, Class<?> entityClass) {
+			mSql = sql;
+			mEntityClass = entityClass;
+		}
+
+		/** @return the normalized SQL of the statements. */
+		public String getSql() {
+			return mSql;
+		}
+
+		/** @return the entity class of the statements or {@code null} to raw statements. */
+		public Class<?> getEntityClass() {
+			return mEntityClass;
+		}
+
+		/** @return the SQL time histogram (its count is the number of executions). */
+		public Histogram getSqlTime() {
+			return mSqlTime;
+		}
+
+		/** @return the hydration time histogram (only queries). */
+		public Histogram getHydrationTime() {
+			return mHydrationTime;
+		}
+
+		public long getRowsRead() {
+			return mRowsRead.get();
+		}
+
+		public long getRowsWritten() {
+			return mRowsWritten.get();
+		}
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Max number of SQL strings kept in {@link #mNormalizedSql} (it is cleared when full). */
+	private static final int NORMALIZED_SQL_CACHE_SIZE = 512;
+
+	/** Lists of parameters (e.g. "IN (?, ?, ?)") normalized to only one. */
+	private static final Pattern PARAMETER_LIST_PATTERN = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+	/** Statement metrics identify by normalized SQL and entity class name. */
+	private final ConcurrentMap<String, StatementMetrics> mStatements = new ConcurrentHashMap<String, StatementMetrics>();
+
+	/** Normalized SQL identify by SQL (normalize each executed statement would cost more than execute some of them). */
+	private final ConcurrentMap<String, String> mNormalizedSql = new ConcurrentHashMap<String, String>();
+
+	private volatile Histogram mTransactionHoldTime = new Histogram();
+	private final AtomicLong mCommits = new AtomicLong();
+	private final AtomicLong mRollbacks = new AtomicLong();
+
+	/** Cache hits and misses (index 0 and 1) identify by entity class. */
+	private final ConcurrentMap<Class<?>, AtomicLongArray> mCacheAccesses = new ConcurrentHashMap<Class<?>, AtomicLongArray>();
+
+	/* ********************************************************
+	 * LISTENER
+	 **********************************************************/
+
+	@Override
+	public void onStatement(String sql, Class<?> entityClass, long sqlNanos, long hydrationNanos, int rowsRead, int rowsWritten) {
+		String normalizedSql = mNormalizedSql.get(sql);
+		if (normalizedSql == null) {
+			if (mNormalizedSql.size() >= NORMALIZED_SQL_CACHE_SIZE)
+				mNormalizedSql.clear();
+			normalizedSql = normalizeSql(sql);
+			mNormalizedSql.put(sql, normalizedSql);
+		}
+
+		String key = entityClass != null ? entityClass.getName() + ":" + normalizedSql : normalizedSql;
+		StatementMetrics metrics = mStatements.get(key);
+		if (metrics == null) {
+			StatementMetrics newMetrics = new StatementMetrics(normalizedSql, entityClass);
+			metrics = mStatements.putIfAbsent(key, newMetrics);
+			if (metrics == null)
+				metrics = newMetrics;
+		}
+
+		metrics.mSqlTime.record(sqlNanos);
+		if (rowsRead > 0 || hydrationNanos > 0)
+			metrics.mHydrationTime.record(hydrationNanos);
+		metrics.mRowsRead.addAndGet(rowsRead);
+		if (rowsWritten > 0)
+			metrics.mRowsWritten.addAndGet(rowsWritten);
+	}
+
+	@Override
+	public void onTransaction(long holdNanos, boolean committed) {
+		mTransactionHoldTime.record(holdNanos);
+		(committed ? mCommits : mRollbacks).incrementAndGet();
+	}
+
+	@Override
+	public void onCacheAccess(Class<?> entityClass, boolean hit) {
+		AtomicLongArray accesses = mCacheAccesses.get(entityClass);
+		if (accesses == null) {
+			AtomicLongArray newAccesses = new AtomicLongArray(2);
+			accesses = mCacheAccesses.putIfAbsent(entityClass, newAccesses);
+			if (accesses == null)
+				accesses = newAccesses;
+		}
+		accesses.incrementAndGet(hit ? 0 : 1);
+	}
+
+	/* ********************************************************
+	 * SNAPSHOT / DUMP
+	 **********************************************************/
+
+	/** @return the metrics of all statement groups, sorted by total SQL time (the slowest first). */
+	public List<StatementMetrics> getStatements() {
+		List<StatementMetrics> result = new ArrayList<StatementMetrics>(mStatements.values());
+		Collections.sort(result, new Comparator<StatementMetrics>() {
+			@Override
+			public int compare(StatementMetrics metrics1, StatementMetrics metrics2) {
+				long time1 = metrics1.mSqlTime.getTotalNanos() + metrics1.mHydrationTime.getTotalNanos();
+				long time2 = metrics2.mSqlTime.getTotalNanos() + metrics2.mHydrationTime.getTotalNanos();
+				return time1 < time2 ? 1 : (time1 == time2 ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/** @return the transaction hold time histogram (outermost transactions only). */
+	public Histogram getTransactionHoldTime() {
+		return mTransactionHoldTime;
+	}
+
+	public long getCommits() {
+		return mCommits.get();
+	}
+
+	public long getRollbacks() {
+		return mRollbacks.get();
+	}
+
+	/** @return the number of cache hits of the entity class. */
+	public long getCacheHits(Class<?> entityClass) {
+		AtomicLongArray accesses = mCacheAccesses.get(entityClass);
+		return accesses != null ? accesses.get(0) : 0;
+	}
+
+	/** @return the number of cache misses of the entity class. */
+	public long getCacheMisses(Class<?> entityClass) {
+		AtomicLongArray accesses = mCacheAccesses.get(entityClass);
+		return accesses != null ? accesses.get(1) : 0;
+	}
+
+	/** Remove all recorded metrics. */
+	public void reset() {
+		mStatements.clear();
+		mCacheAccesses.clear();
+		mTransactionHoldTime = new Histogram();
+		mCommits.set(0);
+		mRollbacks.set(0);
+	}
+
+	/** @return a readable report of all recorded metrics (the slowest statements first). */
+	public String dump() {
+		StringBuilder result = new StringBuilder();
+		result.append("Transactions: commits=").append(getCommits()).append(" rollbacks=").append(getRollbacks())
+				.append(" hold[").append(mTransactionHoldTime).append("]\n");
+
+		for (Map.Entry<Class<?>, AtomicLongArray> accesses : mCacheAccesses.entrySet()) {
+			result.append("Cache ").append(accesses.getKey().getSimpleName()).append(": hits=").append(accesses.getValue().get(0))
+					.append(" misses=").append(accesses.getValue().get(1)).append('\n');
+		}
+
+		for (StatementMetrics metrics : getStatements()) {
+			result.append(metrics.mEntityClass != null ? "[" + metrics.mEntityClass.getSimpleName() + "] " : "").append(metrics.mSql).append('\n')
+					.append("    sql[").append(metrics.mSqlTime).append("]\n");
+			if (metrics.mHydrationTime.getCount() > 0)
+				result.append("    hydration[").append(metrics.mHydrationTime).append("]\n");
+			result.append("    rowsRead=").append(metrics.getRowsRead()).append(" rowsWritten=").append(metrics.getRowsWritten()).append('\n');
+		}
+		return result.toString();
+	}
+
+	/* ********************************************************
+	 * UTILS
+	 **********************************************************/
+
+	/** Replace the literals (texts and numbers) of the SQL by "?", the lists of parameters by only one and the whitespaces by one space. */
+	static String normalizeSql(String sql) {
+		StringBuilder result = new StringBuilder(sql.length());
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			char previous = result.length() > 0 ? result.charAt(result.length() - 1) : ' ';
+			if (c == '\'') {
+				//text literal ('' is one escaped quote)
+				i++;
+				while (i < length && (sql.charAt(i) != '\'' || (i + 1 < length && sql.charAt(i + 1) == '\'')))
+					i += sql.charAt(i) == '\'' ? 2 : 1;
+				i++;
+				result.append('?');
+			} else if (Character.isDigit(c) && !Character.isLetterOrDigit(previous) && previous != '_' && previous != '"') {
+				//number literal (but not digits of identifiers)
+				while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+					i++;
+				result.append('?');
+			} else if (Character.isWhitespace(c)) {
+				while (i < length && Character.isWhitespace(sql.charAt(i)))
+					i++;
+				if (previous != ' ')
+					result.append(' ');
+			} else {
+				result.append(c);
+				i++;
+			}
+		}
+		return PARAMETER_LIST_PATTERN.matcher(result.toString().trim()).replaceAll("(?)");
+	}
+
+	private static String formatNanos(long nanos) {
+		return nanos >= 1000000 ? String.format(Locale.US, "%.1fms", nanos / 1000000.0) : String.format(Locale.US, "%dus", nanos / 1000);
+	}
+
+}
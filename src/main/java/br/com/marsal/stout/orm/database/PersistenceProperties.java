@@ -9,9 +9,14 @@ import org.xmlpull.v1.XmlPullParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import br.com.marsal.stout.orm.entity.EntityDef;
 import br.com.marsal.stout.orm.entity.EntityDefFactory;
@@ -58,12 +63,28 @@ public enum PersistenceProperties
 		
 		private boolean useTransaction = false;
 		public boolean isUseTransaction() {return useTransaction;}
-		public void setUseTransaction(boolean useTransaction) {this.autoCreateDatabase = useTransaction;}
+		public void setUseTransaction(boolean useTransaction) {this.useTransaction = useTransaction;}
+		
+		/** Read-only units open one read-only connection that is kept open (and memory-mapped) until the unit is released. */
+		private boolean readOnly = false;
+		public boolean isReadOnly() {return readOnly;}
+		public void setReadOnly(boolean readOnly) {this.readOnly = readOnly;}
+		
+		/** Prepackaged database file (asset path) installed by {@link DataBaseHelper} only when there isn't a readable database. */
+		private String assetDatabase = null;
+		public String getAssetDatabase() {return assetDatabase;}
+		public void setAssetDatabase(String assetDatabase) {this.assetDatabase = assetDatabase;}
 		
 		private List<String> mappedEntities = new ArrayList<>();
 		public List<String> getMappedEntities() {return mappedEntities;}
 		public void addMappedEntity(String mappedEntity) {mappedEntities.add(mappedEntity);}
 		
+		/** SQLite PRAGMA values identify by PRAGMA name (e.g. "journal_mode" = "WAL"). They are applied on each connection opened. */
+		private Map<String, String> pragmas = new LinkedHashMap<>();
+		public Map<String, String> getPragmas() {return pragmas;}
+		public String getPragma(String name) {return pragmas.get(name);}
+		public void setPragma(String name, String value) {pragmas.put(name, value);}
+		
 		/* *****************************************************************************************
 		 * UTILS
 		 * *****************************************************************************************/
@@ -89,9 +110,34 @@ public enum PersistenceProperties
 	private final String PERSISTENCE_XML_FILE = "persistence.xml";
 	private final int ATTRIBUTE_NAME_INDEX = 0;
 	private final int ATTRIBUTE_VALUE_INDEX = 1;
+	private final String ATTRIBUTE_NAME = "name";
+	private final String ATTRIBUTE_VALUE = "value";
 	private final String PERSISTENCE_UNIT = "persistence-unit";
 	private final String MAPPED_ENTITY = "mapped-entity";
+	private final String PROPERTY_TAG = "property";
 	private final String ENTITIES_TAG = "entities";
+	private final String ENTITY_TAG = "entity";
+	
+	/* persistence unit properties */
+	private final String DATABASE_NAME_PROPERTY = "database-name";
+	private final String DATABASE_VERSION_PROPERTY = "database-version";
+	private final String AUTO_CREATE_PROPERTY = "auto-create";
+	private final String USE_TRANSACTION_PROPERTY = "use-transaction";
+	private final String READ_ONLY_PROPERTY = "read-only";
+	private final String ASSET_DATABASE_PROPERTY = "asset-database";
+	
+	/**
+	 * SQLite PRAGMAs that can be defined as persistence unit properties (e.g. {@code <property name="journal_mode" value="WAL"/>}).
+	 * The "mmap_size" PRAGMA also accepts the {@link #MMAP_SIZE_FILE} value to map the whole database file.
+	 */
+	public static final List<String> SUPPORTED_PRAGMAS = Collections.unmodifiableList(Arrays.asList(
+			"journal_mode", "synchronous", "cache_size", "page_size", "mmap_size", "temp_store", "busy_timeout", "foreign_keys"));
+	
+	/** "mmap_size" value used to map the whole database file (its size when the connection is opened). */
+	public static final String MMAP_SIZE_FILE = "file";
+	
+	/** Valid PRAGMA values (keywords or integers). Anything else is rejected because it is concatenated into the PRAGMA statement. */
+	private final Pattern PRAGMA_VALUE_PATTERN = Pattern.compile("-?[A-Za-z0-9_]+");
 	
 	/** Indicates that the persistence properties has been initialized. */
 	private boolean mInitialized = false;
@@ -126,7 +172,29 @@ public enum PersistenceProperties
 		//only if not already initialized
 		try {
 			if (!mInitialized) {
-				loadProperties(context);
+				InputStream istr = context.getAssets().open(PERSISTENCE_XML_FILE);
+				try {
+					loadProperties(istr);
+				} finally {
+					istr.close();
+				}
+				mInitialized = true;
+			}
+		} catch (IOException | XmlPullParserException e) {
+			throw ExceptionUtils.newRuntimeException(getClass(), "Can't initialize persistence context. Details: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Init method responsible to get all properties defined in the "persistence.xml" stream (e.g. read from the classpath 
+	 * on a plain JVM). The stream must be closed by caller.
+	 */
+	public void init(InputStream persistenceXml)
+	{
+		//only if not already initialized
+		try {
+			if (!mInitialized) {
+				loadProperties(persistenceXml);
 				mInitialized = true;
 			}
 		} catch (IOException | XmlPullParserException e) {
@@ -138,100 +206,83 @@ public enum PersistenceProperties
 	 * LOAD XML PROPERTIES
 	 * *********************************************************************************************/
 	
-	/** Responsible to extract all persistence properties and mapped class list. */
-	private final void loadProperties(Context context) throws IOException, XmlPullParserException
+	/**
+	 * Responsible to extract all persistence properties and mapped class list.<p>
+	 * 
+	 * <pre><b>persistence.xml</b><br>
+	 * 
+	 * &lt;persistence&gt;
+	 *     &lt;persistence-unit name="unit"&gt;
+	 *         &lt;property name="database-name" value="app"/&gt;
+	 *         &lt;property name="database-version" value="1"/&gt;
+	 *         &lt;property name="auto-create" value="true"/&gt;
+	 *         &lt;property name="journal_mode" value="WAL"/&gt;
+	 *         &lt;property name="synchronous" value="NORMAL"/&gt;
+	 *         &lt;entities&gt;
+	 *             &lt;entity&gt;Tag&lt;/entity&gt;
+	 *         &lt;/entities&gt;
+	 *     &lt;/persistence-unit&gt;
+	 *     &lt;mapped-entity name="Tag" value="com.app.model.Tag"/&gt;
+	 * &lt;/persistence&gt;</pre>
+	 * 
+	 * Properties are identify by their names and can be declared in any order. See {@link #SUPPORTED_PRAGMAS} to the SQLite PRAGMAs 
+	 * that can be defined as properties. The "database-name" and "database-version" properties are required and unknown
+	 * property names are rejected (e.g. misspelled names).
+	 */
+	private final void loadProperties(InputStream istr) throws IOException, XmlPullParserException
 	{
 //		Log.d(getClass().getSimpleName(), "[loadProperties]");
 		
 		//create ResourceParser for XML file
-		InputStream istr = context.getAssets().open(PERSISTENCE_XML_FILE);
 		XmlPullParserFactory factory = XmlPullParserFactory.newInstance(); 
 		factory.setNamespaceAware(true); 
 		XmlPullParser xpp = factory.newPullParser(); 
 		xpp.setInput(istr, "UTF-8");
 		
-        //for each element check it to get all properties and mapped classes
-        String mappedClassName;
-        Class<?> mappedClass;
-        int eventType = xpp.getEventType();
-        while (eventType != XmlPullParser.END_DOCUMENT) {
-        	
-        	//root tag... 
-        	if (eventType == XmlPullParser.START_TAG) {
-        		
-        		//<persistence-unit> tag... get the persistence properties like database name and version
-            	if (xpp.getName().equals(PERSISTENCE_UNIT)) {
-            		
-        			//create an new persistence unit and put it into pu list
-        			PersistenceUnit pu = new PersistenceUnit();
-        			pu.setUnitName(xpp.getAttributeValue(ATTRIBUTE_NAME_INDEX));
-        			mPersistenceUnits.put(pu.getUnitName(), pu);
-        			
-        			//move to database name property
-        			xpp.next();
-        			xpp.next();
-        			pu.setDatabaseName(xpp.getAttributeValue(ATTRIBUTE_VALUE_INDEX));
-        			
-        			//move to database version property
-                	xpp.next();
-                	xpp.next();
-                	xpp.next();
-                	pu.setDatabaseVersion(Integer.parseInt(xpp.getAttributeValue(ATTRIBUTE_VALUE_INDEX)));
-                	
-                	//move to auto-create property
-                	xpp.next();
-                	xpp.next();
-                	xpp.next();
-                	pu.setAutoCreateDatabase(Boolean.parseBoolean(xpp.getAttributeValue(ATTRIBUTE_VALUE_INDEX)));
-                	
-                	//extract all mapped entities (if nedded)
-                	if (pu.isAutoCreateDatabase()) {
-                		xpp.next();//property - END_TAG(3)
-                    	xpp.next();//null
-                    	xpp.next();//entities - START_TAG(2)
-                    	xpp.next();//null
-                		xpp.next();//entity - START_TAG(2)
-
-                    	int event;
-                    	String name;
-                    	while (true) {
-                    		xpp.next();//entity value - TEXT(4)
-                    		pu.addMappedEntity(xpp.getText());
-	                		xpp.next();//entity - END_TAG(3)
-	                		xpp.next();//null
-	                		
-	                		event = xpp.next();//???
-	                		name = xpp.getName();
-                    		if (name != null && name.equals(ENTITIES_TAG) && event == XmlPullParser.END_TAG) {
-								break;
-							}
-						}
-                	}
-        		//<mapped-class> tag... get all mapped classes
-        		} else if (xpp.getName().equals(MAPPED_ENTITY)) {
-        			//get the mapped class name and try find it into declared classes in JVM...
-        			mappedClassName = xpp.getAttributeValue(ATTRIBUTE_VALUE_INDEX);
-        			try {
-        				//get the class identify by className defined on xml file and check if class is anonted with @Entity.
-        				//only annoted classes can be defined as mapped class and controled by framework.
-        				mappedClass = Class.forName(mappedClassName);
-        				if (mappedClass.isAnnotationPresent(Entity.class)) {
-							mMappedClasses.add(mappedClass);
-						} else {
-							throw ExceptionUtils.newRuntimeException(
-									PersistenceProperties.class,
-									new EInvalidMappedEntity("Class \"" + mappedClassName + "\" is presents in \"persistence.xml\" but isn't annoted with @Entity."));
-						}
-					} catch (ClassNotFoundException e) {
-    					throw ExceptionUtils.newRuntimeException(
-    							PersistenceProperties.class,
-    							"Class \"" + mappedClassName + "\" defined on persistence properties file not found");
-					}
-        		}
-          	}
-        	//get next event
-        	eventType = xpp.next();
-        }
+		//for each element check it to get all properties and mapped classes
+		PersistenceUnit pu = null;
+		boolean inEntities = false;
+		String tag;
+		int eventType = xpp.getEventType();
+		while (eventType != XmlPullParser.END_DOCUMENT) {
+			
+			if (eventType == XmlPullParser.START_TAG) {
+				tag = xpp.getName();
+				
+				//<persistence-unit> tag... create an new persistence unit and put it into pu list
+				if (PERSISTENCE_UNIT.equals(tag)) {
+					pu = new PersistenceUnit();
+					pu.setUnitName(getAttributeValue(xpp, ATTRIBUTE_NAME, ATTRIBUTE_NAME_INDEX));
+					mPersistenceUnits.put(pu.getUnitName(), pu);
+				
+				//<property> tag... set the persistence unit property identify by name
+				} else if (PROPERTY_TAG.equals(tag) && pu != null) {
+					setProperty(pu, getAttributeValue(xpp, ATTRIBUTE_NAME, ATTRIBUTE_NAME_INDEX), getAttributeValue(xpp, ATTRIBUTE_VALUE, ATTRIBUTE_VALUE_INDEX));
+				
+				//<entities> / <entity> tags... get all entities mapped to persistence unit
+				} else if (ENTITIES_TAG.equals(tag) && pu != null) {
+					inEntities = true;
+				} else if (ENTITY_TAG.equals(tag) && inEntities) {
+					pu.addMappedEntity(xpp.nextText().trim());
+				
+				//<mapped-entity> tag... get all mapped classes
+				} else if (MAPPED_ENTITY.equals(tag)) {
+					addMappedClass(getAttributeValue(xpp, ATTRIBUTE_VALUE, ATTRIBUTE_VALUE_INDEX));
+				}
+			
+			} else if (eventType == XmlPullParser.END_TAG) {
+				tag = xpp.getName();
+				if (PERSISTENCE_UNIT.equals(tag) && pu != null) {
+					checkRequiredProperties(pu);
+					pu = null;
+				}
+				else if (ENTITIES_TAG.equals(tag))
+					inEntities = false;
+			}
+			
+			//get next event
+			eventType = xpp.next();
+		}
 
 //        //log
 //        PersistenceUnit pu;
@@ -251,6 +302,90 @@ public enum PersistenceProperties
 //        	Log.d(getClass().getSimpleName(), "[loadProperties] class = " + clazz);
     }
 	
+	/** Return the attribute value identify by name or by index (to compatibility with files without the attribute names expected). */
+	private String getAttributeValue(XmlPullParser xpp, String name, int index)
+	{
+		String result = xpp.getAttributeValue(null, name);
+		if (result == null && index < xpp.getAttributeCount())
+			result = xpp.getAttributeValue(index);
+		return result;
+	}
+	
+	/** Set the persistence unit property identify by name. Unknown properties are rejected. */
+	private void setProperty(PersistenceUnit pu, String name, String value)
+	{
+		if (name == null || value == null)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Persistence unit \"" + pu.getUnitName() + "\" has one property without name or value.");
+		
+		name = name.trim().toLowerCase(Locale.US);
+		value = value.trim();
+		if (DATABASE_NAME_PROPERTY.equals(name)) {
+			pu.setDatabaseName(value);
+		} else if (DATABASE_VERSION_PROPERTY.equals(name)) {
+			pu.setDatabaseVersion(parseDatabaseVersion(pu, value));
+		} else if (AUTO_CREATE_PROPERTY.equals(name)) {
+			pu.setAutoCreateDatabase(Boolean.parseBoolean(value));
+		} else if (USE_TRANSACTION_PROPERTY.equals(name)) {
+			pu.setUseTransaction(Boolean.parseBoolean(value));
+		} else if (READ_ONLY_PROPERTY.equals(name)) {
+			pu.setReadOnly(Boolean.parseBoolean(value));
+		} else if (ASSET_DATABASE_PROPERTY.equals(name)) {
+			pu.setAssetDatabase(value);
+		} else {
+			//SQLite PRAGMAs accept "journal_mode" and "journal-mode" names
+			String pragma = name.replace('-', '_');
+			if (!SUPPORTED_PRAGMAS.contains(pragma))
+				throw ExceptionUtils.newRuntimeException(getClass(), "Unknown property \"" + name + "\" of persistence unit \"" + pu.getUnitName() + "\".");
+			if (!PRAGMA_VALUE_PATTERN.matcher(value).matches())
+				throw ExceptionUtils.newRuntimeException(getClass(), "Invalid value \"" + value + "\" to PRAGMA \"" + pragma + "\" of persistence unit \"" + pu.getUnitName() + "\".");
+			pu.setPragma(pragma, value);
+		}
+	}
+	
+	/** Parse the database version (SQLite versions start from 1). */
+	private int parseDatabaseVersion(PersistenceUnit pu, String value)
+	{
+		int result;
+		try {
+			result = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			result = 0;
+		}
+		if (result < 1)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid database version \"" + value + "\" of persistence unit \"" + pu.getUnitName() + "\".");
+		return result;
+	}
+	
+	/** Check that the required properties (database name and version) were defined to the persistence unit. */
+	private void checkRequiredProperties(PersistenceUnit pu)
+	{
+		if (pu.getDatabaseName() == null || pu.getDatabaseName().isEmpty())
+			throw ExceptionUtils.newRuntimeException(getClass(), "Persistence unit \"" + pu.getUnitName() + "\" has no \"" + DATABASE_NAME_PROPERTY + "\" property.");
+		if (pu.getDatabaseVersion() < 1)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Persistence unit \"" + pu.getUnitName() + "\" has no \"" + DATABASE_VERSION_PROPERTY + "\" property.");
+	}
+	
+	/** Add the class identify by className (defined on xml file) to the mapped classes. Only classes annoted with {@link Entity} can be mapped. */
+	private void addMappedClass(String mappedClassName)
+	{
+		try {
+			//get the class identify by className defined on xml file and check if class is anonted with @Entity.
+			//only annoted classes can be defined as mapped class and controled by framework.
+			Class<?> mappedClass = Class.forName(mappedClassName);
+			if (mappedClass.isAnnotationPresent(Entity.class)) {
+				mMappedClasses.add(mappedClass);
+			} else {
+				throw ExceptionUtils.newRuntimeException(
+						PersistenceProperties.class,
+						new EInvalidMappedEntity("Class \"" + mappedClassName + "\" is presents in \"persistence.xml\" but isn't annoted with @Entity."));
+			}
+		} catch (ClassNotFoundException e) {
+			throw ExceptionUtils.newRuntimeException(
+					PersistenceProperties.class,
+					"Class \"" + mappedClassName + "\" defined on persistence properties file not found");
+		}
+	}
+	
 	/* *********************************************************************************************
 	 * PERSISTENCE UNIT PROPERTIES
 	 * *********************************************************************************************/
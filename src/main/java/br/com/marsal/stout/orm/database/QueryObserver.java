@@ -0,0 +1,22 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.List;
+
+/**
+ * Observer of one query registered by {@link PersistenceManager#observeQuery(br.com.marsal.stout.orm.entity.EntityDef, String, long, QueryObserver)}.<p>
+ *
+ * The callbacks are called on the invalidation thread ("Stout-invalidation"), never on the thread that committed the change.
+ * Android apps must post the result to the main thread to update the views.
+ */
+public interface QueryObserver<T> {
+
+	/**
+	 * Called with the query result when the observer is registered and after each committed change of the tables the query
+	 * depends on (once by debounce interval).
+	 */
+	void onChanged(List<T> result);
+
+	/** Called when the query re-run fails. The observer is kept registered and it is re-run on the next change. */
+	void onError(RuntimeException exception);
+
+}
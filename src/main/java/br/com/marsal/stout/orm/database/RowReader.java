@@ -0,0 +1,226 @@
+package br.com.marsal.stout.orm.database;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+
+/**
+ * Streaming reader of table rows in one {@link DataFormat}. Only the current row is kept in memory.<p>
+ *
+ * Values are returned as text ({@code null} to NULL values) to be parsed by the target field ({@link br.com.marsal.stout.orm.field.FieldDef#parseMappedValue(String)}).
+ */
+abstract class RowReader {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Buffer size used to read the input stream. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Charset of the input stream. */
+	static final String CHARSET = "UTF-8";
+
+	/** Source of the rows. */
+	protected final BufferedReader reader;
+
+	/** Column names of the rows. */
+	protected String[] columns = null;
+
+	/** Values of the current row (in {@link #columns} order). */
+	protected String[] values = null;
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	protected RowReader(InputStream input) throws IOException {
+		reader = new BufferedReader(new InputStreamReader(input, CHARSET), BUFFER_SIZE);
+	}
+
+	/** Create the reader of the format param. */
+	static RowReader newReader(DataFormat format, InputStream input) throws IOException {
+		switch (format) {
+		case JSON_LINES:
+			return new JsonLinesReader(input);
+		default:
+			return new CsvReader(input);
+		}
+	}
+
+	/* ********************************************************
+	 * READ
+	 **********************************************************/
+
+	/** @return the column names of the rows. */
+	final String[] getColumns() {
+		return columns;
+	}
+
+	/** @return the text value of the column index of the current row ({@code null} to NULL values). */
+	final String getValue(int columnIndex) {
+		return values[columnIndex];
+	}
+
+	/** Move to the next row. @return {@code false} if there isn't more rows. */
+	abstract boolean next() throws IOException;
+
+	/** Close the input stream. */
+	final void close() throws IOException {
+		reader.close();
+	}
+
+	/* ********************************************************
+	 * CSV
+	 **********************************************************/
+
+	/** CSV (RFC 4180) reader. The first record is the header with the column names. */
+	private static final class CsvReader extends RowReader {
+
+		/** Reused builder of the current value. */
+		private final StringBuilder mValue = new StringBuilder();
+
+		/** Reused list of the current record values. */
+		private final List<String> mRecord = new ArrayList<String>();
+
+		CsvReader(InputStream input) throws IOException {
+			super(input);
+			if (!readRecord())
+				throw new IOException("CSV header not found.");
+			columns = mRecord.toArray(new String[mRecord.size()]);
+			for (int i = 0; i < columns.length; i++)
+				columns[i] = columns[i] != null ? columns[i].trim() : "";
+		}
+
+		@Override
+		boolean next() throws IOException {
+			//skip blank lines
+			do {
+				if (!readRecord())
+					return false;
+			} while (mRecord.size() == 1 && mRecord.get(0) == null);
+
+			if (mRecord.size() != columns.length)
+				throw new IOException("CSV record with " + mRecord.size() + " values but the header has " + columns.length + " columns.");
+			values = mRecord.toArray(new String[columns.length]);
+			return true;
+		}
+
+		/** Read the next record into {@link #mRecord}. @return {@code false} at end of stream. */
+		private boolean readRecord() throws IOException {
+			mRecord.clear();
+			mValue.setLength(0);
+			boolean quoted = false;
+			boolean inQuotes = false;
+			int c = reader.read();
+			if (c == -1)
+				return false;
+
+			while (true) {
+				if (inQuotes) {
+					if (c == -1)
+						throw new IOException("CSV quoted value not closed.");
+					if (c == '"') {
+						//escaped quote ("") or the end of the quoted value
+						reader.mark(1);
+						if (reader.read() == '"') {
+							mValue.append('"');
+						} else {
+							reader.reset();
+							inQuotes = false;
+						}
+					} else {
+						mValue.append((char) c);
+					}
+				} else if (c == '"' && mValue.length() == 0 && !quoted) {
+					inQuotes = true;
+					quoted = true;
+				} else if (c == ',') {
+					addValue(quoted);
+					quoted = false;
+				} else if (c == '\n' || c == '\r' || c == -1) {
+					//end of record (CRLF is one line break)
+					if (c == '\r') {
+						reader.mark(1);
+						if (reader.read() != '\n')
+							reader.reset();
+					}
+					addValue(quoted);
+					return true;
+				} else {
+					mValue.append((char) c);
+				}
+				c = reader.read();
+			}
+		}
+
+		/** Add the current value to the record. Empty unquoted values are NULL. */
+		private void addValue(boolean quoted) {
+			mRecord.add(mValue.length() == 0 && !quoted ? null : mValue.toString());
+			mValue.setLength(0);
+		}
+	}
+
+	/* ********************************************************
+	 * JSON LINES
+	 **********************************************************/
+
+	/** JSON lines reader. The column names are the keys of the first object, the next objects are read by these keys. */
+	private static final class JsonLinesReader extends RowReader {
+
+		/** First object already read to get the column names. */
+		private JSONObject mFirst = null;
+
+		JsonLinesReader(InputStream input) throws IOException {
+			super(input);
+			mFirst = readObject();
+			List<String> keys = new ArrayList<String>();
+			if (mFirst != null) {
+				for (Iterator<String> iterator = mFirst.keys(); iterator.hasNext();)
+					keys.add(iterator.next());
+			}
+			columns = keys.toArray(new String[keys.size()]);
+		}
+
+		@Override
+		boolean next() throws IOException {
+			JSONObject object = mFirst != null ? mFirst : readObject();
+			mFirst = null;
+			if (object == null)
+				return false;
+
+			values = new String[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				Object value = object.opt(columns[i]);
+				values[i] = value == null || value == JSONObject.NULL ? null : value.toString();
+			}
+			return true;
+		}
+
+		/** Read the next (not blank) line object or {@code null} at end of stream. */
+		private JSONObject readObject() throws IOException {
+			String line;
+			do {
+				line = reader.readLine();
+				if (line == null)
+					return null;
+			} while (line.trim().isEmpty());
+
+			try {
+				return new JSONObject(line);
+			} catch (JSONException e) {
+				throw new IOException("Invalid JSON line: " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+package br.com.marsal.stout.orm.database;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+
+/**
+ * Streaming writer of table rows in one {@link DataFormat}. Only the current row is kept in memory.<p>
+ *
+ * Values are SQLite values ({@link Long}, {@link Double}, {@link String}, {@code byte[]} or {@code null}) or the readable values
+ * formatted by the source field ({@link br.com.marsal.stout.orm.field.FieldDef#formatMappedValue(Object)}), e.g. {@link Boolean}.
+ * The output is readable by {@link RowReader}. BLOB values are written as Base64 text.
+ */
+abstract class RowWriter {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Buffer size used to write the output stream. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Base64 (RFC 4648) alphabet. */
+	private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	/** Target of the rows. */
+	protected final BufferedWriter writer;
+
+	/** Column names of the rows. */
+	protected String[] columns = null;
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	protected RowWriter(OutputStream output) throws IOException {
+		writer = new BufferedWriter(new OutputStreamWriter(output, RowReader.CHARSET), BUFFER_SIZE);
+	}
+
+	/** Create the writer of the format param. */
+	static RowWriter newWriter(DataFormat format, OutputStream output) throws IOException {
+		switch (format) {
+		case JSON_LINES:
+			return new JsonLinesWriter(output);
+		default:
+			return new CsvWriter(output);
+		}
+	}
+
+	/* ********************************************************
+	 * WRITE
+	 **********************************************************/
+
+	/** Write the header (if the format has one) and keep the column names of the rows. */
+	void writeHeader(String[] columns) throws IOException {
+		this.columns = columns;
+	}
+
+	/** Write one row with the values in {@link #columns} order. */
+	abstract void writeRow(Object[] values) throws IOException;
+
+	/** Flush the buffered rows and close the output stream. */
+	final void close() throws IOException {
+		writer.close();
+	}
+
+	/** Return the text of the not null value (BLOB values are encoded as Base64). */
+	protected static String toText(Object value) {
+		if (value instanceof byte[])
+			return encodeBase64((byte[]) value);
+		return value.toString();
+	}
+
+	/** Encode the bytes as Base64 with padding and without line breaks (the Android Base64 isn't available to all drivers). */
+	static String encodeBase64(byte[] bytes) {
+		StringBuilder result = new StringBuilder((bytes.length + 2) / 3 * 4);
+		for (int i = 0; i < bytes.length; i += 3) {
+			int remaining = Math.min(3, bytes.length - i);
+			int group = (bytes[i] & 0xFF) << 16;
+			if (remaining > 1)
+				group |= (bytes[i + 1] & 0xFF) << 8;
+			if (remaining > 2)
+				group |= bytes[i + 2] & 0xFF;
+			result.append(BASE64_ALPHABET[(group >> 18) & 0x3F]);
+			result.append(BASE64_ALPHABET[(group >> 12) & 0x3F]);
+			result.append(remaining > 1 ? BASE64_ALPHABET[(group >> 6) & 0x3F] : '=');
+			result.append(remaining > 2 ? BASE64_ALPHABET[group & 0x3F] : '=');
+		}
+		return result.toString();
+	}
+
+	/* ********************************************************
+	 * CSV
+	 **********************************************************/
+
+	/** CSV (RFC 4180) writer. The first record is the header with the column names. NULL values are empty and empty texts are quoted. */
+	private static final class CsvWriter extends RowWriter {
+
+		CsvWriter(OutputStream output) throws IOException {
+			super(output);
+		}
+
+		@Override
+		void writeHeader(String[] columns) throws IOException {
+			super.writeHeader(columns);
+			writeRecord(columns);
+		}
+
+		@Override
+		void writeRow(Object[] values) throws IOException {
+			writeRecord(values);
+		}
+
+		private void writeRecord(Object[] values) throws IOException {
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					writer.write(',');
+				if (values[i] != null)
+					writeValue(toText(values[i]));
+			}
+			writer.write("\r\n");
+		}
+
+		/** Write the value quoting it only if needed. */
+		private void writeValue(String value) throws IOException {
+			boolean quote = value.isEmpty();
+			for (int i = 0; i < value.length() && !quote; i++) {
+				char c = value.charAt(i);
+				quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+			}
+
+			if (!quote) {
+				writer.write(value);
+				return;
+			}
+			writer.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"')
+					writer.write('"');
+				writer.write(c);
+			}
+			writer.write('"');
+		}
+	}
+
+	/* ********************************************************
+	 * JSON LINES
+	 **********************************************************/
+
+	/** JSON lines writer. Each row is one object with the column names as keys. */
+	private static final class JsonLinesWriter extends RowWriter {
+
+		/** Column names already quoted as JSON strings. */
+		private String[] mQuotedColumns = null;
+
+		JsonLinesWriter(OutputStream output) throws IOException {
+			super(output);
+		}
+
+		@Override
+		void writeHeader(String[] columns) throws IOException {
+			super.writeHeader(columns);
+			mQuotedColumns = new String[columns.length];
+			for (int i = 0; i < columns.length; i++)
+				mQuotedColumns[i] = JSONObject.quote(columns[i]);
+		}
+
+		@Override
+		void writeRow(Object[] values) throws IOException {
+			writer.write('{');
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					writer.write(',');
+				writer.write(mQuotedColumns[i]);
+				writer.write(':');
+				writer.write(toJson(values[i]));
+			}
+			writer.write("}\n");
+		}
+
+		/** Return the JSON representation of the value. Numbers and booleans are not quoted. */
+		private static String toJson(Object value) {
+			if (value == null)
+				return "null";
+			if (value instanceof Double || value instanceof Float) {
+				//NaN and Infinity aren't valid JSON numbers
+				double number = ((Number) value).doubleValue();
+				return Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString();
+			}
+			if (value instanceof Number || value instanceof Boolean)
+				return value.toString();
+			return JSONObject.quote(toText(value));
+		}
+	}
+
+}
@@ -1,25 +1,38 @@
 package br.com.marsal.stout.orm.database;
 
-import android.content.ContentValues;
-import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
+import br.com.marsal.stout.orm.database.driver.DatabaseConnection;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
 import br.com.marsal.stout.orm.entity.EntityDef;
 import br.com.marsal.stout.orm.entity.JoinTable;
+import br.com.marsal.stout.orm.entity.SingleTableSubclass;
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
 /**
- * Manager all SQLite transaction
+ * Manager all SQLite transaction. The database connections are opened by the {@link DatabaseDriver} (Android SQLite API by default)
+ * and the database is created or upgraded (by its version) when the first connection is opened.
  */
-public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
+public final class SQLiteDatabaseAdapter
 {
 	/* *********************************************************************************************
 	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
 	 * *********************************************************************************************/
 
-	/** Provide the SQLite connection ({@link SQLiteDatabase}) to exec QUERY, DDL and DML statements */
-	private SQLiteDatabase mDatabase = null;
+	/** Open the database connections ({@link DatabaseConnection}) */
+	private DatabaseDriver mDriver = null;
+
+	/** Provide the SQLite connection ({@link DatabaseConnection}) to exec QUERY, DDL and DML statements */
+	private DatabaseConnection mDatabase = null;
 
 	/** Full database path */
 	private String mDatabasePath = null;
@@ -27,9 +40,13 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	
 	/** */
 	private PersistenceProperties.PersistenceUnit mPersistenceUnit = null;
+	public PersistenceProperties.PersistenceUnit getPersistenceUnit() {return mPersistenceUnit;}
 	
-	/** Android context ({@link Context}) */
-	private Context mContext = null;
+	/**
+	 * Indicates that the persistence unit is read-only. Its connection is opened as read-only, transactions don't begin SQLite transactions 
+	 * and the connection is kept open (and memory-mapped) between transactions until {@link #release()}.
+	 */
+	private boolean mReadOnly = false;
 
 	/**
 	 * Flag used to controll the persistence transaction.<br>
@@ -38,35 +55,158 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	 */
 	private int mTransactionFlag = 0;
 
+	/**
+	 * Lock held by the thread that owns the current transaction, from the outermost {@link #startTransaction()} to the outermost 
+	 * {@link #endTransaction(boolean)}. It serializes the transactions started from different threads over the shared connection.
+	 */
+	private final ReentrantLock mTransactionLock = new ReentrantLock();
+
+	/** Transaction levels ({@link #mTransactionFlag} values) started as nested transactions (savepoints), from the outermost to the innermost. */
+	private final List<Integer> mSavepointLevels = new ArrayList<Integer>();
+
+	/**
+	 * Indicates that the tables of the database were checked (and migrated) to the current mapping by {@link #migrateSchema(DatabaseConnection)}.
+	 * It is done once by database file (the connection is reopened by each transaction).
+	 */
+	private boolean mSchemaMigrated = false;
+
 	/** Represents the transaction cache when all entities loaded in the current transaction will be cached to be reused before. */
 	private TransactionCache mTransactionCache;
 
+	/** Max number of compiled statements kept in {@link #mStatementCache}. */
+	private static final int STATEMENT_CACHE_SIZE = 32;
+
+	/**
+	 * Compiled statements ({@link DatabaseStatement}) cache identify by their SQL. The least recently used statement is closed when the cache is full.<br>
+	 * Compiled statements are bound to the database connection, so this cache is cleared when the database is closed.
+	 */
+	private final Map<String, DatabaseStatement> mStatementCache = new LinkedHashMap<String, DatabaseStatement>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 2609521283960381478L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, DatabaseStatement> eldest) {
+			//close the least recently used statement when cache is full
+			if (size() > STATEMENT_CACHE_SIZE) {
+				eldest.getValue().close();
+				return true;
+			}
+			return false;
+		}
+	};
+
 	/* *********************************************************************************************
 	 * CONSTRUCTORS
 	 * *********************************************************************************************/
 
 	/** Default constructor. This is responsible for create and initialize all database resources. */
-	public SQLiteDatabaseAdapter(Context context, PersistenceProperties.PersistenceUnit pu)
+	public SQLiteDatabaseAdapter(DatabaseDriver driver, PersistenceProperties.PersistenceUnit pu)
     {
-		super(context, pu.getDatabaseName() + ".db", null, pu.getDatabaseVersion());
-		mContext = context;
+		mDriver = driver;
 		mPersistenceUnit = pu;
+		mReadOnly = pu.isReadOnly();
 		mTransactionFlag = 0;
 		mTransactionCache = new TransactionCache();
-		mDatabasePath = mContext.getDatabasePath(pu.getDatabaseName() + ".db").getAbsolutePath();
+		mDatabasePath = driver.getDatabasePath(pu.getDatabaseName() + ".db");
+
+		//install the prepackaged database (if the persistence unit defines one and it isn't installed yet)
+		driver.installDatabase(pu, mDatabasePath);
 
-		//in the first time that open() method is called the database is created or updated... so we force this behavior here to create database 
-		open();
+		//the database is created or updated when one writable connection is opened... so we force this behavior here to create database 
+		//(read-only units are created or updated by one writable connection too)
+		mDatabase = openWritableDatabase();
 		close();
 	}
+
+	/** @return the driver that opens the database connections. */
+	public DatabaseDriver getDriver()
+    {
+		return mDriver;
+	}
 	
 	/* *********************************************************************************************
 	 * DATABASE CREATE / UPDATE / RELEASE
 	 * *********************************************************************************************/
 
+	/**
+	 * Open one writable connection and create or upgrade the database if its version (PRAGMA user_version) isn't the persistence unit
+	 * database version (the same of the Android SQLiteOpenHelper). Databases can't be downgraded.
+	 */
+	private DatabaseConnection openWritableDatabase()
+    {
+		DatabaseConnection database = mDriver.open(mDatabasePath, DatabaseDriver.OPEN_READWRITE | DatabaseDriver.CREATE_IF_NECESSARY);
+		try {
+			onConfigure(database);
+			
+			int oldVer = database.getVersion();
+			int newVer = mPersistenceUnit.getDatabaseVersion();
+			if (oldVer != newVer) {
+				if (oldVer > newVer)
+					throw ExceptionUtils.newRuntimeException(getClass(), "Can't downgrade database from version " + oldVer + " to " + newVer + ".");
+				
+				//the database is created or upgraded in only one transaction with its new version
+				database.beginTransaction(TransactionMode.EXCLUSIVE);
+				try {
+					if (oldVer == 0)
+						onCreate(database);
+					else
+						onUpgrade(database, oldVer, newVer);
+					database.setVersion(newVer);
+					database.setTransactionSuccessful();
+				} finally {
+					database.endTransaction();
+				}
+			}
+			
+			//tables created by older versions of the framework (e.g. before the discriminator column) are migrated once
+			if (!mSchemaMigrated) {
+				database.beginTransaction(TransactionMode.EXCLUSIVE);
+				try {
+					migrateSchema(database);
+					database.setTransactionSuccessful();
+				} finally {
+					database.endTransaction();
+				}
+				mSchemaMigrated = true;
+			}
+		} catch (RuntimeException e) {
+			database.close();
+			throw e;
+		}
+		return database;
+	}
+
+	/**
+	 * Called when the database connection is being configured (each time it is opened), before the database is created, upgraded or opened.
+	 * Apply the SQLite PRAGMAs defined on the persistence unit ({@link PersistenceProperties.PersistenceUnit#getPragmas()}).
+	 */
+	private void onConfigure(DatabaseConnection sqliteDatabase)
+    {
+		//read-only units map the whole database file by default
+		Map<String, String> pragmas = mPersistenceUnit.getPragmas();
+		if (mReadOnly && !pragmas.containsKey("mmap_size")) {
+			pragmas = new LinkedHashMap<String, String>(pragmas);
+			pragmas.put("mmap_size", PersistenceProperties.MMAP_SIZE_FILE);
+		}
+		
+		for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+			String name = pragma.getKey();
+			String value = pragma.getValue();
+			
+			//memory map the whole database file (the max size is limited by the SQLite build)
+			if (name.equals("mmap_size") && value.equalsIgnoreCase(PersistenceProperties.MMAP_SIZE_FILE))
+				value = String.valueOf(new File(sqliteDatabase.getPath()).length());
+			
+			//WAL and foreign keys change the database... they are ignored by read-only connections
+			if (sqliteDatabase.isReadOnly() && (name.equals("journal_mode") || name.equals("foreign_keys")))
+				continue;
+			
+			//WAL and foreign keys are configured by the driver API (if it has one)
+			sqliteDatabase.setPragma(name, value);
+		}
+	}
+
 	/** Called when the database is created for the first time. There is where the creation of tables should happen. */
-	@Override
-	public void onCreate(SQLiteDatabase sqliteDatabase)
+	private void onCreate(DatabaseConnection sqliteDatabase)
     {
 //		Log.d(getClass().getSimpleName(), "[onCreate] '" + mPersistenceUnit.getDatabaseName() + "'(" + mPersistenceUnit.isAutoCreateDatabase() + ")");
 		
@@ -79,6 +219,10 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 //				Log.d(getClass().getSimpleName(), "[onCreate][Table] " + entityDef.getCreateTableStatement());
 				sqliteDatabase.execSQL(entityDef.getCreateTableStatement());
 				
+				//entity discriminator index (single table entities)
+				if (entityDef.getCreateDiscriminatorIndexStatement() != null)
+					sqliteDatabase.execSQL(entityDef.getCreateDiscriminatorIndexStatement());
+				
 				//entity join tables
 				if (entityDef.getJoinTables() != null) {
 					for (JoinTable joinTable : entityDef.getJoinTables().values()) {
@@ -90,8 +234,7 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 		} 
 	}
 	
-	@Override
-	public void onUpgrade(SQLiteDatabase sqliteDatabase, int oldVer, int newVer)
+	private void onUpgrade(DatabaseConnection sqliteDatabase, int oldVer, int newVer)
     {
 //		Log.d(getClass().getSimpleName(), "[onUpgrade] updating '" + mPersistenceUnit.getUnitName() + "." + mPersistenceUnit.getDatabaseName() + "' database from '" + oldVer + "' to '" + newVer + "'");
 		// TODO check this code when this use case is necessary...
@@ -102,9 +245,93 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 		// onCreate(db);
 	}
 	
+	/**
+	 * Add the columns required by the framework to the existing tables that don't have them (created by {@code CREATE TABLE IF NOT EXISTS}
+	 * before these columns were mapped). The single table hierarchy tables receive the discriminator column (and its index) and their 
+	 * existing rows are assigned to the superclass (column default).
+	 */
+	private void migrateSchema(DatabaseConnection sqliteDatabase)
+    {
+		for (EntityDef entityDef : mPersistenceUnit.getMappedEntitiesDef()) {
+			if (!(entityDef instanceof SingleTableSubclass.SingleTableSuperclass))
+				continue;
+			
+			List<String> columns = getTableColumns(sqliteDatabase, entityDef.getTableName());
+			if (columns.isEmpty() || columns.contains(entityDef.getDiscriminatorColumn().toLowerCase(Locale.US)))
+				continue;
+			
+			sqliteDatabase.execSQL(SQLiteHelper.buildAddDiscriminatorColumnStatement(entityDef));
+			sqliteDatabase.execSQL(entityDef.getCreateDiscriminatorIndexStatement());
+		}
+	}
+	
+	/** Return the column names (lower case) of the table or one empty list if the table doesn't exist. */
+	private static List<String> getTableColumns(DatabaseConnection sqliteDatabase, String tableName)
+    {
+		List<String> result = new ArrayList<String>();
+		DatabaseCursor cursor = sqliteDatabase.rawQuery("PRAGMA table_info(" + tableName + ")");
+		try {
+			int nameIndex = cursor.getColumnIndex("name");
+			while (cursor.moveToNext())
+				result.add(cursor.getString(nameIndex).toLowerCase(Locale.US));
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+	
 	public void release()
     {
-		close();
+		// wait the current transaction (started by any thread) to be ended before close the database
+		mTransactionLock.lock();
+		try {
+			close();
+		} finally {
+			mTransactionLock.unlock();
+		}
+	}
+
+	/* *********************************************************************************************
+	 * BACKUP / RESTORE
+	 * *********************************************************************************************/
+
+	/**
+	 * Write a consistent snapshot of the database into the target file by one separate connection, so the others threads keep 
+	 * using this adapter while the backup is running.
+	 * 
+	 * @see DatabaseBackup
+	 */
+	public void backup(File target, DatabaseBackup.ProgressListener listener)
+    {
+		// the snapshot would wait (or miss) the work of the current thread transaction
+		if (mTransactionLock.isHeldByCurrentThread())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The database can't be backed up inside a transaction.");
+
+		DatabaseBackup.backup(mDriver, mDatabasePath, "WAL".equalsIgnoreCase(mPersistenceUnit.getPragma("journal_mode")), target, listener);
+	}
+
+	/**
+	 * Replace the database by the backup file. It waits the current transaction (started by any thread) to be ended and the 
+	 * database is reopened by the next transaction.
+	 * 
+	 * @see DatabaseBackup
+	 */
+	public void restore(File backup)
+    {
+		mTransactionLock.lock();
+		try {
+			if (mTransactionFlag > 0)
+				throw ExceptionUtils.newRuntimeException(getClass(), "The database can't be restored inside a transaction.");
+
+			// close the connection (read-only units keep it open) before replace the database file
+			close();
+			DatabaseBackup.restore(mDriver, backup, mDatabasePath);
+			
+			// the backup can be created by one older version of the framework
+			mSchemaMigrated = false;
+		} finally {
+			mTransactionLock.unlock();
+		}
 	}
 
 	/* *********************************************************************************************
@@ -124,25 +351,40 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 //		Log.d(getClass().getSimpleName(), "[open] '" + mPersistenceUnit.getDatabaseName() + "'@'" + mDatabase + "'");
 		
 		// to avoid open when database already is opened
-		if (mDatabase == null || !mDatabase.isOpen())
-			mDatabase = getWritableDatabase();
+		if (mDatabase == null || !mDatabase.isOpen()) {
+			if (mReadOnly) {
+				// read-only connection (it doesn't create or upgrade the database... so it is only configured)
+				mDatabase = mDriver.open(mDatabasePath, DatabaseDriver.OPEN_READONLY);
+				try {
+					onConfigure(mDatabase);
+				} catch (RuntimeException e) {
+					mDatabase.close();
+					mDatabase = null;
+					throw e;
+				}
+			} else {
+				mDatabase = openWritableDatabase();
+			}
+		}
 	}
 
 	/** Close any open database and transaction */
-	@Override
 	public void close()
     {
 //		Log.d(getClass().getSimpleName(), "[close] '" + mPersistenceUnit.getDatabaseName() + "'@'" + mDatabase + "'");
 
+		// compiled statements are bound to the current connection... close all of them
+		clearStatementCache();
+
 		// to avoid close when database already is closed
 		if (mDatabase != null) {
-			super.close();
 			mDatabase.close();
 			mDatabase = null;
 		}
-		// reset the transaction flag and cache (if necessary)
+		// reset the transaction flag, savepoints and cache (if necessary)
 		if (mTransactionFlag > 0) {
 			mTransactionFlag = 0;
+			mSavepointLevels.clear();
 			clearTransactionCache();
 		}
 	}
@@ -177,11 +419,93 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	 */
 	public void startTransaction()
     {
+		startTransaction(TransactionMode.EXCLUSIVE);
+	}
+
+	/**
+	 * Begins a transaction in the mode param. The mode is only used by the outermost transaction, nested transactions join it.
+	 * 
+	 * @see {@link #startTransaction()} for notes about how to use this and when transactions are committed and rolled back.
+	 */
+	public void startTransaction(TransactionMode mode)
+    {
+		// wait until the transaction started by other thread is ended (reentrant for the owner thread)
+		mTransactionLock.lock();
+		
 		// increments the transaction flag and start a transaction if already has not been started
 		mTransactionFlag++;
 		if (mTransactionFlag == 1) {
-			open();
-			mDatabase.beginTransaction();
+			try {
+				open();
+				// read-only connections only read... they don't need (and can't begin) SQLite write transactions
+				if (mReadOnly)
+					return;
+				mDatabase.beginTransaction(mode);
+			} catch (RuntimeException e) {
+				// the transaction was not started... release it to the others threads
+				mTransactionFlag--;
+				mTransactionLock.unlock();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Begins a nested transaction (SAVEPOINT) inside the current transaction. If there isn't a current transaction this is the same of {@link #startTransaction()}.
+	 * <p>
+	 * 
+	 * Unlike the nested transactions started by {@link #startTransaction()}, the work done in a nested transaction is rolled back when its 
+	 * {@link #endTransaction(boolean)} is called passing {@code false} (ROLLBACK TO) while the outer transaction keeps its work. When it is 
+	 * called passing {@code true} its work is kept (RELEASE) and will be committed or rolled back by the outer transaction.
+	 * <p>
+	 * 
+	 * The savepoints are executed by the driver and some drivers can't roll them back alone (e.g. Android versions that intercept them).
+	 * Check {@link #supportsNestedTransactions()} before use them: when they aren't supported this method throws (without change
+	 * the current transaction) if it is called inside a transaction. The fallback is to run the batch in one transaction without
+	 * nested transactions and, if it fails, roll it back and run each row again in its own transaction, so only the bad rows fail.
+	 * <p>
+	 * 
+	 * <pre>
+	 * <b>Here is the idiom to skip bad rows in a large batch (when the nested transactions are supported):</b>
+	 * 
+	 * persistenceManager.startTransaction();
+	 * try {
+	 *     for (Object entity : entities) {
+	 *         boolean commitEntity = false;
+	 *         persistenceManager.startNestedTransaction();
+	 *         try {
+	 *             ...write the entity...
+	 *             commitEntity = true;
+	 *         } catch (RuntimeException e) {
+	 *             ...skip the bad entity...
+	 *         } finally {
+	 *             persistenceManager.endTransaction(commitEntity);
+	 *         }
+	 *     }
+	 *     commit = true;
+	 * } finally {
+	 *     persistenceManager.endTransaction(commit);
+	 * }
+	 * </pre>
+	 */
+	public void startNestedTransaction()
+    {
+		// fail before join the current transaction... the caller can still end it normally
+		if (isInTransaction() && !mReadOnly && !supportsNestedTransactions())
+			throw ExceptionUtils.newRuntimeException(getClass(), "Nested transactions aren't supported by the database driver (see supportsNestedTransactions()).");
+
+		startTransaction();
+		
+		// the outermost transaction (and read-only connections) doesn't need a savepoint
+		if (mTransactionFlag > 1 && !mReadOnly) {
+			try {
+				mDatabase.savepoint(getSavepointName(mTransactionFlag));
+			} catch (RuntimeException e) {
+				// the nested transaction was not started
+				endTransaction(false);
+				throw e;
+			}
+			mSavepointLevels.add(mTransactionFlag);
 		}
 	}
 
@@ -189,22 +513,79 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	 * End the current transaction and clear the cache.
 	 * 
 	 * @see {@link #startTransaction()} for notes about how to use this and when transactions are committed and rolled back.
+	 * @see {@link #startNestedTransaction()} for notes about nested transactions (savepoints).
+	 * @return {@code true} if the work done in the ended transaction was rolled back (outermost or nested transaction)
 	 */
-	public void endTransaction(boolean commit)
+	public boolean endTransaction(boolean commit)
     {
-		// decrements the flag and end the current transaction if flag == 0
-		mTransactionFlag--;
-		if (mTransactionFlag == 0) {
+		// only the thread that started the transaction can end it
+		if (!mTransactionLock.isHeldByCurrentThread())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The current thread has no transaction started.");
 
-			// confirma all data if marked to commit
-			if (commit)
-				mDatabase.setTransactionSuccessful();
+		boolean rolledBack = false;
+		try {
+			// nested transaction (savepoint)... release it or rollback its work
+			int lastSavepoint = mSavepointLevels.size() - 1;
+			if (lastSavepoint >= 0 && mSavepointLevels.get(lastSavepoint) == mTransactionFlag) {
+				mSavepointLevels.remove(lastSavepoint);
+				String savepointName = getSavepointName(mTransactionFlag);
+				if (!commit) {
+					mDatabase.rollbackToSavepoint(savepointName);
+					clearTransactionCache();
+					rolledBack = true;
+				}
+				mDatabase.releaseSavepoint(savepointName);
+			}
+		} finally {
+			try {
+				// decrements the flag and end the current transaction if flag == 0
+				mTransactionFlag--;
+				if (mTransactionFlag == 0 && mReadOnly) {
+					// read-only connection... only clear cache (the connection is kept open until release)
+					clearTransactionCache();
+				} else if (mTransactionFlag == 0) {
+					rolledBack = !commit;
 
-			// finally end the current transaction, clear cache and close the database
-			mDatabase.endTransaction();
-			clearTransactionCache();
-			close();
+					// confirma all data if marked to commit
+					if (commit)
+						mDatabase.setTransactionSuccessful();
+
+					// finally end the current transaction, clear cache and close the database
+					try {
+						mDatabase.endTransaction();
+					} finally {
+						clearTransactionCache();
+						close();
+					}
+				}
+			} finally {
+				// one unlock to each startTransaction... the lock is released to others threads only by the outermost transaction
+				mTransactionLock.unlock();
+			}
 		}
+		return rolledBack;
+	}
+
+	/**
+	 * @return {@code true} if the work done in a nested transaction ({@link #startNestedTransaction()}) can be rolled back while
+	 *         the outer transaction keeps its work. It is verified once by the driver (e.g. Android versions that intercept the
+	 *         savepoint rollback don't support them).
+	 */
+	public boolean supportsNestedTransactions()
+    {
+		return mDriver.isSavepointSupported();
+	}
+
+	/** @return {@code true} if the current thread has a transaction started. */
+	public boolean isInTransaction()
+    {
+		return mTransactionLock.isHeldByCurrentThread();
+	}
+
+	/** Return the savepoint name of the nested transaction level. */
+	private static String getSavepointName(int transactionLevel)
+    {
+		return "stout_savepoint_" + transactionLevel;
 	}
 
 	/** Clear all cached data in the current transaction. This is automatically called when the current transaction is ended. */
@@ -228,6 +609,17 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 		mTransactionCache.putEntity(entity);
 	}
 
+	/**
+	 * Remove all cached entities of entityClass (and its subclasses) from current transaction cache.
+	 * This must be called when their rows are changed without using the entities instances.
+	 * 
+	 * @param entityClass - entity class definition
+	 */
+	public void evictCachedEntities(Class<?> entityClass)
+    {
+		mTransactionCache.removeEntities(entityClass);
+	}
+
 	/**
 	 * Return the cached entity (instance of) identify by his primary key or null if he isn't.
 	 * 
@@ -252,44 +644,36 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	}
 
 	/* ********************************************************
-	 * INSERT / UPDATE / DELETE
+	 * COMPILED STATEMENTS
 	 **********************************************************/
 
 	/**
-	 * Exec the INSERT statement in SQLite database and return the new id generated.
-	 * 
-	 * @param table - table name to insert the row into
-	 * @param values - map containing the column values for the row. The keys should be the column names and values the column values
-	 * @return the entity Id of the newly inserted entity, or -1 if an error occurred
-	 */
-	public Long insert(String table, ContentValues values)
-    {
-		return mDatabase.insert(table, null, values);
-	}
-
-	/**
-	 * Exec the UPDATE statement in SQLite database and return the number of entities affected
-	 * 
-	 * @param table - table name to update in
-	 * @param values - map containing the column values for the row. The keys should be the column names and values the column values
-	 * @param whereClause - the custom where clause to be inserted in UPDATE statement
-	 * @return the number of entities affected
+	 * Return the compiled statement ({@link DatabaseStatement}) to the SQL param. The statement is compiled only in the first call
+	 * and reused (from {@link #mStatementCache}) while the database is open. Their bindings are cleared before return it.
+	 * <p>
+	 *
+	 * <b>WARNING.</b> The statement must not be closed by caller. It is closed when the database is closed.
+	 *
+	 * @param statement - the SQL statement to compile. It can contain "?" to be bound
 	 */
-	public int update(String table, ContentValues values, String whereClause)
+	public DatabaseStatement compileStatement(String statement)
     {
-		return mDatabase.update(table, values, whereClause, null);
+		DatabaseStatement result = mStatementCache.get(statement);
+		if (result == null) {
+			result = mDatabase.compileStatement(statement);
+			mStatementCache.put(statement, result);
+		} else {
+			result.clearBindings();
+		}
+		return result;
 	}
 
-	/**
-	 * Exec the DELETE statement in SQLite database and return the number of entities affected
-	 * 
-	 * @param table - table name to delete from
-	 * @param whereClause - the custom where clause to be inserted in DELETE statement
-	 * @return the number of entities affected
-	 */
-	public int delete(String table, String whereClause)
+	/** Close and remove all compiled statements from cache. */
+	private void clearStatementCache()
     {
-		return mDatabase.delete(table, whereClause, null);
+		for (DatabaseStatement statement : mStatementCache.values())
+			statement.close();
+		mStatementCache.clear();
 	}
 
 	/* ********************************************************
@@ -297,28 +681,40 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	 **********************************************************/
 
 	/**
-	 * Query the given table, returning a {@link Cursor} over the result set.
+	 * Query the given table, returning a {@link DatabaseCursor} over the result set.
 	 * 
 	 * @param table - table name to compile the quey against
 	 * @param columns - a list a wich columns to return
 	 * @param whereClause - a filter declaring which rows to return, formated as on SQL WHERE clause (excluding the WHERE itself). Passing null will returnt all rows for the given table.
 	 * @param orderBy - how to order the rows, formatted as an SQL ORDER BY clause (excluding the ORDER BY itself). Passing null will use the default sort order, which may be unordered.
-	 * @return A {@link Cursor} object, which is positioned before the first entry. Note that Cursors are not synchronized, see the documentation for more details.
+	 * @return A {@link DatabaseCursor} object, which is positioned before the first entry. Note that Cursors are not synchronized, see the documentation for more details.
 	 */
-	public Cursor query(String table, String[] columns, String whereClause, String orderBy)
+	public DatabaseCursor query(String table, String[] columns, String whereClause, String orderBy)
     {
-		return mDatabase.query(table, columns, whereClause, null, null, null, orderBy);
+		StringBuilder statement = new StringBuilder("SELECT ");
+		if (columns == null || columns.length == 0) {
+			statement.append('*');
+		} else {
+			for (int i = 0; i < columns.length; i++)
+				statement.append(i > 0 ? ", " : "").append(columns[i]);
+		}
+		statement.append(" FROM ").append(table);
+		if (whereClause != null && !whereClause.isEmpty())
+			statement.append(" WHERE ").append(whereClause);
+		if (orderBy != null && !orderBy.isEmpty())
+			statement.append(" ORDER BY ").append(orderBy);
+		return mDatabase.rawQuery(statement.toString());
 	}
 
 	/**
-	 * Runs the provided SQL and returns a {@link Cursor} over the result set.
+	 * Runs the provided SQL and returns a {@link DatabaseCursor} over the result set.
 	 * 
 	 * @param statement - the SQL query. The SQL string must not be ";" terminated
-	 * @return a {@link Cursor} object, which is positioned before the first entry. Note that Cursors are not synchronized, see the documentation for more details.
+	 * @return a {@link DatabaseCursor} object, which is positioned before the first entry. Note that Cursors are not synchronized, see the documentation for more details.
 	 */
-	public Cursor rawQuery(String statement)
+	public DatabaseCursor rawQuery(String statement)
     {
-		return mDatabase.rawQuery(statement, null);
+		return mDatabase.rawQuery(statement);
 	}
 
 	/**
@@ -326,7 +722,7 @@ public final class SQLiteDatabaseAdapter extends SQLiteOpenHelper
 	 * <p>
 	 * 
 	 * It has no means to return any data (such as the number of affected rows). 
-	 * Instead, you're encouraged to use insert(String, String, ContentValues), update(String, ContentValues, String, String[]), et al, when possible.
+	 * Instead, you're encouraged to use {@link #compileStatement(String)} when possible.
 	 * 
 	 * @param statement - the SQL statement to be executed. Multiple statements separated by semicolons are not supported.
 	 */
@@ -1,19 +1,21 @@
 package br.com.marsal.stout.orm.database;
 
-import android.content.ContentValues;
-import android.database.Cursor;
 
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
 import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.JoinTable;
+import br.com.marsal.stout.orm.entity.SingleTableSubclass;
 import br.com.marsal.stout.orm.enumeration.SQLiteDataType;
-import br.com.marsal.stout.orm.enumeration.PersistenceOperation;
 import br.com.marsal.stout.orm.exception.ExceptionUtils;
 import br.com.marsal.stout.orm.field.FieldDef;
 
@@ -45,6 +47,7 @@ public abstract class SQLiteHelper {
 		supportedTypes.add(java.util.Date.class);
 		supportedTypes.add(java.sql.Date.class);
 		supportedTypes.add(Calendar.class);
+		supportedTypes.add(byte[].class);
 	}
 
 	/** Used to map java types to SQLite types to be used on create table SQLite stetaments */
@@ -53,7 +56,7 @@ public abstract class SQLiteHelper {
 		//Boolean types will be stored as SQLite INTEGER datatype because the SQLite3 doesn't properly support boolean values.
 		javaSQLiteTypeMap.put(Boolean.class, SQLiteDataType.INTEGER);
 		javaSQLiteTypeMap.put(boolean.class, SQLiteDataType.INTEGER);
-		//Enum types will be stored as SQLite TEXT datatype for both EnumTypes (ORDINAL and STRING). This simplifies the model and gives more flexibility.
+		//Enum types mapped as STRING will be stored as SQLite TEXT datatype (the enum name). EnumField maps the ORDINAL enums as Integer, so they are stored as INTEGER.
 		javaSQLiteTypeMap.put(Enum.class, SQLiteDataType.TEXT);
 		javaSQLiteTypeMap.put(String.class, SQLiteDataType.TEXT);
 		javaSQLiteTypeMap.put(Integer.class, SQLiteDataType.INTEGER);
@@ -69,11 +72,21 @@ public abstract class SQLiteHelper {
 		javaSQLiteTypeMap.put(java.util.Date.class, SQLiteDataType.TEXT);
 		javaSQLiteTypeMap.put(java.sql.Date.class, SQLiteDataType.TEXT);
 		javaSQLiteTypeMap.put(Calendar.class, SQLiteDataType.TEXT);
+		javaSQLiteTypeMap.put(byte[].class, SQLiteDataType.BLOB);
 //		javaSQLiteTypeMap.put(Class.class, SQLiteDataType.TEXT);
 	}
 
 	/* Constants used to build all SQLite statements */
 	private final static String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %s (%s)";
+	private final static String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS %s_%s_idx ON %s (%s)";
+	private final static String INSERT = "INSERT INTO %s (%s) VALUES (%s)";
+	private final static String UPDATE = "UPDATE %s SET %s WHERE %s = ?";
+	private final static String SELECT_BY_KEY = "SELECT %s FROM %s WHERE %s = %s";
+	private final static String COUNT_BY_KEY = "SELECT COUNT(*) FROM %s WHERE %s = ?";
+	private final static String DELETE_BY_KEY = "DELETE FROM %s WHERE %s = ?";
+	private final static String BULK_UPDATE = "UPDATE %s SET %s";
+	private final static String BULK_DELETE = "DELETE FROM %s";
+	private final static String WHERE = " WHERE ";
 	private final static String AUTOINCREMENT = " AUTOINCREMENT";
 	private final static String PRIMARY_KEY = " PRIMARY KEY";
 	private final static String NOT_NULL = " NOT NULL";
@@ -101,10 +114,93 @@ public abstract class SQLiteHelper {
 		for (FieldDef field : entityDef.getFieldsToCreateTable())
 			columns.add(SQLiteHelper.buildColumnStatement(field));
 		
+		//single table entities has one more column to store the row entity class (discriminator)
+		if (entityDef.getDiscriminatorColumn() != null)
+			columns.add(entityDef.getDiscriminatorColumn() + " " + SQLiteDataType.TEXT + SQLiteHelper.NOT_NULL);
+		
 		//build the final CREATE TABLE statement
 		return String.format(SQLiteHelper.CREATE_TABLE, entityDef.getTableName(), StringUtils.join(columns, ','));
 	}
 
+	/**
+	 * Build the ALTER TABLE statement that adds the discriminator column to one single table hierarchy table created without it.
+	 * The existing rows receive the discriminator value of the entity param (the hierarchy superclass).
+	 */
+	public static String buildAddDiscriminatorColumnStatement(EntityDef entityDef) {
+		return "ALTER TABLE " + entityDef.getTableName() + " ADD COLUMN " + entityDef.getDiscriminatorColumn() + " " + SQLiteDataType.TEXT 
+				+ SQLiteHelper.NOT_NULL + " DEFAULT " + toSQLiteLiteral(entityDef.getDiscriminatorValue());
+	}
+
+	/** Build the CREATE INDEX statement to the column of table passed by params. */
+	public static String buildCreateIndexStatement(String tableName, String columnName) {
+		return String.format(SQLiteHelper.CREATE_INDEX, tableName, columnName, tableName, columnName);
+	}
+
+	/** Build the INSERT statement (with "?" to be bound) to all entity insertable fields (and discriminator column if exists). Fields are bound in {@link EntityDef#getFieldsToInsert()} order. */
+	public static String buildInsertStatement(EntityDef entityDef) {
+		//build the columns and their bind params
+		List<String> columns = new ArrayList<>();
+		List<String> params = new ArrayList<>();
+		for (FieldDef field : entityDef.getFieldsToInsert()) {
+			columns.add(field.getColumnName());
+			params.add("?");
+		}
+		if (entityDef.getDiscriminatorColumn() != null) {
+			columns.add(entityDef.getDiscriminatorColumn());
+			params.add("?");
+		}
+		
+		//build the final INSERT statement
+		return String.format(SQLiteHelper.INSERT, entityDef.getTableName(), StringUtils.join(columns, ','), StringUtils.join(params, ','));
+	}
+
+	/** Build the UPDATE statement (with "?" to be bound) to the fields param identifying the row by key field. The key value is the last bound param. */
+	public static String buildUpdateStatement(EntityDef entityDef, List<FieldDef> fields, FieldDef key) {
+		//build the "column = ?" list
+		List<String> columns = new ArrayList<>();
+		for (FieldDef field : fields)
+			columns.add(field.getColumnName() + " = ?");
+		
+		//build the final UPDATE statement
+		return String.format(SQLiteHelper.UPDATE, entityDef.getTableName(), StringUtils.join(columns, ','), key.getColumnName());
+	}
+
+	/** Build the statement to select the column of the row identify by the key field value (written as SQL literal). */
+	public static String buildSelectByKeyStatement(EntityDef entityDef, String column, FieldDef key, Object keyValue) {
+		return String.format(SQLiteHelper.SELECT_BY_KEY, column, entityDef.getTableName(), key.getColumnName(), toSQLiteLiteral(keyValue));
+	}
+
+	/** Build the statement to count the rows identify by key field (with "?" to be bound). */
+	public static String buildCountByKeyStatement(EntityDef entityDef, FieldDef key) {
+		return String.format(SQLiteHelper.COUNT_BY_KEY, entityDef.getTableName(), key.getColumnName());
+	}
+
+	/** Build the statement to delete the row identify by key field (with "?" to be bound). */
+	public static String buildDeleteByKeyStatement(EntityDef entityDef, FieldDef key) {
+		return String.format(SQLiteHelper.DELETE_BY_KEY, entityDef.getTableName(), key.getColumnName());
+	}
+
+	/** Build the UPDATE statement (with "?" to be bound) to the fields param and to all rows matching the where clause (excluding the WHERE itself). */
+	public static String buildBulkUpdateStatement(EntityDef entityDef, List<FieldDef> fields, String whereClause) {
+		//build the "column = ?" list
+		List<String> columns = new ArrayList<>();
+		for (FieldDef field : fields)
+			columns.add(field.getColumnName() + " = ?");
+		
+		//build the final UPDATE statement restricted to the entity rows
+		String statement = String.format(SQLiteHelper.BULK_UPDATE, entityDef.getTableName(), StringUtils.join(columns, ','));
+		whereClause = getDiscriminatorWhereClause(entityDef, whereClause);
+		return whereClause == null || whereClause.trim().isEmpty() ? statement : statement + SQLiteHelper.WHERE + whereClause;
+	}
+
+	/** Build the DELETE statement to all rows matching the where clause (excluding the WHERE itself). */
+	public static String buildBulkDeleteStatement(EntityDef entityDef, String whereClause) {
+		//build the final DELETE statement restricted to the entity rows
+		String statement = String.format(SQLiteHelper.BULK_DELETE, entityDef.getTableName());
+		whereClause = getDiscriminatorWhereClause(entityDef, whereClause);
+		return whereClause == null || whereClause.trim().isEmpty() ? statement : statement + SQLiteHelper.WHERE + whereClause;
+	}
+
 	/** Build the field statement used to create a column in a SQLite table. */
 	private static String buildColumnStatement(FieldDef field) {
 		//check if field has one valid mapped SQLite type... if not abort operation and throw a excetpion
@@ -137,13 +233,107 @@ public abstract class SQLiteHelper {
 		return statement;
 	}
 
+	/**
+	 * Build the QUERY statement used to load the target entities of a join table association owned by the entity identify by ownerPrimaryKeyValue param
+	 * (mapped SQLite value of the owner primary key, written as one SQL literal).
+	 */
+	public static String buildJoinTableQueryStatement(EntityDef targetEntityDef, JoinTable joinTable, Object ownerPrimaryKeyValue) {
+		//all target columns must be prefixed by target table alias ("t")
+		List<String> columns = new ArrayList<>();
+		for (String column : targetEntityDef.getColumnsToQuery())
+			columns.add("t." + column);
+
+		//build the final QUERY statement
+		String statement = String.format(SQLiteHelper.QUERY_JOIN_TABLE,
+				StringUtils.join(columns, ','),
+				targetEntityDef.getTableName(),
+				joinTable.getName(),
+				joinTable.getInverseJoinColumn(),
+				targetEntityDef.getPrimaryKey().getColumnName(),
+				joinTable.getJoinColumn(),
+				toSQLiteLiteral(ownerPrimaryKeyValue));
+
+		//single table subclasses must be filtered by their discriminator
+		if (targetEntityDef instanceof SingleTableSubclass)
+			statement += " WHERE t." + targetEntityDef.getDiscriminatorColumn() + " = '" + targetEntityDef.getDiscriminatorValue() + "'";
+		return statement;
+	}
+
 	/* ********************************************************
 	 * UTILS
 	 **********************************************************/
 
-	/** */
+	/** Return the WHERE clause of the primary key value (Java value). The value is converted by the field to its SQLite literal. */
 	public static String getPrimaryKeyWhereClause(FieldDef primaryKey, Object value) {
-		return " " + primaryKey.getColumnName() + " = " + value.toString();
+		return " " + primaryKey.getColumnName() + " = " + toSQLiteLiteral(primaryKey.toMappedValue(value));
+	}
+	
+	/** Return the SQL literal of the SQLite value: numbers as they are, BLOBs as X'hex' and all others as quoted text. */
+	static String toSQLiteLiteral(Object value) {
+		if (value == null)
+			return "NULL";
+		if (value instanceof Number)
+			return value.toString();
+		if (value instanceof Boolean)
+			return (Boolean) value ? "1" : "0";
+		if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			StringBuilder result = new StringBuilder(bytes.length * 2 + 3).append("X'");
+			for (byte b : bytes)
+				result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return result.append('\'').toString();
+		}
+		return "'" + value.toString().replace("'", "''") + "'";
+	}
+
+	/**
+	 * Return the where clause param restricted to the rows of entity class when it is a single table subclass (filter by discriminator column).
+	 * For all others entities the where clause param is returned without changes.
+	 */
+	public static String getDiscriminatorWhereClause(EntityDef entityDef, String whereClause) {
+		//only single table subclasses must be filtered... the superclass query returns all rows of hierarchy
+		if (!(entityDef instanceof SingleTableSubclass))
+			return whereClause;
+
+		String discriminatorClause = entityDef.getDiscriminatorColumn() + " = '" + entityDef.getDiscriminatorValue() + "'";
+		return whereClause == null || whereClause.trim().isEmpty() ? discriminatorClause : discriminatorClause + " AND (" + whereClause + ")";
+	}
+
+	/**
+	 * Convert the row id generated by SQLite to the primary key field type (INTEGER types only).
+	 * For all others primary key types {@code null} is returned because the row id is not the primary key.
+	 */
+	public static Object toPrimaryKeyValue(FieldDef primaryKey, long rowId) {
+		Class<?> type = primaryKey.getFieldType();
+		if (type.equals(Long.class) || type.equals(long.class))
+			return rowId;
+		else if (type.equals(Integer.class) || type.equals(int.class))
+			return (int) rowId;
+		else if (type.equals(Short.class) || type.equals(short.class))
+			return (short) rowId;
+		return null;
+	}
+
+	/**
+	 * Check if two SQLite values (mapped values or cursor values) represent the same stored value.<br>
+	 * Integer numbers are compared by their long values, others numbers by their double values, blobs by their content and all others 
+	 * values by their string representation. 
+	 */
+	public static boolean isSameValue(Object value1, Object value2) {
+		if (value1 == null || value2 == null)
+			return value1 == value2;
+		if (value1 instanceof byte[] && value2 instanceof byte[])
+			return Arrays.equals((byte[]) value1, (byte[]) value2);
+		if (isIntegerValue(value1) && isIntegerValue(value2))
+			return ((Number) value1).longValue() == ((Number) value2).longValue();
+		if (value1 instanceof Number && value2 instanceof Number)
+			return ((Number) value1).doubleValue() == ((Number) value2).doubleValue();
+		return value1.equals(value2) || value1.toString().equals(value2.toString());
+	}
+	
+	/** Check if value is a SQLite INTEGER value. */
+	private static boolean isIntegerValue(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short;
 	}
 
 	/** Only check if fieldType param is a valid field type supported by framework. */
@@ -164,36 +354,89 @@ public abstract class SQLiteHelper {
 		return javaSQLiteTypeMap.get(javaType);
 	}
 
-	/** Check the cursor column datatype and return its value into a Object result. */
-	public static Object getCursorColumnValue(Cursor cursor, int columnIndex) {
+	/**
+	 * Check the cursor column datatype and return its value into a Object result. INTEGER values are returned as {@code Integer} 
+	 * (or {@code Long} if they don't fit in it) and REAL values as {@code Double}, so they keep their full precision 
+	 * (e.g. dates stored as INTEGER or REAL). The field definitions convert them to the field type.
+	 */
+	public static Object getCursorColumnValue(DatabaseCursor cursor, int columnIndex) {
 		switch (cursor.getType(columnIndex)) {
-			case Cursor.FIELD_TYPE_INTEGER:
-				return cursor.getInt(columnIndex);
-			case Cursor.FIELD_TYPE_FLOAT:
-				return cursor.getFloat(columnIndex);
-			case Cursor.FIELD_TYPE_STRING:
+			case DatabaseCursor.FIELD_TYPE_INTEGER:
+				//if/else (not ?:)... the conditional operator would promote the Integer to Long
+				long value = cursor.getLong(columnIndex);
+				if (value == (int) value)
+					return Integer.valueOf((int) value);
+				return Long.valueOf(value);
+			case DatabaseCursor.FIELD_TYPE_FLOAT:
+				return cursor.getDouble(columnIndex);
+			case DatabaseCursor.FIELD_TYPE_STRING:
 				return cursor.getString(columnIndex);
-			case Cursor.FIELD_TYPE_BLOB:
+			case DatabaseCursor.FIELD_TYPE_BLOB:
 				return cursor.getBlob(columnIndex);
-			default: //Cursor.FIELD_TYPE_NULL:
+			default: //DatabaseCursor.FIELD_TYPE_NULL:
 				return null;
 		}
 	}
 
-	/** */
-	public static ContentValues getContentValues(Object entity, EntityDef definition, PersistenceOperation operation){
-		//for each field we get their converted value and put it into ContentValues. 
-		Object value;
-		ContentValues values = new ContentValues();
-		for (FieldDef field : definition.getFieldsByOperation(operation)) {
-			//get the mapped/converted field value and check if put it on values or put a "null" value.
-			value = field.getMappedFieldValue(entity);
-			if (value != null)
-				values.put(field.getColumnName(), value.toString());
+	/** Bind the mapped value (SQLite value) into the statement param identify by index param using the value datatype. */
+	public static void bindValue(DatabaseStatement statement, int index, Object value) {
+		if (value == null)
+			statement.bindNull(index);
+		else if (value instanceof Long || value instanceof Integer || value instanceof Short)
+			statement.bindLong(index, ((Number) value).longValue());
+		else if (value instanceof Double || value instanceof Float)
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		else if (value instanceof Boolean)
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		else if (value instanceof byte[])
+			statement.bindBlob(index, (byte[]) value);
+		else
+			statement.bindString(index, value.toString());
+	}
+
+	/** Bind all entity fields mapped values into the statement params starting at index param. Return the next param index to be bound. */
+	public static int bindFieldValues(DatabaseStatement statement, int index, Object entity, List<FieldDef> fields) {
+		for (FieldDef field : fields)
+			field.bindFieldValue(statement, index++, entity);
+		return index;
+	}
+
+
+	/**
+	 * Decode the Base64 text (RFC 4648, with or without padding) written by the data exports to BLOB values.
+	 * Line breaks and spaces are ignored (the Android Base64 isn't available to all drivers).
+	 */
+	public static byte[] decodeBase64(String text) {
+		byte[] result = new byte[text.length() * 3 / 4];
+		int length = 0;
+		int group = 0;
+		int bits = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int value;
+			if (c >= 'A' && c <= 'Z')
+				value = c - 'A';
+			else if (c >= 'a' && c <= 'z')
+				value = c - 'a' + 26;
+			else if (c >= '0' && c <= '9')
+				value = c - '0' + 52;
+			else if (c == '+' || c == '-')
+				value = 62;
+			else if (c == '/' || c == '_')
+				value = 63;
+			else if (c == '=' || Character.isWhitespace(c))
+				continue;
 			else
-				values.putNull(field.getColumnName());
+				throw ExceptionUtils.newRuntimeException(SQLiteHelper.class, "Invalid Base64 char '" + c + "'.");
+			
+			group = (group << 6) | value;
+			bits += 6;
+			if (bits >= 8) {
+				bits -= 8;
+				result[length++] = (byte) (group >> bits);
+			}
 		}
-		return values;
+		return length == result.length ? result : Arrays.copyOf(result, length);
 	}
 
 }
\ No newline at end of file
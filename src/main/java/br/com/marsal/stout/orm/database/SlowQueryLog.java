@@ -0,0 +1,276 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Bounded log (ring buffer) of the entity queries slower than a threshold.<p>
+ *
+ * Each slow query is logged with its SQL, bind args, durations and rows. The first time that one query shape (normalized SQL, see
+ * {@link PersistenceMetrics}) is logged its EXPLAIN QUERY PLAN is captured (in the same transaction) and kept to all next entries
+ * of the same shape, flagging full table scans and temporary B-trees (ORDER BY / GROUP BY / DISTINCT without index).
+ * When the buffer is full the oldest entry is replaced.
+ *
+ * <pre><b>Example</b><br>
+ *
+ * entityManager.enableSlowQueryLog(50, 100);
+ * ...
+ * for (SlowQueryLog.Entry entry : entityManager.getSlowQueryLog().getEntries()) {
+ *     if (entry.hasFullTableScan())
+ *         ...
+ * }</pre>
+ */
+public final class SlowQueryLog {
+
+	/* ********************************************************
+	 * ENTRY / QUERY PLAN
+	 **********************************************************/
+
+	/** EXPLAIN QUERY PLAN of one query shape. */
+	public static final class QueryPlan {
+
+		private final List<String> mDetails;
+		private final boolean mFullTableScan;
+		private final boolean mTempBTree;
+
+		QueryPlan(List<String> details) {
+			mDetails = Collections.unmodifiableList(details);
+			boolean fullTableScan = false;
+			boolean tempBTree = false;
+			for (String detail : details) {
+				//"SCAN TABLE city" (or "SCAN city" to SQLite 3.36+)... scans using an index are not full table scans
+				String upperDetail = detail.toUpperCase();
+				if (upperDetail.startsWith("SCAN ") && !upperDetail.contains(" INDEX "))
+					fullTableScan = true;
+				if (upperDetail.contains("TEMP B-TREE"))
+					tempBTree = true;
+			}
+			mFullTableScan = fullTableScan;
+			mTempBTree = tempBTree;
+		}
+
+		/** @return the "detail" column of each plan row. */
+		public List<String> getDetails() {
+			return mDetails;
+		}
+
+		/** @return {@code true} if one table is read without any index. */
+		public boolean hasFullTableScan() {
+			return mFullTableScan;
+		}
+
+		/** @return {@code true} if one temporary B-tree is built to sort or group the rows. */
+		public boolean hasTempBTree() {
+			return mTempBTree;
+		}
+
+		@Override
+		public String toString() {
+			return mDetails.toString();
+		}
+	}
+
+	/** One logged slow query. */
+	public static final class Entry {
+
+		private final long mTimeMillis;
+		private final String mSql;
+		private final Object[] mBindArgs;
+		private final Class<?> mEntityClass;
+		private final long mSqlNanos;
+		private final long mHydrationNanos;
+		private final int mRows;
+		private final QueryPlan mQueryPlan;
+
+		Entry(String sql, Object[] bindArgs, Class<?> entityClass, long sqlNanos, long hydrationNanos, int rows, QueryPlan queryPlan) {
+			mTimeMillis = System.currentTimeMillis();
+			mSql = sql;
+			mBindArgs = bindArgs != null ? bindArgs.clone() : new Object[0];
+			mEntityClass = entityClass;
+			mSqlNanos = sqlNanos;
+			mHydrationNanos = hydrationNanos;
+			mRows = rows;
+			mQueryPlan = queryPlan;
+		}
+
+		/** @return when the query was logged (milliseconds since epoch). */
+		public long getTimeMillis() {
+			return mTimeMillis;
+		}
+
+		public String getSql() {
+			return mSql;
+		}
+
+		/** @return the args bound to the query (empty when the values are inlined in the SQL). */
+		public Object[] getBindArgs() {
+			return mBindArgs.clone();
+		}
+
+		public Class<?> getEntityClass() {
+			return mEntityClass;
+		}
+
+		/** @return the total duration (SQL and hydration) in milliseconds. */
+		public long getDurationMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(mSqlNanos + mHydrationNanos);
+		}
+
+		public long getSqlNanos() {
+			return mSqlNanos;
+		}
+
+		public long getHydrationNanos() {
+			return mHydrationNanos;
+		}
+
+		/** @return the number of rows returned by the query. */
+		public int getRows() {
+			return mRows;
+		}
+
+		/** @return the query plan of the query shape or {@code null} if it couldn't be captured. */
+		public QueryPlan getQueryPlan() {
+			return mQueryPlan;
+		}
+
+		/** @return {@code true} if the query plan has one full table scan. */
+		public boolean hasFullTableScan() {
+			return mQueryPlan != null && mQueryPlan.hasFullTableScan();
+		}
+
+		/** @return {@code true} if the query plan builds one temporary B-tree. */
+		public boolean hasTempBTree() {
+			return mQueryPlan != null && mQueryPlan.hasTempBTree();
+		}
+
+		@Override
+		public String toString() {
+			return getDurationMillis() + "ms " + mRows + " rows" + (hasFullTableScan() ? " [FULL SCAN]" : "") + (hasTempBTree() ? " [TEMP B-TREE]" : "")
+					+ " " + mSql + (mBindArgs.length > 0 ? " " + Arrays.toString(mBindArgs) : "") + (mQueryPlan != null ? " plan=" + mQueryPlan : "");
+		}
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Max number of query shapes with captured plan (the plans are captured again when it is full). */
+	private static final int QUERY_PLAN_CACHE_SIZE = 256;
+
+	/** Queries slower than this (nanoseconds) are logged. */
+	private final long mThresholdNanos;
+
+	/** Ring buffer of the logged entries. */
+	private final Entry[] mEntries;
+
+	/** Index of the next entry written in {@link #mEntries}. */
+	private int mNext = 0;
+
+	/** Number of entries in {@link #mEntries}. */
+	private int mSize = 0;
+
+	/** Query plans identified by query shape (normalized SQL). */
+	private final Map<String, QueryPlan> mQueryPlans = new ConcurrentHashMap<String, QueryPlan>();
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/**
+	 * @param thresholdMillis - queries slower than this (SQL and hydration time) are logged
+	 * @param capacity - max number of entries kept (the oldest entry is replaced when it is full)
+	 */
+	SlowQueryLog(long thresholdMillis, int capacity) {
+		if (thresholdMillis < 0 || capacity < 1)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid slow query log params (thresholdMillis: " + thresholdMillis + ", capacity: " + capacity + ").");
+		mThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		mEntries = new Entry[capacity];
+	}
+
+	/* ********************************************************
+	 * LOG
+	 **********************************************************/
+
+	/** @return {@code true} if one query with this duration must be logged. */
+	boolean isSlow(long nanos) {
+		return nanos >= mThresholdNanos;
+	}
+
+	/**
+	 * Log the slow query. Its query plan is captured by the adapter connection if it wasn't captured to the query shape yet
+	 * (this must be called inside the query transaction).
+	 */
+	void log(SQLiteDatabaseAdapter adapter, String sql, Object[] bindArgs, Class<?> entityClass, long sqlNanos, long hydrationNanos, int rows) {
+		String shape = PersistenceMetrics.normalizeSql(sql);
+		QueryPlan queryPlan = mQueryPlans.get(shape);
+		if (queryPlan == null) {
+			queryPlan = explainQueryPlan(adapter, sql);
+			if (queryPlan != null) {
+				if (mQueryPlans.size() >= QUERY_PLAN_CACHE_SIZE)
+					mQueryPlans.clear();
+				mQueryPlans.put(shape, queryPlan);
+			}
+		}
+		add(new Entry(sql, bindArgs, entityClass, sqlNanos, hydrationNanos, rows, queryPlan));
+	}
+
+	/** Exec the EXPLAIN QUERY PLAN of the query. @return {@code null} if it fails (the query is logged without plan). */
+	private static QueryPlan explainQueryPlan(SQLiteDatabaseAdapter adapter, String sql) {
+		try {
+			//the "detail" column is the last one to all SQLite versions... the unbound parameters don't change the plan
+			List<String> details = new ArrayList<String>();
+			DatabaseCursor cursor = adapter.rawQuery("EXPLAIN QUERY PLAN " + sql);
+			try {
+				int detailIndex = cursor.getColumnCount() - 1;
+				while (cursor.moveToNext())
+					details.add(cursor.getString(detailIndex));
+			} finally {
+				cursor.close();
+			}
+			return new QueryPlan(details);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private synchronized void add(Entry entry) {
+		mEntries[mNext] = entry;
+		mNext = (mNext + 1) % mEntries.length;
+		mSize = Math.min(mSize + 1, mEntries.length);
+	}
+
+	/* ********************************************************
+	 * READ
+	 **********************************************************/
+
+	/** @return the queries threshold in milliseconds. */
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(mThresholdNanos);
+	}
+
+	/** @return the logged entries from the oldest to the newest. */
+	public synchronized List<Entry> getEntries() {
+		List<Entry> result = new ArrayList<Entry>(mSize);
+		for (int i = 0; i < mSize; i++)
+			result.add(mEntries[(mNext - mSize + i + mEntries.length) % mEntries.length]);
+		return result;
+	}
+
+	/** Remove all logged entries (the captured query plans are kept). */
+	public synchronized void clear() {
+		for (int i = 0; i < mEntries.length; i++)
+			mEntries[i] = null;
+		mNext = 0;
+		mSize = 0;
+	}
+
+}
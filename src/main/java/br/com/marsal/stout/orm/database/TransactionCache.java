@@ -1,5 +1,6 @@
 package br.com.marsal.stout.orm.database;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -46,7 +47,20 @@ public class TransactionCache {
 			entityCache.put(entityClass, entities);
 		}
 			
-		entities.put(primaryKeyValue, obj);
+		entities.put(toKey(primaryKeyValue), obj);
+	}
+	
+	/**
+	 * Remove all cached entities instances of entityClass param (including its subclasses instances).
+	 * 
+	 * @param entityClass - class of the entities
+	 */
+	public void removeEntities(Class<?> entityClass) {
+
+		for (Iterator<Class<?>> iterator = entityCache.keySet().iterator(); iterator.hasNext();) {
+			if (entityClass.isAssignableFrom(iterator.next()))
+				iterator.remove();
+		}
 	}
 	
 	/**
@@ -60,11 +74,18 @@ public class TransactionCache {
 		Object result = null;
 		Map<Object, Object> classEntities = entityCache.get(entityClass);
 		if (classEntities != null) 
-			result = classEntities.get(primaryKeyValue);
+			result = classEntities.get(toKey(primaryKeyValue));
 
 		return result;	
 	}
 	
+	/** Return the primary key value used as map key. All SQLite INTEGER values are keyed as {@link Long} (cursor values can be Integer or Long). */
+	private static Object toKey(Object primaryKeyValue) {
+		if (primaryKeyValue instanceof Integer || primaryKeyValue instanceof Short || primaryKeyValue instanceof Byte)
+			return ((Number) primaryKeyValue).longValue();
+		return primaryKeyValue;
+	}
+	
 	/**
 	 * Return the entity instance of entityClass param identify by field and value params
 	 * 
@@ -0,0 +1,247 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer of merged (UPDATE) entities.<p>
+ *
+ * Keeps only the latest merged instance of each entity identify by its class and primary key, so repeated merges of the same
+ * entity are coalesced into only one UPDATE. The buffered entities are written in only one transaction when the buffer is flushed:
+ * on schedule (every flush interval), before queries, at entity manager transaction boundaries and when it is stopped.<p>
+ *
+ * If one entity fails the whole batch is rolled back and each entity is written again in its own transaction. The entities rejected
+ * by the database are dropped and reported to the {@link WriteBehindListener}, so one bad entity doesn't fail all next flushes.
+ */
+final class WriteBehindBuffer {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Persistence manager used to write the buffered entities. */
+	private final PersistenceManager mPersistenceManager;
+
+	/** Latest merged instance of each buffered entity identify by its class and primary key (in merge order). */
+	private Map<Class<?>, Map<Object, Object>> mEntities = new LinkedHashMap<Class<?>, Map<Object, Object>>();
+
+	/** Entities taken from buffer by the current flush (they are still found by {@link #get(Class, Object)} until they are written). */
+	private Map<Class<?>, Map<Object, Object>> mFlushing = null;
+
+	/** Listener of the entities rejected by the database (or {@code null}). */
+	private final WriteBehindListener mListener;
+
+	/** Scheduler that flushes the buffer every flush interval. */
+	private final ScheduledExecutorService mScheduler;
+
+	/* ********************************************************
+	 * CONSTRUCTORS / STOP
+	 **********************************************************/
+
+	/** Create the buffer and schedule its flush every flushIntervalMillis milliseconds. */
+	WriteBehindBuffer(PersistenceManager persistenceManager, long flushIntervalMillis, WriteBehindListener listener) {
+		mPersistenceManager = persistenceManager;
+		mListener = listener;
+		mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, "Stout-write-behind");
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		mScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (RuntimeException e) {
+					//the database is busy (the rejected entities were dropped)... the entities are kept in buffer and written in the next flush
+				}
+			}
+		}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/** Stop the scheduled flush and write all buffered entities. */
+	void stop() {
+		mScheduler.shutdown();
+		flush();
+	}
+
+	/* ********************************************************
+	 * BUFFER
+	 **********************************************************/
+
+	/** Put (or replace) the entity identify by its class and primary key value. */
+	synchronized void put(Class<?> entityClass, Object primaryKeyValue, Object entity) {
+		primaryKeyValue = toKey(primaryKeyValue);
+		Map<Object, Object> entities = mEntities.get(entityClass);
+		if (entities == null) {
+			entities = new LinkedHashMap<Object, Object>();
+			mEntities.put(entityClass, entities);
+		}
+		entities.put(primaryKeyValue, entity);
+	}
+
+	/** Return the buffered entity identify by its class (or subclass) and primary key value or {@code null} if it isn't buffered. */
+	synchronized Object get(Class<?> entityClass, Object primaryKeyValue) {
+		primaryKeyValue = toKey(primaryKeyValue);
+		Object result = get(mEntities, entityClass, primaryKeyValue);
+		if (result == null && mFlushing != null)
+			result = get(mFlushing, entityClass, primaryKeyValue);
+		return result;
+	}
+
+	private static Object get(Map<Class<?>, Map<Object, Object>> buffer, Class<?> entityClass, Object primaryKeyValue) {
+		for (Map.Entry<Class<?>, Map<Object, Object>> entities : buffer.entrySet()) {
+			if (entityClass.isAssignableFrom(entities.getKey())) {
+				Object result = entities.getValue().get(primaryKeyValue);
+				if (result != null)
+					return result;
+			}
+		}
+		return null;
+	}
+
+	/** Remove the buffered entity identify by its class and primary key value (if it is buffered). */
+	synchronized void remove(Class<?> entityClass, Object primaryKeyValue) {
+		Map<Object, Object> entities = mEntities.get(entityClass);
+		if (entities != null)
+			entities.remove(toKey(primaryKeyValue));
+	}
+
+	/** Return the primary key value used as map key. All SQLite INTEGER values are keyed as {@link Long} (e.g. find(Tag.class, 1)). */
+	private static Object toKey(Object primaryKeyValue) {
+		if (primaryKeyValue instanceof Integer || primaryKeyValue instanceof Short || primaryKeyValue instanceof Byte)
+			return ((Number) primaryKeyValue).longValue();
+		return primaryKeyValue;
+	}
+
+	private synchronized boolean isEmpty() {
+		for (Map<Object, Object> entities : mEntities.values()) {
+			if (!entities.isEmpty())
+				return false;
+		}
+		return true;
+	}
+
+	/* ********************************************************
+	 * FLUSH
+	 **********************************************************/
+
+	/**
+	 * Write all buffered entities in only one transaction. If one entity fails the transaction is rolled back and each entity is written
+	 * again in its own transaction: the entities rejected by the database are dropped (and reported to the listener) and the entities that
+	 * fail by others errors (e.g. busy database) are kept in buffer (unless they were merged again) and the first error is thrown.
+	 */
+	void flush() {
+		//nothing to write
+		if (isEmpty())
+			return;
+
+		//the buffer is taken inside the transaction, so concurrent flushes and queries wait until the entities are written
+		Map<Class<?>, Map<Object, Object>> entities = null;
+		boolean written = false;
+		try {
+			boolean commit = false;
+			mPersistenceManager.startTransaction();
+			try {
+				synchronized (this) {
+					entities = mEntities;
+					mEntities = new LinkedHashMap<Class<?>, Map<Object, Object>>();
+					mFlushing = entities;
+				}
+				try {
+					for (Map<Object, Object> classEntities : entities.values()) {
+						for (Object entity : classEntities.values())
+							mPersistenceManager.writeUpdate(entity);
+					}
+					commit = true;
+				} catch (RuntimeException e) {
+					//the failed entity is found when each entity is written alone
+				}
+			} finally {
+				mPersistenceManager.endTransaction(commit);
+			}
+			written = true;
+
+			if (!commit)
+				writeEach(entities);
+		} finally {
+			synchronized (this) {
+				if (!written && entities != null)
+					restore(entities);
+				if (mFlushing == entities)
+					mFlushing = null;
+			}
+		}
+	}
+
+	/** Write each entity in its own transaction. The entities rejected by the database are dropped and the others failed entities are kept. */
+	private void writeEach(Map<Class<?>, Map<Object, Object>> entities) {
+		Map<Class<?>, Map<Object, Object>> notWritten = new LinkedHashMap<Class<?>, Map<Object, Object>>();
+		List<Object> rejected = new ArrayList<Object>();
+		List<RuntimeException> rejectedErrors = new ArrayList<RuntimeException>();
+		RuntimeException error = null;
+		for (Map.Entry<Class<?>, Map<Object, Object>> classEntities : entities.entrySet()) {
+			for (Map.Entry<Object, Object> entity : classEntities.getValue().entrySet()) {
+				try {
+					boolean commit = false;
+					mPersistenceManager.startTransaction();
+					try {
+						mPersistenceManager.writeUpdate(entity.getValue());
+						commit = true;
+					} finally {
+						mPersistenceManager.endTransaction(commit);
+					}
+				} catch (RuntimeException e) {
+					if (isRejected(e)) {
+						rejected.add(entity.getValue());
+						rejectedErrors.add(e);
+					} else {
+						Map<Object, Object> classNotWritten = notWritten.get(classEntities.getKey());
+						if (classNotWritten == null) {
+							classNotWritten = new LinkedHashMap<Object, Object>();
+							notWritten.put(classEntities.getKey(), classNotWritten);
+						}
+						classNotWritten.put(entity.getKey(), entity.getValue());
+						if (error == null)
+							error = e;
+					}
+				}
+			}
+		}
+		restore(notWritten);
+
+		//the listener is notified outside of transactions (the rejected entities aren't in buffer anymore)
+		if (mListener != null) {
+			for (int i = 0; i < rejected.size(); i++)
+				mListener.onWriteRejected(rejected.get(i), rejectedErrors.get(i));
+		}
+		if (error != null)
+			throw error;
+	}
+
+	/** @return {@code true} if the entity was rejected by the database (e.g. one constraint violation), so it would fail again if retried. */
+	private boolean isRejected(RuntimeException error) {
+		return mPersistenceManager.getDatabaseDriver().isDatabaseException(error) && !mPersistenceManager.isDatabaseBusyException(error);
+	}
+
+	/** Put back the entities not written. Entities merged again after the flush was started are kept. */
+	private synchronized void restore(Map<Class<?>, Map<Object, Object>> entities) {
+		for (Map.Entry<Class<?>, Map<Object, Object>> classEntities : entities.entrySet()) {
+			for (Map.Entry<Object, Object> entity : classEntities.getValue().entrySet()) {
+				Map<Object, Object> current = mEntities.get(classEntities.getKey());
+				if (current == null || !current.containsKey(entity.getKey()))
+					put(classEntities.getKey(), entity.getKey(), entity.getValue());
+			}
+		}
+	}
+
+}
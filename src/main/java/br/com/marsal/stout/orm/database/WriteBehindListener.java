@@ -0,0 +1,21 @@
+package br.com.marsal.stout.orm.database;
+
+/**
+ * Listener of the entities buffered by the write-behind mode that were rejected by the database.<p>
+ *
+ * It is registered by {@link PersistenceManager#enableWriteBehind(long, WriteBehindListener)}. When one buffered entity can't be written
+ * (e.g. one UNIQUE or CHECK violation) it is dropped from the buffer, so the others entities are written and the next flushes (and the
+ * queries that flush the buffer) don't fail again. The entities that fail because the database is busy (or by errors not thrown by the
+ * database) are kept in the buffer and the error is thrown to the flush caller.
+ */
+public interface WriteBehindListener {
+
+	/**
+	 * Called on the flushing thread (outside of transactions) after the entity was dropped from the buffer.
+	 *
+	 * @param entity - buffered instance that was not written
+	 * @param error - error thrown by the database when the entity was written alone
+	 */
+	void onWriteRejected(Object entity, RuntimeException error);
+
+}
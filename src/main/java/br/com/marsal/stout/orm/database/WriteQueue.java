@@ -0,0 +1,349 @@
+package br.com.marsal.stout.orm.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Queue of write operations (INSERT / UPDATE) drained by one writer thread using group commit.<p>
+ *
+ * The writer thread executes the enqueued operations in the order they were enqueued and commits them in only one transaction
+ * every {@code maxRows} operations or {@code maxDelayMillis} milliseconds after the first operation of the group, whichever comes first.
+ * So the cost of each commit (fsync) is shared by all operations of the group.<p>
+ *
+ * Each enqueued operation returns one {@link Future} that is done when its group is committed (or failed), so callers can wait
+ * for durability or just ignore it. If one operation fails only its future fails and the others operations of the group are committed:
+ * each operation is one nested transaction when the driver {@link PersistenceManager#supportsNestedTransactions() supports them},
+ * otherwise the group is executed without them and, if it fails, it is rolled back and each operation is executed again in its own transaction.
+ */
+public final class WriteQueue {
+
+	/* ********************************************************
+	 * INNER CLASS / TICKET
+	 **********************************************************/
+
+	/** Enqueued write operation. It is also the future returned to caller and it is done when the operation group is committed. */
+	private static final class Ticket implements Future<Void> {
+
+		/** Persistence manager of the queue (used to check the caller transaction before wait). */
+		private final PersistenceManager mPersistenceManager;
+
+		/** Entity to write. */
+		private final Object mEntity;
+
+		/** {@code true} to INSERT the entity and {@code false} to UPDATE it. */
+		private final boolean mInsert;
+
+		/** Released when the ticket is done. */
+		private final CountDownLatch mDone = new CountDownLatch(1);
+
+		/** Error of the operation (if any). */
+		private volatile Throwable mError = null;
+
+		Ticket(PersistenceManager persistenceManager, Object entity, boolean insert) {
+			mPersistenceManager = persistenceManager;
+			mEntity = entity;
+			mInsert = insert;
+		}
+
+		/** Mark the ticket as done with the error param (or {@code null} if succeeded). */
+		void done(Throwable error) {
+			mError = error;
+			mDone.countDown();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			//enqueued operations can't be cancelled
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return mDone.getCount() == 0;
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException {
+			checkCanWait();
+			mDone.await();
+			return getResult();
+		}
+
+		@Override
+		public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			checkCanWait();
+			if (!mDone.await(timeout, unit))
+				throw new TimeoutException();
+			return getResult();
+		}
+
+		/** The writer thread needs the transaction lock to commit the ticket... one thread that holds it would wait forever. */
+		private void checkCanWait() {
+			if (!isDone() && mPersistenceManager.isInTransaction())
+				throw ExceptionUtils.newRuntimeException(WriteQueue.class, "The enqueued operation can't be waited inside a transaction (the writer thread needs the transaction to commit it).");
+		}
+
+		private Void getResult() throws ExecutionException {
+			if (mError != null)
+				throw new ExecutionException(mError);
+			return null;
+		}
+	}
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Special ticket used to stop the writer thread after all previous enqueued operations. */
+	private static final Ticket STOP = new Ticket(null, null, false);
+
+	/** Persistence manager used to exec the operations. */
+	private final PersistenceManager mPersistenceManager;
+
+	/** Max number of operations committed in the same transaction. */
+	private final int mMaxRows;
+
+	/** Max time (nanoseconds) that one operation waits in the queue to be committed. */
+	private final long mMaxDelayNanos;
+
+	/** Enqueued operations waiting the writer thread. */
+	private final BlockingQueue<Ticket> mQueue = new LinkedBlockingQueue<Ticket>();
+
+	/** Writer thread that drains the queue. */
+	private final Thread mWriterThread;
+
+	/** Indicates that the queue is stopped and doesn't accept new operations. */
+	private boolean mStopped = false;
+
+	/* ********************************************************
+	 * CONSTRUCTORS / STOP
+	 **********************************************************/
+
+	/**
+	 * Create the queue and start its writer thread.
+	 *
+	 * @param maxRows - max number of operations committed in the same transaction
+	 * @param maxDelayMillis - max time that one operation waits in the queue to be committed
+	 */
+	WriteQueue(PersistenceManager persistenceManager, int maxRows, long maxDelayMillis) {
+		if (maxRows < 1 || maxDelayMillis < 0)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Invalid write queue params (maxRows: " + maxRows + ", maxDelayMillis: " + maxDelayMillis + ").");
+
+		mPersistenceManager = persistenceManager;
+		mMaxRows = maxRows;
+		mMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		mWriterThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "Stout-write-queue");
+		mWriterThread.setDaemon(true);
+		mWriterThread.start();
+	}
+
+	/**
+	 * Stop to accept new operations and wait the writer thread commit all enqueued operations. It can't be called inside a transaction
+	 * (the writer thread would wait the caller transaction and the caller would wait the writer thread).
+	 */
+	void stop() {
+		if (Thread.currentThread() != mWriterThread && mPersistenceManager.isInTransaction())
+			throw ExceptionUtils.newRuntimeException(getClass(), "The write queue can't be stopped inside a transaction (its enqueued operations need the transaction to be committed).");
+
+		synchronized (this) {
+			if (mStopped)
+				return;
+			mStopped = true;
+			mQueue.add(STOP);
+		}
+
+		//the writer thread can't wait itself
+		if (Thread.currentThread() == mWriterThread)
+			return;
+
+		boolean interrupted = false;
+		while (mWriterThread.isAlive()) {
+			try {
+				mWriterThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/* ********************************************************
+	 * ENQUEUE
+	 **********************************************************/
+
+	/** Enqueue the entity to be inserted. */
+	Future<Void> enqueueInsert(Object entity) {
+		return enqueue(new Ticket(mPersistenceManager, entity, true));
+	}
+
+	/** Enqueue the entity to be updated. */
+	Future<Void> enqueueUpdate(Object entity) {
+		return enqueue(new Ticket(mPersistenceManager, entity, false));
+	}
+
+	private synchronized Future<Void> enqueue(Ticket ticket) {
+		if (mStopped)
+			throw ExceptionUtils.newRuntimeException(getClass(), "The write queue is stopped.");
+		mQueue.add(ticket);
+		return ticket;
+	}
+
+	/* ********************************************************
+	 * WRITER THREAD
+	 **********************************************************/
+
+	/** Writer thread loop. Take the operations from queue and commit them in groups until stopped. */
+	private void drain() {
+		List<Ticket> group = new ArrayList<Ticket>(mMaxRows);
+		boolean stop = false;
+		while (!stop) {
+			//wait the first operation of the group
+			Ticket ticket = takeUninterruptibly();
+			if (ticket == STOP)
+				break;
+			group.add(ticket);
+
+			//wait the others operations until the group is full or the first operation waited the max delay
+			long deadline = System.nanoTime() + mMaxDelayNanos;
+			while (group.size() < mMaxRows) {
+				ticket = pollUninterruptibly(deadline - System.nanoTime());
+				if (ticket == null)
+					break;
+				if (ticket == STOP) {
+					stop = true;
+					break;
+				}
+				group.add(ticket);
+			}
+
+			commit(group);
+			group.clear();
+		}
+	}
+
+	/** Exec all operations of the group in only one transaction and mark their tickets as done. */
+	private void commit(List<Ticket> group) {
+		Throwable groupError = null;
+		boolean commit = false;
+		try {
+			//without nested transactions one failed operation rolls back the whole group... each operation is executed again alone
+			if (mPersistenceManager.supportsNestedTransactions())
+				commitNested(group);
+			else if (!commitGroup(group))
+				commitEach(group);
+			commit = true;
+		} catch (RuntimeException e) {
+			//the transaction couldn't be started or committed... all operations of the group are failed
+			groupError = e;
+		}
+
+		//notify all callers waiting the group
+		for (Ticket ticket : group)
+			ticket.done(ticket.mError != null ? ticket.mError : (commit ? null : groupError));
+	}
+
+	/** Exec each operation in one nested transaction... one failed operation is rolled back and only fails its ticket. */
+	private void commitNested(List<Ticket> group) {
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			for (Ticket ticket : group) {
+				boolean commitTicket = false;
+				mPersistenceManager.startNestedTransaction();
+				try {
+					write(ticket);
+					commitTicket = true;
+				} catch (RuntimeException e) {
+					ticket.mError = e;
+				} finally {
+					mPersistenceManager.endTransaction(commitTicket);
+				}
+			}
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+
+	/** Exec all operations in one transaction. @return {@code false} if one operation failed and the whole group was rolled back. */
+	private boolean commitGroup(List<Ticket> group) {
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			for (Ticket ticket : group)
+				write(ticket);
+			commit = true;
+		} catch (RuntimeException e) {
+			//the failed operation is found (and only its ticket fails) when each operation is executed alone
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+		return commit;
+	}
+
+	/** Exec each operation in its own transaction... one failed operation only fails its ticket. */
+	private void commitEach(List<Ticket> group) {
+		for (Ticket ticket : group) {
+			try {
+				boolean commitTicket = false;
+				mPersistenceManager.startTransaction();
+				try {
+					write(ticket);
+					commitTicket = true;
+				} finally {
+					mPersistenceManager.endTransaction(commitTicket);
+				}
+			} catch (RuntimeException e) {
+				ticket.mError = e;
+			}
+		}
+	}
+
+	private void write(Ticket ticket) {
+		if (ticket.mInsert)
+			mPersistenceManager.insert(ticket.mEntity);
+		else
+			mPersistenceManager.writeUpdate(ticket.mEntity);
+	}
+
+	private Ticket takeUninterruptibly() {
+		while (true) {
+			try {
+				return mQueue.take();
+			} catch (InterruptedException e) {
+				//the writer thread is only stopped by STOP ticket
+			}
+		}
+	}
+
+	private Ticket pollUninterruptibly(long timeoutNanos) {
+		while (true) {
+			try {
+				return timeoutNanos > 0 ? mQueue.poll(timeoutNanos, TimeUnit.NANOSECONDS) : mQueue.poll();
+			} catch (InterruptedException e) {
+				//the writer thread is only stopped by STOP ticket
+			}
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Connection of {@link AndroidDatabaseDriver}. It only delegates to the {@link SQLiteDatabase}.<p>
+ * 
+ * Android intercepts the statements by their first keyword: ROLLBACK ends the whole Android transaction and ATTACH disables WAL
+ * to all connections of the database. The savepoint rollback and the attached databases are executed with one leading comment
+ * (so they are plain SQL to Android) only after {@link #isPlainStatementSupported()} verifies that this Android version doesn't 
+ * intercept them anyway, otherwise they fail before change the database.
+ */
+final class AndroidDatabaseConnection implements DatabaseConnection {
+
+	/** Prefix of the statements that must be executed as plain SQL (not intercepted by Android). */
+	private static final String PLAIN_STATEMENT_PREFIX = "/* stout */ ";
+
+	/** Result of {@link #isPlainStatementSupported()} ({@code null} until it is verified). */
+	private static volatile Boolean sPlainStatementSupported = null;
+
+	private final SQLiteDatabase mDatabase;
+
+	AndroidDatabaseConnection(SQLiteDatabase database) {
+		mDatabase = database;
+	}
+
+	@Override
+	public String getPath() {
+		return mDatabase.getPath();
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return mDatabase.isReadOnly();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return mDatabase.isOpen();
+	}
+
+	@Override
+	public void close() {
+		mDatabase.close();
+	}
+
+	/* ********************************************************
+	 * CONFIGURATION
+	 **********************************************************/
+
+	@Override
+	public int getVersion() {
+		return mDatabase.getVersion();
+	}
+
+	@Override
+	public void setVersion(int version) {
+		mDatabase.setVersion(version);
+	}
+
+	@Override
+	public void setPragma(String name, String value) {
+		//WAL and foreign keys must be configured by Android API (Android keeps these settings to all connections of the database)
+		if (name.equals("journal_mode") && value.equalsIgnoreCase("WAL")) {
+			mDatabase.enableWriteAheadLogging();
+		} else if (name.equals("foreign_keys")) {
+			mDatabase.setForeignKeyConstraintsEnabled(value.equalsIgnoreCase("ON") || value.equalsIgnoreCase("TRUE") || value.equals("1"));
+		} else {
+			//others journal modes... Android WAL mode must be disabled before change it
+			if (name.equals("journal_mode"))
+				mDatabase.disableWriteAheadLogging();
+
+			//some PRAGMAs return one row (e.g. journal_mode)... so rawQuery is used to exec all of them
+			Cursor cursor = mDatabase.rawQuery("PRAGMA " + name + " = " + value, null);
+			try {
+				cursor.moveToFirst();
+			} finally {
+				cursor.close();
+			}
+		}
+	}
+
+	/* ********************************************************
+	 * TRANSACTION
+	 **********************************************************/
+
+	@Override
+	public void beginTransaction(TransactionMode mode) {
+		if (mode == TransactionMode.IMMEDIATE)
+			mDatabase.beginTransactionNonExclusive();
+		else
+			mDatabase.beginTransaction();
+	}
+
+	@Override
+	public void setTransactionSuccessful() {
+		mDatabase.setTransactionSuccessful();
+	}
+
+	@Override
+	public void endTransaction() {
+		mDatabase.endTransaction();
+	}
+
+	@Override
+	public void savepoint(String name) {
+		//the savepoint can't be rolled back later... it fails before the nested work is done
+		checkPlainStatementSupported("Nested transactions");
+		mDatabase.execSQL("SAVEPOINT " + name);
+	}
+
+	@Override
+	public void rollbackToSavepoint(String name) {
+		checkPlainStatementSupported("Nested transactions");
+		mDatabase.execSQL(PLAIN_STATEMENT_PREFIX + "ROLLBACK TO " + name);
+	}
+
+	@Override
+	public void releaseSavepoint(String name) {
+		mDatabase.execSQL("RELEASE " + name);
+	}
+
+	/* ********************************************************
+	 * ATTACHED DATABASES
+	 **********************************************************/
+
+	@Override
+	public void attachDatabase(String path, String schemaName) {
+		checkPlainStatementSupported("Attached databases");
+		mDatabase.execSQL(PLAIN_STATEMENT_PREFIX + "ATTACH DATABASE " + DatabaseUtils.sqlEscapeString(path) + " AS " + schemaName);
+	}
+
+	@Override
+	public void detachDatabase(String schemaName) {
+		checkPlainStatementSupported("Attached databases");
+		mDatabase.execSQL(PLAIN_STATEMENT_PREFIX + "DETACH DATABASE " + schemaName);
+	}
+
+	private void checkPlainStatementSupported(String feature) {
+		if (!isPlainStatementSupported())
+			throw ExceptionUtils.newRuntimeException(getClass(), feature + " aren't supported by this Android version (it intercepts the commented statements).");
+	}
+
+	/**
+	 * Verify (once by process) that this Android version executes the statements with one leading comment as plain SQL.
+	 * Android versions that skip the comments when they classify the statements end the whole transaction on the probe 
+	 * savepoint rollback. It runs on one in-memory database, so it doesn't depend on the Android classification internals.
+	 */
+	static boolean isPlainStatementSupported() {
+		Boolean result = sPlainStatementSupported;
+		if (result == null) {
+			result = probePlainStatement();
+			sPlainStatementSupported = result;
+		}
+		return result;
+	}
+
+	private static boolean probePlainStatement() {
+		SQLiteDatabase database = SQLiteDatabase.create(null);
+		try {
+			database.beginTransaction();
+			try {
+				database.execSQL("CREATE TABLE probe (value INTEGER)");
+				database.execSQL("SAVEPOINT probe");
+				database.execSQL("INSERT INTO probe VALUES (1)");
+				database.execSQL(PLAIN_STATEMENT_PREFIX + "ROLLBACK TO probe");
+
+				//the rollback was intercepted... the whole transaction was ended by Android
+				if (!database.inTransaction())
+					return false;
+				database.execSQL("RELEASE probe");
+				return DatabaseUtils.longForQuery(database, "SELECT count(*) FROM probe", null) == 0;
+			} finally {
+				if (database.inTransaction())
+					database.endTransaction();
+			}
+		} catch (RuntimeException e) {
+			return false;
+		} finally {
+			database.close();
+		}
+	}
+
+	/* ********************************************************
+	 * STATEMENTS
+	 **********************************************************/
+
+	@Override
+	public void execSQL(String statement) {
+		mDatabase.execSQL(statement);
+	}
+
+	@Override
+	public DatabaseCursor rawQuery(String statement) {
+		return new AndroidDatabaseCursor(mDatabase.rawQuery(statement, null));
+	}
+
+	@Override
+	public DatabaseStatement compileStatement(String statement) {
+		return new AndroidDatabaseStatement(mDatabase.compileStatement(statement));
+	}
+
+}
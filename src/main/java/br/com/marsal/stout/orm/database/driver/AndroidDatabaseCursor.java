@@ -0,0 +1,110 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import android.database.Cursor;
+
+/** Cursor of {@link AndroidDatabaseDriver}. It only delegates to the Android {@link Cursor} (e.g. to be used by Android adapters). */
+public final class AndroidDatabaseCursor implements DatabaseCursor {
+
+	private final Cursor mCursor;
+
+	AndroidDatabaseCursor(Cursor cursor) {
+		mCursor = cursor;
+	}
+
+	/** @return the Android cursor. */
+	public Cursor getCursor() {
+		return mCursor;
+	}
+
+	@Override
+	public int getCount() {
+		return mCursor.getCount();
+	}
+
+	@Override
+	public int getPosition() {
+		return mCursor.getPosition();
+	}
+
+	@Override
+	public boolean moveToFirst() {
+		return mCursor.moveToFirst();
+	}
+
+	@Override
+	public boolean moveToNext() {
+		return mCursor.moveToNext();
+	}
+
+	@Override
+	public boolean moveToPosition(int position) {
+		return mCursor.moveToPosition(position);
+	}
+
+	@Override
+	public boolean isAfterLast() {
+		return mCursor.isAfterLast();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return mCursor.getColumnCount();
+	}
+
+	@Override
+	public int getColumnIndex(String columnName) {
+		return mCursor.getColumnIndex(columnName);
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return mCursor.getColumnNames();
+	}
+
+	@Override
+	public int getType(int columnIndex) {
+		//the Android types have the same values of the FIELD_TYPE_* constants
+		return mCursor.getType(columnIndex);
+	}
+
+	@Override
+	public boolean isNull(int columnIndex) {
+		return mCursor.isNull(columnIndex);
+	}
+
+	@Override
+	public String getString(int columnIndex) {
+		return mCursor.getString(columnIndex);
+	}
+
+	@Override
+	public int getInt(int columnIndex) {
+		return mCursor.getInt(columnIndex);
+	}
+
+	@Override
+	public long getLong(int columnIndex) {
+		return mCursor.getLong(columnIndex);
+	}
+
+	@Override
+	public float getFloat(int columnIndex) {
+		return mCursor.getFloat(columnIndex);
+	}
+
+	@Override
+	public double getDouble(int columnIndex) {
+		return mCursor.getDouble(columnIndex);
+	}
+
+	@Override
+	public byte[] getBlob(int columnIndex) {
+		return mCursor.getBlob(columnIndex);
+	}
+
+	@Override
+	public void close() {
+		mCursor.close();
+	}
+
+}
@@ -0,0 +1,67 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabaseLockedException;
+import android.database.sqlite.SQLiteTableLockedException;
+
+import java.io.File;
+
+import br.com.marsal.stout.orm.database.DataBaseHelper;
+import br.com.marsal.stout.orm.database.PersistenceProperties;
+
+/**
+ * Driver of the Android SQLite API ({@link SQLiteDatabase}). This is the default driver. The databases are stored in the app
+ * databases folder and the prepackaged databases are installed from the app "assets" folder ({@link DataBaseHelper}).
+ */
+public final class AndroidDatabaseDriver implements DatabaseDriver {
+
+	/** Android context ({@link Context}) */
+	private final Context mContext;
+
+	public AndroidDatabaseDriver(Context context) {
+		mContext = context;
+	}
+
+	@Override
+	public String getDatabasePath(String databaseName) {
+		return mContext.getDatabasePath(databaseName).getAbsolutePath();
+	}
+
+	@Override
+	public void installDatabase(PersistenceProperties.PersistenceUnit pu, String databasePath) {
+		DataBaseHelper.installDatabase(mContext, pu, databasePath);
+	}
+
+	@Override
+	public DatabaseConnection open(String databasePath, int flags) {
+		//the databases folder doesn't exist until the first database is created
+		if ((flags & CREATE_IF_NECESSARY) != 0)
+			new File(databasePath).getParentFile().mkdirs();
+
+		//the flags have the same values of the SQLiteDatabase flags
+		return new AndroidDatabaseConnection(SQLiteDatabase.openDatabase(databasePath, null, flags));
+	}
+
+	@Override
+	public boolean isBusyException(Throwable exception) {
+		while (exception != null) {
+			if (exception instanceof SQLiteDatabaseLockedException || exception instanceof SQLiteTableLockedException)
+				return true;
+			exception = exception.getCause();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isDatabaseException(Throwable exception) {
+		return exception instanceof SQLException;
+	}
+
+	@Override
+	public boolean isSavepointSupported() {
+		return AndroidDatabaseConnection.isPlainStatementSupported();
+	}
+
+}
@@ -0,0 +1,74 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import android.database.sqlite.SQLiteStatement;
+
+/** Statement of {@link AndroidDatabaseDriver}. It only delegates to the {@link SQLiteStatement}. */
+final class AndroidDatabaseStatement implements DatabaseStatement {
+
+	private final SQLiteStatement mStatement;
+
+	AndroidDatabaseStatement(SQLiteStatement statement) {
+		mStatement = statement;
+	}
+
+	@Override
+	public void bindNull(int index) {
+		mStatement.bindNull(index);
+	}
+
+	@Override
+	public void bindLong(int index, long value) {
+		mStatement.bindLong(index, value);
+	}
+
+	@Override
+	public void bindDouble(int index, double value) {
+		mStatement.bindDouble(index, value);
+	}
+
+	@Override
+	public void bindString(int index, String value) {
+		mStatement.bindString(index, value);
+	}
+
+	@Override
+	public void bindBlob(int index, byte[] value) {
+		mStatement.bindBlob(index, value);
+	}
+
+	@Override
+	public void clearBindings() {
+		mStatement.clearBindings();
+	}
+
+	@Override
+	public void execute() {
+		mStatement.execute();
+	}
+
+	@Override
+	public long executeInsert() {
+		return mStatement.executeInsert();
+	}
+
+	@Override
+	public int executeUpdateDelete() {
+		return mStatement.executeUpdateDelete();
+	}
+
+	@Override
+	public long simpleQueryForLong() {
+		return mStatement.simpleQueryForLong();
+	}
+
+	@Override
+	public String simpleQueryForString() {
+		return mStatement.simpleQueryForString();
+	}
+
+	@Override
+	public void close() {
+		mStatement.close();
+	}
+
+}
@@ -0,0 +1,84 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
+
+/**
+ * One connection to the SQLite database opened by {@link DatabaseDriver#open(String, int)}. It is not thread safe,
+ * the persistence manager serializes its transactions.
+ */
+public interface DatabaseConnection {
+
+	/** @return the full path of the database file. */
+	String getPath();
+
+	/** @return {@code true} if the connection was opened to read only. */
+	boolean isReadOnly();
+
+	/** @return {@code true} while the connection is not closed. */
+	boolean isOpen();
+
+	/** Close the connection (and all statements compiled by it). */
+	void close();
+
+	/* ********************************************************
+	 * CONFIGURATION
+	 **********************************************************/
+
+	/** @return the database version (PRAGMA user_version). */
+	int getVersion();
+
+	/** Set the database version (PRAGMA user_version). */
+	void setVersion(int version);
+
+	/**
+	 * Set the SQLite PRAGMA. It must be called outside of transactions. The journal mode and the foreign keys are set by the
+	 * driver API when it has one (e.g. Android keeps them to all connections of the database).
+	 */
+	void setPragma(String name, String value);
+
+	/* ********************************************************
+	 * TRANSACTION
+	 **********************************************************/
+
+	/** Begin one transaction in the mode param. */
+	void beginTransaction(TransactionMode mode);
+
+	/** Mark the current transaction to be committed when it is ended. */
+	void setTransactionSuccessful();
+
+	/** End the current transaction. It is committed if it was marked by {@link #setTransactionSuccessful()}, otherwise it is rolled back. */
+	void endTransaction();
+
+	/** Begin one savepoint (SAVEPOINT) inside the current transaction (or one DEFERRED transaction if there isn't a current transaction). */
+	void savepoint(String name);
+
+	/** Roll back the work done after the savepoint (ROLLBACK TO). The savepoint is kept until it is released. */
+	void rollbackToSavepoint(String name);
+
+	/** Release the savepoint (RELEASE). Its work is kept in the current transaction (or committed if the savepoint began it). */
+	void releaseSavepoint(String name);
+
+	/* ********************************************************
+	 * ATTACHED DATABASES
+	 **********************************************************/
+
+	/** Attach the database file to this connection as the schema name param (ATTACH DATABASE). */
+	void attachDatabase(String path, String schemaName);
+
+	/** Detach the database attached as the schema name param (DETACH DATABASE). */
+	void detachDatabase(String schemaName);
+
+	/* ********************************************************
+	 * STATEMENTS
+	 **********************************************************/
+
+	/** Execute a single SQL statement that doesn't return rows. */
+	void execSQL(String statement);
+
+	/** Execute the query and return one cursor positioned before the first row. */
+	DatabaseCursor rawQuery(String statement);
+
+	/** Compile the statement (it can contain "?" to be bound) to be executed many times. It must be closed by caller. */
+	DatabaseStatement compileStatement(String statement);
+
+}
@@ -0,0 +1,57 @@
+package br.com.marsal.stout.orm.database.driver;
+
+/**
+ * Rows returned by one query ({@link DatabaseConnection#rawQuery(String)}). It is positioned before the first row and the columns
+ * are identify by their index (starting at 0). The methods are the same of the Android {@code Cursor}.
+ */
+public interface DatabaseCursor {
+
+	/** Column types returned by {@link #getType(int)}. */
+	int FIELD_TYPE_NULL = 0;
+	int FIELD_TYPE_INTEGER = 1;
+	int FIELD_TYPE_FLOAT = 2;
+	int FIELD_TYPE_STRING = 3;
+	int FIELD_TYPE_BLOB = 4;
+
+	/** @return the number of rows (the query is executed until its last row). */
+	int getCount();
+
+	/** @return the current row index (-1 before the first row). */
+	int getPosition();
+
+	boolean moveToFirst();
+
+	boolean moveToNext();
+
+	/** Move to the row. @return {@code false} if the row doesn't exist. */
+	boolean moveToPosition(int position);
+
+	boolean isAfterLast();
+
+	int getColumnCount();
+
+	/** @return the column index or -1 if the column doesn't exist. */
+	int getColumnIndex(String columnName);
+
+	String[] getColumnNames();
+
+	/** @return the type of the column value in the current row (one of FIELD_TYPE_* constants). */
+	int getType(int columnIndex);
+
+	boolean isNull(int columnIndex);
+
+	String getString(int columnIndex);
+
+	int getInt(int columnIndex);
+
+	long getLong(int columnIndex);
+
+	float getFloat(int columnIndex);
+
+	double getDouble(int columnIndex);
+
+	byte[] getBlob(int columnIndex);
+
+	void close();
+
+}
@@ -0,0 +1,62 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import br.com.marsal.stout.orm.database.PersistenceProperties;
+
+/**
+ * SQLite driver used by the persistence manager. It opens the database connections ({@link DatabaseConnection}) and knows
+ * where the database files are and how the driver reports its errors.<p>
+ *
+ * {@link AndroidDatabaseDriver} (the Android SQLite API) is the default driver. {@link JdbcDatabaseDriver} (sqlite-jdbc) runs
+ * the same entities on a plain JVM (e.g. desktop apps, servers, tests and benchmarks).
+ */
+public interface DatabaseDriver {
+
+	/** Open the database to read and write. */
+	int OPEN_READWRITE = 0x00000000;
+
+	/** Open the database to read only. */
+	int OPEN_READONLY = 0x00000001;
+
+	/** Create the database file if it doesn't exist (it must be combined with {@link #OPEN_READWRITE}). */
+	int CREATE_IF_NECESSARY = 0x10000000;
+
+	/** Open the database in WAL journal mode. */
+	int ENABLE_WRITE_AHEAD_LOGGING = 0x20000000;
+
+	/**
+	 * Return the full path of the database file.
+	 *
+	 * @param databaseName - database file name (e.g. "app.db")
+	 */
+	String getDatabasePath(String databaseName);
+
+	/**
+	 * Install the prepackaged database of the persistence unit (if it defines one) into databasePath when needed.
+	 * It is called before the first connection to the database is opened.
+	 */
+	void installDatabase(PersistenceProperties.PersistenceUnit pu, String databasePath);
+
+	/**
+	 * Open one new connection to the database.
+	 *
+	 * @param databasePath - full path of the database file
+	 * @param flags - {@link #OPEN_READWRITE} or {@link #OPEN_READONLY} combined with {@link #CREATE_IF_NECESSARY} and {@link #ENABLE_WRITE_AHEAD_LOGGING}
+	 */
+	DatabaseConnection open(String databasePath, int flags);
+
+	/**
+	 * Check if the exception (or any of its causes) was thrown because the database is busy or locked by others connections or
+	 * processes (SQLITE_BUSY / SQLITE_LOCKED). The operation can succeed if it is retried later.
+	 */
+	boolean isBusyException(Throwable exception);
+
+	/** Check if the exception was thrown by the database (e.g. one constraint violation or one invalid statement). */
+	boolean isDatabaseException(Throwable exception);
+
+	/**
+	 * Check if the savepoints ({@link DatabaseConnection#savepoint(String)}) can be rolled back alone while the outer transaction keeps
+	 * its work. When they can't the savepoint methods of the connections throw before change the database.
+	 */
+	boolean isSavepointSupported();
+
+}
@@ -0,0 +1,23 @@
+package br.com.marsal.stout.orm.database.driver;
+
+/**
+ * Error reported by the database to one driver that doesn't have its own runtime exceptions (e.g. {@link JdbcDatabaseDriver}).
+ * The Android driver throws the Android SQLite exceptions.
+ */
+public class DatabaseException extends RuntimeException {
+	private static final long serialVersionUID = -3905146917268170722L;
+
+	/** SQLite result code (e.g. 5 to SQLITE_BUSY) or 0 if unknown. */
+	private final int mErrorCode;
+
+	public DatabaseException(String message, int errorCode, Throwable cause) {
+		super(message, cause);
+		mErrorCode = errorCode;
+	}
+
+	/** @return the SQLite result code (the extended result codes have the primary result code in the least significant byte) or 0 if unknown. */
+	public int getErrorCode() {
+		return mErrorCode;
+	}
+
+}
@@ -0,0 +1,39 @@
+package br.com.marsal.stout.orm.database.driver;
+
+/**
+ * One compiled statement ({@link DatabaseConnection#compileStatement(String)}). The params are bound by their index (starting at 1)
+ * and they are kept between executions until {@link #clearBindings()}.
+ */
+public interface DatabaseStatement {
+
+	void bindNull(int index);
+
+	void bindLong(int index, long value);
+
+	void bindDouble(int index, double value);
+
+	void bindString(int index, String value);
+
+	void bindBlob(int index, byte[] value);
+
+	/** Bind NULL to all params. */
+	void clearBindings();
+
+	/** Execute the statement that doesn't return rows. */
+	void execute();
+
+	/** Execute the INSERT statement. @return the rowid of the inserted row or -1 if it wasn't inserted. */
+	long executeInsert();
+
+	/** Execute the UPDATE or DELETE statement. @return the number of rows changed. */
+	int executeUpdateDelete();
+
+	/** Execute the query that returns one row with one numeric column. @return its value. */
+	long simpleQueryForLong();
+
+	/** Execute the query that returns one row with one text column. @return its value. */
+	String simpleQueryForString();
+
+	void close();
+
+}
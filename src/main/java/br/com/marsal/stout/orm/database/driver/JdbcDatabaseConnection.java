@@ -0,0 +1,198 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
+
+/**
+ * Connection of {@link JdbcDatabaseDriver}. The connection is kept in auto-commit mode and the transactions are began and ended
+ * by SQL (BEGIN / COMMIT / ROLLBACK), so the savepoints work the same as in the Android driver.
+ */
+final class JdbcDatabaseConnection implements DatabaseConnection {
+
+	private final Connection mConnection;
+	private final String mPath;
+	private final boolean mReadOnly;
+
+	/** Indicates that the current transaction was marked to be committed. */
+	private boolean mTransactionSuccessful = false;
+
+	/** Query of the last inserted rowid (used by the INSERT statements). It is compiled in the first insert. */
+	private PreparedStatement mLastInsertRowid = null;
+
+	JdbcDatabaseConnection(Connection connection, String path, boolean readOnly) {
+		mConnection = connection;
+		mPath = path;
+		mReadOnly = readOnly;
+	}
+
+	@Override
+	public String getPath() {
+		return mPath;
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return mReadOnly;
+	}
+
+	@Override
+	public boolean isOpen() {
+		try {
+			return !mConnection.isClosed();
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			//closing the connection closes all its statements
+			mConnection.close();
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	/* ********************************************************
+	 * CONFIGURATION
+	 **********************************************************/
+
+	@Override
+	public int getVersion() {
+		DatabaseStatement statement = compileStatement("PRAGMA user_version");
+		try {
+			return (int) statement.simpleQueryForLong();
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	public void setVersion(int version) {
+		execSQL("PRAGMA user_version = " + version);
+	}
+
+	@Override
+	public void setPragma(String name, String value) {
+		execSQL("PRAGMA " + name + " = " + value);
+	}
+
+	/* ********************************************************
+	 * TRANSACTION
+	 **********************************************************/
+
+	@Override
+	public void beginTransaction(TransactionMode mode) {
+		execSQL(mode == TransactionMode.IMMEDIATE ? "BEGIN IMMEDIATE" : "BEGIN EXCLUSIVE");
+		mTransactionSuccessful = false;
+	}
+
+	@Override
+	public void setTransactionSuccessful() {
+		mTransactionSuccessful = true;
+	}
+
+	@Override
+	public void endTransaction() {
+		boolean commit = mTransactionSuccessful;
+		mTransactionSuccessful = false;
+		execSQL(commit ? "COMMIT" : "ROLLBACK");
+	}
+
+	@Override
+	public void savepoint(String name) {
+		execSQL("SAVEPOINT " + name);
+	}
+
+	@Override
+	public void rollbackToSavepoint(String name) {
+		execSQL("ROLLBACK TO " + name);
+	}
+
+	@Override
+	public void releaseSavepoint(String name) {
+		execSQL("RELEASE " + name);
+	}
+
+	/* ********************************************************
+	 * ATTACHED DATABASES
+	 **********************************************************/
+
+	@Override
+	public void attachDatabase(String path, String schemaName) {
+		execSQL("ATTACH DATABASE '" + path.replace("'", "''") + "' AS " + schemaName);
+	}
+
+	@Override
+	public void detachDatabase(String schemaName) {
+		execSQL("DETACH DATABASE " + schemaName);
+	}
+
+	/* ********************************************************
+	 * STATEMENTS
+	 **********************************************************/
+
+	@Override
+	public void execSQL(String statement) {
+		try {
+			Statement jdbcStatement = mConnection.createStatement();
+			try {
+				//some statements return rows (e.g. PRAGMA journal_mode)... they are ignored
+				jdbcStatement.execute(statement);
+			} finally {
+				jdbcStatement.close();
+			}
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public DatabaseCursor rawQuery(String statement) {
+		try {
+			PreparedStatement jdbcStatement = mConnection.prepareStatement(statement);
+			try {
+				return new JdbcDatabaseCursor(jdbcStatement, jdbcStatement.executeQuery());
+			} catch (SQLException e) {
+				jdbcStatement.close();
+				throw e;
+			}
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public DatabaseStatement compileStatement(String statement) {
+		try {
+			return new JdbcDatabaseStatement(this, statement, prepareStatement(statement));
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	/** Prepare the JDBC statement (used by the statements prepared again after one failed execution). */
+	PreparedStatement prepareStatement(String statement) throws SQLException {
+		return mConnection.prepareStatement(statement);
+	}
+
+	/** @return the rowid of the last row inserted by this connection. */
+	long getLastInsertRowid() throws SQLException {
+		if (mLastInsertRowid == null)
+			mLastInsertRowid = mConnection.prepareStatement("SELECT last_insert_rowid()");
+		ResultSet resultSet = mLastInsertRowid.executeQuery();
+		try {
+			resultSet.next();
+			return resultSet.getLong(1);
+		} finally {
+			resultSet.close();
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import java.nio.charset.Charset;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor of {@link JdbcDatabaseDriver}. The JDBC result set is forward only, so the rows are read on demand and only the current row
+ * is kept in memory while the cursor moves forward. The rows are buffered (from the current row on) only when they are counted, and
+ * moving back to one row that isn't buffered re-runs the query (like the Android cursor window) and buffers the rows from then on.
+ * The result set is closed as soon as the last row is read.<p>
+ *
+ * The values are read by their SQLite storage class and they are converted like SQLite does when they are read as other types.
+ */
+final class JdbcDatabaseCursor implements DatabaseCursor {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private PreparedStatement mStatement;
+	private ResultSet mResultSet;
+	private final String[] mColumnNames;
+
+	/** Rows kept in memory: only the last row read or, when {@link #mBuffered}, all rows read from {@link #mFirstRow} on. */
+	private final List<Object[]> mRows = new ArrayList<Object[]>();
+
+	/** Index of the first row of {@link #mRows}. */
+	private int mFirstRow = 0;
+
+	/** Number of rows read from the result set until now. */
+	private int mReadRows = 0;
+
+	/** Indicates that the rows read are kept in {@link #mRows} (to count them or move back). */
+	private boolean mBuffered = false;
+
+	/** Current row index (-1 before the first row). */
+	private int mPosition = -1;
+
+	/** Current row values ({@code null} if the cursor isn't in one row). */
+	private Object[] mRow = null;
+
+	JdbcDatabaseCursor(PreparedStatement statement, ResultSet resultSet) throws SQLException {
+		mStatement = statement;
+		mResultSet = resultSet;
+		ResultSetMetaData metaData = resultSet.getMetaData();
+		mColumnNames = new String[metaData.getColumnCount()];
+		for (int i = 0; i < mColumnNames.length; i++)
+			mColumnNames[i] = metaData.getColumnLabel(i + 1);
+	}
+
+	/* ********************************************************
+	 * ROWS
+	 **********************************************************/
+
+	/** Read the rows from the result set until the row param. @return {@code false} if the row doesn't exist. */
+	private boolean fetch(int position) {
+		try {
+			//the row was already discarded... the query must be re-run
+			if (position < mFirstRow)
+				requery();
+
+			while (mReadRows <= position && mResultSet != null) {
+				if (mResultSet.next()) {
+					Object[] row = new Object[mColumnNames.length];
+					for (int i = 0; i < row.length; i++)
+						row[i] = mResultSet.getObject(i + 1);
+
+					//not buffered... only the last row read is kept
+					if (!mBuffered) {
+						mRows.clear();
+						mFirstRow = mReadRows;
+					}
+					mRows.add(row);
+					mReadRows++;
+				} else {
+					closeResultSet();
+				}
+			}
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+		return position < mReadRows;
+	}
+
+	/** Re-run the query from the first row. The rows are buffered from now on (the cursor is being moved back and forth). */
+	private void requery() throws SQLException {
+		if (mStatement == null)
+			throw new IllegalStateException("The cursor is closed.");
+		closeResultSet();
+		mResultSet = mStatement.executeQuery();
+		mRows.clear();
+		mFirstRow = 0;
+		mReadRows = 0;
+		mBuffered = true;
+	}
+
+	@Override
+	public int getCount() {
+		//the rows from the current row on are kept while they are counted
+		mBuffered = true;
+		fetch(Integer.MAX_VALUE);
+		return mReadRows;
+	}
+
+	@Override
+	public int getPosition() {
+		return mPosition;
+	}
+
+	@Override
+	public boolean moveToFirst() {
+		return moveToPosition(0);
+	}
+
+	@Override
+	public boolean moveToNext() {
+		return moveToPosition(mPosition + 1);
+	}
+
+	@Override
+	public boolean moveToPosition(int position) {
+		if (position < 0) {
+			mPosition = -1;
+			mRow = null;
+			return false;
+		}
+		if (!fetch(position)) {
+			mPosition = mReadRows;
+			mRow = null;
+			return false;
+		}
+		mPosition = position;
+		mRow = mRows.get(position - mFirstRow);
+		return true;
+	}
+
+	@Override
+	public boolean isAfterLast() {
+		return !fetch(Math.max(mPosition, 0));
+	}
+
+	/* ********************************************************
+	 * COLUMNS
+	 **********************************************************/
+
+	@Override
+	public int getColumnCount() {
+		return mColumnNames.length;
+	}
+
+	@Override
+	public int getColumnIndex(String columnName) {
+		for (int i = 0; i < mColumnNames.length; i++) {
+			if (mColumnNames[i].equalsIgnoreCase(columnName))
+				return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return mColumnNames.clone();
+	}
+
+	/* ********************************************************
+	 * VALUES
+	 **********************************************************/
+
+	private Object getValue(int columnIndex) {
+		if (mRow == null)
+			throw new IllegalStateException("The cursor isn't positioned in one row (position " + mPosition + ").");
+		return mRow[columnIndex];
+	}
+
+	@Override
+	public int getType(int columnIndex) {
+		Object value = getValue(columnIndex);
+		if (value == null)
+			return FIELD_TYPE_NULL;
+		if (value instanceof Integer || value instanceof Long)
+			return FIELD_TYPE_INTEGER;
+		if (value instanceof Number)
+			return FIELD_TYPE_FLOAT;
+		if (value instanceof byte[])
+			return FIELD_TYPE_BLOB;
+		return FIELD_TYPE_STRING;
+	}
+
+	@Override
+	public boolean isNull(int columnIndex) {
+		return getValue(columnIndex) == null;
+	}
+
+	@Override
+	public String getString(int columnIndex) {
+		Object value = getValue(columnIndex);
+		if (value instanceof byte[])
+			return new String((byte[]) value, UTF_8);
+		return value != null ? value.toString() : null;
+	}
+
+	@Override
+	public int getInt(int columnIndex) {
+		return (int) getLong(columnIndex);
+	}
+
+	@Override
+	public long getLong(int columnIndex) {
+		Object value = getValue(columnIndex);
+		if (value instanceof Integer || value instanceof Long)
+			return ((Number) value).longValue();
+		return (long) getDouble(columnIndex);
+	}
+
+	@Override
+	public float getFloat(int columnIndex) {
+		return (float) getDouble(columnIndex);
+	}
+
+	@Override
+	public double getDouble(int columnIndex) {
+		Object value = getValue(columnIndex);
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		if (value == null || value instanceof byte[])
+			return 0;
+
+		//text values are converted by their longest numeric prefix (SQLite returns 0 to non numeric texts)
+		String text = value.toString().trim();
+		for (int end = text.length(); end > 0; end--) {
+			try {
+				return Double.parseDouble(text.substring(0, end));
+			} catch (NumberFormatException e) {
+				//try a shorter prefix
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public byte[] getBlob(int columnIndex) {
+		Object value = getValue(columnIndex);
+		if (value == null || value instanceof byte[])
+			return (byte[]) value;
+		return value.toString().getBytes(UTF_8);
+	}
+
+	/* ********************************************************
+	 * CLOSE
+	 **********************************************************/
+
+	private void closeResultSet() throws SQLException {
+		if (mResultSet != null) {
+			try {
+				mResultSet.close();
+			} finally {
+				mResultSet = null;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			try {
+				closeResultSet();
+			} finally {
+				//the statement is kept until the cursor is closed (to re-run the query)
+				if (mStatement != null) {
+					mStatement.close();
+					mStatement = null;
+				}
+			}
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		} finally {
+			mRows.clear();
+			mRow = null;
+		}
+	}
+
+}
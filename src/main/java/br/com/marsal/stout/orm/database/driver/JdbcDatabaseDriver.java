@@ -0,0 +1,110 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import br.com.marsal.stout.orm.database.PersistenceProperties;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Driver of the JDBC API backed by sqlite-jdbc ({@code org.xerial:sqlite-jdbc}, it must be in the classpath). It runs the entities
+ * on a plain JVM without the Android SQLite API (e.g. desktop apps, servers, tests and benchmarks).<p>
+ *
+ * The databases are stored in the directory passed to the constructor. Prepackaged databases (asset databases) are not supported.
+ *
+ * <pre><b>Example</b><br>
+ *
+ * EntityManager.init(new JdbcDatabaseDriver(new File("data")), new FileInputStream("persistence.xml"));
+ * EntityManager entityManager = EntityManager.getInstance("unit");</pre>
+ */
+public final class JdbcDatabaseDriver implements DatabaseDriver {
+
+	/** sqlite-jdbc URL prefix. */
+	private static final String URL_PREFIX = "jdbc:sqlite:";
+
+	/** sqlite-jdbc open mode flags (SQLITE_OPEN_*). */
+	private static final int SQLITE_OPEN_READONLY = 0x00000001;
+	private static final int SQLITE_OPEN_READWRITE = 0x00000002;
+	private static final int SQLITE_OPEN_CREATE = 0x00000004;
+
+	/** SQLite result codes of busy and locked databases. */
+	private static final int SQLITE_BUSY = 5;
+	private static final int SQLITE_LOCKED = 6;
+
+	/** Directory of the database files. */
+	private final File mDirectory;
+
+	/** @param directory - directory of the database files (it is created when the first database is created) */
+	public JdbcDatabaseDriver(File directory) {
+		mDirectory = directory;
+	}
+
+	@Override
+	public String getDatabasePath(String databaseName) {
+		return new File(mDirectory, databaseName).getAbsolutePath();
+	}
+
+	@Override
+	public void installDatabase(PersistenceProperties.PersistenceUnit pu, String databasePath) {
+		if (pu.getAssetDatabase() != null)
+			throw ExceptionUtils.newRuntimeException(getClass(), "Prepackaged databases (\"" + pu.getAssetDatabase() + "\") are only supported by the Android driver.");
+	}
+
+	@Override
+	public DatabaseConnection open(String databasePath, int flags) {
+		boolean readOnly = (flags & OPEN_READONLY) != 0;
+		int openMode = readOnly ? SQLITE_OPEN_READONLY : SQLITE_OPEN_READWRITE;
+		if (!readOnly && (flags & CREATE_IF_NECESSARY) != 0) {
+			openMode |= SQLITE_OPEN_CREATE;
+			new File(databasePath).getParentFile().mkdirs();
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("open_mode", String.valueOf(openMode));
+		if ((flags & ENABLE_WRITE_AHEAD_LOGGING) != 0)
+			properties.setProperty("journal_mode", "WAL");
+		try {
+			Connection connection = DriverManager.getConnection(URL_PREFIX + databasePath, properties);
+			return new JdbcDatabaseConnection(connection, databasePath, readOnly);
+		} catch (SQLException e) {
+			throw newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public boolean isBusyException(Throwable exception) {
+		while (exception != null) {
+			int errorCode = -1;
+			if (exception instanceof DatabaseException)
+				errorCode = ((DatabaseException) exception).getErrorCode();
+			else if (exception instanceof SQLException)
+				errorCode = ((SQLException) exception).getErrorCode();
+			
+			//the extended result codes (e.g. SQLITE_BUSY_SNAPSHOT) have the primary result code in the least significant byte
+			if ((errorCode & 0xFF) == SQLITE_BUSY || (errorCode & 0xFF) == SQLITE_LOCKED)
+				return true;
+			exception = exception.getCause();
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isDatabaseException(Throwable exception) {
+		return exception instanceof DatabaseException;
+	}
+
+	@Override
+	public boolean isSavepointSupported() {
+		//the savepoints are plain SQL to sqlite-jdbc
+		return true;
+	}
+
+	/** Wrap the JDBC exception into one runtime exception. */
+	static DatabaseException newDatabaseException(SQLException exception) {
+		return new DatabaseException(exception.getMessage(), exception.getErrorCode(), exception);
+	}
+
+}
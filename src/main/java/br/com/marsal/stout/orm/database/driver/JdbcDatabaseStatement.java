@@ -0,0 +1,181 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Statement of {@link JdbcDatabaseDriver}. It delegates to one JDBC {@link PreparedStatement}.<p>
+ *
+ * sqlite-jdbc finalizes the prepared statement when its execution fails (e.g. one constraint violation), so it is prepared again
+ * before the next use (the same of Android, where the compiled statements can be executed again after one failure). Its bound
+ * values are lost, so they must be bound again.
+ */
+final class JdbcDatabaseStatement implements DatabaseStatement {
+
+	private final JdbcDatabaseConnection mConnection;
+	private final String mSql;
+	private PreparedStatement mStatement;
+
+	/** Indicates that the last execution failed and the prepared statement must be prepared again. */
+	private boolean mFailed = false;
+
+	JdbcDatabaseStatement(JdbcDatabaseConnection connection, String sql, PreparedStatement statement) {
+		mConnection = connection;
+		mSql = sql;
+		mStatement = statement;
+	}
+
+	/** @return the prepared statement (prepared again if the last execution failed). */
+	private PreparedStatement getStatement() throws SQLException {
+		if (mFailed) {
+			mFailed = false;
+			try {
+				mStatement.close();
+			} catch (SQLException e) {
+				//it was already finalized by the failed execution
+			}
+			mStatement = mConnection.prepareStatement(mSql);
+		}
+		return mStatement;
+	}
+
+	@Override
+	public void bindNull(int index) {
+		try {
+			getStatement().setNull(index, Types.NULL);
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void bindLong(int index, long value) {
+		try {
+			getStatement().setLong(index, value);
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void bindDouble(int index, double value) {
+		try {
+			getStatement().setDouble(index, value);
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void bindString(int index, String value) {
+		try {
+			getStatement().setString(index, value);
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void bindBlob(int index, byte[] value) {
+		try {
+			getStatement().setBytes(index, value);
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void clearBindings() {
+		try {
+			getStatement().clearParameters();
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+	@Override
+	public void execute() {
+		try {
+			getStatement().execute();
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public long executeInsert() {
+		try {
+			//the same of Android... -1 if no row was inserted (e.g. INSERT OR IGNORE)
+			if (getStatement().executeUpdate() == 0)
+				return -1;
+			return mConnection.getLastInsertRowid();
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public int executeUpdateDelete() {
+		try {
+			return getStatement().executeUpdate();
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public long simpleQueryForLong() {
+		try {
+			ResultSet resultSet = executeSimpleQuery();
+			try {
+				return resultSet.getLong(1);
+			} finally {
+				resultSet.close();
+			}
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public String simpleQueryForString() {
+		try {
+			ResultSet resultSet = executeSimpleQuery();
+			try {
+				return resultSet.getString(1);
+			} finally {
+				resultSet.close();
+			}
+		} catch (SQLException e) {
+			throw failed(e);
+		}
+	}
+
+	/** Execute the query and move to its first row. The query must return one row (the same of Android). */
+	private ResultSet executeSimpleQuery() throws SQLException {
+		ResultSet resultSet = getStatement().executeQuery();
+		if (!resultSet.next()) {
+			resultSet.close();
+			throw new SQLException("The query returned no rows.");
+		}
+		return resultSet;
+	}
+
+	/** Mark the statement to be prepared again and wrap the exception of the failed execution. */
+	private DatabaseException failed(SQLException exception) {
+		mFailed = true;
+		return JdbcDatabaseDriver.newDatabaseException(exception);
+	}
+
+	@Override
+	public void close() {
+		try {
+			mStatement.close();
+		} catch (SQLException e) {
+			throw JdbcDatabaseDriver.newDatabaseException(e);
+		}
+	}
+
+}
@@ -0,0 +1,363 @@
+package br.com.marsal.stout.orm.entity;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade to one {@link EntityManager}.<p>
+ *
+ * All write operations (persist, merge, remove, save and batch writes) are serialized on a single writer thread, so they are
+ * executed in the same order they are called. Read operations (find and queries) are serialized on a single reader thread, so 
+ * they don't wait in the writer queue. Each operation returns a {@link Future} and optionally notifies one {@link Callback} on 
+ * the callback executor chosen by caller (e.g. one executor that posts to the Android main thread).<p>
+ *
+ * The database connection is shared by the entity manager and each operation holds its transaction lock from start to end, so the
+ * reader and the writer take turns over it: the work is done out of the caller thread (UI thread), but no operation runs in parallel
+ * with another one (more reader threads would only wait the same lock).
+ *
+ * <pre><b>Example</b><br>
+ *
+ * AsyncEntityManager asyncEntityManager = new AsyncEntityManager(EntityManager.getInstance("unit"), mainThreadExecutor);
+ * asyncEntityManager.find(Tag.class, 1L, new AsyncEntityManager.Callback&lt;Tag&gt;() {
+ *     public void onSuccess(Tag result) { ...update UI... }
+ *     public void onError(Throwable error) { ...show error... }
+ * });</pre>
+ */
+public final class AsyncEntityManager
+{
+	/* *********************************************************************************************
+	 * CALLBACK
+	 * *********************************************************************************************/
+
+	/** Receive the result of one asynchronous operation. It is called on the callback executor. */
+	public interface Callback<T>
+	{
+		/** Called when the operation is completed successfully. */
+		void onSuccess(T result);
+
+		/** Called when the operation throws one exception. */
+		void onError(Throwable error);
+	}
+
+	/* *********************************************************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 * *********************************************************************************************/
+
+	/** Executor used when caller doesn't choose one. The callback is called on the thread that executed the operation. */
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/** Entity manager used to exec all operations. */
+	private final EntityManager mEntityManager;
+
+	/** Single thread executor where all write operations are serialized. */
+	private final ExecutorService mWriterExecutor;
+
+	/** Single thread executor where all read operations are serialized. */
+	private final ExecutorService mReaderExecutor;
+
+	/** Executor where the callbacks are called. */
+	private final Executor mCallbackExecutor;
+
+	/* *********************************************************************************************
+	 * CONSTRUCTORS / SHUTDOWN
+	 * *********************************************************************************************/
+
+	/** Create one asynchronous facade that calls the callbacks on the worker threads. */
+	public AsyncEntityManager(EntityManager entityManager)
+    {
+		this(entityManager, null);
+	}
+
+	/**
+	 * Create one asynchronous facade to the entity manager.
+	 *
+	 * @param entityManager - entity manager used to exec all operations
+	 * @param callbackExecutor - executor where the callbacks are called. Passing null they are called on the worker threads
+	 */
+	public AsyncEntityManager(EntityManager entityManager, Executor callbackExecutor)
+    {
+		mEntityManager = entityManager;
+		mWriterExecutor = Executors.newSingleThreadExecutor(new WorkerThreadFactory("Stout-writer"));
+		mReaderExecutor = Executors.newSingleThreadExecutor(new WorkerThreadFactory("Stout-reader"));
+		mCallbackExecutor = callbackExecutor != null ? callbackExecutor : DIRECT_EXECUTOR;
+	}
+
+	/** Stop to accept new operations. The operations already submitted are executed. */
+	public void shutdown()
+    {
+		mWriterExecutor.shutdown();
+		mReaderExecutor.shutdown();
+	}
+
+	/* *********************************************************************************************
+	 * PERSIST(INSERT) / MERGE(UPDATE) / REMOVE(DELETE) / SAVE(UPSERT)
+	 * *********************************************************************************************/
+
+	/** Asynchronous {@link EntityManager#persist(Object)}. */
+	public Future<Void> persist(final Object entity, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				mEntityManager.persist(entity);
+				return null;
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#merge(Object)}. */
+	public Future<Void> merge(final Object entity, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				mEntityManager.merge(entity);
+				return null;
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#remove(Object)}. */
+	public Future<Void> remove(final Object entity, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				mEntityManager.remove(entity);
+				return null;
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#save(Object)}. The result is the entity primary key value. */
+	public Future<Object> save(final Object entity, Callback<Object> callback)
+    {
+		return submitWrite(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return mEntityManager.save(entity);
+			}
+		}, callback);
+	}
+
+	/* *********************************************************************************************
+	 * BATCH WRITES
+	 * *********************************************************************************************/
+
+	/** Persist all entities instances in only one transaction. If any one fails none of them is persisted. */
+	public Future<Void> persistAll(final List<?> entities, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				boolean commit = false;
+				mEntityManager.startTransaction();
+				try {
+					for (Object entity : entities)
+						mEntityManager.persist(entity);
+					commit = true;
+				} finally {
+					mEntityManager.endTransaction(commit);
+				}
+				return null;
+			}
+		}, callback);
+	}
+
+	/** Merge all entities instances in only one transaction. If any one fails none of them is merged. */
+	public Future<Void> mergeAll(final List<?> entities, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				boolean commit = false;
+				mEntityManager.startTransaction();
+				try {
+					for (Object entity : entities)
+						mEntityManager.merge(entity);
+					commit = true;
+				} finally {
+					mEntityManager.endTransaction(commit);
+				}
+				return null;
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#saveAll(List)}. */
+	public Future<Void> saveAll(final List<?> entities, Callback<Void> callback)
+    {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				mEntityManager.saveAll(entities);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Exec the work param on the writer thread. Use this to run several operations in only one transaction
+	 * (calling {@link EntityManager#startTransaction()} and {@link EntityManager#endTransaction(boolean)} inside it).
+	 */
+	public <T> Future<T> write(Callable<T> work, Callback<T> callback)
+    {
+		return submitWrite(work, callback);
+	}
+
+	/* *********************************************************************************************
+	 * FIND / QUERY
+	 * *********************************************************************************************/
+
+	/** Asynchronous {@link EntityManager#find(Class, Object)}. */
+	public <T> Future<T> find(final Class<T> entityClass, final Object primaryKeyValue, Callback<T> callback)
+    {
+		return submitRead(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return mEntityManager.find(entityClass, primaryKeyValue);
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#findAll(Class)}. */
+	public <T> Future<List<T>> findAll(final Class<T> entityClass, Callback<List<T>> callback)
+    {
+		return submitRead(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return mEntityManager.findAll(entityClass);
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#queryWithSingleResult(Class, String)}. */
+	public <T> Future<T> queryWithSingleResult(final Class<T> entityClass, final String whereClause, Callback<T> callback)
+    {
+		return submitRead(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return mEntityManager.queryWithSingleResult(entityClass, whereClause);
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#queryWithResultList(Class, String)}. */
+	public <T> Future<List<T>> queryWithResultList(final Class<T> entityClass, final String whereClause, Callback<List<T>> callback)
+    {
+		return submitRead(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return mEntityManager.queryWithResultList(entityClass, whereClause);
+			}
+		}, callback);
+	}
+
+	/** Asynchronous {@link EntityManager#rawQueryWithResultList(Class, String)}. */
+	public <T> Future<List<T>> rawQueryWithResultList(final Class<T> entityClass, final String statement, Callback<List<T>> callback)
+    {
+		return submitRead(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return mEntityManager.rawQueryWithResultList(entityClass, statement);
+			}
+		}, callback);
+	}
+
+	/* *********************************************************************************************
+	 * SUBMIT
+	 * *********************************************************************************************/
+
+	/** Submit the write operation to the writer thread. */
+	private <T> Future<T> submitWrite(Callable<T> operation, Callback<T> callback)
+    {
+		CallbackTask<T> task = new CallbackTask<T>(operation, callback, mCallbackExecutor);
+		mWriterExecutor.execute(task);
+		return task;
+	}
+
+	/** Submit the read operation to the reader thread. */
+	private <T> Future<T> submitRead(Callable<T> operation, Callback<T> callback)
+    {
+		CallbackTask<T> task = new CallbackTask<T>(operation, callback, mCallbackExecutor);
+		mReaderExecutor.execute(task);
+		return task;
+	}
+
+	/* *********************************************************************************************
+	 * INNER CLASSES
+	 * *********************************************************************************************/
+
+	/** Future task that notifies the callback (if any) on the callback executor when the operation is done. */
+	private static final class CallbackTask<T> extends FutureTask<T>
+	{
+		private final Callback<T> mCallback;
+		private final Executor mCallbackExecutor;
+
+		CallbackTask(Callable<T> operation, Callback<T> callback, Executor callbackExecutor)
+	    {
+			super(operation);
+			mCallback = callback;
+			mCallbackExecutor = callbackExecutor;
+		}
+
+		@Override
+		protected void done()
+	    {
+			//cancelled operations are not notified
+			if (mCallback == null || isCancelled())
+				return;
+
+			mCallbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					T result;
+					try {
+						result = get();
+					} catch (ExecutionException e) {
+						mCallback.onError(e.getCause());
+						return;
+					} catch (InterruptedException e) {
+						mCallback.onError(e);
+						return;
+					}
+					mCallback.onSuccess(result);
+				}
+			});
+		}
+	}
+
+	/** Create the named daemon worker threads. */
+	private static final class WorkerThreadFactory implements ThreadFactory
+	{
+		private final String mName;
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		WorkerThreadFactory(String name)
+	    {
+			mName = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable)
+	    {
+			Thread result = new Thread(runnable, mName + "-" + mCount.incrementAndGet());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+
+}
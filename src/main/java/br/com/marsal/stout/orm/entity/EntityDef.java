@@ -4,11 +4,14 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import br.com.marsal.stout.orm.annotation.Entity;
 import br.com.marsal.stout.orm.annotation.GetJoinTables;
+import br.com.marsal.stout.orm.annotation.InheritanceSingleTable;
 import br.com.marsal.stout.orm.annotation.MappedSuperclass;
 import br.com.marsal.stout.orm.annotation.Transient;
 import br.com.marsal.stout.orm.database.SQLiteHelper;
@@ -18,6 +21,7 @@ import br.com.marsal.stout.orm.exception.ExceptionUtils;
 import br.com.marsal.stout.orm.field.FieldDef;
 import br.com.marsal.stout.orm.field.FieldDefFactory;
 import br.com.marsal.stout.orm.field.FieldDefList;
+import br.com.marsal.stout.orm.field.ManyToManyField;
 
 /**
  * This class represents the definition of the persistence entity mapped by <b>Stout Persistence Framework</b>.<p>
@@ -50,6 +54,16 @@ public class EntityDef {
 	public final Map<String, JoinTable> getJoinTables() {return joinTables;}
 	public final String getCreateJoinTableStatement(String jointTableName) {return joinTables.get(jointTableName).getCreateTableStatement();}
 	
+	/** 
+	 * Name of the discriminator column used by single table inheritance ({@link InheritanceSingleTable}).<br>
+	 * This is {@code null} for entities that are not stored in a single table hierarchy.
+	 */
+	protected String discriminatorColumn = null;
+	public final String getDiscriminatorColumn() {return discriminatorColumn;}
+	
+	/** Value stored in the {@link #discriminatorColumn} to identify rows of {@link #entityClass}. This is the entity class simple name. */
+	public final String getDiscriminatorValue() {return entityClass.getSimpleName();}
+	
 	/* ENTITY FIELD LISTS */
 	
 	/** Field list containing all {@link #entityClass} fields. This list is used only internally. */
@@ -74,6 +88,16 @@ public class EntityDef {
 	protected final List<FieldDef> fieldsToQuery = new ArrayList<FieldDef>();
 	public final List<FieldDef> getFieldsToQuery() {return fieldsToQuery;}
 	
+	/** This is a subset of {@link #fields} containing only {@link #entityClass} association fields ({@link ManyToManyField}) loaded from join tables. */
+	protected final List<ManyToManyField> associationFields = new ArrayList<ManyToManyField>();
+	public final List<ManyToManyField> getAssociationFields() {return associationFields;}
+	
+	/** Index of each {@link #getFieldsToMerge()} field in {@link #getFieldsToHydrate()} list (or -1). Used to build the entity snapshot from the hydrated values. */
+	private int[] mergeFieldsHydrateIndexes = null;
+	
+	/** UPDATE statements already built identify by the set of {@link #getFieldsToMerge()} indexes updated. */
+	private final Map<BitSet, String> updateStatements = new HashMap<BitSet, String>();
+	
 	/* CREATE STATEMENTS */
 	
 	/**	*/
@@ -86,6 +110,11 @@ public class EntityDef {
 		return createTableStatement;
 	}
 	
+	/** Return the statement used to create the {@link #discriminatorColumn} index or {@code null} if this entity has no discriminator. */
+	public final String getCreateDiscriminatorIndexStatement() {
+		return discriminatorColumn != null ? SQLiteHelper.buildCreateIndexStatement(tableName, discriminatorColumn) : null;
+	}
+	
 	/* ********************************************************
 	 * CONSTRUCTORS
 	 **********************************************************/
@@ -100,7 +129,7 @@ public class EntityDef {
 		
 		//extract the entity infos from @Entity annotation		
 		Entity entity = entityClass.getAnnotation(Entity.class);
-		tableName = entity.tableName() != "" ? entity.tableName() : entityClass.getSimpleName();
+		tableName = !entity.tableName().isEmpty() ? entity.tableName() : entityClass.getSimpleName();
 	}
 	
 	/* ********************************************************
@@ -191,6 +220,7 @@ public class EntityDef {
 		 fieldsToQuery.clear();
 		 fieldsToInsert.clear();
 		 fieldsToUpdate.clear();
+		 associationFields.clear();
 		
 		 // fill specifics field lists using some field properties
 		 for (FieldDef field : fields) {
@@ -210,6 +240,10 @@ public class EntityDef {
 			 //fields to "query"
 			 if (field.isPersistent())
 				 fieldsToQuery.add(field);
+			 
+			 //association fields (loaded from join tables)
+			 if (field instanceof ManyToManyField)
+				 associationFields.add((ManyToManyField) field);
 		 }
 	 }
 	
@@ -226,18 +260,73 @@ public class EntityDef {
 		 }
 		 return result;
 	 }
-			
-	 /** Return the String array with all entity columns names to be used in QUERY operations. */
+
+	 /** Return the {@link JoinTable} identify by <code>joinTableName</code> param. If not found one RuntimeException will be throwed. */
+	 public final JoinTable getJoinTable(String joinTableName) {
+		 //
+		 JoinTable result = joinTables != null ? joinTables.get(joinTableName) : null;
+		 if (result == null)
+			 throw ExceptionUtils.newRuntimeException(EntityDef.class, "Join table \"" + joinTableName + "\" not found for entity \"" + entityClass.getSimpleName() + "\". Check his @GetJoinTables method.");
+		 return result;
+	 }
+
+	 /** Return the fields used to populate one new instance of {@link #entityClass} from a QUERY result row. */
+	 public List<FieldDef> getFieldsToHydrate() {
+		 return fieldsToQuery;
+	 }
+	 
+	 /** Return the updatable fields of {@link #entityClass} compared and written by merge (UPDATE) operations. */
+	 public List<FieldDef> getFieldsToMerge() {
+		 return fieldsToUpdate;
+	 }
+	 
+	 /** Return the index of each {@link #getFieldsToMerge()} field in {@link #getFieldsToHydrate()} list (or -1 if it isn't hydrated). */
+	 public final int[] getMergeFieldsHydrateIndexes() {
+		 //build only in the first call... the field lists don't change after init
+		 if (mergeFieldsHydrateIndexes == null) {
+			 List<FieldDef> fieldsToMerge = getFieldsToMerge();
+			 int[] result = new int[fieldsToMerge.size()];
+			 for (int i = 0; i < result.length; i++)
+				 result[i] = getFieldsToHydrate().indexOf(fieldsToMerge.get(i));
+			 mergeFieldsHydrateIndexes = result;
+		 }
+		 return mergeFieldsHydrateIndexes;
+	 }
+	 
+	 /**
+	  * Return the UPDATE statement (with "?" to be bound) to the {@link #getFieldsToMerge()} fields identify by the indexes param. 
+	  * The row is identify by primary key, that is the last bound param. Each statement is built only once.
+	  */
+	 public final String getUpdateStatement(BitSet fieldsIndexes) {
+		 synchronized (updateStatements) {
+			 String result = updateStatements.get(fieldsIndexes);
+			 if (result == null) {
+				 //get the fields identify by indexes to build the statement
+				 List<FieldDef> fieldsToMerge = getFieldsToMerge();
+				 List<FieldDef> fields = new ArrayList<FieldDef>();
+				 for (int i = fieldsIndexes.nextSetBit(0); i >= 0; i = fieldsIndexes.nextSetBit(i + 1))
+					 fields.add(fieldsToMerge.get(i));
+				 
+				 result = SQLiteHelper.buildUpdateStatement(this, fields, primaryKey);
+				 updateStatements.put((BitSet) fieldsIndexes.clone(), result);
+			 }
+			 return result;
+		 }
+	 }
+	 
+	 /** Return the String array with all entity columns names to be used in QUERY operations (including the {@link #discriminatorColumn} if exists). */
 	 public final String[] getColumnsToQuery(){
 		 //first get the list fields to extract only the column names
 		 List<FieldDef> fields = getFieldsByOperation(PersistenceOperation.QUERY);
 		
-		 String[] result = new String[fields.size()];
+		 String[] result = new String[discriminatorColumn != null ? fields.size() + 1 : fields.size()];
 		 int i = 0;
 		 for (FieldDef field : fields) {
 			 result[i] = field.getColumnName();
 			 i++;
 		 }
+		 if (discriminatorColumn != null)
+			 result[i] = discriminatorColumn;
 		 return result;
 	 }
 		
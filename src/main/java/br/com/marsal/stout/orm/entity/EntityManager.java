@@ -1,15 +1,31 @@
 package br.com.marsal.stout.orm.entity;
 
 import android.content.Context;
-import android.database.Cursor;
 
+import java.io.File;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import br.com.marsal.stout.orm.database.BulkImporter;
+import br.com.marsal.stout.orm.database.DataExporter;
+import br.com.marsal.stout.orm.database.DatabaseBackup;
+import br.com.marsal.stout.orm.database.ExternalBlob;
+import br.com.marsal.stout.orm.database.ObservableQuery;
+import br.com.marsal.stout.orm.database.PersistenceListener;
 import br.com.marsal.stout.orm.database.PersistenceManager;
 import br.com.marsal.stout.orm.database.PersistenceProperties;
-import br.com.marsal.stout.orm.database.SQLiteHelper;
+import br.com.marsal.stout.orm.database.QueryObserver;
+import br.com.marsal.stout.orm.database.SlowQueryLog;
+import br.com.marsal.stout.orm.database.WriteBehindListener;
+import br.com.marsal.stout.orm.database.driver.AndroidDatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseDriver;
+import br.com.marsal.stout.orm.enumeration.TransactionMode;
 
 /**
  * Used to interact with the persistence context.<p>
@@ -26,8 +42,8 @@ public class EntityManager
 	/** Indicates that the entity manager singleton has been initialized. */
 	private static boolean mInitialized = false;
 	
-	/** Android context ({@link Context}) */
-	private static Context mContext = null;
+	/** Driver used to open the database connections ({@link AndroidDatabaseDriver} when initialized by one Android {@link Context}) */
+	private static DatabaseDriver sDatabaseDriver = null;
 	
 	/** Store all Entities Managers instances initialized in the current app execution */
 	private static Map<String, EntityManager> mInstances = new HashMap<>();
@@ -38,6 +54,18 @@ public class EntityManager
 	/** Provide the database properties ({@link PersistenceProperties}) like database file name, database version, mapped classes ecc. */
 	private static final PersistenceProperties mPersistenceProperties = PersistenceProperties.INSTANCE;
 	
+	/** Default time budget (milliseconds) to retry one transaction while the database is busy. */
+	public static final long DEFAULT_BUSY_TIMEOUT_MILLIS = 5000;
+	
+	/** First wait (milliseconds) before retry one transaction. It is doubled on each retry up to {@link #MAX_BUSY_BACKOFF_MILLIS}. */
+	private static final long INITIAL_BUSY_BACKOFF_MILLIS = 10;
+	
+	/** Max wait (milliseconds) before retry one transaction. */
+	private static final long MAX_BUSY_BACKOFF_MILLIS = 500;
+	
+	/** Used to add a random jitter to each retry wait, so concurrent retries don't collide again. */
+	private static final Random sRandom = new Random();
+	
 	/* *********************************************************************************************
 	 * ENTITY MANAGER PROPERTIES
 	 * *********************************************************************************************/
@@ -100,8 +128,21 @@ public class EntityManager
 	public static void init(Context context)
     {
 		//initialize all persistent context resources
-		mContext = context;
-		mPersistenceProperties.init(mContext);
+		sDatabaseDriver = new AndroidDatabaseDriver(context);
+		mPersistenceProperties.init(context);
+		mEntityDefFactory.init(mPersistenceProperties.getMappedClasses());
+		mInitialized = true;
+	}
+
+	/**
+	 * Initialize and configure this class to use the driver param (e.g. {@link br.com.marsal.stout.orm.database.driver.JdbcDatabaseDriver} 
+	 * to run on a plain JVM) and the persistence properties read from the "persistence.xml" stream (it is closed by caller).
+	 */
+	public static void init(DatabaseDriver driver, InputStream persistenceXml)
+    {
+		//initialize all persistent context resources
+		sDatabaseDriver = driver;
+		mPersistenceProperties.init(persistenceXml);
 		mEntityDefFactory.init(mPersistenceProperties.getMappedClasses());
 		mInitialized = true;
 	}
@@ -118,7 +159,7 @@ public class EntityManager
     {
 		//create the new persistence manager
 		mPersistenceUnit = mPersistenceProperties.getPersistenceUnit(persistenceUnit);
-		mPersistenceManager = new PersistenceManager(mContext, mPersistenceUnit);
+		mPersistenceManager = new PersistenceManager(sDatabaseDriver, mPersistenceUnit);
 	}
 	
     /* *********************************************************************************************
@@ -161,20 +202,368 @@ public class EntityManager
 		mPersistenceManager.delete(entity);
 	}
 	
+	/* *********************************************************************************************
+	 * SAVE (UPSERT)
+	 * *********************************************************************************************/
+
+	/**
+	 * Save the entity instance into database table. If a row with the same primary key exists it is updated, otherwise the entity is inserted.
+	 * This is done with one compiled statement per operation in a single transaction.
+	 * 
+	 * @return the entity primary key value (generated when inserted)
+	 */
+	public Object save(Object entity)
+    {
+		//wrapper to persistenceManager.upsert(entity, null) using the primary key to identify the row
+		return mPersistenceManager.upsert(entity, null);
+	}
+
+	/**
+	 * Save the entity instance into database table identifying its row by the unique field {@code keyFieldName}.
+	 * If a row with the same key value exists it is updated, otherwise the entity is inserted.
+	 * 
+	 * @return the entity primary key value (generated when inserted)
+	 */
+	public Object save(Object entity, String keyFieldName)
+    {
+		//wrapper to persistenceManager.upsert(entity, keyFieldName)
+		return mPersistenceManager.upsert(entity, keyFieldName);
+	}
+
+	/** Save all entities instances (see {@link #save(Object)}) in only one transaction. */
+	public void saveAll(List<?> entities)
+    {
+		//wrapper to persistenceManager.upsertAll(entities, null) using the primary key to identify the rows
+		mPersistenceManager.upsertAll(entities, null);
+	}
+
+	/** Save all entities instances (see {@link #save(Object, String)}) in only one transaction. */
+	public void saveAll(List<?> entities, String keyFieldName)
+    {
+		//wrapper to persistenceManager.upsertAll(entities, keyFieldName)
+		mPersistenceManager.upsertAll(entities, keyFieldName);
+	}
+
+	/* *********************************************************************************************
+	 * WRITE QUEUE (GROUP COMMIT)
+	 * *********************************************************************************************/
+
+	/**
+	 * Enable the write queue mode. Entities enqueued by {@link #enqueuePersist(Object)} and {@link #enqueueMerge(Object)} are written
+	 * by one writer thread that commits every maxRows entities or maxDelayMillis milliseconds, whichever comes first.
+	 * Use this to high-rate writes (e.g. sensor and event logging) to share the cost of each commit by many entities.
+	 */
+	public void enableWriteQueue(int maxRows, long maxDelayMillis)
+    {
+		mPersistenceManager.enableWriteQueue(maxRows, maxDelayMillis);
+	}
+
+	/** Disable the write queue mode and wait until all enqueued entities are committed. */
+	public void disableWriteQueue()
+    {
+		mPersistenceManager.disableWriteQueue();
+	}
+
+	/**
+	 * Enqueue the entity instance to be persisted by the write queue and return immediately.
+	 * The returned {@link Future} is done when the entity is committed, so call {@link Future#get()} to wait for durability.
+	 */
+	public Future<Void> enqueuePersist(Object entity)
+    {
+		//wrapper to persistenceManager.enqueueInsert(entity)
+		return mPersistenceManager.enqueueInsert(entity);
+	}
+
+	/**
+	 * Enqueue the entity instance to be merged by the write queue and return immediately.
+	 * The returned {@link Future} is done when the entity is committed, so call {@link Future#get()} to wait for durability.
+	 */
+	public Future<Void> enqueueMerge(Object entity)
+    {
+		//wrapper to persistenceManager.enqueueUpdate(entity)
+		return mPersistenceManager.enqueueUpdate(entity);
+	}
+
+	/* *********************************************************************************************
+	 * WRITE-BEHIND
+	 * *********************************************************************************************/
+
+	/**
+	 * Enable the write-behind mode. Merged entities are kept in memory (only the latest state of each entity) and written in batches 
+	 * every flushIntervalMillis milliseconds, at transaction boundaries, before queries and on release. Repeated merges of the same 
+	 * entity (e.g. progress counters and status flags) are coalesced into only one UPDATE. Finds by primary key see the buffered state.
+	 * Entities merged inside a transaction are written in it (not buffered), so they are rolled back with it.
+	 * Buffered entities rejected by the database (e.g. one UNIQUE violation) are dropped when they are flushed.
+	 */
+	public void enableWriteBehind(long flushIntervalMillis)
+    {
+		mPersistenceManager.enableWriteBehind(flushIntervalMillis);
+	}
+
+	/** Enable the write-behind mode and report the buffered entities rejected by the database to the listener param. */
+	public void enableWriteBehind(long flushIntervalMillis, WriteBehindListener listener)
+    {
+		mPersistenceManager.enableWriteBehind(flushIntervalMillis, listener);
+	}
+
+	/** Disable the write-behind mode and write all buffered entities. */
+	public void disableWriteBehind()
+    {
+		mPersistenceManager.disableWriteBehind();
+	}
+
+	/** Write all entities buffered by the write-behind mode now. */
+	public void flush()
+    {
+		mPersistenceManager.flushWriteBehind();
+	}
+
+	/* *********************************************************************************************
+	 * INSTRUMENTATION
+	 * *********************************************************************************************/
+
+	/**
+	 * Register the listener of the executed statements, transactions and cache accesses or {@code null} to unregister it.
+	 * Nothing is measured while no listener is registered.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * PersistenceMetrics metrics = new PersistenceMetrics();
+	 * entityManager.setPersistenceListener(metrics);
+	 * ...
+	 * Log.d("Stout", metrics.dump());</pre>
+	 */
+	public void setPersistenceListener(PersistenceListener listener)
+    {
+		mPersistenceManager.setPersistenceListener(listener);
+	}
+
+	/** @return the registered listener or {@code null}. */
+	public PersistenceListener getPersistenceListener()
+    {
+		return mPersistenceManager.getPersistenceListener();
+	}
+
+	/**
+	 * Enable the slow query log. The entity queries slower than thresholdMillis are logged with their query plan
+	 * (full table scans and temporary B-trees are flagged) in one ring buffer that keeps the last capacity entries.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * entityManager.enableSlowQueryLog(50, 100);
+	 * ...
+	 * for (SlowQueryLog.Entry entry : entityManager.getSlowQueryLog().getEntries())
+	 *     Log.w("Stout", entry.toString());</pre>
+	 */
+	public SlowQueryLog enableSlowQueryLog(long thresholdMillis, int capacity)
+    {
+		return mPersistenceManager.enableSlowQueryLog(thresholdMillis, capacity);
+	}
+
+	/** Disable the slow query log (its entries are discarded). */
+	public void disableSlowQueryLog()
+    {
+		mPersistenceManager.disableSlowQueryLog();
+	}
+
+	/** @return the slow query log or {@code null} if it is disabled. */
+	public SlowQueryLog getSlowQueryLog()
+    {
+		return mPersistenceManager.getSlowQueryLog();
+	}
+
+	/* *********************************************************************************************
+	 * BULK UPDATE / DELETE
+	 * *********************************************************************************************/
+
+	/**
+	 * Update the fields of all entityClass rows matching the where clause without loading them and return the number of rows affected.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * Map&lt;String, Object&gt; values = new HashMap&lt;&gt;();
+	 * values.put("status", Status.EXPIRED);
+	 * int count = entityManager.updateWhere(Order.class, values, "dueDate &lt; ? AND status = ?", dueDate, Status.OPEN.ordinal());</pre>
+	 * 
+	 * @param values - new values identify by entity field name (at least one)
+	 * @param whereClause - formated as on SQL WHERE clause (excluding the WHERE itself) using the column names and "?" to each where arg
+	 * @param whereArgs - values bound to the "?" of the where clause (SQLite values)
+	 */
+	public int updateWhere(Class<?> entityClass, Map<String, Object> values, String whereClause, Object... whereArgs)
+    {
+		//wrapper to persistenceManager.bulkUpdate(EntityDef, Map, String, Object[])
+		return mPersistenceManager.bulkUpdate(mEntityDefFactory.getEntityDef(entityClass), values, whereClause, whereArgs);
+	}
+
+	/**
+	 * Delete all entityClass rows matching the where clause without loading them and return the number of rows affected.
+	 * 
+	 * @param whereClause - formated as on SQL WHERE clause (excluding the WHERE itself) using the column names and "?" to each where arg. Passing null will delete all rows
+	 * @param whereArgs - values bound to the "?" of the where clause (SQLite values)
+	 */
+	public int deleteWhere(Class<?> entityClass, String whereClause, Object... whereArgs)
+    {
+		//wrapper to persistenceManager.bulkDelete(EntityDef, String, Object[])
+		return mPersistenceManager.bulkDelete(mEntityDefFactory.getEntityDef(entityClass), whereClause, whereArgs);
+	}
+
+	/* *********************************************************************************************
+	 * BULK IMPORT / EXPORT
+	 * *********************************************************************************************/
+
+	/**
+	 * Create a new {@link BulkImporter} to stream rows (CSV or JSON lines) into the entityClass table.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * long rows = entityManager.newBulkImporter(City.class).setFormat(DataFormat.JSON_LINES).importFrom(input);</pre>
+	 */
+	public BulkImporter newBulkImporter(Class<?> entityClass)
+    {
+		//wrapper to persistenceManager.newBulkImporter(EntityDef)
+		return mPersistenceManager.newBulkImporter(mEntityDefFactory.getEntityDef(entityClass));
+	}
+
+	/**
+	 * Create a new {@link DataExporter} to stream the entityClass rows (CSV or JSON lines) to an output stream in constant memory.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * long rows = entityManager.newDataExporter(City.class).setGzip(true).exportTo(new FileOutputStream(file));</pre>
+	 */
+	public DataExporter newDataExporter(Class<?> entityClass)
+    {
+		//wrapper to persistenceManager.newDataExporter(EntityDef)
+		return mPersistenceManager.newDataExporter(mEntityDefFactory.getEntityDef(entityClass));
+	}
+
+	/** Create a new {@link DataExporter} to stream the rows of the SELECT statement (CSV or JSON lines) to an output stream in constant memory. */
+	public DataExporter newDataExporter(String statement)
+    {
+		//wrapper to persistenceManager.newDataExporter(String)
+		return mPersistenceManager.newDataExporter(statement);
+	}
+
 	/* *********************************************************************************************
 	 * TRANSACTION MANAGER
 	 * *********************************************************************************************/
 	
-	/** Wrapper to {@link PersistenceManager#startTransaction()}. */
+	/** Wrapper to {@link PersistenceManager#startTransaction()}. The entities buffered by write-behind are written before start it. */
 	public void startTransaction()
     {
+		mPersistenceManager.flushWriteBehind();
 		mPersistenceManager.startTransaction();
 	}
 	
-	/** Wrapper to {@link PersistenceManager#endTransaction(boolean)}. */
+	/** Wrapper to {@link PersistenceManager#startTransaction(TransactionMode)}. The entities buffered by write-behind are written before start it. */
+	public void startTransaction(TransactionMode mode)
+    {
+		mPersistenceManager.flushWriteBehind();
+		mPersistenceManager.startTransaction(mode);
+	}
+	
+	/** Wrapper to {@link PersistenceManager#supportsNestedTransactions()}. */
+	public boolean supportsNestedTransactions()
+    {
+		return mPersistenceManager.supportsNestedTransactions();
+	}
+	
+	/**
+	 * Wrapper to {@link PersistenceManager#startNestedTransaction()}. When {@link #supportsNestedTransactions()} the work done in a
+	 * nested transaction can be rolled back by {@link #endTransaction(boolean)} passing {@code false} while the outer transaction keeps
+	 * its work (e.g. to skip bad rows in a large import). Otherwise it throws inside a transaction: run the rows without nested transactions
+	 * and, if the outer transaction fails, run each row again in its own transaction.
+	 * The entities buffered by write-behind are written before start it.
+	 */
+	public void startNestedTransaction()
+    {
+		mPersistenceManager.flushWriteBehind();
+		mPersistenceManager.startNestedTransaction();
+	}
+	
+	/** Wrapper to {@link PersistenceManager#endTransaction(boolean)}. The entities buffered by write-behind are written in the transaction before end it. */
 	public void endTransaction(boolean commit)
     {
-		mPersistenceManager.endTransaction(commit);
+		try {
+			if (commit)
+				mPersistenceManager.flushWriteBehind();
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+	
+	/**
+	 * Exec the callback in a EXCLUSIVE transaction retrying it while the database is busy up to {@link #DEFAULT_BUSY_TIMEOUT_MILLIS}.
+	 * 
+	 * @see #runInTransaction(TransactionMode, long, TransactionCallback)
+	 */
+	public <T> T runInTransaction(TransactionCallback<T> callback)
+    {
+		return runInTransaction(TransactionMode.EXCLUSIVE, DEFAULT_BUSY_TIMEOUT_MILLIS, callback);
+	}
+	
+	/**
+	 * Exec the callback in a transaction and return its result. The transaction is committed when the callback returns and rolled back 
+	 * when it throws one exception (that is thrown to caller).<p>
+	 * 
+	 * If the transaction fails because the database is busy or locked (SQLITE_BUSY / SQLITE_LOCKED) by others connections or processes 
+	 * it is rolled back and retried after a bounded exponential backoff until the busyTimeoutMillis time budget is over. 
+	 * If there is a transaction already started by the current thread the callback joins it and it is not retried (the outermost 
+	 * transaction must be retried).
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * Long count = entityManager.runInTransaction(TransactionMode.IMMEDIATE, 2000, new TransactionCallback&lt;Long&gt;() {
+	 *     public Long doInTransaction(EntityManager entityManager) {
+	 *         ...do something...
+	 *     }
+	 * });</pre>
+	 * 
+	 * @param mode - how the transaction is began
+	 * @param busyTimeoutMillis - max time to retry the transaction while the database is busy. Passing 0 it is not retried
+	 */
+	public <T> T runInTransaction(TransactionMode mode, long busyTimeoutMillis, TransactionCallback<T> callback)
+    {
+		//nested transaction... only the outermost transaction can be retried
+		if (mPersistenceManager.isInTransaction())
+			return execInTransaction(mode, callback);
+		
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(busyTimeoutMillis);
+		long backoff = INITIAL_BUSY_BACKOFF_MILLIS;
+		while (true) {
+			try {
+				return execInTransaction(mode, callback);
+			} catch (RuntimeException e) {
+				//only busy database errors are retried while there is time budget
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remaining <= 0 || !mPersistenceManager.isDatabaseBusyException(e))
+					throw e;
+				
+				//wait the backoff (plus a random jitter) before retry
+				try {
+					Thread.sleep(Math.min(backoff + sRandom.nextInt((int) backoff + 1), remaining));
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				backoff = Math.min(backoff * 2, MAX_BUSY_BACKOFF_MILLIS);
+			}
+		}
+	}
+	
+	/** Exec the callback in a transaction (started in the mode param) and commit it if the callback doesn't throw one exception. */
+	private <T> T execInTransaction(TransactionMode mode, TransactionCallback<T> callback)
+    {
+		T result = null;
+		boolean commit = false;
+		startTransaction(mode);
+		try {
+			result = callback.doInTransaction(this);
+			commit = true;
+		} finally {
+			endTransaction(commit);
+		}
+		return result;
 	}
 	
 	/* *********************************************************************************************
@@ -186,11 +575,8 @@ public class EntityManager
 	/** Find the instance of entityClass saved in database identify by primary key value. */
 	public <T> T find(Class<T> entityClass, Object primaryKeyValue)
     {
-		//get the persistence entity for the entity class pass by param
-		EntityDef entityDef = mEntityDefFactory.getEntityDef(entityClass);
-		
-		//wrapper to persistenceManager.queryWithSingleResult(EntityDef, String)
-		return mPersistenceManager.queryWithSingleResult(entityDef, SQLiteHelper.getPrimaryKeyWhereClause(entityDef.getPrimaryKey(), primaryKeyValue));
+		//wrapper to persistenceManager.find(EntityDef, Object)
+		return mPersistenceManager.find(mEntityDefFactory.getEntityDef(entityClass), primaryKeyValue);
 	}
 	
 	/**
@@ -238,6 +624,36 @@ public class EntityManager
 		return mPersistenceManager.queryWithResultList(entityDef, whereClause);
 	}
 	
+	/**
+	 * Observe the query of entityClass instances found using a custom WHERE clause. The observer receives the result now and after each
+	 * committed change of the entityClass table (at most once every debounceMillis). The query must be disposed when it isn't needed anymore.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * ObservableQuery&lt;City&gt; query = entityManager.observeQuery(City.class, "state = 'SP'", 100, new QueryObserver&lt;City&gt;() {
+	 *     public void onChanged(final List&lt;City&gt; result) {
+	 *         runOnUiThread(...); //called on the invalidation thread
+	 *     }
+	 *     public void onError(RuntimeException exception) {
+	 *         ...
+	 *     }
+	 * });
+	 * ...
+	 * query.dispose(); //e.g. in onDestroy()</pre>
+	 */
+	public <T> ObservableQuery<T> observeQuery(Class<T> entityClass, String whereClause, long debounceMillis, QueryObserver<T> observer)
+    {
+		//wrapper to persistenceManager.observeQuery(EntityDef, String, long, QueryObserver<T>)
+		return mPersistenceManager.observeQuery(mEntityDefFactory.getEntityDef(entityClass), whereClause, debounceMillis, observer);
+	}
+	
+	/** Invalidate the observed queries of the tables changed without this entity manager (e.g. writes by raw statements of others connections). */
+	public void notifyTablesChanged(String... tableNames)
+    {
+		//wrapper to persistenceManager.notifyTablesChanged(String...)
+		mPersistenceManager.notifyTablesChanged(tableNames);
+	}
+	
 	/**
 	 * Execute a SELECT statement that return a entity result list.
 	 * Statement param cannot be finished with ";"
@@ -249,13 +665,13 @@ public class EntityManager
 	}
 	
 	/**
-	 * Execute a SELECT statement that return a raw result (Android SQLite Cursor). This result will be handled by caller.<p>
+	 * Execute a SELECT statement that return a raw result (database cursor). This result will be handled by caller.<p>
 	 * 
-	 * <b>WARNING.</b> The {@link Cursor} result must be closed manually after used it. <br>
+	 * <b>WARNING.</b> The {@link DatabaseCursor} result must be closed manually after used it. <br>
 	 * <pre><b>Example</b><br>
 	 * 
 	 * //get the cursor result
-	 * Cursor cursor = EntityManager.INSTANCE.execRawQuery("select id from Tag");
+	 * DatabaseCursor cursor = entityManager.rawQuery("select id from Tag");
 	 * try {
 	 *   //do something
 	 * } finally {
@@ -265,7 +681,7 @@ public class EntityManager
 	 *  
 	 * Statement param cannot be finished with ";"
 	 */
-	public Cursor rawQuery(String statement)
+	public DatabaseCursor rawQuery(String statement)
     {
 		// wrapper to persistenceManager.rawQuery(String)
 		return mPersistenceManager.rawQuery(statement);
@@ -296,4 +712,60 @@ public class EntityManager
 		mPersistenceManager.detach(alias);
 	}
 	
+	/**
+	 * Write a consistent snapshot of the database into the target file while the app keeps using it.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * entityManager.backup(new File(context.getFilesDir(), "nightly.db"), new DatabaseBackup.ProgressListener() {
+	 *     public void onProgress(long copiedRows, long totalRows) {
+	 *         ...
+	 *     }
+	 * });</pre>
+	 * 
+	 * @param listener - receive the backup progress (it can be {@code null})
+	 */
+	public void backup(File target, DatabaseBackup.ProgressListener listener)
+    {
+		//wrapper to persistenceManager.backup(File, ProgressListener)
+		mPersistenceManager.backup(target, listener);
+	}
+	
+	/** Replace the database by the backup file (one backup created by {@link #backup(File, DatabaseBackup.ProgressListener)}). */
+	public void restore(File backup)
+    {
+		//wrapper to persistenceManager.restore(File)
+		mPersistenceManager.restore(backup);
+	}
+	
+	/**
+	 * Store the content into one blob file and return the blob to be set into one entity {@link ExternalBlob} field.
+	 * 
+	 * <pre><b>Example</b><br>
+	 * 
+	 * photo.image = entityManager.newExternalBlob(inputStream);
+	 * entityManager.persist(photo);
+	 * ...
+	 * ByteBuffer image = photo.image.getBuffer(); //memory-mapped on the first access</pre>
+	 */
+	public ExternalBlob newExternalBlob(InputStream content)
+    {
+		//wrapper to persistenceManager.newExternalBlob(InputStream)
+		return mPersistenceManager.newExternalBlob(content);
+	}
+	
+	/** Store the content into one blob file. See {@link #newExternalBlob(InputStream)}. */
+	public ExternalBlob newExternalBlob(byte[] content)
+    {
+		//wrapper to persistenceManager.newExternalBlob(byte[])
+		return mPersistenceManager.newExternalBlob(content);
+	}
+	
+	/** Delete the blob files not referenced by any row (older than minAgeMillis) and return the number of files deleted. */
+	public int purgeExternalBlobs(long minAgeMillis)
+    {
+		//wrapper to persistenceManager.purgeExternalBlobs(long)
+		return mPersistenceManager.purgeExternalBlobs(minAgeMillis);
+	}
+	
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.InheritanceSingleTable;
 import br.com.marsal.stout.orm.annotation.MappedSuperclass;
 import br.com.marsal.stout.orm.field.FieldDef;
 
@@ -57,9 +58,9 @@ public final class SingleTableSubclass extends EntityDef {
 		singleTableSuperclass = SingleTableSuperclass.class.cast(entityDefFactory.getEntityDef(entityClass.getSuperclass()));
 		singleTableSuperclass.addSubclass(this);
 								
-		//get the table name using the @Table.name if defined... this property is defined by his superclass (single table)
-		Entity entity = singleTableSuperclass.getEntityClass().getAnnotation(Entity.class);
-		tableName = entity.tableName() != "" ? entity.tableName() : entityClass.getSimpleName();
+		//get the table and discriminator column... these properties are defined by his superclass (single table)
+		tableName = singleTableSuperclass.getTableName();
+		discriminatorColumn = singleTableSuperclass.getDiscriminatorColumn();
 
 		//now call the super class init method to extract and prepare all fields 
 		super.init();
@@ -73,6 +74,12 @@ public final class SingleTableSubclass extends EntityDef {
 
         private List<SingleTableSubclass> subclasses = new ArrayList<>();
 
+        /** Fields declared by the superclass hierarchy only (without subclasses fields) used to populate superclass instances. */
+        private List<FieldDef> declaredFieldsToQuery = new ArrayList<>();
+
+        /** Updatable fields declared by the superclass hierarchy only (without subclasses fields) used to merge superclass instances. */
+        private List<FieldDef> declaredFieldsToMerge = new ArrayList<>();
+
         /* ****************************************************** *
          * CONSTRUCTORS
          * ****************************************************** */
@@ -85,6 +92,9 @@ public final class SingleTableSubclass extends EntityDef {
         public SingleTableSuperclass(Class<?> entityClass) {
             //call the superclass constructor
             super(entityClass);
+
+            //extract the discriminator column from @InheritanceSingleTable annotation
+            discriminatorColumn = entityClass.getAnnotation(InheritanceSingleTable.class).discriminatorColumn();
         }
 
         /* ****************************************************** *
@@ -98,6 +108,20 @@ public final class SingleTableSubclass extends EntityDef {
             subclasses.add(subclass);
         }
 
+        /**
+         * Return the entity definition (this superclass or one of his subclasses) identify by the discriminator value stored in a row.
+         * If no subclass is found the superclass itself is returned.
+         */
+        public EntityDef getEntityDefByDiscriminator(String discriminatorValue) {
+            if (discriminatorValue != null) {
+                for (SingleTableSubclass subclass : subclasses) {
+                    if (subclass.getDiscriminatorValue().equals(discriminatorValue))
+                        return subclass;
+                }
+            }
+            return this;
+        }
+
         /* ****************************************************** *
          * FIELDS AND COLUMNS
          * ****************************************************** */
@@ -109,10 +133,15 @@ public final class SingleTableSubclass extends EntityDef {
         public void initSubclasses() {
     //		Log.d(getClass().getSimpleName(), "[initSubclasses] superclass/table = " + entityClass.getSimpleName() + "/" + tableName);
 
-            //for each subclass extract his fields and insert its into fields list... super class must have all subclasses fields (SINGLE TABLE)
+            //keep the superclass own fields to populate superclass instances
+            declaredFieldsToQuery = new ArrayList<>(fieldsToQuery);
+            declaredFieldsToMerge = new ArrayList<>(fieldsToUpdate);
+
+            //for each subclass extract his persistent fields and insert its into fields list... super class must have all subclasses columns (SINGLE TABLE)
             for (SingleTableSubclass subclass : subclasses)
                 for (FieldDef field : subclass.getFields())
-                    fields.addIfNotContains(field);
+                    if (field.isPersistent())
+                        fields.addIfNotContains(field);
 
     //		//log
     //		for (FieldDef field : fields)
@@ -133,5 +162,17 @@ public final class SingleTableSubclass extends EntityDef {
     //		}
         }
 
+        /** Superclass instances are populated only with the superclass fields. Subclasses rows are populated by their own definitions. */
+        @Override
+        public List<FieldDef> getFieldsToHydrate() {
+            return declaredFieldsToQuery;
+        }
+
+        /** Superclass instances have only the superclass fields. Subclasses instances are merged by their own definitions. */
+        @Override
+        public List<FieldDef> getFieldsToMerge() {
+            return declaredFieldsToMerge;
+        }
+
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package br.com.marsal.stout.orm.entity;
+
+/**
+ * Work executed in a transaction by {@link EntityManager#runInTransaction(TransactionCallback)}.<p>
+ * 
+ * <b>WARNING.</b> The work can be executed more than once when the database is busy (locked by others connections or processes), 
+ * so it must not have side effects out of the database (or they must be safe to repeat).
+ */
+public interface TransactionCallback<T>
+{
+	/**
+	 * Exec the work in the current transaction and return its result. The transaction is committed when this returns and rolled back 
+	 * when this throws one exception.
+	 * 
+	 * @param entityManager - the entity manager that started the transaction
+	 */
+	T doInTransaction(EntityManager entityManager);
+}
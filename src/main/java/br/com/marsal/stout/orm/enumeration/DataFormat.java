@@ -0,0 +1,17 @@
+package br.com.marsal.stout.orm.enumeration;
+
+/**
+ * Defines the text formats used to import and export table rows.
+ */
+public enum DataFormat {
+	
+	/** 
+	 * Comma separated values (RFC 4180). The first record is the header with the column names. 
+	 * Empty unquoted values are NULL and quoted values ("") are empty strings. 
+	 */
+	CSV,
+	
+	/** One JSON object per line identifying the values by column name (e.g. {@code {"id":1,"name":"tag"}}). */
+	JSON_LINES
+
+}
@@ -0,0 +1,27 @@
+package br.com.marsal.stout.orm.enumeration;
+	
+/**
+ * Defines how the date and time fields ({@code java.util.Date}, {@code java.sql.Date} and {@code Calendar}) are stored.<p>
+ * 
+ * The three of them are ordered, so range queries can be used with all of them (the INTEGER and REAL values are compared as numbers, 
+ * without parsing). The SQLite date and time functions read them differently:
+ * <ul>
+ * <li>TEXT: SQLite reads the text as UTC, but it is local time. Use {@code datetime(column, 'utc')} to get the UTC time and compare the
+ * column with local times (e.g. {@code datetime('now', 'localtime')}).</li>
+ * <li>INTEGER: the functions only read seconds since the epoch, so the milliseconds must be divided: {@code datetime(column / 1000, 'unixepoch')}
+ * (add the {@code 'localtime'} modifier to get the local time).</li>
+ * <li>REAL: the Julian day (UTC) is read by the functions as it is: {@code datetime(column)}.</li>
+ * </ul>
+ */
+public enum DateStorage {
+		
+	/** Persist the date as text in local time (without time zone) with the "yyyy-MM-dd HH:mm:ss" format (e.g. "2016-01-31 23:59:59"). */
+	TEXT,
+	
+	/** Persist the date as the number of milliseconds since 1970-01-01 00:00:00 UTC (e.g. {@code Date#getTime()}). */
+	INTEGER,
+	
+	/** Persist the date as the Julian day number, the number of days since noon in Greenwich on November 24, 4714 B.C. (the same of SQLite "julianday" function). */
+	REAL
+
+}
@@ -6,10 +6,10 @@ package br.com.marsal.stout.orm.enumeration;
  */
 public enum EnumType {
 		
-	/** Persist enumerated type property or field as an integer. */
+	/** Persist enumerated type property or field as an integer (INTEGER column). */
 	ORDINAL,
 	
-	/** Persist enumerated type property or field as a string. */
+	/** Persist enumerated type property or field as a string (TEXT column). */
 	STRING
 
 }
\ No newline at end of file
@@ -6,11 +6,10 @@ package br.com.marsal.stout.orm.enumeration;
  * The LAZY strategy is a hint to the persistence provider runtime that data should be fetched lazily when it is first accessed. 
  * The implementation is permitted to eagerly fetch data for which the LAZY strategy hint has been specified.<p>
  * 
- * <b> WARNING</b> LAZY IS NOT IMPLEMENTED<p>
- * If any field uses fetch type equals {@link FetchType#LAZY} this field will not be loaded automatically by the framework. 
- * These fields must be loaded manually and on demand by the developer using one specific DAO.  
+ * <b> WARNING</b> LAZY IS ONLY IMPLEMENTED TO COLLECTIONS<p>
+ * Association fields annoted with {@code @ManyToMany} and fetch type equals {@link FetchType#LAZY} are populated with a 
+ * lightweight list placeholder ({@code LazyList}) that loads the target entities on the first access. 
  */
-//TODO not all implemented yet. Check how to implements LAZY behavior... maybe instrumentation or aspect ???
 public enum FetchType {
 	
 	/** Defines that data must be eagerly fetched. */
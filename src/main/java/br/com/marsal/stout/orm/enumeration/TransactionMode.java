@@ -0,0 +1,20 @@
+package br.com.marsal.stout.orm.enumeration;
+
+/**
+ * Defines how the outermost transaction is began (the lock acquired by it when it is started).<p>
+ * 
+ * <b> WARNING</b> SQLite DEFERRED mode is not available on the Android SQLite API (any "BEGIN" statement is handled by the Android 
+ * session as an EXCLUSIVE transaction). Use {@link #IMMEDIATE} to let others connections read while the transaction is running.
+ */
+public enum TransactionMode {
+	
+	/** Defines that the transaction is began in EXCLUSIVE mode (BEGIN EXCLUSIVE). This is the default mode. */
+	EXCLUSIVE,
+	
+	/** 
+	 * Defines that the transaction is began in IMMEDIATE mode (BEGIN IMMEDIATE). Others connections can read (but not write) 
+	 * the database while the transaction is running. 
+	 */
+	IMMEDIATE
+
+}
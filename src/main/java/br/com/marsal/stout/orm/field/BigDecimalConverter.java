@@ -0,0 +1,41 @@
+package br.com.marsal.stout.orm.field;
+
+import java.math.BigDecimal;
+
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Converter of {@link BigDecimal} fields stored as INTEGER scaled by the converter scale (e.g. 12.34 is stored as 123400 with scale 4).
+ * The stored values are exact and ordered, so they can be summed and compared by SQLite.<p>
+ * 
+ * Values with more decimal digits than the scale or out of the long range (after scaled) are rejected instead of rounded. 
+ */
+public class BigDecimalConverter extends TypeConverter.LongConverter<BigDecimal> {
+
+	/** Scale of the converter registered by default. */
+	public static final int DEFAULT_SCALE = 4;
+
+	/** Number of decimal digits stored. */
+	private final int scale;
+	public int getScale() {return scale;}
+
+	public BigDecimalConverter(int scale) {
+		super(BigDecimal.class);
+		this.scale = scale;
+	}
+
+	@Override
+	public long toLong(BigDecimal value) {
+		try {
+			return value.movePointRight(scale).longValueExact();
+		} catch (ArithmeticException e) {
+			throw ExceptionUtils.newRuntimeException(BigDecimalConverter.class, "Value " + value + " can't be stored with scale " + scale + " as INTEGER.");
+		}
+	}
+
+	@Override
+	public BigDecimal fromLong(long value) {
+		return BigDecimal.valueOf(value, scale);
+	}
+
+}
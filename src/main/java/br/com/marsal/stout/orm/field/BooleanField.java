@@ -39,5 +39,24 @@ public class BooleanField extends FieldDef {
 		//parser the mapped SQLite value (String) to original value type (boolean)
 		return value = Integer.parseInt(value.toString()) == 1 ? true : false;
 	}
+	
+	/**
+	 * Custom implementation to Boolean field class of {@link FieldDef#parseText(String)}.
+	 * Accept the SQLite value ("1" / "0") or the Java value ("true" / "false").
+	 */
+	@Override
+	protected Object parseText(String text) {
+		text = text.trim();
+		return text.equals("1") || text.equalsIgnoreCase("true") ? 1 : 0;
+	}
+	
+	/**
+	 * Custom implementation to Boolean field class of {@link FieldDef#formatValue(Object)}.
+	 * The SQLite value (INTEGER) is exported as the Java value ({@code true} / {@code false}).
+	 */
+	@Override
+	protected Object formatValue(Object value) {
+		return ((Number) value).longValue() != 0;
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package br.com.marsal.stout.orm.field;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converter of {@link ByteBuffer} fields stored as BLOB. The remaining bytes of the buffer are stored (its position isn't changed)
+ * and the hydrated fields receive one buffer wrapping the row bytes.
+ */
+public class ByteBufferConverter extends TypeConverter.BlobConverter<ByteBuffer> {
+
+	public ByteBufferConverter() {
+		super(ByteBuffer.class);
+	}
+
+	@Override
+	public byte[] toBlob(ByteBuffer value) {
+		//the whole backing array... no copy
+		if (value.hasArray() && value.arrayOffset() == 0 && value.position() == 0 && value.remaining() == value.array().length)
+			return value.array();
+		
+		byte[] result = new byte[value.remaining()];
+		value.duplicate().get(result);
+		return result;
+	}
+
+	@Override
+	public ByteBuffer fromBlob(byte[] value) {
+		return ByteBuffer.wrap(value);
+	}
+
+}
@@ -0,0 +1,122 @@
+package br.com.marsal.stout.orm.field;
+
+import java.lang.reflect.Field;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
+
+/**
+ * Custom implementation of {@link FieldDef} that represents the fields of Java types converted by one {@link TypeConverter}
+ * registered in {@link TypeConverterRegistry}.<p>
+ * 
+ * The values are bound and read by the statement and cursor accessors of the converter datatype (e.g. {@code bindLong(toLong(value))}
+ * and {@code fromLong(getLong(index))}), so the specialized converters don't box the values to bind and hydrate them.
+ */
+public class ConvertedField extends FieldDef {
+	
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+	
+	/** Converter of the field type values. */
+	@SuppressWarnings("rawtypes")
+	protected final TypeConverter converter;
+	
+	/** @return the value stored in {@link #converter} property. */
+	public TypeConverter<?> getConverter() {
+		return converter;
+	}
+	
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/**
+	 * Default constructor. Call the superclass constructor passing the field and use the converter SQLite datatype.
+	 */
+	public ConvertedField(Field field, TypeConverter<?> converter) {
+		//
+		super(field);
+		this.converter = converter;
+		
+		//redefine some superclass properties
+		sqliteDataType = converter.getSQLiteDataType();
+	}
+
+	/* ********************************************************
+	 * CUSTOM METHODS
+	 **********************************************************/
+
+	/** Bind the field value by the statement accessor of the converter datatype. */
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void bindFieldValue(DatabaseStatement statement, int index, Object entity) {
+		Object value = getFieldValue(entity);
+		if (value == null) {
+			statement.bindNull(index);
+			return;
+		}
+		
+		switch (converter.getSQLiteDataType()) {
+		case INTEGER:
+			statement.bindLong(index, ((TypeConverter.LongConverter) converter).toLong(value));
+			break;
+		case REAL:
+			statement.bindDouble(index, ((TypeConverter.DoubleConverter) converter).toDouble(value));
+			break;
+		case TEXT:
+			statement.bindString(index, ((TypeConverter.TextConverter) converter).toText(value));
+			break;
+		case BLOB:
+			statement.bindBlob(index, ((TypeConverter.BlobConverter) converter).toBlob(value));
+			break;
+		default:
+			super.bindFieldValue(statement, index, entity);
+		}
+	}
+	
+	/** Read the column value by the cursor accessor of the converter datatype and set the converted value into the entity field. */
+	@Override
+	public Object readFieldValue(Object entity, DatabaseCursor cursor, int columnIndex) {
+		switch (converter.getSQLiteDataType()) {
+		case INTEGER:
+			long longValue = cursor.getLong(columnIndex);
+			setJavaFieldValue(entity, ((TypeConverter.LongConverter<?>) converter).fromLong(longValue));
+			return longValue;
+		case REAL:
+			double doubleValue = cursor.getDouble(columnIndex);
+			setJavaFieldValue(entity, ((TypeConverter.DoubleConverter<?>) converter).fromDouble(doubleValue));
+			return doubleValue;
+		case TEXT:
+			String textValue = cursor.getString(columnIndex);
+			setJavaFieldValue(entity, ((TypeConverter.TextConverter<?>) converter).fromText(textValue));
+			return textValue;
+		case BLOB:
+			byte[] blobValue = cursor.getBlob(columnIndex);
+			setJavaFieldValue(entity, ((TypeConverter.BlobConverter<?>) converter).fromBlob(blobValue));
+			return blobValue;
+		default:
+			return super.readFieldValue(entity, cursor, columnIndex);
+		}
+	}
+
+	/**
+	 * Custom implementation to converted field class of {@link FieldDef#convertJavaToSQLite(Object)}.
+	 * This will convert the value by the converter to its SQLite datatype.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected Object convertJavaToSQLite(Object value) {
+		return converter.toSQLite(value);
+	}
+	
+	/**
+	 * Custom implementation to converted field class of {@link FieldDef#convertSQLiteToJava(Object)}.
+	 * This will convert the cursor value by the converter to the field type.
+	 */
+	@Override
+	protected Object convertSQLiteToJava(Object value) {
+		return converter.toJava(value);
+	}
+	
+}
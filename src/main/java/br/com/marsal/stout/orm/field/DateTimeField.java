@@ -3,53 +3,266 @@ package br.com.marsal.stout.orm.field;
 import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
+
+import br.com.marsal.stout.orm.annotation.Temporal;
+import br.com.marsal.stout.orm.enumeration.DateStorage;
+import br.com.marsal.stout.orm.enumeration.SQLiteDataType;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
 /**
- * Custom implementation of {@link FieldDef} that represents the Date field behavior.
+ * Custom implementation of {@link FieldDef} that represents the Date field behavior ({@code java.util.Date}, {@code java.sql.Date}
+ * and {@code Calendar} fields).<p>
+ *
+ * The date is stored following the {@link DateStorage} annotated with {@link Temporal} (TEXT by default). The TEXT dates are formatted
+ * and parsed without {@link SimpleDateFormat} (it is only used to parse texts that aren't in the {@link #TEXT_FORMAT} layout).
  */
 public class DateTimeField extends FieldDef {
-	
+
+	/* *********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 * *********************************************************/
+
+	/** Format of the dates stored as TEXT (local time). */
+	public static final String TEXT_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	/** Julian day number of 1970-01-01 00:00:00 UTC. */
+	private static final double UNIX_EPOCH_JULIAN_DAY = 2440587.5;
+
+	/** Calendar used to format and parse the TEXT dates (see {@link #getCalendar()}). Calendar isn't thread safe... one by thread. */
+	private static final ThreadLocal<Calendar> sCalendar = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
+	/** Format used to parse the TEXT dates that aren't in the {@link #TEXT_FORMAT} layout. SimpleDateFormat isn't thread safe... one by thread. */
+	private static final ThreadLocal<SimpleDateFormat> sDateFormat = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(TEXT_FORMAT, Locale.US);
+		}
+	};
+
+	/** Indicates how the date is stored, {@code TEXT}, {@code INTEGER} or {@code REAL}. */
+	protected DateStorage dateStorage = null;
+
+	/** @return the value stored in {@link #dateStorage} property. */
+	public DateStorage getDateStorage() {
+		return dateStorage;
+	}
+
 	/* *********************************************************
 	 * CONSTRUCTORS
 	 * *********************************************************/
 
 	/**
 	 * Default constructor. Only to call the superclass constructor passing the field.
-	 * 
+	 *
 	 * @param field - the java class field used to extract all mapped entity field properties
 	 */
 	public DateTimeField(Field field) {
 		super(field);
+
+		//extract the date storage annoted in field declaration (TEXT if not annoted)
+		Temporal temporal = field.getAnnotation(Temporal.class);
+		this.dateStorage = temporal != null ? temporal.value() : DateStorage.TEXT;
+
+		//redefine the SQLite datatype following the date storage
+		switch (dateStorage) {
+		case INTEGER:
+			sqliteDataType = SQLiteDataType.INTEGER;
+			break;
+		case REAL:
+			sqliteDataType = SQLiteDataType.REAL;
+			break;
+		default: //TEXT
+			sqliteDataType = SQLiteDataType.TEXT;
+			break;
+		}
 	}
-	
+
 	/* *********************************************************
 	 * CONVERT VALUES
 	 * *********************************************************/
-	
+
 	/**
 	 * Custom implementation to DateTime field class of {@link FieldDef#convertJavaToSQLite(Object)}.
-	 * This will convert the value from Java DateTime type to mapped SQLite datatype (STRING).
+	 * This will convert the value from Java DateTime type to mapped SQLite datatype (TEXT, INTEGER or REAL).
 	 */
 	@Override
 	protected Object convertJavaToSQLite(Object value) {
 		//
-		return value = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(value);
+		return toSQLiteValue(value instanceof Calendar ? ((Calendar) value).getTimeInMillis() : ((Date) value).getTime());
 	}
-	
+
 	/**
 	 * Custom implementation to DateTime field class of {@link FieldDef#convertSQLiteToJava(Object)}.
-	 * This will convert the value from mapped SQLite datatype (STRING) to Date type.
+	 * This will convert the value from mapped SQLite datatype (TEXT, INTEGER or REAL) to the field type (Date, java.sql.Date or Calendar).
 	 */
 	@Override
 	protected Object convertSQLiteToJava(Object value) {
 		//
+		long millis = toMillis(value);
+		Class<?> type = field.getType();
+		if (type == java.sql.Date.class)
+			return new java.sql.Date(millis);
+		if (type == Calendar.class) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(millis);
+			return calendar;
+		}
+		return new Date(millis);
+	}
+
+	/**
+	 * Custom implementation to DateTime field class of {@link FieldDef#parseText(String)}.
+	 * Accept the SQLite value of the date storage or the TEXT date to INTEGER and REAL dates.
+	 */
+	@Override
+	protected Object parseText(String text) {
+		text = text.trim();
+		if (dateStorage == DateStorage.TEXT)
+			return text;
+		return isNumber(text) ? super.parseText(text) : toSQLiteValue(parseDate(text));
+	}
+
+	/**
+	 * Custom implementation to DateTime field class of {@link FieldDef#formatValue(Object)}.
+	 * The INTEGER and REAL dates are exported as TEXT dates (the numbers are meaningless outside the app).
+	 */
+	@Override
+	protected Object formatValue(Object value) {
+		if (dateStorage == DateStorage.TEXT)
+			return value;
+		return formatDate(toMillis(value));
+	}
+
+	/* *********************************************************
+	 * UTILS
+	 * *********************************************************/
+
+	/** Convert the milliseconds since 1970-01-01 00:00:00 UTC to the SQLite value of the date storage. */
+	private Object toSQLiteValue(long millis) {
+		switch (dateStorage) {
+		case INTEGER:
+			return millis;
+		case REAL:
+			return millis / (double) MILLIS_PER_DAY + UNIX_EPOCH_JULIAN_DAY;
+		default: //TEXT
+			return formatDate(millis);
+		}
+	}
+
+	/** Convert the SQLite value (cursor or mapped value) of the date storage to milliseconds since 1970-01-01 00:00:00 UTC. */
+	private long toMillis(Object value) {
+		switch (dateStorage) {
+		case INTEGER:
+			return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+		case REAL:
+			double julianDay = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+			return Math.round((julianDay - UNIX_EPOCH_JULIAN_DAY) * MILLIS_PER_DAY);
+		default: //TEXT
+			return parseDate(value.toString());
+		}
+	}
+
+	/**
+	 * Return the calendar of the current thread in the current default time zone. The thread calendars outlive the device time zone
+	 * changes (e.g. writer and reader threads), so their time zone is reset when the default one was changed.
+	 */
+	private static Calendar getCalendar() {
+		Calendar calendar = sCalendar.get();
+		TimeZone timeZone = TimeZone.getDefault();
+		if (!timeZone.equals(calendar.getTimeZone()))
+			calendar.setTimeZone(timeZone);
+		return calendar;
+	}
+
+	/** Format the date to the {@link #TEXT_FORMAT} text in local time. */
+	private static String formatDate(long millis) {
+		Calendar calendar = getCalendar();
+		calendar.setTimeInMillis(millis);
+
+		char[] text = new char[19];
+		appendNumber(text, 0, calendar.get(Calendar.YEAR), 4);
+		text[4] = '-';
+		appendNumber(text, 5, calendar.get(Calendar.MONTH) + 1, 2);
+		text[7] = '-';
+		appendNumber(text, 8, calendar.get(Calendar.DAY_OF_MONTH), 2);
+		text[10] = ' ';
+		appendNumber(text, 11, calendar.get(Calendar.HOUR_OF_DAY), 2);
+		text[13] = ':';
+		appendNumber(text, 14, calendar.get(Calendar.MINUTE), 2);
+		text[16] = ':';
+		appendNumber(text, 17, calendar.get(Calendar.SECOND), 2);
+		return new String(text);
+	}
+
+	/** Parse the text date in local time (the {@link #TEXT_FORMAT} layout is parsed directly, others by {@link SimpleDateFormat}). */
+	private static long parseDate(String text) {
+		//"yyyy-MM-dd HH:mm:ss" (or ISO "yyyy-MM-ddTHH:mm:ss")
+		if (text.length() == 19 && text.charAt(4) == '-' && text.charAt(7) == '-' && (text.charAt(10) == ' ' || text.charAt(10) == 'T')
+				&& text.charAt(13) == ':' && text.charAt(16) == ':') {
+			int year = parseNumber(text, 0, 4);
+			int month = parseNumber(text, 5, 2);
+			int day = parseNumber(text, 8, 2);
+			int hour = parseNumber(text, 11, 2);
+			int minute = parseNumber(text, 14, 2);
+			int second = parseNumber(text, 17, 2);
+			if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+				Calendar calendar = getCalendar();
+				calendar.clear();
+				calendar.set(year, month - 1, day, hour, minute, second);
+				return calendar.getTimeInMillis();
+			}
+		}
+
 		try {
-			value = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).parse(value.toString());
+			SimpleDateFormat dateFormat = sDateFormat.get();
+			dateFormat.setTimeZone(TimeZone.getDefault());
+			return dateFormat.parse(text).getTime();
 		} catch (ParseException e) {
-			throw new RuntimeException(e);
+			throw ExceptionUtils.newRuntimeException(DateTimeField.class, e);
+		}
+	}
+
+	/** Write the number with digits length (zeros at left) into text starting at offset. */
+	private static void appendNumber(char[] text, int offset, int number, int digits) {
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			text[i] = (char) ('0' + number % 10);
+			number /= 10;
 		}
-		return value;
 	}
-			
-}
\ No newline at end of file
+
+	/** Parse the digits of text starting at offset. Return -1 if any char isn't a digit. */
+	private static int parseNumber(String text, int offset, int digits) {
+		int result = 0;
+		for (int i = offset; i < offset + digits; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	/** Check if the text is one number (INTEGER or REAL value) instead of one date text. */
+	private static boolean isNumber(String text) {
+		if (text.isEmpty())
+			return false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!(c >= '0' && c <= '9') && c != '.' && !(c == '-' && i == 0))
+				return false;
+		}
+		return true;
+	}
+
+}
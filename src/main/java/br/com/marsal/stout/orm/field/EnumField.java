@@ -1,13 +1,21 @@
 package br.com.marsal.stout.orm.field;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
 
 import br.com.marsal.stout.orm.annotation.Enumerated;
 import br.com.marsal.stout.orm.database.SQLiteHelper;
 import br.com.marsal.stout.orm.enumeration.EnumType;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
 /**
- * Custom implementation of {@link FieldDef} that represents the Enum field behavior.
+ * Custom implementation of {@link FieldDef} that represents the Enum field behavior.<p>
+ * 
+ * ORDINAL enums are stored in INTEGER columns and STRING enums in TEXT columns. Tables created by older versions have TEXT columns to
+ * ORDINAL enums too: they keep working (the ordinals are stored and read as text), but they are compared as text (e.g. '10' &lt; '2').
+ * SQLite can't change the column type, so the table must be rebuilt by the app upgrade to get the INTEGER column (CREATE TABLE with the
+ * new schema, INSERT INTO new SELECT ... CAST(column AS INTEGER) ... FROM old, DROP TABLE old and ALTER TABLE new RENAME TO old).
  */
 public class EnumField extends FieldDef {
 	
@@ -18,6 +26,12 @@ public class EnumField extends FieldDef {
 	/** Indicates what is the enum type value stored in this field, {@code ORDINAL} or {@code STRING}. */
 	protected EnumType enumType = null;
 	
+	/** Enum constants indexed by their ordinals (the field type {@code getEnumConstants()} clones the array on each call). */
+	private final Enum<?>[] constants;
+	
+	/** Enum constants identify by their names. */
+	private final Map<String, Enum<?>> constantsByName;
+	
 	/* ********************************************************
 	 * PROPERTIES GETTERS AND SETTERS
 	 **********************************************************/
@@ -42,9 +56,15 @@ public class EnumField extends FieldDef {
 		Enumerated enumerated = field.getAnnotation(Enumerated.class);
 		this.enumType = enumerated.value();
 		
-		//redefine some superclass properties
-		columnType = Enum.class; //set the columnType as Enum base class
+		//redefine some superclass properties... ORDINAL enums are stored in INTEGER columns and STRING enums in TEXT columns
+		columnType = enumType == EnumType.ORDINAL ? Integer.class : Enum.class;
 		sqliteDataType = SQLiteHelper.getSQLiteDataType(columnType);
+		
+		//the enum constants are looked up on each conversion... index them once by ordinal and name
+		constants = (Enum<?>[]) field.getType().getEnumConstants();
+		constantsByName = new HashMap<>(constants.length * 2);
+		for (Enum<?> constant : constants)
+			constantsByName.put(constant.name(), constant);
 	}
 
 	/* ********************************************************
@@ -61,15 +81,11 @@ public class EnumField extends FieldDef {
 		//check what is the enum type to decides what will be the SQLite datatype to convert 
 		switch (enumType) {
 		case ORDINAL:
-			value = getEnum(field.getType(), value.toString()).ordinal();
-			break;
+			return ((Enum<?>) value).ordinal();
 
 		default: //STRING
-			value = value.toString();
-			break;
+			return ((Enum<?>) value).name();
 		}
-		
-		return value;
 	}
 	
 	/**
@@ -82,24 +98,48 @@ public class EnumField extends FieldDef {
 		//check what is the enum type to decides what will be the SQLite datatype to convert
 		switch (enumType) {
 		case ORDINAL:
-			value = field.getType().getEnumConstants()[Integer.parseInt(value.toString())];
-			break;
+			//tables created before the ORDINAL enums were mapped to INTEGER columns have TEXT columns... the ordinal is read as text
+			int ordinal = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+			if (ordinal < 0 || ordinal >= constants.length)
+				throw ExceptionUtils.newRuntimeException(EnumField.class, "Invalid ordinal " + ordinal + " to enum \"" + field.getType().getName() + "\".");
+			return constants[ordinal];
 
 		default: //STRING
-			value = getEnum(field.getType(), value.toString());
-			break;
+			return getEnum(value.toString());
 		}
-		
+	}
+	
+	/**
+	 * Custom implementation to Enum field class of {@link FieldDef#parseText(String)}.
+	 * Accept the SQLite value (ordinal or name) or the enum constant name to ORDINAL fields.
+	 */
+	@Override
+	protected Object parseText(String text) {
+		text = text.trim();
+		if (enumType == EnumType.ORDINAL && !text.isEmpty() && Character.isDigit(text.charAt(0)))
+			return Integer.parseInt(text);
+		return convertJavaToSQLite(getEnum(text));
+	}
+	
+	/**
+	 * Custom implementation to Enum field class of {@link FieldDef#formatValue(Object)}.
+	 * The SQLite value is exported as the enum constant name to both enum types (ORDINAL values are meaningless outside the app).
+	 */
+	@Override
+	protected Object formatValue(Object value) {
+		if (enumType == EnumType.ORDINAL)
+			return ((Enum<?>) convertSQLiteToJava(value)).name();
 		return value;
 	}
 	
 	/**
-	 * Return the Enum value from enumClass associated to enumName. 
+	 * Return the Enum constant of the field type associated to enumName. 
 	 */
-	private static Enum<?> getEnum(Class<?> enumClass, String enumName) {
+	private Enum<?> getEnum(String enumName) {
 		//
-		@SuppressWarnings({"rawtypes", "unchecked"})
-		Enum result = Enum.valueOf((Class<Enum>) enumClass, enumName);
+		Enum<?> result = constantsByName.get(enumName);
+		if (result == null)
+			throw ExceptionUtils.newRuntimeException(EnumField.class, "No enum constant " + field.getType().getName() + "." + enumName);
 		return result;
 	}
 
@@ -0,0 +1,57 @@
+package br.com.marsal.stout.orm.field;
+
+import java.lang.reflect.Field;
+
+import br.com.marsal.stout.orm.database.ExternalBlob;
+import br.com.marsal.stout.orm.database.SQLiteHelper;
+
+/**
+ * Custom implementation of {@link FieldDef} that represents the {@link ExternalBlob} field behavior. The column stores the blob 
+ * file name (TEXT) and the hydrated blobs are resolved in the blob directory of the persistence manager that loaded them.
+ */
+public class ExternalBlobField extends FieldDef {
+	
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/**
+	 * Default constructor. Only to call the superclass constructor passing the field.
+	 */
+	public ExternalBlobField(Field field) {
+		//
+		super(field);
+		
+		//redefine some superclass properties
+		columnType = String.class; //set the columnType as String class
+		sqliteDataType = SQLiteHelper.getSQLiteDataType(columnType);
+	}
+
+	/* ********************************************************
+	 * CUSTOM METHODS
+	 **********************************************************/
+	
+	/**
+	 * Custom implementation to ExternalBlob field class of {@link FieldDef#convertJavaToSQLite(Object)}.
+	 * This will convert the blob to its file name (STRING).
+	 */
+	@Override
+	protected Object convertJavaToSQLite(Object value) {
+		return ((ExternalBlob) value).getName();
+	}
+	
+	/**
+	 * Custom implementation to ExternalBlob field class of {@link FieldDef#convertSQLiteToJava(Object)}.
+	 * This will convert the file name (STRING) to one blob reference (it is resolved by the persistence manager after hydrated).
+	 */
+	@Override
+	protected Object convertSQLiteToJava(Object value) {
+		return new ExternalBlob(value.toString());
+	}
+	
+	/** @return the blob of the entity field (without conversion) or {@code null}. */
+	public ExternalBlob getBlob(Object entity) {
+		return (ExternalBlob) getFieldValue(entity);
+	}
+	
+}
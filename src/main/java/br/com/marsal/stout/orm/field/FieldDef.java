@@ -5,6 +5,8 @@ import java.lang.reflect.Field;
 import br.com.marsal.stout.orm.annotation.Column;
 import br.com.marsal.stout.orm.annotation.PrimaryKey;
 import br.com.marsal.stout.orm.database.SQLiteHelper;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
 import br.com.marsal.stout.orm.enumeration.SQLiteDataType;
 import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
@@ -103,7 +105,7 @@ public class FieldDef {
 		
 		//extract the field/column infos from @Column annotation		
 		Column column = field.getAnnotation(Column.class);
-		columnName = column != null && column.name() != "" ? column.name() : field.getName();
+		columnName = column != null && !column.name().isEmpty() ? column.name() : field.getName();
 		nullable = column != null ? column.nullable() : true;
 		insertable = column != null ? column.insertable() : true;
 		updatable = column != null ? column.updatable() : true;
@@ -158,6 +160,31 @@ public class FieldDef {
 		return value;
 	}
 		
+	/**
+	 * Convert one Java value of this field type to the mapped SQLite datatype value (the same conversion of {@link #getMappedFieldValue(Object)}).
+	 * This is used when a field value must be bound in a statement without an entity instance.
+	 */
+	public final Object toMappedValue(Object value) {
+		return value != null ? convertJavaToSQLite(value) : null;
+	}
+		
+	/**
+	 * Parse the text value (e.g. one CSV column) to the mapped SQLite datatype value of this field.
+	 * The text can be the SQLite value (e.g. "1" to {@code true}) or the Java value (e.g. "true").
+	 * This is used when the rows are imported without entity instances.
+	 */
+	public final Object parseMappedValue(String text) {
+		return text != null ? parseText(text) : null;
+	}
+		
+	/**
+	 * Format the mapped SQLite datatype value (e.g. one cursor value) of this field to be exported (e.g. one CSV column).
+	 * The result is the readable value (e.g. {@code true} to Boolean fields) that {@link #parseMappedValue(String)} parses back.
+	 */
+	public final Object formatMappedValue(Object value) {
+		return value != null ? formatValue(value) : null;
+	}
+		
 	/** Sets the value of the field in the specified object to the value. */
 	public final void setFieldValue(Object entity, Object value) {
 		//
@@ -165,7 +192,15 @@ public class FieldDef {
 			//first convert the value to field type value (if needed)... after try to set it into entity field
 			if (value != null)
 				value = convertSQLiteToJava(value);
-			
+		} catch (RuntimeException e) {
+			throw ExceptionUtils.newRuntimeException(FieldDef.class, e);
+		}
+		setJavaFieldValue(entity, value);
+	}
+	
+	/** Sets the value (already of the field type) of the field in the specified object without apply any conversion. */
+	protected final void setJavaFieldValue(Object entity, Object value) {
+		try {
 			field.setAccessible(true);
 			field.set(entity, value);
 		} catch (Exception e) {
@@ -173,11 +208,45 @@ public class FieldDef {
 		}
 	}
 	
+	/**
+	 * Bind the mapped value of the entity field into the statement param identify by index param. 
+	 * By default the mapped value ({@link #getMappedFieldValue(Object)}) is bound by its datatype.
+	 */
+	public void bindFieldValue(DatabaseStatement statement, int index, Object entity) {
+		SQLiteHelper.bindValue(statement, index, getMappedFieldValue(entity));
+	}
+	
+	/**
+	 * Set the entity field with the value of the cursor column (it must not be NULL) and return the SQLite value read (kept as
+	 * the entity snapshot). By default the value is read by its datatype and converted by {@link #setFieldValue(Object, Object)}.
+	 */
+	public Object readFieldValue(Object entity, DatabaseCursor cursor, int columnIndex) {
+		Object value = SQLiteHelper.getCursorColumnValue(cursor, columnIndex);
+		setFieldValue(entity, value);
+		return value;
+	}
+	
 	/**
 	 * Convert the value from SQLite to Java. In some cases the same field has different datatypes mapped between.
-	 * By default only return the same value without apply any specific rule. 
+	 * By default the numbers are converted to the numeric field type (the cursor values are {@code Integer}, {@code Long} or {@code Double})
+	 * and all others values are returned without apply any specific rule. 
 	 */
 	protected Object convertSQLiteToJava(Object value) {
+		if (!(value instanceof Number))
+			return value;
+		
+		Number number = (Number) value;
+		Class<?> type = field.getType();
+		if (type == Integer.class || type == int.class)
+			return number.intValue();
+		if (type == Long.class || type == long.class)
+			return number.longValue();
+		if (type == Double.class || type == double.class)
+			return number.doubleValue();
+		if (type == Float.class || type == float.class)
+			return number.floatValue();
+		if (type == Short.class || type == short.class)
+			return number.shortValue();
 		return value;
 	}
 
@@ -188,6 +257,27 @@ public class FieldDef {
 	protected Object convertJavaToSQLite(Object value) {
 		return value;
 	}
+
+	/**
+	 * Parse the text to the mapped SQLite value. By default the text is parsed to the SQLite datatype of this field 
+	 * ({@code Long} to INTEGER, {@code Double} to REAL, Base64 decoded {@code byte[]} to BLOB and the same text to others).
+	 */
+	protected Object parseText(String text) {
+		if (sqliteDataType == SQLiteDataType.INTEGER)
+			return Long.parseLong(text.trim());
+		if (sqliteDataType == SQLiteDataType.REAL)
+			return Double.parseDouble(text.trim());
+		if (sqliteDataType == SQLiteDataType.BLOB)
+			return SQLiteHelper.decodeBase64(text);
+		return text;
+	}
+	
+	/**
+	 * Format the mapped SQLite value to be exported. By default the same value is returned (numbers and texts are written as they are stored).
+	 */
+	protected Object formatValue(Object value) {
+		return value;
+	}
 	
 	/* ********************************************************
 	 * OVERRIDE
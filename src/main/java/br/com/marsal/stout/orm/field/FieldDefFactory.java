@@ -3,6 +3,8 @@ package br.com.marsal.stout.orm.field;
 import java.lang.reflect.Field;
 import java.util.Calendar;
 
+import br.com.marsal.stout.orm.annotation.ManyToMany;
+import br.com.marsal.stout.orm.database.ExternalBlob;
 import br.com.marsal.stout.orm.database.SQLiteHelper;
 import br.com.marsal.stout.orm.exception.ExceptionUtils;
 
@@ -21,8 +23,17 @@ public abstract class FieldDefFactory {
 		FieldDef result = null;
 		Class<?> fieldType = field.getType();
 		
+		//ManyToMany association field
+		TypeConverter<?> converter = null;
+		if (field.isAnnotationPresent(ManyToMany.class))
+			result = new ManyToManyField(field);
+
+		//field type with a registered converter (it can replace the built-in conversions of the types below)
+		else if ((converter = TypeConverterRegistry.INSTANCE.getConverter(fieldType)) != null)
+			result = new ConvertedField(field, converter);
+
 		//Enum field type
-		if (fieldType.isEnum())
+		else if (fieldType.isEnum())
 			result = new EnumField(field);
 		
 		//Boolean field
@@ -33,16 +44,20 @@ public abstract class FieldDefFactory {
 		else if (fieldType.equals(Class.class))
 			result = new ClassField(field);
 		
+		//External blob field (the content is stored in one file)
+		else if (fieldType.equals(ExternalBlob.class))
+			result = new ExternalBlobField(field);
+		
 		//Date Time field
 		else if (fieldType.equals(java.util.Date.class) || fieldType.equals(java.sql.Date.class) || fieldType.equals(Calendar.class))
 			result = new DateTimeField(field);
 		
-		// For all others fields that cannot has a specific field class implemented check if its is a supported mapped datatype.
-		// If "true" create a standard field type. Otherwise throw one exception. 
+		// For all others fields that cannot has a specific field class implemented check if its is a supported mapped datatype
+		// (byte[] fields are stored as BLOB without conversion). If "true" create a standard field type. Otherwise throw one exception. 
 		else if (SQLiteHelper.isValidFieldType(fieldType))
 			result = new FieldDef(field);
 		else
-			throw ExceptionUtils.newRuntimeException(FieldDefFactory.class, "Field type \"" + fieldType.getName() + "\" is not mapped yet.");
+			throw ExceptionUtils.newRuntimeException(FieldDefFactory.class, "Field type \"" + fieldType.getName() + "\" is not mapped yet. Register one TypeConverter to it.");
 		
 		return result;
 	}
@@ -0,0 +1,58 @@
+package br.com.marsal.stout.orm.field;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import br.com.marsal.stout.orm.annotation.ManyToMany;
+import br.com.marsal.stout.orm.enumeration.FetchType;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Custom implementation of {@link FieldDef} that represents a {@link ManyToMany} association field.<br>
+ * This field is not stored in the entity table (it is not persistent). Its values are loaded from the join table.
+ */
+public class ManyToManyField extends FieldDef {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Target entity class extracted from the {@code List} parameterized type. */
+	protected Class<?> targetEntity = null;
+	public Class<?> getTargetEntity() {return targetEntity;}
+
+	/** Name of the join table used to store the association. */
+	protected String joinTableName = null;
+	public String getJoinTableName() {return joinTableName;}
+
+	/** Indicates if the association is loaded together with its owner ({@code EAGER}) or on first access ({@code LAZY}). */
+	protected FetchType fetchType = FetchType.LAZY;
+	public FetchType getFetchType() {return fetchType;}
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	/** Default constructor. Call the superclass constructor passing the field and extract the association infos. */
+	public ManyToManyField(Field field) {
+		//
+		super(field);
+
+		//the association is stored in the join table... never in the entity table
+		persistent = false;
+
+		//extract the association infos from @ManyToMany annotation
+		ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+		joinTableName = manyToMany.joinTable();
+		fetchType = manyToMany.fetch();
+
+		//the field must be a List<TargetEntity>... get the target entity from his parameterized type
+		Type genericType = field.getGenericType();
+		if (!List.class.equals(field.getType()) || !(genericType instanceof ParameterizedType))
+			throw ExceptionUtils.newRuntimeException(ManyToManyField.class, "Field \"" + field.getName() + "\" must be declared as List<TargetEntity> to be a @ManyToMany association.");
+		targetEntity = (Class<?>) ((ParameterizedType) genericType).getActualTypeArguments()[0];
+	}
+
+}
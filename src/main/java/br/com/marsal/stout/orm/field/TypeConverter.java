@@ -0,0 +1,156 @@
+package br.com.marsal.stout.orm.field;
+
+import br.com.marsal.stout.orm.enumeration.SQLiteDataType;
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Converts one Java type that isn't supported by the framework to one SQLite value. The converters are registered in
+ * {@link TypeConverterRegistry} before the entities are mapped and they are used by all fields of their Java type
+ * ({@link ConvertedField}).<p>
+ *
+ * The converter declares the SQLite datatype of the column and its values are bound and read by the statement and cursor accessors
+ * of that datatype ({@code bindLong / getLong} to INTEGER, {@code bindDouble / getDouble} to REAL, {@code bindString / getString} to TEXT
+ * and {@code bindBlob / getBlob} to BLOB). Extend one of the specialized converters ({@link LongConverter}, {@link DoubleConverter},
+ * {@link TextConverter} or {@link BlobConverter}) instead of this class.
+ *
+ * <pre><b>Example:</b>
+ *
+ * TypeConverterRegistry.INSTANCE.register(new TypeConverter.TextConverter&lt;Locale&gt;(Locale.class) {
+ *     public String toText(Locale value) {return value.toString();}
+ *     public Locale fromText(String value) {return new Locale(value);}
+ * });</pre>
+ */
+public abstract class TypeConverter<J> {
+
+	/* ********************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 **********************************************************/
+
+	/** Java type converted by this converter. */
+	private final Class<J> javaType;
+	public final Class<J> getJavaType() {return javaType;}
+
+	/** SQLite datatype of the converted values (the column datatype). */
+	private final SQLiteDataType sqliteDataType;
+	public final SQLiteDataType getSQLiteDataType() {return sqliteDataType;}
+
+	/* ********************************************************
+	 * CONSTRUCTORS
+	 **********************************************************/
+
+	TypeConverter(Class<J> javaType, SQLiteDataType sqliteDataType) {
+		this.javaType = javaType;
+		this.sqliteDataType = sqliteDataType;
+	}
+
+	/* ********************************************************
+	 * CONVERT VALUES
+	 **********************************************************/
+
+	/**
+	 * Convert the Java value (never {@code null}) to the SQLite value: {@code Long} (INTEGER), {@code Double} (REAL), {@code String} (TEXT)
+	 * or {@code byte[]} (BLOB).
+	 */
+	public abstract Object toSQLite(J value);
+
+	/**
+	 * Convert the cursor value (never {@code null}) to the Java value. The cursor value is the {@code Integer} / {@code Long}, {@code Double},
+	 * {@code String} or {@code byte[]} read by the column value datatype.
+	 */
+	public abstract J toJava(Object value);
+
+	/* ********************************************************
+	 * SPECIALIZED CONVERTERS
+	 **********************************************************/
+
+	/** Converter of the Java type stored as INTEGER. */
+	public abstract static class LongConverter<J> extends TypeConverter<J> {
+
+		protected LongConverter(Class<J> javaType) {
+			super(javaType, SQLiteDataType.INTEGER);
+		}
+
+		public abstract long toLong(J value);
+
+		public abstract J fromLong(long value);
+
+		@Override
+		public final Object toSQLite(J value) {
+			return toLong(value);
+		}
+
+		@Override
+		public final J toJava(Object value) {
+			return fromLong(value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()));
+		}
+	}
+
+	/** Converter of the Java type stored as REAL. */
+	public abstract static class DoubleConverter<J> extends TypeConverter<J> {
+
+		protected DoubleConverter(Class<J> javaType) {
+			super(javaType, SQLiteDataType.REAL);
+		}
+
+		public abstract double toDouble(J value);
+
+		public abstract J fromDouble(double value);
+
+		@Override
+		public final Object toSQLite(J value) {
+			return toDouble(value);
+		}
+
+		@Override
+		public final J toJava(Object value) {
+			return fromDouble(value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()));
+		}
+	}
+
+	/** Converter of the Java type stored as TEXT. */
+	public abstract static class TextConverter<J> extends TypeConverter<J> {
+
+		protected TextConverter(Class<J> javaType) {
+			super(javaType, SQLiteDataType.TEXT);
+		}
+
+		public abstract String toText(J value);
+
+		public abstract J fromText(String value);
+
+		@Override
+		public final Object toSQLite(J value) {
+			return toText(value);
+		}
+
+		@Override
+		public final J toJava(Object value) {
+			return fromText(value.toString());
+		}
+	}
+
+	/** Converter of the Java type stored as BLOB. */
+	public abstract static class BlobConverter<J> extends TypeConverter<J> {
+
+		protected BlobConverter(Class<J> javaType) {
+			super(javaType, SQLiteDataType.BLOB);
+		}
+
+		public abstract byte[] toBlob(J value);
+
+		public abstract J fromBlob(byte[] value);
+
+		@Override
+		public final Object toSQLite(J value) {
+			return toBlob(value);
+		}
+
+		@Override
+		public final J toJava(Object value) {
+			if (!(value instanceof byte[]))
+				throw ExceptionUtils.newRuntimeException(TypeConverter.class, "BLOB value expected to \"" + getJavaType().getName() + "\" but it was " + value.getClass().getSimpleName() + ".");
+			return fromBlob((byte[]) value);
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package br.com.marsal.stout.orm.field;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the {@link TypeConverter} identify by their Java types. This is a Singleton implementation using a enum partner.<p>
+ *
+ * The {@link UUIDConverter}, the {@link BigDecimalConverter} and the {@link ByteBufferConverter} are registered by default. Others converters (or others configurations
+ * of them, e.g. one BigDecimal scale) must be registered before the entities are mapped (before EntityManager init), because the field 
+ * definitions get their converters when they are created.
+ * 
+ * <pre><b>Example:</b>
+ * 
+ * TypeConverterRegistry.INSTANCE.register(new BigDecimalConverter(2));
+ * EntityManager.init(context);</pre>
+ */
+public enum TypeConverterRegistry
+{
+	INSTANCE; // instance of enum to access the singleton...
+
+	/* *********************************************************************************************
+	 * PROPERTIES / CONSTANTS / INTERNAL VARIABLES
+	 * *********************************************************************************************/
+
+	/** Registered converters identify by their Java types. */
+	private final Map<Class<?>, TypeConverter<?>> mConverters = new ConcurrentHashMap<>();
+
+	/* *********************************************************************************************
+	 * CONSTRUCTORS
+	 * *********************************************************************************************/
+
+	TypeConverterRegistry()
+	{
+		register(new UUIDConverter());
+		register(new BigDecimalConverter(BigDecimalConverter.DEFAULT_SCALE));
+		register(new ByteBufferConverter());
+	}
+
+	/* *********************************************************************************************
+	 * REGISTER / GET CONVERTERS
+	 * *********************************************************************************************/
+
+	/** Register the converter to its Java type (the converter registered before to the same type is replaced). */
+	public void register(TypeConverter<?> converter)
+	{
+		mConverters.put(converter.getJavaType(), converter);
+	}
+
+	/** Remove the converter registered to javaType param. */
+	public void unregister(Class<?> javaType)
+	{
+		mConverters.remove(javaType);
+	}
+
+	/** @return the converter registered to javaType param or {@code null} if there isn't one. */
+	@SuppressWarnings("unchecked")
+	public <J> TypeConverter<J> getConverter(Class<J> javaType)
+	{
+		return (TypeConverter<J>) mConverters.get(javaType);
+	}
+
+}
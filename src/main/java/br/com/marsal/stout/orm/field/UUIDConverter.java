@@ -0,0 +1,47 @@
+package br.com.marsal.stout.orm.field;
+
+import java.util.UUID;
+
+import br.com.marsal.stout.orm.exception.ExceptionUtils;
+
+/**
+ * Converter of {@link UUID} fields stored as 16 bytes BLOB (most significant bits first), instead of its 36 chars text.
+ */
+public class UUIDConverter extends TypeConverter.BlobConverter<UUID> {
+
+	public UUIDConverter() {
+		super(UUID.class);
+	}
+
+	@Override
+	public byte[] toBlob(UUID value) {
+		byte[] result = new byte[16];
+		putLong(result, 0, value.getMostSignificantBits());
+		putLong(result, 8, value.getLeastSignificantBits());
+		return result;
+	}
+
+	@Override
+	public UUID fromBlob(byte[] value) {
+		if (value.length != 16)
+			throw ExceptionUtils.newRuntimeException(UUIDConverter.class, "UUID BLOB must have 16 bytes but it has " + value.length + ".");
+		return new UUID(getLong(value, 0), getLong(value, 8));
+	}
+
+	/** Write the long value into bytes starting at offset (big-endian). */
+	private static void putLong(byte[] bytes, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			bytes[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	/** Read the long value from bytes starting at offset (big-endian). */
+	private static long getLong(byte[] bytes, int offset) {
+		long result = 0;
+		for (int i = 0; i < 8; i++)
+			result = (result << 8) | (bytes[offset + i] & 0xFF);
+		return result;
+	}
+
+}
@@ -0,0 +1,146 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import br.com.marsal.stout.orm.database.PersistenceManager;
+import br.com.marsal.stout.orm.database.PersistenceProperties;
+import br.com.marsal.stout.orm.database.PersistenceProperties.PersistenceUnit;
+import br.com.marsal.stout.orm.database.driver.JdbcDatabaseDriver;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+import br.com.marsal.stout.orm.enumeration.EnumType;
+
+/**
+ * Creates the benchmark databases. They are local SQLite files opened by the sqlite-jdbc driver ({@link JdbcDatabaseDriver}),
+ * so the benchmarks run on a plain JVM and measure the same framework code of the Android driver (but not the Android SQLite build).
+ */
+final class BenchmarkDatabase {
+
+	/** Rows inserted in each table before the measurements. */
+	static final int ROWS = 1000;
+
+	private static final String UNIT_NAME = "benchmark";
+
+	private BenchmarkDatabase() {
+	}
+
+	/** Map the benchmark entities (it is done once by JVM, the same of the "persistence.xml" mapped entities). */
+	static void initEntities() {
+		EntityDefFactory.INSTANCE.init(Arrays.<Class<?>>asList(NarrowEntity.class, WideEntity.class, EnumEntity.class));
+	}
+
+	/** Create the persistence unit of the benchmark database. The pragmas are the ones recommended to apps (WAL + NORMAL). */
+	static PersistenceUnit newPersistenceUnit(boolean readOnly) {
+		PersistenceUnit pu = PersistenceProperties.INSTANCE.new PersistenceUnit();
+		pu.setUnitName(UNIT_NAME);
+		pu.setDatabaseName(UNIT_NAME);
+		pu.setDatabaseVersion(1);
+		pu.setAutoCreateDatabase(true);
+		pu.setUseTransaction(true);
+		pu.setReadOnly(readOnly);
+		pu.setPragma("journal_mode", "WAL");
+		pu.setPragma("synchronous", "NORMAL");
+		pu.addMappedEntity(NarrowEntity.class.getSimpleName());
+		pu.addMappedEntity(WideEntity.class.getSimpleName());
+		pu.addMappedEntity(EnumEntity.class.getSimpleName());
+		return pu;
+	}
+
+	/** Create one empty directory to the database files. */
+	static File newDirectory() throws IOException {
+		return Files.createTempDirectory("stout-benchmark").toFile();
+	}
+
+	/** Open (and create) the database of the persistence unit in the directory. */
+	static PersistenceManager open(File directory, PersistenceUnit pu) {
+		initEntities();
+		return new PersistenceManager(new JdbcDatabaseDriver(directory), pu);
+	}
+
+	/** Insert the rows param in both tables (in one transaction). */
+	static void populate(PersistenceManager persistenceManager, int rows) {
+		boolean commit = false;
+		persistenceManager.startTransaction();
+		try {
+			for (int i = 0; i < rows; i++) {
+				persistenceManager.insert(newNarrowEntity(i));
+				persistenceManager.insert(newWideEntity(i));
+			}
+			commit = true;
+		} finally {
+			persistenceManager.endTransaction(commit);
+		}
+	}
+
+	/** Delete the directory and its database files. */
+	static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	/* ********************************************************
+	 * ENTITIES
+	 **********************************************************/
+
+	static NarrowEntity newNarrowEntity(int i) {
+		NarrowEntity entity = new NarrowEntity();
+		entity.name = "narrow-" + i;
+		entity.value = (long) i;
+		return entity;
+	}
+
+	static WideEntity newWideEntity(int i) {
+		WideEntity.Status[] statuses = WideEntity.Status.values();
+		Date date = new Date(1451606400000L + i * 60000L);
+
+		WideEntity entity = new WideEntity();
+		entity.code = "W" + i;
+		entity.name = "wide-" + i;
+		entity.description = "Wide benchmark entity number " + i + " with a medium sized text column";
+		entity.email = "user" + i + "@example.com";
+		entity.phone = "+55 11 5555-" + (1000 + i % 9000);
+		entity.city = "City " + i % 100;
+		entity.counter = i;
+		entity.priority = i % 10;
+		entity.version = 1L;
+		entity.size = i * 1024L;
+		entity.price = i * 1.25;
+		entity.discount = 0.1;
+		entity.rating = (i % 50) / 10f;
+		entity.level = (short) (i % 5);
+		entity.active = i % 2 == 0;
+		entity.verified = i % 3 == 0;
+		entity.createdAt = date;
+		entity.updatedAt = date;
+		entity.status = statuses[i % statuses.length];
+		entity.previousStatus = statuses[(i + 1) % statuses.length];
+		return entity;
+	}
+
+	static EnumEntity newEnumEntity(int i) {
+		WideEntity.Status[] statuses = WideEntity.Status.values();
+		TimeUnit[] units = TimeUnit.values();
+		Thread.State[] threadStates = Thread.State.values();
+		EnumType[] enumTypes = EnumType.values();
+
+		EnumEntity entity = new EnumEntity();
+		entity.status = statuses[i % statuses.length];
+		entity.unit = units[i % units.length];
+		entity.threadState = threadStates[i % threadStates.length];
+		entity.enumType = enumTypes[i % enumTypes.length];
+		entity.previousStatus = statuses[(i + 1) % statuses.length];
+		entity.previousUnit = units[(i + 1) % units.length];
+		entity.previousThreadState = threadStates[(i + 1) % threadStates.length];
+		entity.previousEnumType = enumTypes[(i + 1) % enumTypes.length];
+		return entity;
+	}
+
+}
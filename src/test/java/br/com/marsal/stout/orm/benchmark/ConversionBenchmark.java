@@ -0,0 +1,245 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.marsal.stout.orm.database.SQLiteHelper;
+import br.com.marsal.stout.orm.database.driver.DatabaseStatement;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+import br.com.marsal.stout.orm.field.FieldDef;
+
+/**
+ * Conversions between the entity fields and the SQLite values, without database access.<p>
+ *
+ * The "ToSQLite" benchmarks are the conversions of the INSERT / UPDATE binding and the "ToJava" ones are the conversions of the
+ * query hydration (they set the entity field too).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+	private EntityDef mWideEntityDef;
+	private List<FieldDef> mFieldsToInsert;
+	private WideEntity mEntity;
+	private ValuesStatement mStatement;
+
+	private List<FieldDef> mEnumFields;
+	private EnumEntity mEnumEntity;
+	private Object[] mEnumValues;
+
+	private FieldDef mDateField;
+	private FieldDef mEnumOrdinalField;
+	private FieldDef mEnumStringField;
+	private FieldDef mBooleanField;
+	private Object mDateValue;
+	private Object mEnumOrdinalValue;
+	private Object mEnumStringValue;
+	private Object mBooleanValue;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkDatabase.initEntities();
+		mWideEntityDef = EntityDefFactory.INSTANCE.getEntityDef(WideEntity.class);
+		mFieldsToInsert = mWideEntityDef.getFieldsToInsert();
+		mEntity = BenchmarkDatabase.newWideEntity(7);
+		mStatement = new ValuesStatement(mFieldsToInsert.size());
+
+		mEnumFields = EntityDefFactory.INSTANCE.getEntityDef(EnumEntity.class).getFieldsToInsert();
+		mEnumEntity = BenchmarkDatabase.newEnumEntity(3);
+		mEnumValues = new Object[mEnumFields.size()];
+		for (int i = 0; i < mEnumValues.length; i++) //the enum columns are TEXT... the cursor reads the ordinals as text too
+			mEnumValues[i] = String.valueOf(mEnumFields.get(i).getMappedFieldValue(mEnumEntity));
+
+		mDateField = mWideEntityDef.getField("createdAt");
+		mEnumOrdinalField = mWideEntityDef.getField("status");
+		mEnumStringField = mWideEntityDef.getField("previousStatus");
+		mBooleanField = mWideEntityDef.getField("active");
+
+		//the values read from database are the same of the binding
+		mDateValue = mDateField.getMappedFieldValue(mEntity);
+		mEnumOrdinalValue = mEnumOrdinalField.getMappedFieldValue(mEntity);
+		mEnumStringValue = mEnumStringField.getMappedFieldValue(mEntity);
+		mBooleanValue = mBooleanField.getMappedFieldValue(mEntity);
+	}
+
+	/* ********************************************************
+	 * ENTITY BINDING
+	 **********************************************************/
+
+	/** Convert and bind all insertable fields of the wide entity (the INSERT path without the SQLite execution). */
+	@Benchmark
+	public Object[] bindWideEntity() {
+		SQLiteHelper.bindFieldValues(mStatement, 1, mEntity, mFieldsToInsert);
+		return mStatement.mValues;
+	}
+
+	/** Convert and bind all enum fields of the enum entity (ORDINAL and STRING). */
+	@Benchmark
+	public Object[] bindEnumEntity() {
+		SQLiteHelper.bindFieldValues(mStatement, 1, mEnumEntity, mEnumFields);
+		return mStatement.mValues;
+	}
+
+	/** Convert and set all enum fields of the enum entity from their SQLite values (the hydration path without the cursor). */
+	@Benchmark
+	public EnumEntity hydrateEnumEntity() {
+		for (int i = 0; i < mEnumValues.length; i++)
+			mEnumFields.get(i).setFieldValue(mEnumEntity, mEnumValues[i]);
+		return mEnumEntity;
+	}
+
+	/* ********************************************************
+	 * FIELD CONVERTERS
+	 **********************************************************/
+
+	@Benchmark
+	public Object dateToSQLite() {
+		return mDateField.getMappedFieldValue(mEntity);
+	}
+
+	@Benchmark
+	public WideEntity dateToJava() {
+		mDateField.setFieldValue(mEntity, mDateValue);
+		return mEntity;
+	}
+
+	@Benchmark
+	public Object enumOrdinalToSQLite() {
+		return mEnumOrdinalField.getMappedFieldValue(mEntity);
+	}
+
+	@Benchmark
+	public WideEntity enumOrdinalToJava() {
+		mEnumOrdinalField.setFieldValue(mEntity, mEnumOrdinalValue);
+		return mEntity;
+	}
+
+	@Benchmark
+	public Object enumStringToSQLite() {
+		return mEnumStringField.getMappedFieldValue(mEntity);
+	}
+
+	@Benchmark
+	public WideEntity enumStringToJava() {
+		mEnumStringField.setFieldValue(mEntity, mEnumStringValue);
+		return mEntity;
+	}
+
+	@Benchmark
+	public Object booleanToSQLite() {
+		return mBooleanField.getMappedFieldValue(mEntity);
+	}
+
+	@Benchmark
+	public WideEntity booleanToJava() {
+		mBooleanField.setFieldValue(mEntity, mBooleanValue);
+		return mEntity;
+	}
+
+	/* ********************************************************
+	 * ENTITY DEFINITION LOOKUP
+	 **********************************************************/
+
+	@Benchmark
+	public EntityDef getEntityDefByClass() {
+		return EntityDefFactory.INSTANCE.getEntityDef(WideEntity.class);
+	}
+
+	@Benchmark
+	public EntityDef getEntityDefByName() {
+		return EntityDefFactory.INSTANCE.getEntityDef("WideEntity");
+	}
+
+	/* ********************************************************
+	 * STATEMENT
+	 **********************************************************/
+
+	/** Statement that only keeps the bound values (the binding cost without the driver). */
+	private static final class ValuesStatement implements DatabaseStatement {
+
+		private final Object[] mValues;
+
+		ValuesStatement(int size) {
+			mValues = new Object[size + 1];
+		}
+
+		@Override
+		public void bindNull(int index) {
+			mValues[index] = null;
+		}
+
+		@Override
+		public void bindLong(int index, long value) {
+			mValues[index] = value;
+		}
+
+		@Override
+		public void bindDouble(int index, double value) {
+			mValues[index] = value;
+		}
+
+		@Override
+		public void bindString(int index, String value) {
+			mValues[index] = value;
+		}
+
+		@Override
+		public void bindBlob(int index, byte[] value) {
+			mValues[index] = value;
+		}
+
+		@Override
+		public void clearBindings() {
+			for (int i = 0; i < mValues.length; i++)
+				mValues[i] = null;
+		}
+
+		@Override
+		public void execute() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long executeInsert() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int executeUpdateDelete() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long simpleQueryForLong() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String simpleQueryForString() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
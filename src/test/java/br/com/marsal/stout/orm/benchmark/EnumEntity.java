@@ -0,0 +1,45 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import br.com.marsal.stout.orm.annotation.Column;
+import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.Enumerated;
+import br.com.marsal.stout.orm.annotation.PrimaryKey;
+import br.com.marsal.stout.orm.enumeration.EnumType;
+
+/**
+ * Benchmark entity where most of the columns are enums (the conversion cost is dominated by the enum fields).
+ */
+@Entity
+public class EnumEntity {
+
+	@PrimaryKey
+	@Column(insertable = false, updatable = false)
+	public Integer id;
+
+	@Enumerated(EnumType.ORDINAL)
+	public WideEntity.Status status;
+
+	@Enumerated(EnumType.ORDINAL)
+	public TimeUnit unit;
+
+	@Enumerated(EnumType.ORDINAL)
+	public Thread.State threadState;
+
+	@Enumerated(EnumType.ORDINAL)
+	public EnumType enumType;
+
+	@Enumerated(EnumType.STRING)
+	public WideEntity.Status previousStatus;
+
+	@Enumerated(EnumType.STRING)
+	public TimeUnit previousUnit;
+
+	@Enumerated(EnumType.STRING)
+	public Thread.State previousThreadState;
+
+	@Enumerated(EnumType.STRING)
+	public EnumType previousEnumType;
+
+}
@@ -0,0 +1,102 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.marsal.stout.orm.database.PersistenceManager;
+import br.com.marsal.stout.orm.database.PersistenceProperties;
+import br.com.marsal.stout.orm.database.PersistenceProperties.PersistenceUnit;
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+/**
+ * Point lookups and full table scans of one read-only persistence unit with the database file memory-mapped ("mmap_size" = "file",
+ * the read-only default) or not ("mmap_size" = 0).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryMapBenchmark {
+
+	/** Rows of the read-only database (larger than the default page cache). */
+	private static final int ROWS = 20000;
+
+	/** Query that reads the text column of all rows (there isn't one index to it). */
+	private static final String SCAN_STATEMENT = "SELECT COUNT(*) FROM WideEntity WHERE description LIKE '%99%'";
+
+	@Param({"0", PersistenceProperties.MMAP_SIZE_FILE})
+	public String mmapSize;
+
+	private File mDirectory;
+	private PersistenceManager mPersistenceManager;
+	private EntityDef mWideEntityDef;
+	private Random mRandom;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		//write the database by one writable unit (its last connection closed checkpoints the WAL)... after reopen it read-only
+		mDirectory = BenchmarkDatabase.newDirectory();
+		PersistenceManager writer = BenchmarkDatabase.open(mDirectory, BenchmarkDatabase.newPersistenceUnit(false));
+		try {
+			BenchmarkDatabase.populate(writer, ROWS);
+		} finally {
+			writer.release();
+		}
+
+		PersistenceUnit pu = BenchmarkDatabase.newPersistenceUnit(true);
+		pu.setPragma("mmap_size", mmapSize);
+		mPersistenceManager = BenchmarkDatabase.open(mDirectory, pu);
+		mWideEntityDef = EntityDefFactory.INSTANCE.getEntityDef(WideEntity.class);
+		mRandom = new Random(42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mPersistenceManager.release();
+		BenchmarkDatabase.delete(mDirectory);
+	}
+
+	@Benchmark
+	public WideEntity pointLookup() {
+		return mPersistenceManager.find(mWideEntityDef, 1 + mRandom.nextInt(ROWS));
+	}
+
+	@Benchmark
+	public long scan() {
+		long result = 0;
+		mPersistenceManager.startTransaction();
+		try {
+			DatabaseCursor cursor = mPersistenceManager.rawQuery(SCAN_STATEMENT);
+			try {
+				if (cursor.moveToFirst())
+					result = cursor.getLong(0);
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+		return result;
+	}
+
+}
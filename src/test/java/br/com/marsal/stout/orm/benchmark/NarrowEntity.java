@@ -0,0 +1,21 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import br.com.marsal.stout.orm.annotation.Column;
+import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.PrimaryKey;
+
+/**
+ * Benchmark entity with few columns (the hydration cost is dominated by the row access).
+ */
+@Entity
+public class NarrowEntity {
+
+	@PrimaryKey
+	@Column(insertable = false, updatable = false)
+	public Integer id;
+
+	public String name;
+
+	public Long value;
+
+}
@@ -0,0 +1,146 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.marsal.stout.orm.database.PersistenceManager;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+/**
+ * Persistence manager operations against one local database with {@link BenchmarkDatabase#ROWS} rows in each table.<p>
+ *
+ * Each benchmark runs in its own fork with a new database, so the inserts of one benchmark don't change the tables of the others.
+ * The batch insert is reported by row (the same unit of the single insert).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenceBenchmark {
+
+	/** Rows inserted by the batch insert (in one transaction). */
+	private static final int BATCH_SIZE = 100;
+
+	private File mDirectory;
+	private PersistenceManager mPersistenceManager;
+	private EntityDef mNarrowEntityDef;
+	private EntityDef mWideEntityDef;
+	private WideEntity mMergedEntity;
+	private Random mRandom;
+	private int mNextRow;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mDirectory = BenchmarkDatabase.newDirectory();
+		mPersistenceManager = BenchmarkDatabase.open(mDirectory, BenchmarkDatabase.newPersistenceUnit(false));
+		BenchmarkDatabase.populate(mPersistenceManager, BenchmarkDatabase.ROWS);
+
+		mNarrowEntityDef = EntityDefFactory.INSTANCE.getEntityDef(NarrowEntity.class);
+		mWideEntityDef = EntityDefFactory.INSTANCE.getEntityDef(WideEntity.class);
+		mMergedEntity = mPersistenceManager.find(mWideEntityDef, 1);
+		mRandom = new Random(42);
+		mNextRow = BenchmarkDatabase.ROWS;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mPersistenceManager.release();
+		BenchmarkDatabase.delete(mDirectory);
+	}
+
+	/* ********************************************************
+	 * INSERT
+	 **********************************************************/
+
+	@Benchmark
+	public NarrowEntity insertNarrow() {
+		NarrowEntity entity = BenchmarkDatabase.newNarrowEntity(mNextRow++);
+		mPersistenceManager.insert(entity);
+		return entity;
+	}
+
+	@Benchmark
+	public WideEntity insertWide() {
+		WideEntity entity = BenchmarkDatabase.newWideEntity(mNextRow++);
+		mPersistenceManager.insert(entity);
+		return entity;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void insertWideBatch() {
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			for (int i = 0; i < BATCH_SIZE; i++)
+				mPersistenceManager.insert(BenchmarkDatabase.newWideEntity(mNextRow++));
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+
+	/* ********************************************************
+	 * QUERY
+	 **********************************************************/
+
+	@Benchmark
+	public NarrowEntity findNarrowByKey() {
+		return mPersistenceManager.find(mNarrowEntityDef, 1 + mRandom.nextInt(BenchmarkDatabase.ROWS));
+	}
+
+	@Benchmark
+	public WideEntity findWideByKey() {
+		return mPersistenceManager.find(mWideEntityDef, 1 + mRandom.nextInt(BenchmarkDatabase.ROWS));
+	}
+
+	@Benchmark
+	public List<NarrowEntity> findAllNarrow() {
+		return mPersistenceManager.queryWithResultList(mNarrowEntityDef, null);
+	}
+
+	@Benchmark
+	public List<WideEntity> findAllWide() {
+		return mPersistenceManager.queryWithResultList(mWideEntityDef, null);
+	}
+
+	/* ********************************************************
+	 * MERGE
+	 **********************************************************/
+
+	/** Merge one changed column of the entity (the snapshot diff updates only it). */
+	@Benchmark
+	public WideEntity mergeWide() {
+		mMergedEntity.counter++;
+		mPersistenceManager.update(mMergedEntity);
+		return mMergedEntity;
+	}
+
+	/** Merge the entity without changes (the snapshot diff skips the UPDATE). */
+	@Benchmark
+	public WideEntity mergeWideUnchanged() {
+		mPersistenceManager.update(mMergedEntity);
+		return mMergedEntity;
+	}
+
+}
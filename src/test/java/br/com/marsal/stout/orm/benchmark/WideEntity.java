@@ -0,0 +1,48 @@
+package br.com.marsal.stout.orm.benchmark;
+
+import java.util.Date;
+
+import br.com.marsal.stout.orm.annotation.Column;
+import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.Enumerated;
+import br.com.marsal.stout.orm.annotation.PrimaryKey;
+import br.com.marsal.stout.orm.enumeration.EnumType;
+
+/**
+ * Benchmark entity with many columns of all converted field types (Date, Enum and Boolean) and plain ones.
+ */
+@Entity
+public class WideEntity {
+
+	public enum Status {NEW, ACTIVE, SUSPENDED, BLOCKED, DELETED}
+
+	@PrimaryKey
+	@Column(insertable = false, updatable = false)
+	public Integer id;
+
+	public String code;
+	public String name;
+	public String description;
+	public String email;
+	public String phone;
+	public String city;
+	public Integer counter;
+	public Integer priority;
+	public Long version;
+	public Long size;
+	public Double price;
+	public Double discount;
+	public Float rating;
+	public Short level;
+	public Boolean active;
+	public Boolean verified;
+	public Date createdAt;
+	public Date updatedAt;
+
+	@Enumerated(EnumType.ORDINAL)
+	public Status status;
+
+	@Enumerated(EnumType.STRING)
+	public Status previousStatus;
+
+}
@@ -0,0 +1,84 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class ConvertedFieldTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void valuesAreStoredByConverterDatatype() {
+		UUID code = UUID.randomUUID();
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		entity.price = new BigDecimal("12.34");
+		entity.code = code;
+		mPersistenceManager.insert(entity);
+
+		mPersistenceManager.startTransaction();
+		try {
+			assertEquals("integer|123400|blob", readString("SELECT typeof(price) || '|' || price || '|' || typeof(code) FROM TestEntity"));
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		TestEntity result = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + entity.id);
+		assertEquals(0, new BigDecimal("12.34").compareTo(result.price));
+		assertEquals(code, result.code);
+	}
+
+	@Test
+	public void changedValuesAreUpdated() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		entity.price = new BigDecimal("1.5");
+		mPersistenceManager.insert(entity);
+
+		TestEntity loaded = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + entity.id);
+		loaded.price = new BigDecimal("2.25");
+		mPersistenceManager.update(loaded);
+
+		TestEntity result = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + entity.id);
+		assertEquals(0, new BigDecimal("2.25").compareTo(result.price));
+		assertNull(result.code);
+	}
+
+	private String readString(String statement) {
+		DatabaseCursor cursor = mPersistenceManager.rawQuery(statement);
+		try {
+			cursor.moveToFirst();
+			return cursor.getString(0);
+		} finally {
+			cursor.close();
+		}
+	}
+
+}
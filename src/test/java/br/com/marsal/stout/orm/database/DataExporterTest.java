@@ -0,0 +1,71 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+
+public class DataExporterTest {
+
+	private static final int ROWS = DataExporter.PAGE_ROWS * 2 + 500;
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+
+		boolean commit = false;
+		mPersistenceManager.startTransaction();
+		try {
+			for (int i = 0; i < ROWS; i++)
+				mPersistenceManager.insert(TestDatabase.newEntity("name-" + i, i));
+			commit = true;
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void allPagesAreExportedInKeyOrder() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		long rows = mPersistenceManager.newDataExporter(mEntityDef).setFormat(DataFormat.CSV).exportTo(output);
+
+		//header + one line by row (without repeated or missing rows between the pages)
+		String[] lines = output.toString().split("\r?\n");
+		assertEquals(ROWS, rows);
+		assertEquals(ROWS + 1, lines.length);
+		for (int i = 0; i < ROWS; i++)
+			assertTrue(lines[i + 1], lines[i + 1].contains("name-" + i + ","));
+	}
+
+	@Test
+	public void whereClauseIsAppliedToAllPages() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		long rows = mPersistenceManager.newDataExporter(mEntityDef).setWhereClause("value % 2 = 0 OR value < 10").exportTo(output);
+
+		assertEquals(ROWS / 2 + 5, rows);
+	}
+
+}
@@ -0,0 +1,50 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class DatabaseBackupTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void backupIsRestored() {
+		mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+		mPersistenceManager.insert(TestDatabase.newEntity("b", 2));
+		File backup = new File(mDirectory, "test.backup");
+		mPersistenceManager.backup(backup, null);
+		assertTrue(backup.isFile());
+
+		mPersistenceManager.insert(TestDatabase.newEntity("c", 3));
+		mPersistenceManager.restore(backup);
+
+		assertEquals(2, mPersistenceManager.queryWithResultList(mEntityDef, null).size());
+	}
+
+}
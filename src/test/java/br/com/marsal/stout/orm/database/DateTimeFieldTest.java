@@ -0,0 +1,79 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class DateTimeFieldTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	private TimeZone mDefaultTimeZone;
+
+	@Before
+	public void setUp() throws Exception {
+		mDefaultTimeZone = TimeZone.getDefault();
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		TimeZone.setDefault(mDefaultTimeZone);
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void textDatesFollowDefaultTimeZoneChanges() {
+		TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+		TestEntity utc = insert(new Date(0));
+
+		//the same thread formats and parses the dates after the time zone is changed
+		TimeZone.setDefault(TimeZone.getTimeZone("GMT+03:00"));
+		TestEntity changed = insert(new Date(0));
+
+		assertEquals("1970-01-01 00:00:00", readCreated(utc.id));
+		assertEquals("1970-01-01 03:00:00", readCreated(changed.id));
+		TestEntity result = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + changed.id);
+		assertEquals(0, result.created.getTime());
+	}
+
+	private TestEntity insert(Date created) {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		entity.created = created;
+		mPersistenceManager.insert(entity);
+		return entity;
+	}
+
+	private String readCreated(Integer id) {
+		mPersistenceManager.startTransaction();
+		try {
+			DatabaseCursor cursor = mPersistenceManager.rawQuery("SELECT created FROM TestEntity WHERE id = " + id);
+			try {
+				cursor.moveToFirst();
+				return cursor.getString(0);
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+	}
+
+}
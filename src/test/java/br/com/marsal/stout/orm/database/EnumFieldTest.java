@@ -0,0 +1,77 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.database.driver.DatabaseCursor;
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class EnumFieldTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void ordinalIsStoredInIntegerColumn() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		entity.status = TestEntity.Status.CLOSED;
+		mPersistenceManager.insert(entity);
+
+		mPersistenceManager.startTransaction();
+		try {
+			assertEquals("INTEGER", readColumnType("status"));
+			assertEquals("integer", readString("SELECT typeof(status) FROM TestEntity"));
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		TestEntity result = mPersistenceManager.queryWithSingleResult(mEntityDef, "status = 2");
+		assertEquals(TestEntity.Status.CLOSED, result.status);
+	}
+
+	private String readColumnType(String columnName) {
+		DatabaseCursor cursor = mPersistenceManager.rawQuery("PRAGMA table_info(TestEntity)");
+		try {
+			while (cursor.moveToNext()) {
+				if (cursor.getString(1).equals(columnName))
+					return cursor.getString(2);
+			}
+			return null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private String readString(String statement) {
+		DatabaseCursor cursor = mPersistenceManager.rawQuery(statement);
+		try {
+			cursor.moveToFirst();
+			return cursor.getString(0);
+		} finally {
+			cursor.close();
+		}
+	}
+
+}
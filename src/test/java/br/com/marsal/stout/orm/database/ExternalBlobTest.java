@@ -0,0 +1,62 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExternalBlobTest {
+
+	private static final long MIN_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		File[] files = mPersistenceManager.getExternalBlobDirectory().listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		mPersistenceManager.getExternalBlobDirectory().delete();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void oldUnreferencedBlobIsPurged() {
+		File file = mPersistenceManager.newExternalBlob("content".getBytes()).getFile();
+		assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * MIN_AGE_MILLIS));
+
+		assertEquals(1, mPersistenceManager.purgeExternalBlobs(MIN_AGE_MILLIS));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void deduplicatedBlobIsProtectedByGracePeriod() {
+		File file = mPersistenceManager.newExternalBlob("content".getBytes()).getFile();
+		assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * MIN_AGE_MILLIS));
+
+		//the same content is stored again (its entity isn't written yet)
+		File deduplicated = mPersistenceManager.newExternalBlob("content".getBytes()).getFile();
+		assertEquals(file, deduplicated);
+
+		assertEquals(0, mPersistenceManager.purgeExternalBlobs(MIN_AGE_MILLIS));
+		assertTrue(file.exists());
+	}
+
+}
@@ -0,0 +1,50 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class InvalidationTrackerTest {
+
+	@Test
+	public void insertStatementsChangeTheirTable() {
+		assertEquals("City", InvalidationTracker.getChangedTable("INSERT INTO City (name) VALUES ('a')"));
+		assertEquals("City", InvalidationTracker.getChangedTable("insert or replace into City(name) values ('a')"));
+		assertEquals("City", InvalidationTracker.getChangedTable("REPLACE INTO \"City\" VALUES (1, 'a')"));
+	}
+
+	@Test
+	public void updateStatementsChangeTheirTable() {
+		assertEquals("City", InvalidationTracker.getChangedTable("UPDATE City SET name = 'a'"));
+		assertEquals("City", InvalidationTracker.getChangedTable("UPDATE OR IGNORE City SET name = 'a'"));
+	}
+
+	@Test
+	public void deleteStatementsChangeTheirTableWithoutSchemaAndQuotes() {
+		assertEquals("t", InvalidationTracker.getChangedTable("DELETE FROM main.\"t\" WHERE id = 1"));
+		assertEquals("City", InvalidationTracker.getChangedTable("  delete\n from [City]"));
+	}
+
+	@Test
+	public void withStatementsChangeAllTablesOnlyIfTheyWrite() {
+		assertEquals(InvalidationTracker.ALL_TABLES, InvalidationTracker.getChangedTable("WITH s AS (SELECT 1) INSERT INTO City SELECT * FROM s"));
+		assertNull(InvalidationTracker.getChangedTable("WITH s AS (SELECT 1) SELECT * FROM s"));
+	}
+
+	@Test
+	public void indexStatementsAndPragmasDontChangeRows() {
+		assertNull(InvalidationTracker.getChangedTable("CREATE INDEX City_name ON City (name)"));
+		assertNull(InvalidationTracker.getChangedTable("CREATE UNIQUE INDEX IF NOT EXISTS City_name ON City (name)"));
+		assertNull(InvalidationTracker.getChangedTable("DROP INDEX City_name"));
+		assertNull(InvalidationTracker.getChangedTable("PRAGMA user_version = 2"));
+		assertNull(InvalidationTracker.getChangedTable("SELECT * FROM City"));
+	}
+
+	@Test
+	public void tableDdlChangesAllTables() {
+		assertEquals(InvalidationTracker.ALL_TABLES, InvalidationTracker.getChangedTable("DROP TABLE City"));
+		assertEquals(InvalidationTracker.ALL_TABLES, InvalidationTracker.getChangedTable("ALTER TABLE City ADD COLUMN code TEXT"));
+	}
+
+}
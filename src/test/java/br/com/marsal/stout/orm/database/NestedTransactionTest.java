@@ -0,0 +1,139 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class NestedTransactionTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void rolledBackNestedTransactionKeepsOuterWork() {
+		mPersistenceManager.startTransaction();
+		try {
+			mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+			insertNested("b", false);
+			assertTrue(mPersistenceManager.isInTransaction());
+			insertNested("c", true);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		assertFalse(mPersistenceManager.isInTransaction());
+		assertEquals(Arrays.asList("a", "c"), readNames());
+	}
+
+	@Test
+	public void releasedNestedTransactionIsRolledBackWithOuterTransaction() {
+		mPersistenceManager.startTransaction();
+		try {
+			mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+			insertNested("b", true);
+		} finally {
+			mPersistenceManager.endTransaction(false);
+		}
+
+		assertEquals(Arrays.<String>asList(), readNames());
+	}
+
+	@Test
+	public void rolledBackNestedTransactionRollsBackItsInnerLevels() {
+		mPersistenceManager.startTransaction();
+		try {
+			mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+			mPersistenceManager.startNestedTransaction();
+			try {
+				mPersistenceManager.insert(TestDatabase.newEntity("b", 2));
+				insertNested("c", true);
+			} finally {
+				mPersistenceManager.endTransaction(false);
+			}
+			insertNested("d", true);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		assertEquals(Arrays.asList("a", "d"), readNames());
+	}
+
+	@Test
+	public void outermostNestedTransactionIsCommitted() {
+		insertNested("a", true);
+		insertNested("b", false);
+
+		assertEquals(Arrays.asList("a"), readNames());
+	}
+
+	@Test
+	public void unsupportedNestedTransactionFailsWithoutChangeOuterTransaction() {
+		mPersistenceManager.release();
+		mPersistenceManager = TestDatabase.openWithoutSavepoints(mDirectory);
+		assertFalse(mPersistenceManager.supportsNestedTransactions());
+
+		mPersistenceManager.startTransaction();
+		try {
+			mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+			try {
+				mPersistenceManager.startNestedTransaction();
+				fail("Nested transaction started without savepoints.");
+			} catch (RuntimeException e) {
+				//expected
+			}
+			mPersistenceManager.insert(TestDatabase.newEntity("b", 2));
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		assertFalse(mPersistenceManager.isInTransaction());
+		assertEquals(Arrays.asList("a", "b"), readNames());
+	}
+
+	private void insertNested(String name, boolean commit) {
+		mPersistenceManager.startNestedTransaction();
+		try {
+			mPersistenceManager.insert(TestDatabase.newEntity(name, 0));
+		} finally {
+			mPersistenceManager.endTransaction(commit);
+		}
+	}
+
+	/** Read the names of all rows (in primary key order). */
+	private List<String> readNames() {
+		List<String> result = new ArrayList<String>();
+		for (Object entity : mPersistenceManager.queryWithResultList(mEntityDef, null))
+			result.add(((TestEntity) entity).name);
+		return result;
+	}
+
+}
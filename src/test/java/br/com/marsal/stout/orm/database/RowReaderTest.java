@@ -0,0 +1,96 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.enumeration.DataFormat;
+
+public class RowReaderTest {
+
+	@Test
+	public void quotedValuesKeepCommasNewLinesAndEscapedQuotes() throws IOException {
+		RowReader reader = newCsvReader("id,name\n1,\"a, b\"\n2,\"line 1\nline 2\"\n3,\"say \"\"hi\"\"\"\n");
+		try {
+			assertArrayEquals(new String[] {"id", "name"}, reader.getColumns());
+			assertRow(reader, "1", "a, b");
+			assertRow(reader, "2", "line 1\nline 2");
+			assertRow(reader, "3", "say \"hi\"");
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void crlfLineBreaksEndRecords() throws IOException {
+		RowReader reader = newCsvReader("id,name\r\n1,a\r\n2,\"b\r\nc\"\r\n");
+		try {
+			assertArrayEquals(new String[] {"id", "name"}, reader.getColumns());
+			assertRow(reader, "1", "a");
+			assertRow(reader, "2", "b\r\nc");
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void emptyValuesAreNullAndQuotedEmptyValuesAreEmptyText() throws IOException {
+		RowReader reader = newCsvReader("id,name,code\n1,,\"\"\n");
+		try {
+			assertRow(reader, "1", null, "");
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void lastRecordIsReadWithAndWithoutTrailingNewLine() throws IOException {
+		RowReader reader = newCsvReader("id\n1\n2");
+		try {
+			assertRow(reader, "1");
+			assertRow(reader, "2");
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+
+		reader = newCsvReader("id\n1\n\n");
+		try {
+			assertRow(reader, "1");
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void unclosedQuotedValueFails() throws IOException {
+		RowReader reader = newCsvReader("id,name\n1,\"a\n");
+		try {
+			reader.next();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static RowReader newCsvReader(String text) throws IOException {
+		return RowReader.newReader(DataFormat.CSV, new ByteArrayInputStream(text.getBytes(RowReader.CHARSET)));
+	}
+
+	private static void assertRow(RowReader reader, String... values) throws IOException {
+		assertTrue(reader.next());
+		String[] row = new String[values.length];
+		for (int i = 0; i < row.length; i++)
+			row[i] = reader.getValue(i);
+		assertArrayEquals(values, row);
+	}
+
+}
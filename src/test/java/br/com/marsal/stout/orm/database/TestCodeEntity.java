@@ -0,0 +1,21 @@
+package br.com.marsal.stout.orm.database;
+
+import br.com.marsal.stout.orm.annotation.Column;
+import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.PrimaryKey;
+
+/**
+ * Entity with TEXT primary key of the persistence manager tests.
+ */
+@Entity
+public class TestCodeEntity {
+
+	@PrimaryKey
+	public String code;
+
+	@Column(unique = true)
+	public String name;
+
+	public Long value;
+
+}
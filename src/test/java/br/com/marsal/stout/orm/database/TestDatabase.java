@@ -0,0 +1,116 @@
+package br.com.marsal.stout.orm.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import br.com.marsal.stout.orm.database.PersistenceProperties.PersistenceUnit;
+import br.com.marsal.stout.orm.database.driver.DatabaseConnection;
+import br.com.marsal.stout.orm.database.driver.DatabaseDriver;
+import br.com.marsal.stout.orm.database.driver.JdbcDatabaseDriver;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+/**
+ * Creates the test databases. They are local SQLite files opened by the sqlite-jdbc driver ({@link JdbcDatabaseDriver}),
+ * so the tests run on a plain JVM through the same framework code of the Android driver.
+ */
+final class TestDatabase {
+
+	/** sqlite-jdbc driver that reports the savepoints as unsupported (like the Android versions that intercept them). */
+	private static final class NoSavepointDriver implements DatabaseDriver {
+
+		private final JdbcDatabaseDriver mDriver;
+
+		NoSavepointDriver(File directory) {
+			mDriver = new JdbcDatabaseDriver(directory);
+		}
+
+		@Override
+		public String getDatabasePath(String databaseName) {
+			return mDriver.getDatabasePath(databaseName);
+		}
+
+		@Override
+		public void installDatabase(PersistenceUnit pu, String databasePath) {
+			mDriver.installDatabase(pu, databasePath);
+		}
+
+		@Override
+		public DatabaseConnection open(String databasePath, int flags) {
+			return mDriver.open(databasePath, flags);
+		}
+
+		@Override
+		public boolean isBusyException(Throwable exception) {
+			return mDriver.isBusyException(exception);
+		}
+
+		@Override
+		public boolean isDatabaseException(Throwable exception) {
+			return mDriver.isDatabaseException(exception);
+		}
+
+		@Override
+		public boolean isSavepointSupported() {
+			return false;
+		}
+	}
+
+	private static final String UNIT_NAME = "test";
+
+	private TestDatabase() {
+	}
+
+	/** Map the test entities (it is done once by JVM, so all test entities are mapped here). */
+	static void initEntities() {
+		EntityDefFactory.INSTANCE.init(Arrays.<Class<?>>asList(TestEntity.class, TestCodeEntity.class));
+	}
+
+	static PersistenceUnit newPersistenceUnit() {
+		PersistenceUnit pu = PersistenceProperties.INSTANCE.new PersistenceUnit();
+		pu.setUnitName(UNIT_NAME);
+		pu.setDatabaseName(UNIT_NAME);
+		pu.setDatabaseVersion(1);
+		pu.setAutoCreateDatabase(true);
+		pu.setUseTransaction(true);
+		pu.addMappedEntity(TestEntity.class.getSimpleName());
+		pu.addMappedEntity(TestCodeEntity.class.getSimpleName());
+		return pu;
+	}
+
+	/** Create one empty directory to the database files. */
+	static File newDirectory() throws IOException {
+		return Files.createTempDirectory("stout-test").toFile();
+	}
+
+	/** Open (and create) the test database in the directory. */
+	static PersistenceManager open(File directory) {
+		initEntities();
+		return new PersistenceManager(new JdbcDatabaseDriver(directory), newPersistenceUnit());
+	}
+
+	/** Open (and create) the test database in the directory with a driver that doesn't support savepoints. */
+	static PersistenceManager openWithoutSavepoints(File directory) {
+		initEntities();
+		return new PersistenceManager(new NoSavepointDriver(directory), newPersistenceUnit());
+	}
+
+	/** Delete the directory and its database files. */
+	static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	static TestEntity newEntity(String name, long value) {
+		TestEntity entity = new TestEntity();
+		entity.name = name;
+		entity.value = value;
+		return entity;
+	}
+
+}
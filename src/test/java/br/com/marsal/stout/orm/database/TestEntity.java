@@ -0,0 +1,38 @@
+package br.com.marsal.stout.orm.database;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.UUID;
+
+import br.com.marsal.stout.orm.annotation.Column;
+import br.com.marsal.stout.orm.annotation.Entity;
+import br.com.marsal.stout.orm.annotation.Enumerated;
+import br.com.marsal.stout.orm.annotation.PrimaryKey;
+import br.com.marsal.stout.orm.enumeration.EnumType;
+
+/**
+ * Entity of the persistence manager tests.
+ */
+@Entity
+public class TestEntity {
+
+	@PrimaryKey
+	@Column(insertable = false, updatable = false)
+	public Integer id;
+
+	public String name;
+
+	public Long value;
+
+	@Enumerated(EnumType.ORDINAL)
+	public Status status;
+
+	public BigDecimal price;
+
+	public UUID code;
+
+	public Date created;
+
+	public enum Status {NEW, ACTIVE, CLOSED}
+
+}
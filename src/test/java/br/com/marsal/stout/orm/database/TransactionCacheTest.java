@@ -0,0 +1,90 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class TransactionCacheTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void rowReadTwiceInTransactionIsSameInstance() {
+		mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+
+		mPersistenceManager.startTransaction();
+		try {
+			TestEntity first = mPersistenceManager.queryWithSingleResult(mEntityDef, "name = 'a'");
+			TestEntity second = mPersistenceManager.queryWithSingleResult(mEntityDef, "name = 'a'");
+			assertSame(first, second);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+	}
+
+	@Test
+	public void rawStatementEvictsCachedInstancesOfItsTable() {
+		mPersistenceManager.insert(TestDatabase.newEntity("a", 1));
+
+		mPersistenceManager.startTransaction();
+		try {
+			TestEntity first = mPersistenceManager.queryWithSingleResult(mEntityDef, "name = 'a'");
+			mPersistenceManager.execSQL("UPDATE TestEntity SET value = 2");
+			TestEntity second = mPersistenceManager.queryWithSingleResult(mEntityDef, "name = 'a'");
+			assertNotSame(first, second);
+			assertEquals(Long.valueOf(1), first.value);
+			assertEquals(Long.valueOf(2), second.value);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+	}
+
+	@Test
+	public void requeryKeepsUnsavedChangesOfCachedInstance() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		mPersistenceManager.insert(entity);
+
+		mPersistenceManager.startTransaction();
+		try {
+			TestEntity found = mPersistenceManager.find(mEntityDef, entity.id);
+			found.name = "b";
+			List<TestEntity> all = mPersistenceManager.queryWithResultList(mEntityDef, null);
+			assertSame(found, all.get(0));
+			assertEquals("b", found.name);
+			mPersistenceManager.update(found);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		TestEntity read = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + entity.id);
+		assertEquals("b", read.name);
+	}
+
+}
@@ -0,0 +1,57 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class UpsertTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestCodeEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void upsertByUniqueKeyReadsTextPrimaryKey() {
+		mPersistenceManager.upsert(newEntity("abc", "a", 1), null);
+
+		TestCodeEntity entity = newEntity(null, "a", 2);
+		Object primaryKeyValue = mPersistenceManager.upsert(entity, "name");
+
+		assertEquals("abc", entity.code);
+		assertEquals("abc", primaryKeyValue);
+		TestCodeEntity result = mPersistenceManager.queryWithSingleResult(mEntityDef, "name = 'a'");
+		assertEquals("abc", result.code);
+		assertEquals(Long.valueOf(2), result.value);
+	}
+
+	private static TestCodeEntity newEntity(String code, String name, long value) {
+		TestCodeEntity entity = new TestCodeEntity();
+		entity.code = code;
+		entity.name = name;
+		entity.value = value;
+		return entity;
+	}
+
+}
@@ -0,0 +1,146 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class WriteBehindBufferTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void mergeOutsideTransactionIsWrittenByFlush() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		mPersistenceManager.insert(entity);
+		mPersistenceManager.enableWriteBehind(60000);
+
+		entity.value = 2L;
+		mPersistenceManager.update(entity);
+
+		mPersistenceManager.flushWriteBehind();
+		assertEquals(Long.valueOf(2), readValue(entity.id));
+	}
+
+	@Test
+	public void mergeInRolledBackTransactionIsNotWrittenByFlush() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		mPersistenceManager.insert(entity);
+		mPersistenceManager.enableWriteBehind(60000);
+
+		mPersistenceManager.startTransaction();
+		try {
+			entity.value = 2L;
+			mPersistenceManager.update(entity);
+		} finally {
+			mPersistenceManager.endTransaction(false);
+		}
+		mPersistenceManager.flushWriteBehind();
+
+		assertEquals(Long.valueOf(1), readValue(entity.id));
+	}
+
+	@Test
+	public void mergeInRolledBackTransactionSupersedesBufferedEntity() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		mPersistenceManager.insert(entity);
+		mPersistenceManager.enableWriteBehind(60000);
+
+		//buffered before the transaction and merged again inside it
+		entity.value = 2L;
+		mPersistenceManager.update(entity);
+		mPersistenceManager.startTransaction();
+		try {
+			entity.value = 3L;
+			mPersistenceManager.update(entity);
+		} finally {
+			mPersistenceManager.endTransaction(false);
+		}
+		mPersistenceManager.flushWriteBehind();
+
+		assertEquals(Long.valueOf(1), readValue(entity.id));
+	}
+
+	@Test
+	public void mergeInCommittedTransactionIsWritten() {
+		TestEntity entity = TestDatabase.newEntity("a", 1);
+		mPersistenceManager.insert(entity);
+		mPersistenceManager.enableWriteBehind(60000);
+
+		mPersistenceManager.startTransaction();
+		try {
+			entity.value = 2L;
+			mPersistenceManager.update(entity);
+		} finally {
+			mPersistenceManager.endTransaction(true);
+		}
+
+		assertEquals(Long.valueOf(2), readValue(entity.id));
+	}
+
+	@Test
+	public void rejectedEntityIsDroppedAndReported() {
+		TestEntity a = TestDatabase.newEntity("a", 1);
+		TestEntity b = TestDatabase.newEntity("b", 1);
+		mPersistenceManager.insert(a);
+		mPersistenceManager.insert(b);
+		mPersistenceManager.execSQL("CREATE TRIGGER reject_bad BEFORE UPDATE ON " + mEntityDef.getTableName()
+				+ " WHEN NEW.name = 'bad' BEGIN SELECT RAISE(ABORT, 'bad row'); END");
+		final List<Object> rejected = new ArrayList<Object>();
+		mPersistenceManager.enableWriteBehind(60000, new WriteBehindListener() {
+			@Override
+			public void onWriteRejected(Object entity, RuntimeException error) {
+				rejected.add(entity);
+			}
+		});
+
+		a.value = 2L;
+		mPersistenceManager.update(a);
+		b.name = "bad";
+		b.value = 2L;
+		mPersistenceManager.update(b);
+		mPersistenceManager.flushWriteBehind();
+
+		assertEquals(1, rejected.size());
+		assertSame(b, rejected.get(0));
+		assertEquals(Long.valueOf(2), readValue(a.id));
+		assertEquals(Long.valueOf(1), readValue(b.id));
+
+		//the rejected entity isn't written again... the next flushes and queries don't fail
+		mPersistenceManager.flushWriteBehind();
+		assertEquals(1, rejected.size());
+	}
+
+	/** Read the value column of the row (one new instance, outside any transaction). */
+	private Long readValue(Integer id) {
+		TestEntity entity = mPersistenceManager.queryWithSingleResult(mEntityDef, "id = " + id);
+		return entity.value;
+	}
+
+}
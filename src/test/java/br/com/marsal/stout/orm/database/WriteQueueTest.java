@@ -0,0 +1,101 @@
+package br.com.marsal.stout.orm.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.marsal.stout.orm.entity.EntityDef;
+import br.com.marsal.stout.orm.entity.EntityDefFactory;
+
+public class WriteQueueTest {
+
+	private File mDirectory;
+
+	private PersistenceManager mPersistenceManager;
+
+	private EntityDef mEntityDef;
+
+	@Before
+	public void setUp() throws Exception {
+		mDirectory = TestDatabase.newDirectory();
+		TestDatabase.initEntities();
+		mEntityDef = EntityDefFactory.INSTANCE.getEntityDef(TestEntity.class);
+	}
+
+	@After
+	public void tearDown() {
+		mPersistenceManager.release();
+		TestDatabase.delete(mDirectory);
+	}
+
+	@Test
+	public void failedOperationOnlyFailsItsTicketWithSavepoints() throws Exception {
+		mPersistenceManager = TestDatabase.open(mDirectory);
+		assertTrue(mPersistenceManager.supportsNestedTransactions());
+
+		commitGroupWithOneBadRow();
+	}
+
+	@Test
+	public void failedOperationOnlyFailsItsTicketWithoutSavepoints() throws Exception {
+		mPersistenceManager = TestDatabase.openWithoutSavepoints(mDirectory);
+		assertFalse(mPersistenceManager.supportsNestedTransactions());
+
+		commitGroupWithOneBadRow();
+	}
+
+	@Test
+	public void groupWithoutFailuresIsCommittedWithoutSavepoints() throws Exception {
+		mPersistenceManager = TestDatabase.openWithoutSavepoints(mDirectory);
+		mPersistenceManager.enableWriteQueue(10, 100);
+
+		Future<Void> a = mPersistenceManager.enqueueInsert(TestDatabase.newEntity("a", 1));
+		Future<Void> b = mPersistenceManager.enqueueInsert(TestDatabase.newEntity("b", 2));
+		a.get();
+		b.get();
+
+		assertEquals(Arrays.asList("a", "b"), readNames());
+	}
+
+	/** Enqueue one group with one row rejected by the database between two valid rows. */
+	private void commitGroupWithOneBadRow() throws Exception {
+		mPersistenceManager.execSQL("CREATE TRIGGER reject_bad BEFORE INSERT ON " + mEntityDef.getTableName()
+				+ " WHEN NEW.name = 'bad' BEGIN SELECT RAISE(ABORT, 'bad row'); END");
+		mPersistenceManager.enableWriteQueue(10, 100);
+
+		Future<Void> a = mPersistenceManager.enqueueInsert(TestDatabase.newEntity("a", 1));
+		Future<Void> bad = mPersistenceManager.enqueueInsert(TestDatabase.newEntity("bad", 2));
+		Future<Void> b = mPersistenceManager.enqueueInsert(TestDatabase.newEntity("b", 3));
+		a.get();
+		b.get();
+		try {
+			bad.get();
+			fail("The bad row was committed.");
+		} catch (ExecutionException e) {
+			//expected
+		}
+
+		assertEquals(Arrays.asList("a", "b"), readNames());
+	}
+
+	/** Read the names of all rows (in primary key order). */
+	private List<String> readNames() {
+		List<String> result = new ArrayList<String>();
+		for (Object entity : mPersistenceManager.queryWithResultList(mEntityDef, null))
+			result.add(((TestEntity) entity).name);
+		return result;
+	}
+
+}
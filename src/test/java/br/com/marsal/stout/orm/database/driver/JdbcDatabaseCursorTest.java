@@ -0,0 +1,112 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdbcDatabaseCursorTest {
+
+	private static final int ROWS = 10;
+
+	private Connection mConnection;
+
+	@Before
+	public void setUp() throws Exception {
+		mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		Statement statement = mConnection.createStatement();
+		try {
+			statement.execute("CREATE TABLE t (id INTEGER PRIMARY KEY, name TEXT)");
+			for (int i = 0; i < ROWS; i++)
+				statement.execute("INSERT INTO t (id, name) VALUES (" + i + ", 'name-" + i + "')");
+		} finally {
+			statement.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		mConnection.close();
+	}
+
+	@Test
+	public void forwardIterationReadsAllRows() throws Exception {
+		DatabaseCursor cursor = query();
+		try {
+			int rows = 0;
+			while (cursor.moveToNext()) {
+				assertEquals(rows, cursor.getInt(0));
+				assertEquals("name-" + rows, cursor.getString(1));
+				rows++;
+			}
+			assertEquals(ROWS, rows);
+			assertTrue(cursor.isAfterLast());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void countKeepsCurrentRow() throws Exception {
+		DatabaseCursor cursor = query();
+		try {
+			cursor.moveToPosition(3);
+			assertEquals(ROWS, cursor.getCount());
+			assertEquals(3, cursor.getInt(0));
+			assertTrue(cursor.moveToNext());
+			assertEquals(4, cursor.getInt(0));
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void moveBackRerunsQuery() throws Exception {
+		DatabaseCursor cursor = query();
+		try {
+			while (cursor.moveToNext()) {
+				//read all rows
+			}
+			assertTrue(cursor.moveToFirst());
+			assertEquals(0, cursor.getInt(0));
+			assertTrue(cursor.moveToPosition(7));
+			assertEquals(7, cursor.getInt(0));
+			assertTrue(cursor.moveToPosition(2));
+			assertEquals("name-2", cursor.getString(1));
+			assertEquals(ROWS, cursor.getCount());
+			assertFalse(cursor.moveToPosition(ROWS));
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void emptyResult() throws Exception {
+		DatabaseCursor cursor = query("SELECT id, name FROM t WHERE id < 0");
+		try {
+			assertFalse(cursor.moveToFirst());
+			assertEquals(0, cursor.getCount());
+			assertTrue(cursor.isAfterLast());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private DatabaseCursor query() throws Exception {
+		return query("SELECT id, name FROM t ORDER BY id");
+	}
+
+	private DatabaseCursor query(String sql) throws Exception {
+		PreparedStatement statement = mConnection.prepareStatement(sql);
+		return new JdbcDatabaseCursor(statement, statement.executeQuery());
+	}
+
+}
@@ -0,0 +1,51 @@
+package br.com.marsal.stout.orm.database.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.DriverManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdbcDatabaseStatementTest {
+
+	private DatabaseConnection mConnection;
+
+	@Before
+	public void setUp() throws Exception {
+		mConnection = new JdbcDatabaseConnection(DriverManager.getConnection("jdbc:sqlite::memory:"), ":memory:", false);
+		mConnection.execSQL("CREATE TABLE t (id INTEGER PRIMARY KEY, name TEXT UNIQUE)");
+	}
+
+	@After
+	public void tearDown() {
+		mConnection.close();
+	}
+
+	@Test
+	public void statementCanBeExecutedAgainAfterOneFailure() {
+		DatabaseStatement statement = mConnection.compileStatement("INSERT INTO t (name) VALUES (?)");
+		try {
+			statement.bindString(1, "a");
+			assertEquals(1, statement.executeInsert());
+
+			statement.clearBindings();
+			statement.bindString(1, "a");
+			try {
+				statement.executeInsert();
+				fail("The duplicated row was inserted.");
+			} catch (DatabaseException e) {
+				//expected
+			}
+
+			statement.clearBindings();
+			statement.bindString(1, "b");
+			assertEquals(2, statement.executeInsert());
+		} finally {
+			statement.close();
+		}
+	}
+
+}